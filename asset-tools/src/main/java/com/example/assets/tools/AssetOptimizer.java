@@ -0,0 +1,191 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.assets.tools;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Optimizes the earcons and images of the webapp and writes them under
+ * content-hashed names, together with a manifest mapping each original name
+ * to its hashed name. The webhook reads the manifest through {@code
+ * com.example.assets.AssetManifest} so that prompts link to the hashed files,
+ * which can then be cached forever.
+ *
+ * <p>WAV files go through {@link WavOptimizer} and GIF files through {@link
+ * GifOptimizer}. An optimized file that is not smaller than the original is
+ * discarded and the original is hashed instead. Other files are only hashed.
+ *
+ * <p>Run through {@code gradle optimizeAssets}. Flags: {@code --input} (the
+ * webapp directory), {@code --output} (where the hashed files go), {@code
+ * --manifest} (the properties file to write), {@code --sample-rate}, {@code
+ * --silence-db} and {@code --max-colors}.
+ */
+public class AssetOptimizer {
+
+  /** Directories under the webapp directory that hold assets. */
+  static final String[] DIRECTORIES = {"audio", "images"};
+
+  private static final int HASH_LENGTH = 10;
+
+  private final WavOptimizer wavOptimizer;
+  private final GifOptimizer gifOptimizer;
+
+  public AssetOptimizer(WavOptimizer wavOptimizer, GifOptimizer gifOptimizer) {
+    this.wavOptimizer = wavOptimizer;
+    this.gifOptimizer = gifOptimizer;
+  }
+
+  /**
+   * Optimizes a single asset, falling back to the original content when
+   * optimizing does not make it smaller.
+   *
+   * @param name the file name, whose extension picks the optimizer.
+   * @param content the original content.
+   * @return the content to publish.
+   */
+  public byte[] optimize(String name, byte[] content) throws Exception {
+    byte[] optimized;
+    if (name.endsWith(".wav")) {
+      optimized = wavOptimizer.optimize(content);
+    } else if (name.endsWith(".gif")) {
+      optimized = gifOptimizer.optimize(content);
+    } else {
+      return content;
+    }
+    return optimized.length < content.length ? optimized : content;
+  }
+
+  /**
+   * Inserts the first characters of the content's SHA-256 before the file
+   * extension, e.g. {@code HOT.gif} becomes {@code HOT.3f2a9c01be.gif}.
+   */
+  static String hashedName(String name, byte[] content) {
+    String hash = sha256(content).substring(0, HASH_LENGTH);
+    int dot = name.lastIndexOf('.');
+    return dot < 0 ? name + "." + hash
+        : name.substring(0, dot) + "." + hash + name.substring(dot);
+  }
+
+  private static String sha256(byte[] content) {
+    try {
+      StringBuilder hex = new StringBuilder();
+      for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> flags = new HashMap<>();
+    for (String arg : args) {
+      int equals = arg.indexOf('=');
+      if (!arg.startsWith("--") || equals < 0) {
+        throw new IllegalArgumentException("Unexpected argument: " + arg);
+      }
+      flags.put(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+    Path input = Paths.get(flags.getOrDefault("input", "src/main/webapp"));
+    Path output = Paths.get(flags.getOrDefault("output",
+        "build/optimized-assets/webapp"));
+    Path manifest = Paths.get(flags.getOrDefault("manifest",
+        "build/optimized-assets/resources/assets.properties"));
+    AssetOptimizer optimizer = new AssetOptimizer(
+        new WavOptimizer(
+            Integer.parseInt(flags.getOrDefault("sample-rate", "16000")),
+            Double.parseDouble(flags.getOrDefault("silence-db", "-60"))),
+        new GifOptimizer(
+            Integer.parseInt(flags.getOrDefault("max-colors", "64"))));
+
+    Map<String, String> hashedNames = new TreeMap<>();
+    List<String> report = new ArrayList<>();
+    long totalBefore = 0;
+    long totalAfter = 0;
+    for (String directory : DIRECTORIES) {
+      Path source = input.resolve(directory);
+      if (!Files.isDirectory(source)) {
+        continue;
+      }
+      Path target = output.resolve(directory);
+      Files.createDirectories(target);
+      List<Path> files;
+      try (Stream<Path> list = Files.list(source)) {
+        files = list.filter(Files::isRegularFile).sorted()
+            .collect(Collectors.toList());
+      }
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        byte[] original = Files.readAllBytes(file);
+        byte[] optimized = optimizer.optimize(name, original);
+        String hashedName = hashedName(name, optimized);
+        Files.write(target.resolve(hashedName), optimized);
+        hashedNames.put(directory + "/" + name, directory + "/" + hashedName);
+        totalBefore += original.length;
+        totalAfter += optimized.length;
+        report.add(String.format("%-32s %10d %10d %7.1f%%",
+            directory + "/" + name, original.length, optimized.length,
+            saving(original.length, optimized.length)));
+      }
+    }
+    writeManifest(manifest, hashedNames);
+
+    System.out.printf("%-32s %10s %10s %8s%n", "asset", "before", "after",
+        "saved");
+    report.forEach(System.out::println);
+    System.out.printf("%-32s %10d %10d %7.1f%%%n", "total", totalBefore,
+        totalAfter, saving(totalBefore, totalAfter));
+  }
+
+  private static void writeManifest(Path manifest,
+      Map<String, String> hashedNames) throws IOException {
+    if (manifest.getParent() != null) {
+      Files.createDirectories(manifest.getParent());
+    }
+    // Written by hand rather than with Properties.store so that the file has
+    // no timestamp and an unchanged build produces an identical manifest.
+    StringBuilder builder = new StringBuilder(
+        "# Generated by AssetOptimizer. Do not edit.\n");
+    for (Map.Entry<String, String> entry : hashedNames.entrySet()) {
+      builder.append(entry.getKey()).append('=').append(entry.getValue())
+          .append('\n');
+    }
+    try (OutputStream out = Files.newOutputStream(manifest)) {
+      out.write(builder.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+  }
+
+  private static double saving(long before, long after) {
+    return before == 0 ? 0 : 100.0 * (before - after) / before;
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.assets.tools;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Shrinks (animated) GIFs by reducing all frames to one smaller shared
+ * palette, chosen by {@link MedianCut} from the colors the frames actually
+ * use, and re-encoding them. Frame positions, delays, disposal and looping
+ * are kept; other application extensions, such as embedded XMP, are
+ * dropped.
+ */
+public class GifOptimizer {
+
+  private static final String IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+  private static final String STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+  private static final String LOOP_EXTENSION = "NETSCAPE";
+
+  private final int maxColors;
+
+  /**
+   * Creates a {@link GifOptimizer}.
+   *
+   * @param maxColors the size of the shared palette, including the
+   * transparent color. Must be between 2 and 256.
+   */
+  public GifOptimizer(int maxColors) {
+    if (maxColors < 2 || maxColors > 256) {
+      throw new IllegalArgumentException(
+          "maxColors must be between 2 and 256.");
+    }
+    this.maxColors = maxColors;
+  }
+
+  /**
+   * Optimizes a GIF file.
+   *
+   * @param gif the content of a GIF file. Cannot be {@code null}.
+   * @return the content of the optimized GIF file.
+   */
+  public byte[] optimize(byte[] gif) throws IOException {
+    Objects.requireNonNull(gif, "gif cannot be null.");
+    ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+    List<BufferedImage> frames = new ArrayList<>();
+    List<Node> metadata = new ArrayList<>();
+    Node streamMetadata;
+    try (ImageInputStream in =
+        ImageIO.createImageInputStream(new ByteArrayInputStream(gif))) {
+      reader.setInput(in);
+      int count = reader.getNumImages(true);
+      for (int i = 0; i < count; i++) {
+        frames.add(reader.read(i));
+        metadata.add(reader.getImageMetadata(i).getAsTree(IMAGE_FORMAT));
+      }
+      streamMetadata = reader.getStreamMetadata().getAsTree(STREAM_FORMAT);
+    } finally {
+      reader.dispose();
+    }
+
+    boolean transparent = false;
+    Map<Integer, Long> histogram = new HashMap<>();
+    for (int i = 0; i < frames.size(); i++) {
+      int transparentIndex = transparentIndex(metadata.get(i));
+      transparent |= transparentIndex >= 0;
+      IndexColorModel colors = (IndexColorModel) frames.get(i).getColorModel();
+      long[] counts = new long[colors.getMapSize()];
+      for (int index : pixels(frames.get(i))) {
+        counts[index]++;
+      }
+      for (int index = 0; index < counts.length; index++) {
+        if (counts[index] > 0 && index != transparentIndex) {
+          histogram.merge(colors.getRGB(index) & 0xffffff, counts[index],
+              Long::sum);
+        }
+      }
+    }
+    int[] palette = MedianCut.quantize(histogram,
+        transparent ? maxColors - 1 : maxColors);
+    int newTransparentIndex = transparent ? palette.length : -1;
+    IndexColorModel newColors =
+        colorModel(palette, transparent, newTransparentIndex);
+
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("gif").next();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(gif.length);
+    try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+      writer.setOutput(out);
+      IIOMetadata stream = writer.getDefaultStreamMetadata(null);
+      stream.mergeTree(STREAM_FORMAT, streamTree(streamMetadata));
+      writer.prepareWriteSequence(stream);
+      for (int i = 0; i < frames.size(); i++) {
+        BufferedImage frame = remap(frames.get(i), palette, newColors,
+            transparentIndex(metadata.get(i)), newTransparentIndex);
+        IIOMetadata frameMetadata = writer.getDefaultImageMetadata(
+            new ImageTypeSpecifier(frame), null);
+        frameMetadata.mergeTree(IMAGE_FORMAT,
+            imageTree(metadata.get(i), newTransparentIndex));
+        writer.writeToSequence(new IIOImage(frame, null, frameMetadata), null);
+      }
+      writer.endWriteSequence();
+    } finally {
+      writer.dispose();
+    }
+    return bytes.toByteArray();
+  }
+
+  private static BufferedImage remap(BufferedImage frame, int[] palette,
+      IndexColorModel newColors, int transparentIndex,
+      int newTransparentIndex) {
+    IndexColorModel colors = (IndexColorModel) frame.getColorModel();
+    int[] mapping = new int[colors.getMapSize()];
+    for (int index = 0; index < mapping.length; index++) {
+      mapping[index] = index == transparentIndex ? newTransparentIndex
+          : MedianCut.nearest(palette, colors.getRGB(index) & 0xffffff);
+    }
+    int[] pixels = pixels(frame);
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = mapping[pixels[i]];
+    }
+    BufferedImage remapped = new BufferedImage(frame.getWidth(),
+        frame.getHeight(), BufferedImage.TYPE_BYTE_INDEXED, newColors);
+    remapped.getRaster().setPixels(0, 0, frame.getWidth(), frame.getHeight(),
+        pixels);
+    return remapped;
+  }
+
+  private static int[] pixels(BufferedImage frame) {
+    WritableRaster raster = frame.getRaster();
+    return raster.getPixels(0, 0, raster.getWidth(), raster.getHeight(),
+        (int[]) null);
+  }
+
+  private static IndexColorModel colorModel(int[] palette,
+      boolean transparent, int transparentIndex) {
+    int size = palette.length + (transparent ? 1 : 0);
+    int bits = 1;
+    while ((1 << bits) < size) {
+      bits++;
+    }
+    byte[] red = new byte[size];
+    byte[] green = new byte[size];
+    byte[] blue = new byte[size];
+    for (int i = 0; i < palette.length; i++) {
+      red[i] = (byte) (palette[i] >> 16);
+      green[i] = (byte) (palette[i] >> 8);
+      blue[i] = (byte) palette[i];
+    }
+    return transparent
+        ? new IndexColorModel(bits, size, red, green, blue, transparentIndex)
+        : new IndexColorModel(bits, size, red, green, blue);
+  }
+
+  private static int transparentIndex(Node imageMetadata) {
+    Node control = child(imageMetadata, "GraphicControlExtension");
+    if (control == null || !"TRUE".equals(
+        attribute(control, "transparentColorFlag"))) {
+      return -1;
+    }
+    return Integer.parseInt(attribute(control, "transparentColorIndex"));
+  }
+
+  private static IIOMetadataNode streamTree(Node source) {
+    IIOMetadataNode root = new IIOMetadataNode(STREAM_FORMAT);
+    Node screen = child(source, "LogicalScreenDescriptor");
+    if (screen != null) {
+      root.appendChild(copy(screen));
+    }
+    return root;
+  }
+
+  private static IIOMetadataNode imageTree(Node source,
+      int newTransparentIndex) {
+    IIOMetadataNode root = new IIOMetadataNode(IMAGE_FORMAT);
+    for (Node node = source.getFirstChild(); node != null;
+        node = node.getNextSibling()) {
+      switch (node.getNodeName()) {
+        case "ImageDescriptor":
+          root.appendChild(copy(node));
+          break;
+        case "GraphicControlExtension":
+          IIOMetadataNode control = copy(node);
+          if (newTransparentIndex >= 0) {
+            control.setAttribute("transparentColorIndex",
+                String.valueOf(newTransparentIndex));
+          }
+          root.appendChild(control);
+          break;
+        case "ApplicationExtensions":
+          IIOMetadataNode extensions = copyLoopExtensions(node);
+          if (extensions.hasChildNodes()) {
+            root.appendChild(extensions);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+    return root;
+  }
+
+  private static IIOMetadataNode copyLoopExtensions(Node extensions) {
+    IIOMetadataNode copy = new IIOMetadataNode(extensions.getNodeName());
+    for (Node node = extensions.getFirstChild(); node != null;
+        node = node.getNextSibling()) {
+      if (LOOP_EXTENSION.equals(attribute(node, "applicationID"))) {
+        IIOMetadataNode extension = copy(node);
+        extension.setUserObject(((IIOMetadataNode) node).getUserObject());
+        copy.appendChild(extension);
+      }
+    }
+    return copy;
+  }
+
+  // IIOMetadataNode.cloneNode does not copy attributes on every JDK.
+  private static IIOMetadataNode copy(Node node) {
+    IIOMetadataNode copy = new IIOMetadataNode(node.getNodeName());
+    NamedNodeMap attributes = node.getAttributes();
+    for (int i = 0; i < attributes.getLength(); i++) {
+      Node attribute = attributes.item(i);
+      copy.setAttribute(attribute.getNodeName(), attribute.getNodeValue());
+    }
+    return copy;
+  }
+
+  private static Node child(Node node, String name) {
+    for (Node child = node.getFirstChild(); child != null;
+        child = child.getNextSibling()) {
+      if (child.getNodeName().equals(name)) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+  private static String attribute(Node node, String name) {
+    Node attribute = node.getAttributes().getNamedItem(name);
+    return attribute == null ? null : attribute.getNodeValue();
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.assets.tools;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Median cut color quantization: repeatedly splits the box of colors with
+ * the most pixels along its longest axis at the weighted median, and
+ * represents each final box by its weighted average color.
+ */
+final class MedianCut {
+
+  private MedianCut() {
+  }
+
+  /**
+   * Picks a palette for a color histogram.
+   *
+   * @param histogram pixel counts keyed by {@code 0xRRGGBB} color.
+   * @param maxColors the largest palette to return.
+   * @return the palette, as {@code 0xRRGGBB} colors.
+   */
+  static int[] quantize(Map<Integer, Long> histogram, int maxColors) {
+    List<long[]> colors = new ArrayList<>();
+    for (Map.Entry<Integer, Long> entry : histogram.entrySet()) {
+      colors.add(new long[] {entry.getKey(), entry.getValue()});
+    }
+    List<List<long[]>> boxes = new ArrayList<>();
+    if (!colors.isEmpty()) {
+      boxes.add(colors);
+    }
+    while (boxes.size() < maxColors) {
+      List<long[]> widest = null;
+      long widestWeight = -1;
+      for (List<long[]> box : boxes) {
+        long weight = weight(box);
+        if (box.size() > 1 && weight > widestWeight) {
+          widest = box;
+          widestWeight = weight;
+        }
+      }
+      if (widest == null) {
+        break;
+      }
+      boxes.remove(widest);
+      int axis = longestAxis(widest);
+      widest.sort(Comparator.comparingInt(color -> channel(color[0], axis)));
+      long half = widestWeight / 2;
+      long seen = 0;
+      int split = 1;
+      for (int i = 0; i < widest.size() - 1; i++) {
+        seen += widest.get(i)[1];
+        split = i + 1;
+        if (seen >= half) {
+          break;
+        }
+      }
+      boxes.add(new ArrayList<>(widest.subList(0, split)));
+      boxes.add(new ArrayList<>(widest.subList(split, widest.size())));
+    }
+    int[] palette = new int[boxes.size()];
+    for (int i = 0; i < palette.length; i++) {
+      palette[i] = average(boxes.get(i));
+    }
+    return palette;
+  }
+
+  /**
+   * Finds the palette entry closest to a color.
+   *
+   * @return the index of the closest entry.
+   */
+  static int nearest(int[] palette, int rgb) {
+    int best = 0;
+    int bestDistance = Integer.MAX_VALUE;
+    for (int i = 0; i < palette.length; i++) {
+      int distance = 0;
+      for (int axis = 0; axis < 3; axis++) {
+        int delta = channel(palette[i], axis) - channel(rgb, axis);
+        distance += delta * delta;
+      }
+      if (distance < bestDistance) {
+        best = i;
+        bestDistance = distance;
+      }
+    }
+    return best;
+  }
+
+  private static int channel(long rgb, int axis) {
+    return (int) (rgb >> (16 - 8 * axis)) & 0xff;
+  }
+
+  private static long weight(List<long[]> box) {
+    long weight = 0;
+    for (long[] color : box) {
+      weight += color[1];
+    }
+    return weight;
+  }
+
+  private static int longestAxis(List<long[]> box) {
+    int longest = 0;
+    int longestRange = -1;
+    for (int axis = 0; axis < 3; axis++) {
+      int min = 255;
+      int max = 0;
+      for (long[] color : box) {
+        min = Math.min(min, channel(color[0], axis));
+        max = Math.max(max, channel(color[0], axis));
+      }
+      if (max - min > longestRange) {
+        longest = axis;
+        longestRange = max - min;
+      }
+    }
+    return longest;
+  }
+
+  private static int average(List<long[]> box) {
+    long weight = Math.max(1, weight(box));
+    int rgb = 0;
+    for (int axis = 0; axis < 3; axis++) {
+      long sum = 0;
+      for (long[] color : box) {
+        sum += channel(color[0], axis) * color[1];
+      }
+      rgb |= (int) ((sum + weight / 2) / weight) << (16 - 8 * axis);
+    }
+    return rgb;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.assets.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Objects;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Shrinks PCM WAV earcons: trims leading and trailing silence, mixes all
+ * channels down to mono and resamples to a lower sample rate. The result is
+ * always 16 bit signed little-endian PCM.
+ */
+public class WavOptimizer {
+
+  // Zero crossings of the windowed sinc on each side of a resampled point.
+  private static final int SINC_ZERO_CROSSINGS = 16;
+  // Silence kept before the first and after the last audible sample.
+  private static final double TRIM_PADDING_SECONDS = 0.005;
+
+  private final int targetSampleRate;
+  private final double silenceThreshold;
+
+  /**
+   * Creates a {@link WavOptimizer}.
+   *
+   * @param targetSampleRate the sample rate to resample to. Audio at this
+   * rate or lower is not resampled. Must be positive.
+   * @param silenceThresholdDb the level in dBFS below which leading and
+   * trailing samples count as silence, e.g. {@code -60}.
+   */
+  public WavOptimizer(int targetSampleRate, double silenceThresholdDb) {
+    if (targetSampleRate <= 0) {
+      throw new IllegalArgumentException("targetSampleRate must be positive.");
+    }
+    this.targetSampleRate = targetSampleRate;
+    this.silenceThreshold = Math.pow(10, silenceThresholdDb / 20);
+  }
+
+  /**
+   * Optimizes a WAV file.
+   *
+   * @param wav the content of a PCM WAV file. Cannot be {@code null}.
+   * @return the content of the optimized WAV file.
+   * @throws UnsupportedAudioFileException if the file is not PCM WAV.
+   */
+  public byte[] optimize(byte[] wav)
+      throws IOException, UnsupportedAudioFileException {
+    Objects.requireNonNull(wav, "wav cannot be null.");
+    AudioInputStream source =
+        AudioSystem.getAudioInputStream(new ByteArrayInputStream(wav));
+    AudioFormat format = source.getFormat();
+    AudioFormat.Encoding encoding = format.getEncoding();
+    if (!encoding.equals(AudioFormat.Encoding.PCM_SIGNED)
+        && !encoding.equals(AudioFormat.Encoding.PCM_UNSIGNED)) {
+      throw new UnsupportedAudioFileException("Not PCM: " + encoding);
+    }
+    float sampleRate = format.getSampleRate();
+    int channels = format.getChannels();
+    AudioFormat pcm16 = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+        sampleRate, 16, channels, 2 * channels, sampleRate, false);
+    AudioInputStream converted = AudioSystem.getAudioInputStream(pcm16, source);
+    byte[] bytes = readAll(converted);
+
+    float[] samples = downmix(bytes, channels);
+    samples = trimSilence(samples, sampleRate);
+    int outputRate = (int) sampleRate;
+    if (sampleRate > targetSampleRate) {
+      samples = resample(samples, sampleRate, targetSampleRate);
+      outputRate = targetSampleRate;
+    }
+    return encode(samples, outputRate);
+  }
+
+  /** Averages the channels of 16 bit little-endian frames into [-1, 1]. */
+  static float[] downmix(byte[] bytes, int channels) {
+    int frames = bytes.length / (2 * channels);
+    float[] samples = new float[frames];
+    for (int frame = 0; frame < frames; frame++) {
+      int sum = 0;
+      for (int channel = 0; channel < channels; channel++) {
+        int offset = 2 * (frame * channels + channel);
+        sum += (short) ((bytes[offset] & 0xff) | (bytes[offset + 1] << 8));
+      }
+      samples[frame] = sum / (channels * 32768f);
+    }
+    return samples;
+  }
+
+  float[] trimSilence(float[] samples, float sampleRate) {
+    int first = 0;
+    while (first < samples.length
+        && Math.abs(samples[first]) < silenceThreshold) {
+      first++;
+    }
+    int last = samples.length - 1;
+    while (last > first && Math.abs(samples[last]) < silenceThreshold) {
+      last--;
+    }
+    if (first >= samples.length) {
+      return new float[0];
+    }
+    int padding = (int) (TRIM_PADDING_SECONDS * sampleRate);
+    int from = Math.max(0, first - padding);
+    int to = Math.min(samples.length, last + 1 + padding);
+    float[] trimmed = new float[to - from];
+    System.arraycopy(samples, from, trimmed, 0, trimmed.length);
+    return trimmed;
+  }
+
+  /**
+   * Resamples to a lower rate with a Blackman windowed sinc low-pass filter
+   * at the new Nyquist frequency.
+   */
+  static float[] resample(float[] samples, float fromRate, int toRate) {
+    double ratio = fromRate / toRate;
+    double cutoff = Math.min(1, 1 / ratio);
+    double halfWidth = SINC_ZERO_CROSSINGS / cutoff;
+    int length = (int) Math.floor(samples.length / ratio);
+    float[] resampled = new float[length];
+    for (int n = 0; n < length; n++) {
+      double center = n * ratio;
+      int from = Math.max(0, (int) Math.ceil(center - halfWidth));
+      int to = Math.min(samples.length - 1,
+          (int) Math.floor(center + halfWidth));
+      double sum = 0;
+      for (int k = from; k <= to; k++) {
+        double distance = k - center;
+        sum += samples[k] * cutoff * sinc(cutoff * distance)
+            * blackman(distance / halfWidth);
+      }
+      resampled[n] = (float) sum;
+    }
+    return resampled;
+  }
+
+  private static double sinc(double x) {
+    if (x == 0) {
+      return 1;
+    }
+    double px = Math.PI * x;
+    return Math.sin(px) / px;
+  }
+
+  // The Blackman window on [-1, 1].
+  private static double blackman(double x) {
+    double phase = Math.PI * (x + 1);
+    return 0.42 - 0.5 * Math.cos(phase) + 0.08 * Math.cos(2 * phase);
+  }
+
+  private static byte[] encode(float[] samples, int sampleRate)
+      throws IOException {
+    byte[] bytes = new byte[2 * samples.length];
+    for (int i = 0; i < samples.length; i++) {
+      int value = Math.round(samples[i] * 32767);
+      value = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+      bytes[2 * i] = (byte) value;
+      bytes[2 * i + 1] = (byte) (value >> 8);
+    }
+    AudioFormat format = new AudioFormat(sampleRate, 16, 1, true, false);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length + 44);
+    AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(bytes),
+        format, samples.length), AudioFileFormat.Type.WAVE, out);
+    return out.toByteArray();
+  }
+
+  private static byte[] readAll(AudioInputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
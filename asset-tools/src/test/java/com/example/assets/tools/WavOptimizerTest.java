@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.assets.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import org.junit.Test;
+
+public class WavOptimizerTest {
+
+  private static final int SOURCE_RATE = 48000;
+
+  @Test
+  public void testTrimsDownmixesAndResamples() throws Exception {
+    // Half a second of silence, one second of a 440 Hz tone in both
+    // channels, half a second of silence.
+    int frames = 2 * SOURCE_RATE;
+    byte[] pcm = new byte[4 * frames];
+    for (int i = SOURCE_RATE / 2; i < SOURCE_RATE * 3 / 2; i++) {
+      short value =
+          (short) (16000 * Math.sin(2 * Math.PI * 440 * i / SOURCE_RATE));
+      for (int channel = 0; channel < 2; channel++) {
+        pcm[4 * i + 2 * channel] = (byte) value;
+        pcm[4 * i + 2 * channel + 1] = (byte) (value >> 8);
+      }
+    }
+    ByteArrayOutputStream wav = new ByteArrayOutputStream();
+    AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(pcm),
+        new AudioFormat(SOURCE_RATE, 16, 2, true, false), frames),
+        AudioFileFormat.Type.WAVE, wav);
+
+    byte[] optimized = new WavOptimizer(16000, -60).optimize(wav.toByteArray());
+
+    AudioInputStream result =
+        AudioSystem.getAudioInputStream(new ByteArrayInputStream(optimized));
+    assertEquals(1, result.getFormat().getChannels());
+    assertEquals(16000, result.getFormat().getSampleRate(), 0);
+    // One second of tone plus a few milliseconds of padding on each side.
+    assertEquals(16000, result.getFrameLength(), 200);
+    assertTrue(optimized.length < wav.size() / 11);
+    byte[] bytes = new byte[2 * (int) result.getFrameLength()];
+    assertEquals(bytes.length, result.read(bytes));
+    float peak = 0;
+    for (float sample : WavOptimizer.downmix(bytes, 1)) {
+      peak = Math.max(peak, Math.abs(sample));
+    }
+    // Well below the new Nyquist frequency, so the level is unchanged.
+    assertEquals(16000 / 32768f, peak, 0.01);
+  }
+}
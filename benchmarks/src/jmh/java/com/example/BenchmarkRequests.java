@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example;
+
+import com.example.util.DialogflowRequestBuilder;
+import com.google.actions.api.ActionRequest;
+import com.google.actions.api.DialogflowApp;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Realistic webhook request bodies for every intent handler and every branch
+ * of {@code provide_guess}. The conversation data is fixed, so each scenario
+ * always lands on the same branch.
+ */
+public final class BenchmarkRequests {
+
+  /** Scenario names, usable as a JMH {@code @Param} list. */
+  public static final String[] SCENARIOS = {
+      "start_game",
+      "provide_guess_cold",
+      "provide_guess_warm",
+      "provide_guess_hot",
+      "provide_guess_very_hot",
+      "provide_guess_hot_higher",
+      "provide_guess_higher",
+      "provide_guess_still_higher",
+      "provide_guess_same",
+      "provide_guess_min",
+      "provide_guess_win",
+      "repeat",
+      "no_input",
+      "fallback",
+      "deeplink_number",
+      "unknown_deeplink",
+      "quit_game",
+      "play_again_yes",
+  };
+
+  private static final double ANSWER = 50.0;
+
+  private BenchmarkRequests() {
+  }
+
+  /**
+   * Builds the webhook request body for a scenario.
+   *
+   * @param scenario one of {@link #SCENARIOS}.
+   * @return the request body as JSON.
+   */
+  public static String body(String scenario) {
+    return builder(scenario).build();
+  }
+
+  /**
+   * Parses the request for a scenario the same way {@link DialogflowApp}
+   * does, for benchmarks that start after request parsing.
+   *
+   * @param scenario one of {@link #SCENARIOS}.
+   * @return the parsed {@link ActionRequest}.
+   */
+  public static ActionRequest request(String scenario) {
+    return new DialogflowApp().createRequest(body(scenario), null);
+  }
+
+  private static DialogflowRequestBuilder builder(String scenario) {
+    switch (scenario) {
+      case "start_game":
+        return new DialogflowRequestBuilder("start_game");
+      case "provide_guess_cold":
+        return guess(10.0, inGame(95.0));
+      case "provide_guess_warm":
+        return guess(44.0, inGame(ANSWER));
+      case "provide_guess_hot":
+        return guess(46.0, inGame(ANSWER));
+      case "provide_guess_very_hot":
+        return guess(47.0, inGame(ANSWER));
+      case "provide_guess_hot_higher":
+        return guess(48.0, withHint(inGame(ANSWER), "higher", 40.0));
+      case "provide_guess_higher":
+        return guess(30.0, inGame(ANSWER));
+      case "provide_guess_still_higher":
+        return guess(35.0, withHint(inGame(ANSWER), "higher", 40.0));
+      case "provide_guess_same":
+        return guess(30.0, withHint(inGame(ANSWER), "higher", 30.0));
+      case "provide_guess_min":
+        return guess(0.0, inGame(ANSWER));
+      case "provide_guess_win":
+        return guess(ANSWER, inGame(ANSWER));
+      case "repeat":
+        return new DialogflowRequestBuilder("repeat")
+            .setConversationData(inGame(ANSWER));
+      case "no_input":
+        return new DialogflowRequestBuilder("no_input")
+            .setRepromptCount(1)
+            .setConversationData(inGame(ANSWER));
+      case "fallback":
+        return new DialogflowRequestBuilder("Default Fallback Intent")
+            .setRawText("banana")
+            .setConversationData(inGame(ANSWER));
+      case "deeplink_number":
+        return new DialogflowRequestBuilder("deeplink_number")
+            .setParameter("number", 42.0);
+      case "unknown_deeplink":
+        return new DialogflowRequestBuilder("unknown_deeplink")
+            .setRawText("talk to number genie about bananas");
+      case "quit_game":
+        return new DialogflowRequestBuilder("quit_game")
+            .setConversationData(inGame(ANSWER));
+      case "play_again_yes":
+        return new DialogflowRequestBuilder("play_again_yes")
+            .setConversationData(inGame(ANSWER));
+      default:
+        throw new IllegalArgumentException("Unknown scenario: " + scenario);
+    }
+  }
+
+  private static DialogflowRequestBuilder guess(double guess,
+      Map<String, Object> conversationData) {
+    return new DialogflowRequestBuilder("provide_guess")
+        .setParameter("guess", guess)
+        .setConversationData(conversationData);
+  }
+
+  private static Map<String, Object> inGame(double answer) {
+    Map<String, Object> conversationData = new HashMap<>();
+    conversationData.put("answer", answer);
+    conversationData.put("guessCount", 3.0);
+    conversationData.put("fallbackCount", 0.0);
+    conversationData.put("steamSoundCount", 0.0);
+    conversationData.put("duplicateCount", 0.0);
+    conversationData.put("min", 0.0);
+    conversationData.put("max", 100.0);
+    return conversationData;
+  }
+
+  private static Map<String, Object> withHint(
+      Map<String, Object> conversationData, String hint,
+      double previousGuess) {
+    conversationData.put("hint", hint);
+    conversationData.put("previousGuess", previousGuess);
+    return conversationData;
+  }
+}
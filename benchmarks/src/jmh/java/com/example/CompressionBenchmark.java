@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example;
+
+import com.example.util.ContentEncoding;
+import com.example.util.ResponseCompressor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the CPU cost of compressing real webhook responses against the
+ * bytes it saves, per compression level and encoding, with the pooled
+ * {@link ResponseCompressor} and with a new {@link GZIPOutputStream} per
+ * response for comparison. The {@code inputBytes} and {@code outputBytes}
+ * counters report the size of one response before and after.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CompressionBenchmark {
+
+  @Param({"start_game", "provide_guess_higher", "provide_guess_win"})
+  public String scenario;
+
+  @Param({"gzip", "deflate"})
+  public String encoding;
+
+  @Param({"1", "6", "9"})
+  public int level;
+
+  private byte[] body;
+  private ContentEncoding contentEncoding;
+  private ResponseCompressor compressor;
+
+  /** The size of the last response, before and after compression. */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class Sizes {
+
+    public long inputBytes;
+    public long outputBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      inputBytes = 0;
+      outputBytes = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    body = new NumberGenieApp()
+        .handleRequest(BenchmarkRequests.body(scenario), null).get()
+        .getBytes(StandardCharsets.UTF_8);
+    contentEncoding = ContentEncoding.negotiate(encoding);
+    compressor = new ResponseCompressor(0, level, 1);
+  }
+
+  @Benchmark
+  public ContentEncoding pooled(Sizes sizes) throws IOException {
+    return compressor.write(body, contentEncoding, (used, bytes, length) -> {
+      sizes.inputBytes = body.length;
+      sizes.outputBytes = length;
+    });
+  }
+
+  @Benchmark
+  public int gzipOutputStream() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(body);
+    }
+    return out.size();
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example;
+
+import com.example.util.ExecutionMode;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the platform-thread pool of the standalone server with a virtual
+ * thread per request, for a burst of {@code inFlight} concurrent webhook
+ * requests that each block for {@code blockMillis}, as a turn waiting on a
+ * session store or journal would.
+ *
+ * <p>One operation is the whole burst, so divide the time and the bytes
+ * allocated per operation by {@code inFlight} for the cost per request. The
+ * GC profiler does not see thread stacks, which is where the platform pool
+ * spends most of its memory. On a runtime without virtual threads both modes
+ * use the platform pool.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExecutionModeBenchmark {
+
+  @Param({"platform", "virtual"})
+  public String mode;
+
+  @Param({"100", "1000"})
+  public int inFlight;
+
+  @Param({"5"})
+  public int blockMillis;
+
+  private NumberGenieApp app;
+  private String body;
+  private ExecutorService executor;
+
+  @Setup
+  public void setUp() {
+    app = new NumberGenieApp();
+    body = BenchmarkRequests.body("start_game");
+    // The default worker pool size of the standalone server.
+    executor = ExecutionMode.parse(mode).newExecutor(
+        2 * Runtime.getRuntime().availableProcessors(), "benchmark-worker-");
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public void burst() throws Exception {
+    CountDownLatch done = new CountDownLatch(inFlight);
+    for (int i = 0; i < inFlight; i++) {
+      executor.execute(() -> {
+        try {
+          Thread.sleep(blockMillis);
+          app.handleRequest(body, null).join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          done.countDown();
+        }
+      });
+    }
+    done.await();
+  }
+}
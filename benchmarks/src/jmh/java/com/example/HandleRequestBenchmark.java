@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link NumberGenieApp#handleRequest} from raw request JSON to
+ * response JSON, once per intent handler and {@code provide_guess} branch.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HandleRequestBenchmark {
+
+  @Param({
+      "start_game",
+      "provide_guess_cold",
+      "provide_guess_warm",
+      "provide_guess_hot",
+      "provide_guess_very_hot",
+      "provide_guess_hot_higher",
+      "provide_guess_higher",
+      "provide_guess_still_higher",
+      "provide_guess_same",
+      "provide_guess_min",
+      "provide_guess_win",
+      "repeat",
+      "no_input",
+      "fallback",
+      "deeplink_number",
+      "unknown_deeplink",
+      "quit_game",
+      "play_again_yes",
+  })
+  public String scenario;
+
+  private NumberGenieApp app;
+  private String body;
+
+  @Setup
+  public void setUp() {
+    app = new NumberGenieApp();
+    body = BenchmarkRequests.body(scenario);
+  }
+
+  @Benchmark
+  public String handleRequest() throws Exception {
+    return app.handleRequest(body, null).get();
+  }
+}
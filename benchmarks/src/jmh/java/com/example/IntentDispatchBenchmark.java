@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example;
+
+import com.google.actions.api.ActionRequest;
+import com.google.actions.api.ActionResponse;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares routing a parsed request through the library's reflective {@link
+ * NumberGenieApp#routeRequest} with routing it through the app's {@link
+ * IntentDispatcher}. Both run the same handler, so the difference is the
+ * cost of dispatch.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IntentDispatchBenchmark {
+
+  @Param({
+      "start_game",
+      "provide_guess_warm",
+      "no_input",
+      "fallback",
+  })
+  public String scenario;
+
+  private NumberGenieApp app;
+  private IntentDispatcher dispatcher;
+  private ActionRequest request;
+
+  @Setup
+  public void setUp() {
+    app = new NumberGenieApp();
+    dispatcher = app.getDispatcher();
+    request = BenchmarkRequests.request(scenario);
+  }
+
+  @Benchmark
+  public ActionResponse libraryRouting() throws Exception {
+    return app.routeRequest(request).get();
+  }
+
+  @Benchmark
+  public ActionResponse dispatchTable() throws Exception {
+    return dispatcher.dispatch(request).get();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example;
+
+import com.example.prompts.Prompt;
+import com.example.prompts.Prompts;
+import com.example.prompts.SurfaceCapabilities;
+import com.google.actions.api.ActionRequest;
+import com.google.actions.api.DialogflowApp;
+import com.google.actions.api.response.ResponseBuilder;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@code NumberGenieApp.addPromptToResponse} for prompts with and
+ * without image cards and audio, for each kind of surface, with and without
+ * JSON serialization.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RenderBenchmark {
+
+  @Param({"start_game", "hot_higher_with_sound", "higher", "win"})
+  public String prompt;
+
+  @Param({"screen_and_audio", "audio_only", "screen_only"})
+  public String surface;
+
+  private DialogflowApp app;
+  private ActionRequest request;
+  private Prompt builtPrompt;
+  private int capabilities;
+
+  @Setup
+  public void setUp() {
+    app = new DialogflowApp();
+    switch (prompt) {
+      case "start_game":
+        request = BenchmarkRequests.request("provide_guess_higher");
+        builtPrompt =
+            Prompts.getStartGamePrompt(request, SurfaceCapabilities.ALL);
+        break;
+      case "hot_higher_with_sound":
+        request = BenchmarkRequests.request("provide_guess_hot_higher");
+        builtPrompt = Prompts.getHotHigherPrompt(request,
+            SurfaceCapabilities.ALL, true);
+        break;
+      case "higher":
+        request = BenchmarkRequests.request("provide_guess_higher");
+        builtPrompt = Prompts.getHigherPrompt(request, SurfaceCapabilities.ALL);
+        break;
+      case "win":
+        request = BenchmarkRequests.request("provide_guess_win");
+        builtPrompt = Prompts.getWinPrompt(request, SurfaceCapabilities.ALL);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown prompt: " + prompt);
+    }
+    switch (surface) {
+      case "audio_only":
+        capabilities = SurfaceCapabilities.AUDIO_OUTPUT;
+        break;
+      case "screen_only":
+        capabilities = SurfaceCapabilities.SCREEN_OUTPUT;
+        break;
+      default:
+        capabilities = SurfaceCapabilities.ALL;
+        break;
+    }
+  }
+
+  @Benchmark
+  public ResponseBuilder render() {
+    ResponseBuilder responseBuilder = app.getResponseBuilder(request);
+    NumberGenieApp.addPromptToResponse(responseBuilder, builtPrompt,
+        capabilities);
+    return responseBuilder;
+  }
+
+  @Benchmark
+  public String renderAndSerialize() {
+    ResponseBuilder responseBuilder = app.getResponseBuilder(request);
+    NumberGenieApp.addPromptToResponse(responseBuilder, builtPrompt,
+        capabilities);
+    return responseBuilder.build().toJson();
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a webhook call end to end through {@link ActionsServlet}: reading
+ * the body, handling the intent and writing the response, with and without
+ * compression.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServletBenchmark {
+
+  @Param({"start_game", "provide_guess_higher", "provide_guess_win"})
+  public String scenario;
+
+  // The request's Accept-Encoding header, empty for none.
+  @Param({"", "gzip"})
+  public String acceptEncoding;
+
+  private ActionsServlet servlet;
+  private String body;
+  private StringWriter output;
+  private ByteArrayOutputStream bytes;
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+
+  @Setup
+  public void setUp() throws Exception {
+    servlet = new ActionsServlet();
+    body = BenchmarkRequests.body(scenario);
+    output = new StringWriter();
+    PrintWriter writer = new PrintWriter(output);
+    bytes = new ByteArrayOutputStream();
+    ServletOutputStream stream = new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        bytes.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        bytes.write(b, off, len);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener writeListener) {
+      }
+    };
+    request = (HttpServletRequest) Proxy.newProxyInstance(
+        getClass().getClassLoader(),
+        new Class<?>[]{HttpServletRequest.class},
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getReader":
+              return new BufferedReader(new StringReader(body));
+            case "getMethod":
+              return "POST";
+            case "getHeader":
+              return "Accept-Encoding".equals(args[0])
+                  && !acceptEncoding.isEmpty() ? acceptEncoding : null;
+            default:
+              return defaultValue(method.getReturnType());
+          }
+        });
+    response = (HttpServletResponse) Proxy.newProxyInstance(
+        getClass().getClassLoader(),
+        new Class<?>[]{HttpServletResponse.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("getWriter")) {
+            return writer;
+          }
+          if (method.getName().equals("getOutputStream")) {
+            return stream;
+          }
+          return defaultValue(method.getReturnType());
+        });
+  }
+
+  @Benchmark
+  public int doPost() throws Exception {
+    output.getBuffer().setLength(0);
+    bytes.reset();
+    servlet.doPost(request, response);
+    return output.getBuffer().length() + bytes.size();
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    if (type == boolean.class) {
+      return false;
+    }
+    if (type == int.class) {
+      return 0;
+    }
+    if (type == long.class) {
+      return 0L;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.cluster;
+
+import com.example.stats.UserStatistics;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the throughput of a cluster of {@code nodes} nodes on localhost:
+ * one operation records {@code games} wins spread over the nodes and the
+ * users, and waits until every owner has applied its share, so the time
+ * covers forwarding end to end, with replication to the backups running
+ * alongside. Divide {@code games} by the time per operation for games per
+ * second.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ClusterBenchmark {
+
+  private static final int USERS = 1000;
+
+  @Param({"2", "3"})
+  public int nodes;
+
+  @Param({"10000"})
+  public int games;
+
+  private final List<ClusterNode> cluster = new ArrayList<>();
+  private final List<ClusteredStatistics> owners = new ArrayList<>();
+  private long expectedWins;
+
+  @Setup
+  public void setUp() throws Exception {
+    List<InetSocketAddress> members = new ArrayList<>();
+    for (int i = 0; i < nodes; i++) {
+      ClusterNode node = new ClusterNode(
+          new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 10,
+          games);
+      cluster.add(node);
+      members.add(node.getAddress());
+    }
+    for (ClusterNode node : cluster) {
+      node.setMembers(members);
+    }
+    HashRing ring = new HashRing(members);
+    for (int user = 0; user < USERS; user++) {
+      owners.add(cluster.get(members.indexOf(ring.getOwner(userId(user))))
+          .getStatistics());
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    for (ClusterNode node : cluster) {
+      node.close();
+    }
+  }
+
+  @Benchmark
+  public long recordAndReplicate() throws InterruptedException {
+    for (int i = 0; i < games; i++) {
+      cluster.get(i % nodes).getStatistics().recordWin(userId(i % USERS), 5);
+    }
+    expectedWins += games;
+    long wins;
+    while ((wins = appliedWins()) < expectedWins) {
+      Thread.sleep(1);
+    }
+    return wins;
+  }
+
+  private long appliedWins() {
+    long wins = 0;
+    for (int user = 0; user < USERS; user++) {
+      UserStatistics statistics = owners.get(user).getLocalUser(userId(user));
+      wins += statistics == null ? 0 : statistics.getWins();
+    }
+    return wins;
+  }
+
+  private static String userId(int user) {
+    return "user-" + user;
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.prompts;
+
+import com.example.BenchmarkRequests;
+import com.google.actions.api.ActionRequest;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@code Prompts.getNumberSuggestions} as the candidate range grows.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NumberSuggestionsBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  public int rangeSize;
+
+  private ActionRequest request;
+
+  @Setup
+  public void setUp() {
+    request = BenchmarkRequests.request("start_game");
+    Map<String, Object> conversationData = request.getConversationData();
+    conversationData.put("min", 0.0);
+    conversationData.put("max", (double) rangeSize);
+  }
+
+  @Benchmark
+  public List<String> getNumberSuggestions() {
+    return Prompts.getNumberSuggestions(request, SurfaceCapabilities.ALL);
+  }
+}
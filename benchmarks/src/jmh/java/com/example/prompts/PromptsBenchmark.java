@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.prompts;
+
+import static com.example.prompts.SurfaceCapabilities.ALL;
+
+import com.example.BenchmarkRequests;
+import com.google.actions.api.ActionRequest;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures building {@link Prompt}s through {@link Prompts}, including the
+ * resource bundle lookups, suggestions and image cards, but not rendering.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PromptsBenchmark {
+
+  private ActionRequest higherRequest;
+  private ActionRequest hotHigherRequest;
+  private ActionRequest winRequest;
+  private ActionRequest noInputRequest;
+
+  @Setup
+  public void setUp() {
+    higherRequest = BenchmarkRequests.request("provide_guess_higher");
+    hotHigherRequest = BenchmarkRequests.request("provide_guess_hot_higher");
+    winRequest = BenchmarkRequests.request("provide_guess_win");
+    noInputRequest = BenchmarkRequests.request("no_input");
+  }
+
+  @Benchmark
+  public Prompt startGame() {
+    return Prompts.getStartGamePrompt(higherRequest, ALL);
+  }
+
+  @Benchmark
+  public Prompt higher() {
+    return Prompts.getHigherPrompt(higherRequest, ALL);
+  }
+
+  @Benchmark
+  public Prompt coldHigher() {
+    return Prompts.getColdHigherPrompt(higherRequest, ALL);
+  }
+
+  @Benchmark
+  public Prompt warmHigher() {
+    return Prompts.getWarmHigherPrompt(higherRequest, ALL);
+  }
+
+  @Benchmark
+  public Prompt hotHigherWithSound() {
+    return Prompts.getHotHigherPrompt(hotHigherRequest, ALL, true);
+  }
+
+  @Benchmark
+  public Prompt veryHotHigher() {
+    return Prompts.getVeryHotHigherPrompt(hotHigherRequest, ALL, false);
+  }
+
+  @Benchmark
+  public Prompt win() {
+    return Prompts.getWinPrompt(winRequest, ALL);
+  }
+
+  @Benchmark
+  public Prompt noInput() {
+    return Prompts.getNoInputPrompt(noInputRequest, ALL);
+  }
+
+  @Benchmark
+  public Prompt exit() {
+    return Prompts.getExitPrompt(higherRequest, ALL);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.prompts;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link TextElement} variant selection and formatting, with and
+ * without format arguments.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TextElementBenchmark {
+
+  private TextElement plain;
+  private TextElement oneArgument;
+  private TextElement twoArguments;
+
+  @Setup
+  public void setUp() {
+    plain = new TextElement("What's your next guess?",
+        "Have another guess?", "Try another.");
+    oneArgument = new TextElement(
+        Arrays.asList("You're getting warm. It's higher than %1$s.",
+            "Warmer. It's also higher than %1$s.",
+            "It's so close, but it's higher than %1$s."),
+        Collections.singletonList("42"));
+    twoArguments = new TextElement(
+        Collections.singletonList(
+            "I'm thinking of a number from %1$s to %2$s."),
+        Arrays.asList("0", "100"));
+  }
+
+  @Benchmark
+  public String plain() {
+    return plain.getDisplayText();
+  }
+
+  @Benchmark
+  public String oneArgument() {
+    return oneArgument.getDisplayText();
+  }
+
+  @Benchmark
+  public String twoArguments() {
+    return twoArguments.getDisplayText();
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures the cost of a {@link TokenBuckets} check of one of {@code keys}
+ * sessions. Each thread walks all sessions from a different start, so
+ * threads rarely check the same session at once, as with real traffic. The
+ * rate is high enough that checks are never refused. Run with {@code -t} to
+ * compare thread counts: the time per check should stay flat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(1)
+public class RateLimiterBenchmark {
+
+  // Prime, so that a walk visits every session.
+  private static final int STRIDE = 7919;
+  private static final AtomicInteger THREADS = new AtomicInteger();
+
+  @Param({"1000", "100000"})
+  public int keys;
+
+  private TokenBuckets buckets;
+  private String[] sessionIds;
+
+  @Setup
+  public void setUp() {
+    buckets = new TokenBuckets(1e9, 1_000_000, keys);
+    sessionIds = new String[keys];
+    for (int i = 0; i < keys; i++) {
+      sessionIds[i] = "projects/number-genie/agent/sessions/" + i;
+      buckets.tryAcquire(sessionIds[i]);
+    }
+  }
+
+  /** The sessions one thread checks in turn. */
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    private int next;
+
+    @Setup
+    public void setUp(RateLimiterBenchmark benchmark) {
+      next = THREADS.getAndIncrement() * (benchmark.keys / 16) % benchmark.keys;
+    }
+  }
+
+  @Benchmark
+  public boolean tryAcquire(Cursor cursor) {
+    cursor.next = (cursor.next + STRIDE) % keys;
+    return buckets.tryAcquire(sessionIds[cursor.next]);
+  }
+}
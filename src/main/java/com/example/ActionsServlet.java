@@ -16,40 +16,205 @@
 
 package com.example;
 
+import com.example.cluster.ClusterNode;
+import com.example.config.Config;
+import com.example.jfr.Events;
+import com.example.ratelimit.RateLimiter;
+import com.example.recording.TrafficRecorder;
+import com.example.shadow.ShadowTraffic;
+import com.example.stats.GameStatistics;
+import com.example.stats.StatisticsSnapshotter;
+import com.example.tracing.Phase;
+import com.example.tracing.PhaseTimer;
+import com.example.tracing.Tracer;
+import com.example.util.ContentEncoding;
+import com.example.util.ExecutionMode;
+import com.example.util.ResponseCompressor;
+import com.example.util.Utils;
 import com.google.actions.api.App;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ResourceBundle;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import javax.servlet.AsyncContext;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-@WebServlet(name = "actions", value = "/")
+/**
+ * Serves the webhook. Requests run on the container's threads, unless the
+ * {@value ExecutionMode#PROPERTY} system property selects {@code virtual}:
+ * then the servlet goes async and runs each request on a virtual thread of
+ * its own, see {@link ExecutionMode}.
+ *
+ * <p>Responses are compressed when the request accepts gzip or deflate,
+ * see {@link ResponseCompressor}.
+ *
+ * <p>Every response carries a {@code Server-Timing} header with the time
+ * spent in each {@link Phase} up to writing it. When {@code trace_file} is
+ * set in config.properties, a span for each request, with the time of every
+ * phase, is also appended to that file, in the trace of the request's {@code
+ * traceparent} header, see {@link Tracer}.
+ *
+ * <p>When {@code shadow_sample_rate} is positive, that fraction of requests
+ * is also handled by a second build of the app, off the request thread, to
+ * compare its responses and latency with this one's, see {@link
+ * ShadowTraffic}.
+ *
+ * <p>When {@code snapshot_file} is set, gameplay statistics are restored from
+ * that file at startup and saved to it as they change, see {@link
+ * StatisticsSnapshotter}. When {@code cluster_members} is set, they are
+ * shared with the other instances listed there, see {@link ClusterNode}.
+ *
+ * <p>When {@code rate_limit_session_per_second} or {@code
+ * rate_limit_user_per_second} is positive, requests of a session or user
+ * over that rate get a "slow down" reply instead, see {@link RateLimiter}.
+ */
+@WebServlet(name = "actions", value = "/", asyncSupported = true)
 public class ActionsServlet extends HttpServlet {
 
+  private static final Logger LOGGER =
+      Logger.getLogger(ActionsServlet.class.getName());
+
   private App actionsApp;
+  // Null unless record_traffic is enabled in config.properties.
+  private final TrafficRecorder recorder;
+  // Null unless requests run on virtual threads.
+  private final ExecutorService executor;
+  private final ResponseCompressor compressor =
+      ResponseCompressor.withDefaults();
+  private final Tracer tracer;
+  // Null unless shadow_sample_rate is positive in config.properties.
+  private final ShadowTraffic shadow;
+  // Null unless snapshot_file is set in config.properties.
+  private final StatisticsSnapshotter snapshotter;
 
-  public ActionsServlet()
-      throws InterruptedException, ExecutionException, IOException {
-    actionsApp = new NumberGenieApp();
+  public ActionsServlet() throws InterruptedException, ExecutionException,
+      IOException, ReflectiveOperationException {
+    ResourceBundle config = Config.get().getConfig();
+    GameStatistics statistics = ClusterNode.getProcessStatistics();
+    snapshotter = StatisticsSnapshotter.fromConfig(config, statistics);
+    actionsApp =
+        new NumberGenieApp(statistics, RateLimiter.getProcessLimiter());
+    recorder = TrafficRecorder.fromConfig(config);
+    tracer = Tracer.fromConfig(config);
+    shadow = ShadowTraffic.fromConfig(config);
+    ExecutionMode mode = ExecutionMode.fromSystemProperty();
+    if (mode == ExecutionMode.VIRTUAL && ExecutionMode.isVirtualSupported()) {
+      executor = mode.newExecutor(1, "webhook-");
+    } else {
+      if (mode == ExecutionMode.VIRTUAL) {
+        LOGGER.warning("Virtual threads are not supported by this runtime, "
+            + "handling requests on the container's threads.");
+      }
+      executor = null;
+    }
   }
 
   @Override
   protected void doPost(HttpServletRequest req, HttpServletResponse res)
       throws IOException {
-    String body = req.getReader().lines().collect(Collectors.joining());
-
-    actionsApp.handleRequest(body, null)
-        .thenAccept((Consumer<String>) jsonResponse -> {
-          System.out.println("Generated json = " + jsonResponse);
-          res.setContentType("application/json");
-          writeResponse(res, jsonResponse);
-        }).exceptionally((throwable -> {
-      writeResponse(res, "Error handling the intent - " + throwable);
-      return null;
-    }));
+    if (executor == null) {
+      handle(req, res);
+      return;
+    }
+    AsyncContext async = req.startAsync();
+    executor.execute(() -> {
+      try {
+        handle(req, res);
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Failed to handle a webhook request", e);
+      } finally {
+        async.complete();
+      }
+    });
+  }
+
+  private void handle(HttpServletRequest req, HttpServletResponse res)
+      throws IOException {
+    PhaseTimer timer = tracer.begin();
+    try {
+      String body = req.getReader().lines().collect(Collectors.joining());
+      if (recorder != null) {
+        recorder.record(body);
+      }
+
+      ContentEncoding accepted =
+          ContentEncoding.negotiate(req.getHeader("Accept-Encoding"));
+      Long shadowSeed = shadow == null ? null : shadow.sample();
+      long start = System.nanoTime();
+      actionsApp.handleRequest(body, null)
+          .thenAccept((Consumer<String>) jsonResponse -> {
+            long nanos = System.nanoTime() - start;
+            if (LOGGER.isLoggable(Level.FINE)) {
+              LOGGER.fine("Generated json = " + jsonResponse);
+            }
+            writeJson(res, jsonResponse, accepted, req.getContentLengthLong(),
+                timer);
+            if (shadowSeed != null) {
+              shadow.mirror(body, shadowSeed, jsonResponse, nanos);
+            }
+          }).exceptionally((throwable -> {
+        writeResponse(res, "Error handling the intent - " + throwable);
+        return null;
+      }));
+    } finally {
+      if (shadow != null) {
+        Utils.clearRandomSeed();
+      }
+      tracer.end(timer, req.getHeader("traceparent"));
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+    try {
+      if (recorder != null) {
+        recorder.close();
+      }
+      tracer.close();
+      if (shadow != null) {
+        shadow.close();
+      }
+      if (snapshotter != null) {
+        snapshotter.close();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void writeJson(HttpServletResponse res, String json,
+      ContentEncoding accepted, long requestBytes, PhaseTimer timer) {
+    Events.Response event = Events.beginResponse();
+    res.setContentType("application/json; charset=utf-8");
+    res.setHeader("Vary", "Accept-Encoding");
+    byte[] body = json.getBytes(StandardCharsets.UTF_8);
+    try {
+      compressor.write(body, accepted, (encoding, bytes, length) -> {
+        String serverTiming = timer.toServerTiming();
+        timer.enter(Phase.WRITE);
+        res.setHeader("Server-Timing", serverTiming);
+        if (encoding != ContentEncoding.IDENTITY) {
+          res.setHeader("Content-Encoding", encoding.getToken());
+        }
+        res.setContentLength(length);
+        res.getOutputStream().write(bytes, 0, length);
+        event.setSent(encoding.getToken(), length);
+      });
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    event.endResponse(requestBytes, body.length);
   }
 
   private void writeResponse(HttpServletResponse res, String asJson) {
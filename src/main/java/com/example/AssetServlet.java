@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example;
+
+import com.example.assets.AssetResponse;
+import com.example.assets.AssetStore;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the earcons and images from memory when the app runs in a servlet
+ * container without App Engine's static file handling, instead of leaving
+ * them to the container's default servlet. On App Engine the static files
+ * declared in {@code appengine-web.xml} are served before this servlet is
+ * reached.
+ */
+@WebServlet(name = "assets", value = {"/audio/*", "/images/*"})
+public class AssetServlet extends HttpServlet {
+
+  private AssetStore store;
+
+  @Override
+  public void init() throws ServletException {
+    ServletContext context = getServletContext();
+    AssetStore.Builder builder = new AssetStore.Builder();
+    try {
+      for (String directory : AssetStore.DIRECTORIES) {
+        Set<String> paths = context.getResourcePaths("/" + directory + "/");
+        if (paths == null) {
+          continue;
+        }
+        for (String path : new TreeSet<>(paths)) {
+          if (path.endsWith("/")) {
+            continue;
+          }
+          try (InputStream in = context.getResourceAsStream(path)) {
+            builder.add(path, ByteStreams.toByteArray(in));
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new ServletException("Could not load the assets", e);
+    }
+    store = builder.build();
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse res)
+      throws IOException {
+    serve(req, res, true);
+  }
+
+  @Override
+  protected void doHead(HttpServletRequest req, HttpServletResponse res)
+      throws IOException {
+    serve(req, res, false);
+  }
+
+  private void serve(HttpServletRequest req, HttpServletResponse res,
+      boolean withBody) throws IOException {
+    AssetResponse response = store.serve(
+        req.getServletPath() + (req.getPathInfo() == null
+            ? "" : req.getPathInfo()),
+        req.getHeader("If-None-Match"),
+        req.getHeader("Range"),
+        req.getHeader("Accept-Encoding"));
+    res.setStatus(response.getStatus());
+    for (Map.Entry<String, String> header
+        : response.getHeaders().entrySet()) {
+      res.setHeader(header.getKey(), header.getValue());
+    }
+    if (response.getBody() == null) {
+      return;
+    }
+    res.setContentLength(response.getLength());
+    if (withBody) {
+      res.getOutputStream().write(response.getBody(), response.getOffset(),
+          response.getLength());
+    }
+  }
+}
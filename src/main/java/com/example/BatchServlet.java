@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example;
+
+import com.example.ratelimit.RateLimiter;
+import com.example.stats.GameStatistics;
+import com.example.util.AccessTokens;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Handles many webhook requests in one call: the body is a stream of JSON
+ * requests, one per line, and the response streams back one JSON line per
+ * webhook response. Meant for simulations, replays and bulk regression
+ * checks, not for Dialogflow.
+ *
+ * <p>The endpoint is disabled unless the {@value #TOKEN_PROPERTY} system
+ * property is set, and every request must carry its value in an {@value
+ * #TOKEN_HEADER} header. Batched games are recorded in statistics of their
+ * own, never in the leaderboard and user statistics of {@code /stats} or of
+ * the cluster. Every line is checked against the same {@link RateLimiter}
+ * as webhook requests.
+ */
+@WebServlet(name = "batch", value = "/batch")
+public class BatchServlet extends HttpServlet {
+
+  /** System property holding the token that enables the endpoint. */
+  public static final String TOKEN_PROPERTY = "numbergenie.batch.token";
+
+  /** Request header carrying the token. */
+  public static final String TOKEN_HEADER = "X-Batch-Token";
+
+  private final NumberGenieApp actionsApp = new NumberGenieApp(
+      new GameStatistics(10), RateLimiter.getProcessLimiter());
+
+  @Override
+  protected void doPost(HttpServletRequest req, HttpServletResponse res)
+      throws IOException {
+    switch (AccessTokens.check(TOKEN_PROPERTY, req.getHeader(TOKEN_HEADER))) {
+      case DISABLED:
+        res.sendError(HttpServletResponse.SC_NOT_FOUND);
+        return;
+      case DENIED:
+        res.sendError(HttpServletResponse.SC_FORBIDDEN);
+        return;
+      default:
+        break;
+    }
+    res.setContentType("application/x-ndjson");
+    res.setCharacterEncoding("UTF-8");
+    try {
+      actionsApp.handleRequests(req.getReader(), res.getWriter());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
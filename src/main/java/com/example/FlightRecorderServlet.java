@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example;
+
+import com.example.jfr.Events;
+import com.example.jfr.FlightRecordings;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Controls a Flight Recorder recording with the Number Genie events, see
+ * {@link FlightRecordings}.
+ *
+ * <p>{@code GET /jfr} describes the recording, and {@code POST
+ * /jfr?action=start} (with an optional {@code settings} parameter), {@code
+ * action=dump} and {@code action=stop} control it. Dumping and stopping
+ * return the recording as a {@code .jfr} file. The endpoint is disabled
+ * unless the {@value #TOKEN_PROPERTY} system property is set, and every
+ * request must carry its value in an {@value #TOKEN_HEADER} header. On a
+ * runtime without Flight Recorder, it answers 501.
+ */
+@WebServlet(name = "jfr", value = "/jfr")
+public class FlightRecorderServlet extends HttpServlet {
+
+  /** System property holding the token that enables the endpoint. */
+  public static final String TOKEN_PROPERTY = "numbergenie.jfr.token";
+
+  /** Request header carrying the token. */
+  public static final String TOKEN_HEADER = "X-JFR-Token";
+
+  private final Gson gson = new Gson();
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse res)
+      throws IOException {
+    if (!authorize(req, res)) {
+      return;
+    }
+    writeStatus(res);
+  }
+
+  @Override
+  protected void doPost(HttpServletRequest req, HttpServletResponse res)
+      throws IOException {
+    if (!authorize(req, res)) {
+      return;
+    }
+    FlightRecordings recordings = FlightRecordings.getInstance();
+    String action = req.getParameter("action");
+    if ("start".equals(action)) {
+      String settings = req.getParameter("settings");
+      try {
+        recordings.start(
+            settings == null ? FlightRecordings.DEFAULT_SETTINGS : settings);
+      } catch (IllegalArgumentException e) {
+        res.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        return;
+      }
+      writeStatus(res);
+    } else if ("dump".equals(action)) {
+      sendRecording(res, recordings.dump());
+    } else if ("stop".equals(action)) {
+      sendRecording(res, recordings.stop());
+    } else {
+      res.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "action must be start, dump or stop");
+    }
+  }
+
+  private boolean authorize(HttpServletRequest req, HttpServletResponse res)
+      throws IOException {
+    String token = System.getProperty(TOKEN_PROPERTY);
+    if (token == null || token.isEmpty()) {
+      res.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return false;
+    }
+    if (!Events.isAvailable()) {
+      res.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED,
+          "Flight Recorder is not available in this runtime");
+      return false;
+    }
+    String given = req.getHeader(TOKEN_HEADER);
+    if (given == null || !MessageDigest.isEqual(
+        token.getBytes(StandardCharsets.UTF_8),
+        given.getBytes(StandardCharsets.UTF_8))) {
+      res.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return false;
+    }
+    return true;
+  }
+
+  private void writeStatus(HttpServletResponse res) throws IOException {
+    res.setContentType("application/json");
+    res.getWriter().write(
+        gson.toJson(FlightRecordings.getInstance().toSummary()));
+  }
+
+  private static void sendRecording(HttpServletResponse res, Path file)
+      throws IOException {
+    if (file == null) {
+      res.sendError(HttpServletResponse.SC_CONFLICT, "No recording running");
+      return;
+    }
+    try {
+      res.setContentType("application/octet-stream");
+      res.setHeader("Content-Disposition",
+          "attachment; filename=\"numbergenie.jfr\"");
+      res.setContentLengthLong(Files.size(file));
+      try (OutputStream out = res.getOutputStream()) {
+        Files.copy(file, out);
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.tracing.Phase;
+import com.example.tracing.PhaseTimer;
+import com.google.actions.api.ActionRequest;
+import com.google.actions.api.ActionResponse;
+import com.google.actions.api.DefaultApp;
+import com.google.actions.api.ForIntent;
+import com.google.common.collect.ImmutableSortedSet;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Routes requests to the {@link ForIntent} handlers of an app without
+ * reflection.
+ *
+ * <p>{@link DefaultApp#routeRequest} scans the declared methods of the app
+ * and calls the matching one through {@link Method#invoke} on every request.
+ * An {@link IntentDispatcher} does that scan once: each handler is bound to
+ * the app as a lambda, and the lambdas are laid out in a perfect hash table
+ * keyed by intent name, so routing a request is one probe, one string
+ * comparison and a direct call.
+ */
+public final class IntentDispatcher {
+
+  private static final Logger LOGGER =
+      Logger.getLogger(IntentDispatcher.class.getName());
+
+  // Multipliers tried before giving up on a collision-free table layout.
+  private static final int MAX_SEED_ATTEMPTS = 10_000;
+
+  private final String[] intents;
+  private final Handler[] handlers;
+  private final int seed;
+  private final int shift;
+
+  private IntentDispatcher(Map<String, Handler> table) {
+    int bits = Math.max(1,
+        Integer.SIZE - Integer.numberOfLeadingZeros(table.size() * 2 - 1));
+    this.shift = Integer.SIZE - bits;
+    this.intents = new String[1 << bits];
+    this.handlers = new Handler[1 << bits];
+    this.seed = findSeed(table.keySet());
+    for (Map.Entry<String, Handler> entry : table.entrySet()) {
+      int slot = slot(entry.getKey().hashCode());
+      intents[slot] = entry.getKey();
+      handlers[slot] = entry.getValue();
+    }
+  }
+
+  /**
+   * Builds the dispatch table for every public {@link ForIntent} method of an
+   * app, including those it inherits.
+   *
+   * @param app the app whose handlers to bind. Cannot be {@code null}.
+   * @param aliases further intent names, such as the display names in the
+   * Dialogflow agent, mapped to the {@link ForIntent} name they are handled
+   * by. Cannot be {@code null}.
+   * @return the {@link IntentDispatcher}.
+   * @throws IllegalArgumentException if a handler does not have the signature
+   * that {@link DefaultApp} expects, or an alias names no handler.
+   */
+  public static IntentDispatcher create(DefaultApp app,
+      Map<String, String> aliases) {
+    checkNotNull(app, "app cannot be null.");
+    checkNotNull(aliases, "aliases cannot be null.");
+    Map<String, Handler> table = new LinkedHashMap<>();
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    for (Class<?> type = app.getClass(); type != DefaultApp.class;
+        type = type.getSuperclass()) {
+      for (Method method : type.getDeclaredMethods()) {
+        ForIntent forIntent = method.getAnnotation(ForIntent.class);
+        // A handler overridden by a subclass was already bound.
+        if (forIntent != null && !table.containsKey(forIntent.value())) {
+          table.put(forIntent.value(), bind(lookup, app, method));
+        }
+      }
+    }
+    checkArgument(!table.isEmpty(), "app has no intent handlers.");
+    for (Map.Entry<String, String> alias : aliases.entrySet()) {
+      Handler handler = table.get(alias.getValue());
+      checkArgument(handler != null, "No handler for alias %s of %s",
+          alias.getKey(), alias.getValue());
+      table.putIfAbsent(alias.getKey(), handler);
+    }
+    return new IntentDispatcher(table);
+  }
+
+  /**
+   * Calls the handler of the request's intent, moving the {@link PhaseTimer}
+   * of the thread to {@link Phase#LOGIC} once the handler is found.
+   *
+   * @param request the parsed request. Cannot be {@code null}.
+   * @return the response of the handler.
+   * @throws Exception with the same message as {@link DefaultApp#routeRequest}
+   * if the intent has no handler.
+   */
+  public CompletableFuture<ActionResponse> dispatch(ActionRequest request)
+      throws Exception {
+    checkNotNull(request, "request cannot be null.");
+    String intent = request.getIntent();
+    Handler handler = intent == null ? null : getHandler(intent);
+    if (handler == null) {
+      LOGGER.warning("Intent handler not found: " + intent);
+      throw new Exception("Intent handler not found - " + intent);
+    }
+    PhaseTimer.current().enter(Phase.LOGIC);
+    return handler.handle(request);
+  }
+
+  /**
+   * Checks whether an intent has a handler, directly or through an alias.
+   *
+   * @param intent the intent name. Cannot be {@code null}.
+   * @return whether requests for the intent can be dispatched.
+   */
+  public boolean hasHandler(String intent) {
+    checkNotNull(intent, "intent cannot be null.");
+    return getHandler(intent) != null;
+  }
+
+  /**
+   * Gets every intent name with a handler, including aliases.
+   *
+   * @return the intent names, sorted.
+   */
+  public Set<String> getIntents() {
+    ImmutableSortedSet.Builder<String> builder =
+        ImmutableSortedSet.naturalOrder();
+    for (String intent : intents) {
+      if (intent != null) {
+        builder.add(intent);
+      }
+    }
+    return builder.build();
+  }
+
+  private Handler getHandler(String intent) {
+    int slot = slot(intent.hashCode());
+    return intent.equals(intents[slot]) ? handlers[slot] : null;
+  }
+
+  private int slot(int hash) {
+    return (hash * seed) >>> shift;
+  }
+
+  // Finds an odd multiplier that gives every intent a slot of its own.
+  private int findSeed(Set<String> names) {
+    Random random = new Random(0);
+    boolean[] used = new boolean[intents.length];
+    for (int attempt = 0; attempt < MAX_SEED_ATTEMPTS; attempt++) {
+      int candidate = random.nextInt() | 1;
+      Arrays.fill(used, false);
+      boolean perfect = true;
+      for (String name : names) {
+        int slot = (name.hashCode() * candidate) >>> shift;
+        if (used[slot]) {
+          perfect = false;
+          break;
+        }
+        used[slot] = true;
+      }
+      if (perfect) {
+        return candidate;
+      }
+    }
+    throw new IllegalArgumentException(
+        "No collision-free table layout for intents " + names);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Handler bind(MethodHandles.Lookup lookup, DefaultApp app,
+      Method method) {
+    Class<?> returnType = method.getReturnType();
+    checkArgument(Modifier.isPublic(method.getModifiers())
+            && !Modifier.isStatic(method.getModifiers())
+            && method.getParameterCount() == 1
+            && method.getParameterTypes()[0] == ActionRequest.class
+            && (returnType == ActionResponse.class
+                || returnType == CompletableFuture.class),
+        "%s must be a public instance method taking an ActionRequest and "
+            + "returning an ActionResponse or CompletableFuture.", method);
+    Function<ActionRequest, ?> function;
+    try {
+      MethodHandle target = lookup.unreflect(method);
+      CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+          MethodType.methodType(Function.class, method.getDeclaringClass()),
+          MethodType.methodType(Object.class, Object.class), target,
+          MethodType.methodType(returnType, ActionRequest.class));
+      function = (Function<ActionRequest, ?>) site.getTarget().invoke(app);
+    } catch (Throwable e) {
+      throw new IllegalArgumentException("Cannot bind " + method, e);
+    }
+    if (returnType == ActionResponse.class) {
+      return request -> CompletableFuture.completedFuture(
+          (ActionResponse) function.apply(request));
+    }
+    return request -> (CompletableFuture<ActionResponse>)
+        function.apply(request);
+  }
+
+  @FunctionalInterface
+  private interface Handler {
+    CompletableFuture<ActionResponse> handle(ActionRequest request);
+  }
+}
@@ -18,11 +18,28 @@ package com.example;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.example.batch.BatchProcessor;
+import com.example.config.Config;
+import com.example.config.ConfigSnapshot;
+import com.example.jfr.Events;
+import com.example.prompts.AudioElement;
 import com.example.prompts.Element;
 import com.example.prompts.ImageCard;
 import com.example.prompts.PartialPrompt;
 import com.example.prompts.Prompt;
 import com.example.prompts.Prompts;
+import com.example.prompts.RenderedPrompt;
+import com.example.prompts.SurfaceCapabilities;
+import com.example.ratelimit.RateLimiter;
+import com.example.stats.GameStatistics;
+import com.example.stats.LocaleStatistics;
+import com.example.stats.TrimmingStatistics;
+import com.example.stats.TrimmingStatistics.Part;
+import com.example.stats.UserStatistics;
+import com.example.tracing.Phase;
+import com.example.tracing.PhaseTimer;
+import com.example.util.DialogflowRequests;
+import com.example.util.ExecutionMode;
 import com.example.util.Utils;
 import com.google.actions.api.ActionContext;
 import com.google.actions.api.ActionRequest;
@@ -30,12 +47,20 @@ import com.google.actions.api.ActionResponse;
 import com.google.actions.api.DialogflowApp;
 import com.google.actions.api.ForIntent;
 import com.google.actions.api.response.ResponseBuilder;
-import com.google.api.services.actions_fulfillment.v2.model.BasicCard;
-import com.google.api.services.actions_fulfillment.v2.model.Image;
-import com.google.api.services.actions_fulfillment.v2.model.SimpleResponse;
-import com.google.api.services.actions_fulfillment.v2.model.Suggestion;
+import com.google.api.services.actions_fulfillment.v2.model.User;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 public class NumberGenieApp extends DialogflowApp {
@@ -44,42 +69,212 @@ public class NumberGenieApp extends DialogflowApp {
   private static final String YES_NO_CONTEXT = "yes_no";
   private static final String DONE_YES_NO_CONTEXT = "done_yes_no";
 
+  /** The conversation data key of the last {@link RenderedPrompt}. */
+  public static final String LAST_RESPONSE = "lastResponse";
+
   private static final Logger LOGGER =
       Logger.getLogger(NumberGenieApp.class.getName());
 
-  private static final double MIN;
-  private static final double MAX;
+  // The JSON around the text of each response part, for the trimming
+  // statistics: "displayText":"", {"basicCard":{...}}, and {"title":""}.
+  private static final int DISPLAY_TEXT_JSON_BYTES = 17;
+  private static final int CARD_JSON_BYTES = 77;
+  private static final int SUGGESTION_JSON_BYTES = 13;
+
+  private static final int BATCH_LANES =
+      Runtime.getRuntime().availableProcessors();
+  private static final int BATCH_LANE_CAPACITY = 64;
+  // Shared by every batch, so concurrent batches cannot add up to more
+  // threads than this.
+  private static final ExecutorService BATCH_EXECUTOR =
+      ExecutionMode.PLATFORM.newExecutor(BATCH_LANES, "batch-lane-");
+
+  /**
+   * The display names of intents in the Dialogflow agent that differ from
+   * the {@link ForIntent} name of their handler.
+   */
+  static final ImmutableMap<String, String> INTENT_ALIASES = ImmutableMap.of(
+      "play-again-yes", "play_again_yes",
+      "deep_link_number", "deeplink_number",
+      "Unknown-deeplink", "unknown_deeplink");
+
+  private final GameStatistics statistics;
+  private final IntentDispatcher dispatcher;
+  // Null unless requests are rate limited.
+  private final RateLimiter rateLimiter;
+
+  public NumberGenieApp() {
+    this(GameStatistics.getInstance());
+  }
+
+  /**
+   * Creates a {@link NumberGenieApp} that records game results into the given
+   * {@link GameStatistics}.
+   *
+   * @param statistics where won and lost games are recorded. Cannot be {@code
+   * null}.
+   */
+  public NumberGenieApp(GameStatistics statistics) {
+    this(statistics, null);
+  }
+
+  /**
+   * Creates a {@link NumberGenieApp} that records game results into the given
+   * {@link GameStatistics} and answers requests over the limits of a {@link
+   * RateLimiter} with its "slow down" reply, without handling them.
+   *
+   * @param statistics where won and lost games are recorded. Cannot be {@code
+   * null}.
+   * @param rateLimiter the limits of sessions and users, or {@code null} for
+   * none.
+   */
+  public NumberGenieApp(GameStatistics statistics, RateLimiter rateLimiter) {
+    checkNotNull(statistics, "statistics cannot be null.");
+    this.statistics = statistics;
+    this.dispatcher = IntentDispatcher.create(this, INTENT_ALIASES);
+    this.rateLimiter = rateLimiter;
+  }
+
+  /**
+   * Handles a webhook request with the config pinned, so that the whole
+   * response is built from one config snapshot even if a reload happens
+   * meanwhile.
+   *
+   * <p>Requests are routed through an {@link IntentDispatcher} rather than
+   * {@link #routeRequest}, and otherwise behave as in {@link
+   * DialogflowApp}: a failure completes the future exceptionally with the
+   * error message. A request over the limits of the {@link RateLimiter}, if
+   * any, is not dispatched; one over the limit of its session is not even
+   * parsed.
+   */
+  @Override
+  public CompletableFuture<String> handleRequest(String inputJson,
+      Map<?, ?> headers) {
+    if (inputJson == null || inputJson.isEmpty()) {
+      return super.handleRequest(inputJson, headers);
+    }
+    Config.pin();
+    Events.Intent event = Events.beginRequest();
+    PhaseTimer timer = PhaseTimer.current();
+    ActionRequest request = null;
+    boolean failed = true;
+    try {
+      CompletableFuture<String> response;
+      try {
+        timer.enter(Phase.PARSE);
+        // The session is found without parsing, so that a session over its
+        // limit costs no parse.
+        if (rateLimiter != null && !rateLimiter.tryAcquireSession(
+            Strings.emptyToNull(DialogflowRequests.findSession(inputJson)))) {
+          failed = false;
+          return slowDown(getLocale(inputJson));
+        }
+        request = createRequest(inputJson, headers);
+        if (rateLimiter != null
+            && !rateLimiter.tryAcquireUser(getUserId(request))) {
+          failed = false;
+          return slowDown(request.getLocale());
+        }
+        timer.enter(Phase.DISPATCH);
+        CompletableFuture<ActionResponse> actionResponse =
+            dispatcher.dispatch(request);
+        timer.enter(Phase.SERIALIZE);
+        response = actionResponse.thenApply(ActionResponse::toJson);
+      } catch (Exception e) {
+        return handleError(e);
+      }
+      failed = response.isCompletedExceptionally();
+      return response.exceptionally(Throwable::getMessage);
+    } finally {
+      event.endRequest(request, failed);
+      Config.unpin();
+    }
+  }
 
-  static {
-    ResourceBundle config = ResourceBundle.getBundle("config");
-    MIN = Double.parseDouble(config.getString("min"));
-    MAX = Double.parseDouble(config.getString("max"));
+  private static CompletableFuture<String> slowDown(Locale locale) {
+    return CompletableFuture.completedFuture(
+        RateLimiter.getSlowDownResponse(locale));
+  }
+
+  // Reads the locale of a raw request like ActionRequest.getLocale() does.
+  private static Locale getLocale(String inputJson) {
+    String[] parts = DialogflowRequests.findLocale(inputJson).split("-");
+    if (parts.length == 1 && !parts[0].isEmpty()) {
+      return new Locale(parts[0]);
+    }
+    return parts.length == 2
+        ? new Locale(parts[0], parts[1]) : Locale.getDefault();
+  }
+
+  /**
+   * Called with the branch a {@code provide_guess} turn took, such as {@code
+   * cold} or {@code win}, on the thread that handled it. Does nothing, unless
+   * overridden by a tool that checks the game, such as {@link
+   * com.example.simulation.StateExplorer}.
+   *
+   * @param branch the name of the branch.
+   */
+  protected void guessBranched(String branch) {
+  }
+
+  // Tags the Intent event of the request with the branch provide_guess took.
+  private ActionResponse branch(String name, ActionResponse response) {
+    Events.setBranch(name);
+    guessBranched(name);
+    return response;
+  }
+
+  // Builds a prompt, timed by a Prompt event and as the prompt phase.
+  private static Prompt buildPrompt(String promptId, Supplier<Prompt> prompts) {
+    PhaseTimer timer = PhaseTimer.current();
+    Phase previous = timer.enter(Phase.PROMPT);
+    Events.PromptBuild event = Events.beginPrompt();
+    Prompt prompt = prompts.get();
+    event.endPrompt(promptId);
+    timer.exit(previous);
+    return prompt;
+  }
+
+  @VisibleForTesting
+  IntentDispatcher getDispatcher() {
+    return dispatcher;
   }
 
   @ForIntent("start_game")
   public ActionResponse startGame(ActionRequest request) {
-    LOGGER.info("'start_game' intent handler");
+    LOGGER.fine("'start_game' intent handler");
+    ConfigSnapshot config = Config.get();
     Map<String, Object> conversationData = request.getConversationData();
-    conversationData.put("answer", (double) Utils.getRandomNumber((int) MIN, (int) MAX));
+    clearPreviousGame(conversationData);
+    conversationData.put("answer", (double) Utils.getRandomNumber(
+        (int) config.getMin(), (int) config.getMax()));
     conversationData.put("guessCount", 0.0);
     conversationData.put("fallbackCount", 0.0);
     conversationData.put("steamSoundCount", 0.0);
-    conversationData.put("min", MIN);
-    conversationData.put("max", MAX);
-    Prompt prompt = Prompts.getStartGamePrompt(request);
-    return createPromptResponse(request, prompt, false);
+    conversationData.put("min", config.getMin());
+    conversationData.put("max", config.getMax());
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("start_game",
+        () -> Prompts.getStartGamePrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   @ForIntent("quit_game")
   public ActionResponse quitGame(ActionRequest request) {
-    LOGGER.info("'quit_game' intent handler");
-    Prompt prompt = Prompts.getQuitGamePrompt(request);
-    return createPromptResponse(request, prompt, true);
+    LOGGER.fine("'quit_game' intent handler");
+    // Quitting before a game has started loses nothing.
+    if (request.getConversationData().get("answer") != null) {
+      statistics.recordLoss(getUserId(request));
+    }
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("quit_game",
+        () -> Prompts.getQuitGamePrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, true);
   }
 
   @ForIntent("provide_guess")
   public ActionResponse provideGuess(ActionRequest request) {
-    LOGGER.info("'provide_guess' intent handler");
+    LOGGER.fine("'provide_guess' intent handler");
     Map<String, Object> conversationData = request.getConversationData();
     Double answer = (Double) conversationData.get("answer");
     Double guess = (Double) request.getParameter("guess");
@@ -90,179 +285,243 @@ public class NumberGenieApp extends DialogflowApp {
         .put("guessCount", (Double) conversationData.get("guessCount") + 1);
     conversationData.put("fallbackCount", 0.0);
     if (guess.equals(previousGuess)) {
-      return guessIsSameAsPrevious(request);
+      return branch("same_as_previous", guessIsSameAsPrevious(request));
     } else {
       conversationData.put("duplicateCount", 0.0);
     }
     // Check if user isn't following hints
     if (hint != null) {
       if (hint.equals("higher") && guess <= previousGuess) {
-        return answerIsStillHigher(request);
+        return branch("still_higher", answerIsStillHigher(request));
       }
       if (hint.equals("lower") && guess >= previousGuess) {
-        return answerIsStillLower(request);
+        return branch("still_lower", answerIsStillLower(request));
       }
     }
     conversationData.put("previousGuess", guess);
     // Handle boundaries with special prompts
     if (!answer.equals(guess)) {
-      if (guess == MIN) {
-        return guessIsMidBoundary(request);
+      ConfigSnapshot config = Config.get();
+      if (guess == config.getMin()) {
+        return branch("min", guessIsMidBoundary(request));
       }
-      if (guess == MAX) {
-        return guessIsMaxBoundary(request);
+      if (guess == config.getMax()) {
+        return branch("max", guessIsMaxBoundary(request));
       }
     }
     // Give different responses based on distance from number
     if (diff > 75) {
-      return guessIsCold(request);
+      return branch("cold", guessIsCold(request));
     }
     if (diff == 4) {
       // Guess is getting closer
-      return guessIsHot(request);
+      return branch("hot", guessIsHot(request));
     }
     if (diff == 3) {
       // Guess is even closer
-      return guessIsVeryHot(request);
+      return branch("very_hot", guessIsVeryHot(request));
     }
     if (diff <= 10 && diff > 4) {
       // Guess is nearby number
-      return guessIsWarm(request);
+      return branch("warm", guessIsWarm(request));
     }
     // Give hints on which direction to go
     if (answer > guess) {
-      return guessIsLessThanAnswer(request);
+      return branch("lower_than_answer", guessIsLessThanAnswer(request));
     } else if (answer < guess) {
-      return guessIsHigherThanAnswer(request);
+      return branch("higher_than_answer", guessIsHigherThanAnswer(request));
     }
     // Guess is same as number
-    return guessIsSameAsAnswer(request);
+    return branch("win", guessIsSameAsAnswer(request));
   }
 
   @ForIntent("play_again_yes")
   public ActionResponse playAgainYes(ActionRequest request) {
-    LOGGER.info("'play_again_yes' intent handler");
+    LOGGER.fine("'play_again_yes' intent handler");
+    ConfigSnapshot config = Config.get();
     Map<String, Object> conversationData = request.getConversationData();
-    conversationData.put("answer", (double) Utils.getRandomNumber((int) MIN, (int) MAX));
+    clearPreviousGame(conversationData);
+    conversationData.put("answer", (double) Utils.getRandomNumber(
+        (int) config.getMin(), (int) config.getMax()));
     conversationData.put("guessCount", 0.0);
     conversationData.put("fallbackCount", 0.0);
     conversationData.put("steamSoundCount", 0.0);
-    Prompt prompt = Prompts.getPlayAgainPrompt(request);
-    return createPromptResponse(request, prompt, false);
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("play_again",
+        () -> Prompts.getPlayAgainPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   @ForIntent("play_again_no")
   public ActionResponse playAgainNo(ActionRequest request) {
-    LOGGER.info("'play_again_no' intent handler");
+    LOGGER.fine("'play_again_no' intent handler");
     ActionContext context = new ActionContext(GAME_CONTEXT, 1);
-    Prompt prompt = Prompts.getExitPrompt(request);
-    return createPromptResponse(request, prompt, true, context);
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("exit",
+        () -> Prompts.getExitPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, true, context);
   }
 
   @ForIntent("Default Fallback Intent")
   public ActionResponse defaultFallback(ActionRequest request) {
-    LOGGER.info("'Default Fallback Intent' intent handler");
+    LOGGER.fine("'Default Fallback Intent' intent handler");
     return fallback(request);
   }
 
   @ForIntent("unknown_deeplink")
   public ActionResponse unknownDeeplink(ActionRequest request) {
-    LOGGER.info("'unknown_deeplink' intent handler");
+    LOGGER.fine("'unknown_deeplink' intent handler");
+    ConfigSnapshot config = Config.get();
     Map<String, Object> conversationData = request.getConversationData();
-    double answer = (double) Utils.getRandomNumber((int) MIN, (int) MAX);
+    clearPreviousGame(conversationData);
+    double answer = (double) Utils.getRandomNumber(
+        (int) config.getMin(), (int) config.getMax());
     conversationData.put("answer", answer);
     conversationData.put("guessCount", 0.0);
     conversationData.put("fallbackCount", 0.0);
     conversationData.put("steamSoundCount", 0.0);
-    conversationData.put("min", MIN);
-    conversationData.put("max", MAX);
+    conversationData.put("min", config.getMin());
+    conversationData.put("max", config.getMax());
     Prompt prompt;
     String text = request.getRawText();
     ActionContext gameContext = new ActionContext(GAME_CONTEXT, 1);
     if (text == null) {
       return fallback(request);
     }
+    int capabilities = SurfaceCapabilities.of(request);
     if (text.length() < answer) {
-      prompt = Prompts.getDeeplinkHigherPrompt(request);
-      return createPromptResponse(request, prompt, false, gameContext);
+      prompt = buildPrompt("deeplink_higher",
+          () -> Prompts.getDeeplinkHigherPrompt(request, capabilities));
+      return createPromptResponse(request, capabilities, prompt, false,
+          gameContext);
     } else if (text.length() > answer) {
-      prompt = Prompts.getDeeplinkLowerPrompt(request);
-      return createPromptResponse(request, prompt, false, gameContext);
+      prompt = buildPrompt("deeplink_lower",
+          () -> Prompts.getDeeplinkLowerPrompt(request, capabilities));
+      return createPromptResponse(request, capabilities, prompt, false,
+          gameContext);
     } else {
       conversationData.put("hint", null);
       conversationData.put("previousGuess", -1.0);
       ActionContext yesNoContext = new ActionContext(YES_NO_CONTEXT, 5);
-      prompt = Prompts.getDeeplinkWinPrompt(request);
-      return createPromptResponse(request, prompt, false, gameContext,
-          yesNoContext);
+      prompt = buildPrompt("deeplink_win",
+          () -> Prompts.getDeeplinkWinPrompt(request, capabilities));
+      return createPromptResponse(request, capabilities, prompt, false,
+          gameContext, yesNoContext);
     }
   }
 
   @ForIntent("deeplink_number")
   public ActionResponse deeplinkNumber(ActionRequest request) {
-    LOGGER.info("'deeplink_number' intent handler");
+    LOGGER.fine("'deeplink_number' intent handler");
+    ConfigSnapshot config = Config.get();
     Map<String, Object> conversationData = request.getConversationData();
+    clearPreviousGame(conversationData);
     conversationData.put("guessCount", 0.0);
     conversationData.put("fallbackCount", 0.0);
     conversationData.put("steamSoundCount", 0.0);
-    conversationData.put("min", MIN);
-    conversationData.put("max", MAX);
+    conversationData.put("min", config.getMin());
+    conversationData.put("max", config.getMax());
     Double answer = (Double) request.getParameter("number");
     conversationData.put("answer", answer);
+    int capabilities = SurfaceCapabilities.of(request);
     Prompt prompt;
-    if (Utils.isInBounds(answer.intValue(), (int) MIN, (int) MAX)) {
-      prompt = Prompts.getStartGamePrompt(request);
+    int min = (int) config.getMin();
+    int max = (int) config.getMax();
+    if (Utils.isInBounds(answer.intValue(), min, max)) {
+      prompt = buildPrompt("start_game",
+          () -> Prompts.getStartGamePrompt(request, capabilities));
     } else {
-      conversationData.put("answer", (double) Utils.getRandomNumber((int) MIN, (int) MAX));
-      prompt = Prompts.getDeeplinkOutOfBoundsPrompt(request);
+      conversationData.put("answer",
+          (double) Utils.getRandomNumber(min, max));
+      prompt = buildPrompt("deeplink_out_of_bounds",
+          () -> Prompts.getDeeplinkOutOfBoundsPrompt(request, capabilities));
     }
     ActionContext context = new ActionContext(GAME_CONTEXT, 1);
-    return createPromptResponse(request, prompt, false, context);
+    return createPromptResponse(request, capabilities, prompt, false, context);
   }
 
   @ForIntent("done_yes")
   public ActionResponse doneYes(ActionRequest request) {
-    LOGGER.info("'done_yes' intent handler");
+    LOGGER.fine("'done_yes' intent handler");
     ActionContext context = new ActionContext(GAME_CONTEXT, 1);
-    Prompt prompt = Prompts.getExitPrompt(request);
-    return createPromptResponse(request, prompt, true, context);
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("exit",
+        () -> Prompts.getExitPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, true, context);
   }
 
   @ForIntent("done_no")
   public ActionResponse doneNo(ActionRequest request) {
-    LOGGER.info("'done_no' intent handler");
+    LOGGER.fine("'done_no' intent handler");
     Map<String, Object> conversationData = request.getConversationData();
     conversationData.put("fallbackCount", 0.0);
-    Prompt prompt = Prompts.getPlayAnotherPrompt(request);
-    return createPromptResponse(request, prompt, false);
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("play_another",
+        () -> Prompts.getPlayAnotherPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   @ForIntent("repeat")
   public ActionResponse repeat(ActionRequest request) {
-    LOGGER.info("'repeat' intent handler");
+    LOGGER.fine("'repeat' intent handler");
     Map<String, Object> conversationData = request.getConversationData();
-    String key = "lastResponse";
-    Prompt prompt;
-    if (conversationData.get(key) != null) {
-      prompt = Prompts.getLastPrompt(request);
-    } else {
-      prompt = Prompts.getAnotherPrompt(request);
+    RenderedPrompt last =
+        RenderedPrompt.fromData(conversationData.get(LAST_RESPONSE));
+    if (last != null) {
+      return createRepeatResponse(request, last);
     }
-    return createPromptResponse(request, prompt, false);
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("another",
+        () -> Prompts.getAnotherPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   @ForIntent("cancel")
   public ActionResponse cancel(ActionRequest request) {
-    LOGGER.info("'cancel' intent handler");
-    Prompt prompt = Prompts.getExitPrompt(request);
-    return createPromptResponse(request, prompt, true);
+    LOGGER.fine("'cancel' intent handler");
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("exit",
+        () -> Prompts.getExitPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, true);
   }
 
   @ForIntent("no_input")
   public ActionResponse noInput(ActionRequest request) {
-    LOGGER.info("'no_input' intent handler");
-    Prompt prompt = Prompts.getNoInputPrompt(request);
-    return createPromptResponse(request, prompt, false);
+    LOGGER.fine("'no_input' intent handler");
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("no_input",
+        () -> Prompts.getNoInputPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, false);
+  }
+
+  @ForIntent("best_score")
+  public ActionResponse bestScore(ActionRequest request) {
+    LOGGER.fine("'best_score' intent handler");
+    String userId = getUserId(request);
+    UserStatistics userStatistics =
+        userId == null ? null : statistics.getUser(userId);
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("best_score",
+        () -> Prompts.getBestScorePrompt(request, capabilities,
+            userStatistics));
+    return createPromptResponse(request, capabilities, prompt, false);
+  }
+
+  /**
+   * Handles a stream of webhook requests, one JSON request per line, and
+   * writes one JSON line per response as soon as it is ready. Different
+   * sessions are handled in parallel; turns of the same session are handled
+   * in stream order. See {@link BatchProcessor} for the response format.
+   *
+   * @param requests the JSON lines of requests. Cannot be {@code null}.
+   * @param responses where to write the JSON lines of responses. Cannot be
+   * {@code null}.
+   * @return the number of requests handled.
+   */
+  public long handleRequests(Reader requests, Writer responses)
+      throws IOException, InterruptedException {
+    return new BatchProcessor(this, BATCH_EXECUTOR, BATCH_LANES,
+        BATCH_LANE_CAPACITY).process(requests, responses);
   }
 
   private ActionResponse fallback(ActionRequest request) {
@@ -271,22 +530,30 @@ public class NumberGenieApp extends DialogflowApp {
     conversationData.putIfAbsent(key, 0.0);
     Double fallbackCount = (Double) conversationData.get(key);
     conversationData.put(key, fallbackCount + 1);
+    int capabilities = SurfaceCapabilities.of(request);
     Prompt prompt;
     if (fallbackCount <= 1) {
       ActionContext context = new ActionContext(DONE_YES_NO_CONTEXT, 5);
-      prompt = Prompts.getConfirmationFallbackPrompt(request);
-      return createPromptResponse(request, prompt, false, context);
+      prompt = buildPrompt("confirmation_fallback",
+          () -> Prompts.getConfirmationFallbackPrompt(request, capabilities));
+      return createPromptResponse(request, capabilities, prompt, false,
+          context);
     }
-    prompt = Prompts.getFallbackPrompt(request);
-    return createPromptResponse(request, prompt, true);
+    prompt = buildPrompt("fallback",
+        () -> Prompts.getFallbackPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, true);
   }
 
   private ActionResponse createPromptResponse(ActionRequest request,
-      Prompt prompt,
+      int capabilities, Prompt prompt,
       boolean endConversation, ActionContext... contexts) {
+    PhaseTimer timer = PhaseTimer.current();
+    Phase previous = timer.enter(Phase.RENDER);
     ResponseBuilder responseBuilder = getResponseBuilder(request);
-    cachePrompt(request, prompt);
-    addPromptToResponse(responseBuilder, prompt);
+    recordLocale(request);
+    RenderedPrompt rendered =
+        addPromptToResponse(responseBuilder, prompt, capabilities);
+    request.getConversationData().put(LAST_RESPONSE, rendered.toData());
     if (endConversation) {
       responseBuilder.endConversation();
     }
@@ -295,7 +562,29 @@ public class NumberGenieApp extends DialogflowApp {
         responseBuilder.add(context);
       }
     }
-    return responseBuilder.build();
+    ActionResponse response = responseBuilder.build();
+    timer.exit(previous);
+    return response;
+  }
+
+  // Sends what was rendered last time as it is, so nothing is built,
+  // rendered or picked at random again.
+  private ActionResponse createRepeatResponse(ActionRequest request,
+      RenderedPrompt rendered) {
+    PhaseTimer timer = PhaseTimer.current();
+    Phase previous = timer.enter(Phase.RENDER);
+    ResponseBuilder responseBuilder = getResponseBuilder(request);
+    recordLocale(request);
+    rendered.addTo(responseBuilder);
+    ActionResponse response = responseBuilder.build();
+    timer.exit(previous);
+    return response;
+  }
+
+  private static void recordLocale(ActionRequest request) {
+    Locale locale = request.getLocale();
+    LocaleStatistics.getInstance().record(locale,
+        Config.get().resolveLocale(locale));
   }
 
   private ActionResponse guessIsSameAsPrevious(ActionRequest request) {
@@ -303,63 +592,81 @@ public class NumberGenieApp extends DialogflowApp {
     Double duplicateCount = (Double) conversationData.get("duplicateCount") + 1;
     conversationData.put("duplicateCount", duplicateCount);
     String hint = (String) conversationData.get("hint");
+    int capabilities = SurfaceCapabilities.of(request);
     Prompt prompt;
     if (duplicateCount == 1) {
-      prompt = Prompts.getSameGuessHintPrompt(request);
+      prompt = buildPrompt("same_guess_hint",
+          () -> Prompts.getSameGuessHintPrompt(request, capabilities));
       if (hint == null) {
-        prompt = Prompts.getSameGuessPrompt(request);
+        prompt = buildPrompt("same_guess",
+            () -> Prompts.getSameGuessPrompt(request, capabilities));
       }
-      return createPromptResponse(request, prompt, false);
+      return createPromptResponse(request, capabilities, prompt, false);
     } else {
-      prompt = Prompts.getSameGuessEndPrompt(request);
-      return createPromptResponse(request, prompt, true);
+      statistics.recordLoss(getUserId(request));
+      prompt = buildPrompt("same_guess_end",
+          () -> Prompts.getSameGuessEndPrompt(request, capabilities));
+      return createPromptResponse(request, capabilities, prompt, true);
     }
   }
 
   private ActionResponse answerIsStillHigher(ActionRequest request) {
-    Prompt prompt = Prompts.getStillHigherPrompt(request);
-    return createPromptResponse(request, prompt, false);
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("still_higher",
+        () -> Prompts.getStillHigherPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   private ActionResponse answerIsStillLower(ActionRequest request) {
-    Prompt prompt = Prompts.getStillLowerPrompt(request);
-    return createPromptResponse(request, prompt, false);
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("still_lower",
+        () -> Prompts.getStillLowerPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   private ActionResponse guessIsMidBoundary(ActionRequest request) {
     Map<String, Object> conversationData = request.getConversationData();
     conversationData.put("hint", "higher");
-    Prompt prompt = Prompts.getMinPrompt(request);
-    return createPromptResponse(request, prompt, false);
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("min",
+        () -> Prompts.getMinPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   private ActionResponse guessIsMaxBoundary(ActionRequest request) {
     Map<String, Object> conversationData = request.getConversationData();
     conversationData.put("hint", "lower");
-    Prompt prompt = Prompts.getMaxPrompt(request);
-    return createPromptResponse(request, prompt, false);
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("max",
+        () -> Prompts.getMaxPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   private ActionResponse guessIsCold(ActionRequest request) {
     Map<String, Object> conversationData = request.getConversationData();
     Double answer = (Double) conversationData.get("answer");
     Double guess = (Double) request.getParameter("guess");
+    int capabilities = SurfaceCapabilities.of(request);
     Prompt prompt;
     if (answer > guess) {
       conversationData.put("hint", "higher");
-      prompt = Prompts.getColdHigherPrompt(request);
+      prompt = buildPrompt("cold_higher",
+          () -> Prompts.getColdHigherPrompt(request, capabilities));
     } else {
       conversationData.put("hint", "lower");
-      prompt = Prompts.getColdLowerPrompt(request);
+      prompt = buildPrompt("cold_lower",
+          () -> Prompts.getColdLowerPrompt(request, capabilities));
     }
-    return createPromptResponse(request, prompt, false);
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   private ActionResponse guessIsHot(ActionRequest request) {
     Map<String, Object> conversationData = request.getConversationData();
     conversationData.put("hint", null);
-    Prompt prompt = Prompts.getHotPrompt(request);
-    return createPromptResponse(request, prompt, false);
+    int capabilities = SurfaceCapabilities.of(request);
+    Prompt prompt = buildPrompt("hot",
+        () -> Prompts.getHotPrompt(request, capabilities));
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   private ActionResponse guessIsVeryHot(ActionRequest request) {
@@ -367,41 +674,49 @@ public class NumberGenieApp extends DialogflowApp {
     Double answer = (Double) conversationData.get("answer");
     Double guess = (Double) request.getParameter("guess");
     Double soundCount = (Double) conversationData.get("steamSoundCount");
+    int capabilities = SurfaceCapabilities.of(request);
     Prompt prompt;
     if (answer > guess) {
       conversationData.put("hint", "higher");
       if (soundCount-- <= 0) {
         soundCount = 5.0;
-        prompt = Prompts.getVeryHotHigherPrompt(request, true);
+        prompt = buildPrompt("very_hot_higher",
+            () -> Prompts.getVeryHotHigherPrompt(request, capabilities, true));
       } else {
-        prompt = Prompts.getVeryHotHigherPrompt(request, false);
+        prompt = buildPrompt("very_hot_higher",
+            () -> Prompts.getVeryHotHigherPrompt(request, capabilities, false));
       }
     } else {
       conversationData.put("hint", "lower");
       if (soundCount-- <= 0) {
         soundCount = 5.0;
-        prompt = Prompts.getVeryHotLowerPrompt(request, true);
+        prompt = buildPrompt("very_hot_lower",
+            () -> Prompts.getVeryHotLowerPrompt(request, capabilities, true));
       } else {
-        prompt = Prompts.getVeryHotLowerPrompt(request, false);
+        prompt = buildPrompt("very_hot_lower",
+            () -> Prompts.getVeryHotLowerPrompt(request, capabilities, false));
       }
     }
     conversationData.put("steamSoundCount", soundCount);
-    return createPromptResponse(request, prompt, false);
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   private ActionResponse guessIsWarm(ActionRequest request) {
     Map<String, Object> conversationData = request.getConversationData();
     Double answer = (Double) conversationData.get("answer");
     Double guess = (Double) request.getParameter("guess");
+    int capabilities = SurfaceCapabilities.of(request);
     Prompt prompt;
     if (answer > guess) {
       conversationData.put("hint", "higher");
-      prompt = Prompts.getWarmHigherPrompt(request);
+      prompt = buildPrompt("warm_higher",
+          () -> Prompts.getWarmHigherPrompt(request, capabilities));
     } else {
       conversationData.put("hint", "lower");
-      prompt = Prompts.getWarmLowerPrompt(request);
+      prompt = buildPrompt("warm_lower",
+          () -> Prompts.getWarmLowerPrompt(request, capabilities));
     }
-    return createPromptResponse(request, prompt, false);
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   private ActionResponse guessIsLessThanAnswer(ActionRequest request) {
@@ -412,20 +727,24 @@ public class NumberGenieApp extends DialogflowApp {
     String previousHint = (String) conversationData.get("hint");
     conversationData.put("hint", "higher");
     Double soundCount = (Double) conversationData.get("steamSoundCount");
+    int capabilities = SurfaceCapabilities.of(request);
     Prompt prompt;
     if (previousHint != null && previousHint.equals("higher") && diff <= 2) {
       // Very close to number
       if (soundCount-- <= 0) {
         soundCount = 5.0;
-        prompt = Prompts.getHotHigherPrompt(request, true);
+        prompt = buildPrompt("hot_higher",
+            () -> Prompts.getHotHigherPrompt(request, capabilities, true));
       } else {
-        prompt = Prompts.getHotHigherPrompt(request, false);
+        prompt = buildPrompt("hot_higher",
+            () -> Prompts.getHotHigherPrompt(request, capabilities, false));
       }
     } else {
-      prompt = Prompts.getHigherPrompt(request);
+      prompt = buildPrompt("higher",
+          () -> Prompts.getHigherPrompt(request, capabilities));
     }
     conversationData.put("steamSoundCount", soundCount);
-    return createPromptResponse(request, prompt, false);
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   private ActionResponse guessIsHigherThanAnswer(ActionRequest request) {
@@ -436,76 +755,134 @@ public class NumberGenieApp extends DialogflowApp {
     String previousHint = (String) conversationData.get("hint");
     conversationData.put("hint", "lower");
     Double soundCount = (Double) conversationData.get("steamSoundCount");
+    int capabilities = SurfaceCapabilities.of(request);
     Prompt prompt;
     if (previousHint != null && previousHint.equals("lower") && diff <= 2) {
       // Very close to number
       if (soundCount-- <= 0) {
         soundCount = 5.0;
-        prompt = Prompts.getHotLowerPrompt(request, true);
+        prompt = buildPrompt("hot_lower",
+            () -> Prompts.getHotLowerPrompt(request, capabilities, true));
       } else {
-        prompt = Prompts.getHotLowerPrompt(request, false);
+        prompt = buildPrompt("hot_lower",
+            () -> Prompts.getHotLowerPrompt(request, capabilities, false));
       }
     } else {
-      prompt = Prompts.getLowerPrompt(request);
+      prompt = buildPrompt("lower",
+          () -> Prompts.getLowerPrompt(request, capabilities));
     }
     conversationData.put("steamSoundCount", soundCount);
-    return createPromptResponse(request, prompt, false);
+    return createPromptResponse(request, capabilities, prompt, false);
   }
 
   private ActionResponse guessIsSameAsAnswer(ActionRequest request) {
     Map<String, Object> conversationData = request.getConversationData();
     Double guessCount = (Double) conversationData.get("guessCount");
+    statistics.recordWin(getUserId(request), guessCount.longValue());
     conversationData.put("hint", null);
-    conversationData.put("previousGuess", -1);
-    conversationData.put("guessCount", 0);
+    conversationData.put("previousGuess", -1.0);
+    conversationData.put("guessCount", 0.0);
+    int capabilities = SurfaceCapabilities.of(request);
     Prompt prompt;
     if (guessCount >= 10) {
-      prompt = Prompts.getWinManyTriesPrompt(request);
+      prompt = buildPrompt("win_many_tries",
+          () -> Prompts.getWinManyTriesPrompt(request, capabilities));
     } else {
-      prompt = Prompts.getWinPrompt(request);
+      prompt = buildPrompt("win",
+          () -> Prompts.getWinPrompt(request, capabilities));
     }
     ActionContext context = new ActionContext(YES_NO_CONTEXT, 5);
-    return createPromptResponse(request, prompt, false, context);
+    return createPromptResponse(request, capabilities, prompt, false, context);
   }
 
-  private static void cachePrompt(ActionRequest request, Prompt prompt) {
-    Map<String, Object> conversationData = request.getConversationData();
-    conversationData.put("lastResponse", prompt);
+  private static String getUserId(ActionRequest request) {
+    User user = request.getUser();
+    return user == null ? null : user.getUserId();
+  }
+
+  // A new game must not see the guesses and hint of the previous one.
+  private static void clearPreviousGame(Map<String, Object> conversationData) {
+    conversationData.remove("previousGuess");
+    conversationData.remove("hint");
+    conversationData.remove("duplicateCount");
   }
 
-  private static void addPromptToResponse(ResponseBuilder responseBuilder,
-      Prompt prompt) {
+  /**
+   * Renders a prompt into a response for a surface with the given
+   * capabilities. Without a screen, the display text, card and suggestions
+   * are left out; without audio output, so are the earcons.
+   *
+   * @return what was added to the response, for {@code repeat} to send again.
+   */
+  @VisibleForTesting
+  static RenderedPrompt addPromptToResponse(ResponseBuilder responseBuilder,
+      Prompt prompt, int capabilities) {
     checkNotNull(responseBuilder, "responseBuilder cannot be null.");
     checkNotNull(prompt, "prompt cannot be null.");
-    StringBuilder displayTextBuilder = new StringBuilder();
+    TrimmingStatistics trimming = TrimmingStatistics.getInstance();
+    boolean screen = SurfaceCapabilities.hasScreen(capabilities);
+    boolean audio = SurfaceCapabilities.hasAudio(capabilities);
+    StringBuilder displayTextBuilder = screen ? new StringBuilder() : null;
     StringBuilder speechTextBuilder = new StringBuilder();
     speechTextBuilder.append("<speech>");
     for (PartialPrompt partialPrompt : prompt.getPartialPrompts()) {
       for (Element element : partialPrompt.getParts()) {
-        displayTextBuilder.append(element.getDisplayText());
-        displayTextBuilder.append(" ");
-        speechTextBuilder.append(element.getSpeechText());
+        boolean isAudio = element instanceof AudioElement;
+        if (isAudio && !audio) {
+          trimming.recordSkipped(Part.AUDIO, 1);
+          continue;
+        }
+        if (screen) {
+          displayTextBuilder.append(element.getDisplayText());
+          displayTextBuilder.append(" ");
+        }
+        String speechText = element.getSpeechText();
+        if (isAudio) {
+          trimming.recordRendered(Part.AUDIO, speechText.length());
+        }
+        speechTextBuilder.append(speechText);
         speechTextBuilder.append(" ");
       }
-      displayTextBuilder.append(" ");
+      if (screen) {
+        displayTextBuilder.append(" ");
+      }
       speechTextBuilder.append(" ");
     }
     speechTextBuilder.append("</speech>");
-    String displayText = displayTextBuilder.toString();
-    String speechText = speechTextBuilder.toString();
-    responseBuilder.add(new SimpleResponse()
-        .setDisplayText(displayText)
-        .setTextToSpeech(speechText));
+    String displayText = null;
+    if (screen) {
+      displayText = displayTextBuilder.toString();
+      trimming.recordRendered(Part.DISPLAY_TEXT,
+          DISPLAY_TEXT_JSON_BYTES + displayText.length());
+    } else {
+      trimming.recordSkipped(Part.DISPLAY_TEXT, 1);
+    }
     ImageCard imageCard = prompt.getImageCard();
-    if (imageCard != null) {
-      responseBuilder.add(new BasicCard()
-          .setImage(new Image()
-              .setUrl(imageCard.getUrl())
-              .setAccessibilityText(imageCard.getAltText()))
-          .setFormattedText(imageCard.getVariantText()));
+    String url = null;
+    String altText = null;
+    String variantText = null;
+    if (imageCard != null && !screen) {
+      trimming.recordSkipped(Part.CARD, 1);
+    } else if (imageCard != null) {
+      url = imageCard.getUrl();
+      altText = imageCard.getAltText();
+      variantText = imageCard.getVariantText();
+      trimming.recordRendered(Part.CARD, CARD_JSON_BYTES + url.length()
+          + altText.length() + variantText.length());
     }
-    for (String suggestion : prompt.getSuggestions()) {
-      responseBuilder.add(new Suggestion().setTitle(suggestion));
+    List<String> suggestions = prompt.getSuggestions();
+    if (screen) {
+      for (String suggestion : suggestions) {
+        trimming.recordRendered(Part.SUGGESTION,
+            SUGGESTION_JSON_BYTES + suggestion.length());
+      }
+    } else {
+      trimming.recordSkipped(Part.SUGGESTION, suggestions.size());
+      suggestions = Collections.emptyList();
     }
+    RenderedPrompt rendered = new RenderedPrompt(speechTextBuilder.toString(),
+        displayText, url, altText, variantText, suggestions);
+    rendered.addTo(responseBuilder);
+    return rendered;
   }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example;
+
+import com.example.cluster.ClusterNode;
+import com.example.stats.GameStatistics;
+import com.example.stats.LocaleStatistics;
+import com.example.stats.TrimmingStatistics;
+import com.example.stats.UserStatistics;
+import com.example.util.AccessTokens;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the global gameplay statistics, leaderboard and response trimming
+ * statistics as JSON, or a single user's statistics when a {@code user}
+ * parameter is given.
+ *
+ * <p>The statistics name users by their IDs, so the endpoint is disabled
+ * unless the {@value #TOKEN_PROPERTY} system property is set, and every
+ * request must carry its value in an {@value #TOKEN_HEADER} header.
+ */
+@WebServlet(name = "stats", value = "/stats")
+public class StatsServlet extends HttpServlet {
+
+  /** System property holding the token that enables the endpoint. */
+  public static final String TOKEN_PROPERTY = "numbergenie.stats.token";
+
+  /** Request header carrying the token. */
+  public static final String TOKEN_HEADER = "X-Stats-Token";
+
+  private final Gson gson = new Gson();
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse res)
+      throws IOException {
+    switch (AccessTokens.check(TOKEN_PROPERTY, req.getHeader(TOKEN_HEADER))) {
+      case DISABLED:
+        res.sendError(HttpServletResponse.SC_NOT_FOUND);
+        return;
+      case DENIED:
+        res.sendError(HttpServletResponse.SC_FORBIDDEN);
+        return;
+      default:
+        break;
+    }
+    GameStatistics statistics = ClusterNode.getProcessStatistics();
+    String userId = req.getParameter("user");
+    Object body;
+    if (userId == null) {
+      Map<String, Object> summary = statistics.toSummary();
+      summary.put("responseTrimming",
+          TrimmingStatistics.getInstance().toSummary());
+      summary.put("locales", LocaleStatistics.getInstance().toSummary());
+      ClusterNode cluster = ClusterNode.getInstance();
+      if (cluster != null) {
+        summary.put("cluster", cluster.toSummary());
+      }
+      body = summary;
+    } else {
+      UserStatistics user = statistics.getUser(userId);
+      if (user == null) {
+        res.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown user");
+        return;
+      }
+      body = user.toSummary();
+    }
+    res.setContentType("application/json");
+    res.getWriter().write(gson.toJson(body));
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.assets;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A static file held in memory, with everything needed to serve it computed
+ * once when it is loaded.
+ */
+public final class Asset {
+
+  // Only keep a gzip variant that is at least this much smaller.
+  private static final double MIN_GZIP_SAVING = 0.1;
+  private static final int ETAG_HASH_LENGTH = 20;
+
+  private final String path;
+  private final String contentType;
+  private final String cacheControl;
+  private final byte[] bytes;
+  private final String etag;
+  private final byte[] gzipBytes;
+  private final String gzipEtag;
+
+  /**
+   * Creates an {@link Asset}, hashing and compressing its content.
+   *
+   * @param path the request path of the asset, e.g. {@code /audio/x.wav}.
+   * Cannot be {@code null}.
+   * @param contentType the media type of the asset. Cannot be {@code null}.
+   * @param cacheControl the {@code Cache-Control} header to send with the
+   * asset. Cannot be {@code null}.
+   * @param bytes the content of the asset. Cannot be {@code null}.
+   */
+  Asset(String path, String contentType, String cacheControl, byte[] bytes) {
+    checkNotNull(path, "path cannot be null.");
+    checkNotNull(contentType, "contentType cannot be null.");
+    checkNotNull(cacheControl, "cacheControl cannot be null.");
+    checkNotNull(bytes, "bytes cannot be null.");
+    this.path = path;
+    this.contentType = contentType;
+    this.cacheControl = cacheControl;
+    this.bytes = bytes;
+    String hash = Hashing.sha256().hashBytes(bytes).toString()
+        .substring(0, ETAG_HASH_LENGTH);
+    this.etag = "\"" + hash + "\"";
+    byte[] gzipped = gzip(bytes);
+    if (gzipped.length <= bytes.length * (1 - MIN_GZIP_SAVING)) {
+      this.gzipBytes = gzipped;
+      this.gzipEtag = "\"" + hash + "-gzip\"";
+    } else {
+      this.gzipBytes = null;
+      this.gzipEtag = null;
+    }
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  /**
+   * Gets the content of the asset. The array is shared and must not be
+   * modified.
+   *
+   * @return the content.
+   */
+  byte[] getBytes() {
+    return bytes;
+  }
+
+  public String getCacheControl() {
+    return cacheControl;
+  }
+
+  public int getLength() {
+    return bytes.length;
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+  /**
+   * Gets the gzip compressed content, if compression pays off for this
+   * asset. The array is shared and must not be modified.
+   *
+   * @return the compressed content, or {@code null} if there is none.
+   */
+  byte[] getGzipBytes() {
+    return gzipBytes;
+  }
+
+  String getGzipEtag() {
+    return gzipEtag;
+  }
+
+  private static byte[] gzip(byte[] bytes) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.assets;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Maps asset paths to the content-hashed names written by {@code gradle
+ * optimizeAssets}, e.g. {@code audio/Earcon_Steam.wav} to {@code
+ * audio/Earcon_Steam.9caa4d42a9.wav}. The manifest is read from {@code
+ * assets.properties} on the classpath; without it, for example when running
+ * from an IDE, every path maps to itself.
+ */
+public final class AssetManifest {
+
+  static final String RESOURCE = "assets.properties";
+
+  private static final Map<String, String> HASHED_NAMES = load();
+
+  private AssetManifest() {
+  }
+
+  /**
+   * Gets the name an asset is published under.
+   *
+   * @param path the asset path relative to the webapp directory, e.g.
+   * {@code images/HOT.gif}.
+   * @return the hashed path, or {@code path} if the asset is not in the
+   * manifest.
+   */
+  public static String resolve(String path) {
+    return HASHED_NAMES.getOrDefault(path, path);
+  }
+
+  private static Map<String, String> load() {
+    try (InputStream in =
+        AssetManifest.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+      if (in == null) {
+        return ImmutableMap.of();
+      }
+      Properties properties = new Properties();
+      properties.load(in);
+      return Maps.fromProperties(properties);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.assets;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The outcome of looking up an asset for one request: a status, the headers
+ * to send and, unless the status has no body, a slice of a shared asset
+ * array to write. The array is never copied and must not be modified.
+ */
+public final class AssetResponse {
+
+  private final int status;
+  private final Map<String, String> headers;
+  private final byte[] body;
+  private final int offset;
+  private final int length;
+
+  AssetResponse(int status, Map<String, String> headers, byte[] body,
+      int offset, int length) {
+    this.status = status;
+    this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+    this.body = body;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  /**
+   * Gets the array holding the body. Only the bytes from {@link #getOffset()}
+   * for {@link #getLength()} bytes belong to the response.
+   *
+   * @return the body array, or {@code null} if the response has no body.
+   */
+  public byte[] getBody() {
+    return body;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public int getLength() {
+    return length;
+  }
+}
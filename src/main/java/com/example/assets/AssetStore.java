@@ -0,0 +1,308 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.assets;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Holds every earcon and image in memory and answers asset requests with
+ * strong ETags, conditional requests, byte ranges and gzip variants.
+ *
+ * <p>All assets are read, hashed and compressed once when the store is
+ * created, so serving a request never touches the disk and never copies
+ * asset bytes.
+ */
+public final class AssetStore {
+
+  /** Directories under the webapp directory that hold assets. */
+  public static final List<String> DIRECTORIES =
+      ImmutableList.of("audio", "images");
+
+  /**
+   * Assets are revalidated cheaply through their ETag, so they can be cached
+   * for a long time.
+   */
+  static final String CACHE_CONTROL = "public, max-age=604800";
+
+  /**
+   * Assets with a content hash in their name, see {@link AssetManifest},
+   * never change and can be cached for good.
+   */
+  static final String IMMUTABLE_CACHE_CONTROL =
+      "public, max-age=31536000, immutable";
+
+  private static final Pattern HASHED_NAME =
+      Pattern.compile(".*\\.[0-9a-f]{10}\\.[^./]+");
+
+  private static final Map<String, String> CONTENT_TYPES = ImmutableMap.of(
+      "wav", "audio/wav",
+      "gif", "image/gif",
+      "png", "image/png",
+      "jpg", "image/jpeg");
+  private static final String DEFAULT_CONTENT_TYPE =
+      "application/octet-stream";
+  private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+  private final Map<String, Asset> assets;
+  private final long totalBytes;
+
+  private AssetStore(Map<String, Asset> assets) {
+    this.assets = ImmutableMap.copyOf(assets);
+    long total = 0;
+    for (Asset asset : assets.values()) {
+      total += asset.getLength();
+    }
+    this.totalBytes = total;
+  }
+
+  /**
+   * Loads every file in the {@link #DIRECTORIES} of a webapp directory.
+   * Missing directories are skipped.
+   *
+   * @param webapp the webapp directory. Cannot be {@code null}.
+   * @return the loaded store.
+   */
+  public static AssetStore load(Path webapp) throws IOException {
+    checkNotNull(webapp, "webapp cannot be null.");
+    Builder builder = new Builder();
+    for (String directory : DIRECTORIES) {
+      Path path = webapp.resolve(directory);
+      if (!Files.isDirectory(path)) {
+        continue;
+      }
+      try (Stream<Path> files = Files.list(path)) {
+        for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+          if (Files.isRegularFile(file)) {
+            builder.add("/" + directory + "/" + file.getFileName(),
+                Files.readAllBytes(file));
+          }
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Gets an asset by its request path.
+   *
+   * @param path the request path, e.g. {@code /audio/Earcon_Steam.wav}.
+   * @return the asset, or {@code null} if there is no such asset.
+   */
+  public Asset get(String path) {
+    return assets.get(path);
+  }
+
+  public int size() {
+    return assets.size();
+  }
+
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  /**
+   * Answers a {@code GET} or {@code HEAD} request for an asset.
+   *
+   * @param path the request path. Cannot be {@code null}.
+   * @param ifNoneMatch the {@code If-None-Match} header, or {@code null}.
+   * @param range the {@code Range} header, or {@code null}.
+   * @param acceptEncoding the {@code Accept-Encoding} header, or {@code
+   * null}.
+   * @return the response to send.
+   */
+  public AssetResponse serve(String path, String ifNoneMatch, String range,
+      String acceptEncoding) {
+    checkNotNull(path, "path cannot be null.");
+    Asset asset = assets.get(path);
+    if (asset == null) {
+      return new AssetResponse(HttpURLConnection.HTTP_NOT_FOUND,
+          Collections.emptyMap(), null, 0, 0);
+    }
+    // Ranges always refer to the identity encoding, so only whole responses
+    // are compressed.
+    boolean gzip = asset.getGzipBytes() != null && range == null
+        && acceptsGzip(acceptEncoding);
+    String etag = gzip ? asset.getGzipEtag() : asset.getEtag();
+    Map<String, String> headers = new LinkedHashMap<>();
+    headers.put("ETag", etag);
+    headers.put("Cache-Control", asset.getCacheControl());
+    headers.put("Accept-Ranges", "bytes");
+    if (asset.getGzipBytes() != null) {
+      headers.put("Vary", "Accept-Encoding");
+    }
+    if (ifNoneMatch != null && matches(ifNoneMatch, etag)) {
+      return new AssetResponse(HttpURLConnection.HTTP_NOT_MODIFIED, headers,
+          null, 0, 0);
+    }
+    headers.put("Content-Type", asset.getContentType());
+    if (gzip) {
+      headers.put("Content-Encoding", "gzip");
+      byte[] body = asset.getGzipBytes();
+      return new AssetResponse(HttpURLConnection.HTTP_OK, headers, body, 0,
+          body.length);
+    }
+    byte[] body = asset.getBytes();
+    if (range == null) {
+      return new AssetResponse(HttpURLConnection.HTTP_OK, headers, body, 0,
+          body.length);
+    }
+    long[] bounds = parseRange(range, body.length);
+    if (bounds == null) {
+      // Malformed or multiple ranges: the whole asset is a valid answer.
+      return new AssetResponse(HttpURLConnection.HTTP_OK, headers, body, 0,
+          body.length);
+    }
+    if (bounds.length == 0) {
+      headers.put("Content-Range", "bytes */" + body.length);
+      return new AssetResponse(HTTP_RANGE_NOT_SATISFIABLE, headers, null, 0,
+          0);
+    }
+    int first = (int) bounds[0];
+    int last = (int) bounds[1];
+    headers.put("Content-Range",
+        "bytes " + first + "-" + last + "/" + body.length);
+    return new AssetResponse(HttpURLConnection.HTTP_PARTIAL, headers, body,
+        first, last - first + 1);
+  }
+
+  /**
+   * Parses a single byte range.
+   *
+   * @return the first and last byte of the range, an empty array if the
+   * range cannot be satisfied, or {@code null} if the header should be
+   * ignored.
+   */
+  static long[] parseRange(String range, int length) {
+    String value = range.trim();
+    if (!value.startsWith("bytes=") || value.indexOf(',') >= 0) {
+      return null;
+    }
+    value = value.substring("bytes=".length()).trim();
+    int dash = value.indexOf('-');
+    if (dash < 0) {
+      return null;
+    }
+    String start = value.substring(0, dash).trim();
+    String end = value.substring(dash + 1).trim();
+    long first;
+    long last;
+    try {
+      if (start.isEmpty()) {
+        if (end.isEmpty()) {
+          return null;
+        }
+        long suffix = Long.parseLong(end);
+        if (suffix == 0) {
+          return new long[0];
+        }
+        first = Math.max(0, length - suffix);
+        last = length - 1;
+      } else {
+        first = Long.parseLong(start);
+        last = end.isEmpty() ? length - 1
+            : Math.min(Long.parseLong(end), length - 1);
+        if (!end.isEmpty() && Long.parseLong(end) < first) {
+          return null;
+        }
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    if (first < 0 || first >= length) {
+      return new long[0];
+    }
+    return new long[] {first, last};
+  }
+
+  private static boolean matches(String ifNoneMatch, String etag) {
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.equals("*")) {
+        return true;
+      }
+      // If-None-Match uses the weak comparison.
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean acceptsGzip(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String part : acceptEncoding.split(",")) {
+      String[] coding = part.trim().split(";");
+      if (coding[0].trim().equalsIgnoreCase("gzip")) {
+        return coding.length == 1 || !coding[1].trim().matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
+  }
+
+  private static String contentType(String path) {
+    String extension = path.substring(path.lastIndexOf('.') + 1);
+    return CONTENT_TYPES.getOrDefault(extension, DEFAULT_CONTENT_TYPE);
+  }
+
+  /**
+   * Collects assets for an {@link AssetStore}, for callers that do not read
+   * them from a directory.
+   */
+  public static final class Builder {
+
+    private final Map<String, Asset> assets = new LinkedHashMap<>();
+
+    /**
+     * Adds an asset.
+     *
+     * @param path the request path, e.g. {@code /audio/Earcon_Steam.wav}.
+     * Cannot be {@code null}.
+     * @param bytes the content. Cannot be {@code null}.
+     * @return this builder.
+     */
+    public Builder add(String path, byte[] bytes) {
+      String cacheControl = HASHED_NAME.matcher(path).matches()
+          ? IMMUTABLE_CACHE_CONTROL : CACHE_CONTROL;
+      assets.put(path,
+          new Asset(path, contentType(path), cacheControl, bytes));
+      return this;
+    }
+
+    public AssetStore build() {
+      return new AssetStore(assets);
+    }
+  }
+}
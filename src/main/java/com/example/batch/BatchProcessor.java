@@ -0,0 +1,310 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.batch;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.util.DialogflowRequests;
+import com.google.actions.api.App;
+import com.google.gson.Gson;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a stream of webhook requests, one JSON request per line, through an
+ * {@link App} and streams the responses back as JSON lines.
+ *
+ * <p>Requests are spread over a fixed number of lanes by session. A lane
+ * runs one request at a time, on an executor shared by every stream, and
+ * only while it has requests queued, so the turns of one session run in the
+ * order they appear in the stream, while different sessions run in parallel
+ * on all lanes, and an idle lane holds no thread. Each lane queues at most
+ * {@code laneCapacity} requests; when a lane is full, reading the stream
+ * waits, so memory use does not grow with the length of the stream.
+ *
+ * <p>Responses are written as soon as they complete, which is not
+ * necessarily the order of the requests. Each response line carries the
+ * zero-based line index of its request: {@code {"index": 3, "session":
+ * "...", "response": {...}}}, or {@code {"index": 3, "session": "...",
+ * "error": "..."}} if the request failed.
+ *
+ * <p>If processing stops early, because it is interrupted, reading fails or
+ * writing fails, the requests still queued are dropped, and {@link #process}
+ * returns only once the requests already running are done, so no lane is
+ * left running behind it.
+ */
+public class BatchProcessor {
+
+  private static final Gson GSON = new Gson();
+
+  private final App app;
+  private final Executor executor;
+  private final int lanes;
+  private final int laneCapacity;
+
+  /**
+   * Creates a {@link BatchProcessor}.
+   *
+   * @param app the app handling every request. Cannot be {@code null}.
+   * @param executor where the lanes run. Its number of threads bounds the
+   * requests run in parallel across all streams. Cannot be {@code null}.
+   * @param lanes the number of requests of a stream run in parallel. Must be
+   * positive.
+   * @param laneCapacity the number of requests queued per lane. Must be
+   * positive.
+   */
+  public BatchProcessor(App app, Executor executor, int lanes,
+      int laneCapacity) {
+    checkNotNull(app, "app cannot be null.");
+    checkNotNull(executor, "executor cannot be null.");
+    checkArgument(lanes > 0, "lanes must be positive.");
+    checkArgument(laneCapacity > 0, "laneCapacity must be positive.");
+    this.app = app;
+    this.executor = executor;
+    this.lanes = lanes;
+    this.laneCapacity = laneCapacity;
+  }
+
+  /**
+   * Processes every request of a stream and waits until all responses are
+   * written.
+   *
+   * @param requests the JSON lines of requests. Blank lines are skipped.
+   * Cannot be {@code null}.
+   * @param responses where to write the JSON lines of responses. Cannot be
+   * {@code null}.
+   * @return the number of requests processed.
+   * @throws IOException if reading the requests or writing a response
+   * failed.
+   * @throws InterruptedException if the thread was interrupted, once the
+   * requests already running are done.
+   */
+  public long process(Reader requests, Writer responses)
+      throws IOException, InterruptedException {
+    checkNotNull(requests, "requests cannot be null.");
+    checkNotNull(responses, "responses cannot be null.");
+    Output output = new Output(responses);
+    Lane[] workers = new Lane[lanes];
+    for (int i = 0; i < lanes; i++) {
+      workers[i] = new Lane(output);
+    }
+    long index = 0;
+    boolean completed = false;
+    try {
+      BufferedReader reader = requests instanceof BufferedReader
+          ? (BufferedReader) requests : new BufferedReader(requests);
+      String line;
+      while ((line = reader.readLine()) != null && output.error == null) {
+        if (line.trim().isEmpty()) {
+          continue;
+        }
+        String session = DialogflowRequests.findSession(line);
+        workers[Math.floorMod(session.hashCode(), lanes)]
+            .put(new Item(index, session, line));
+        index++;
+      }
+      completed = true;
+    } finally {
+      if (!completed) {
+        output.cancel();
+        for (Lane worker : workers) {
+          worker.drop();
+        }
+      }
+      output.awaitDone(index);
+    }
+    output.flush();
+    if (output.error != null) {
+      throw output.error;
+    }
+    return index;
+  }
+
+  private String handle(Item item) {
+    String prefix = "{\"index\":" + item.index + ",\"session\":"
+        + GSON.toJson(item.session);
+    try {
+      // The app's response is already JSON; embed it without reparsing.
+      return prefix + ",\"response\":"
+          + app.handleRequest(item.body, null).get() + "}";
+    } catch (ExecutionException e) {
+      return prefix + ",\"error\":" + GSON.toJson(String.valueOf(e.getCause()))
+          + "}";
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return prefix + ",\"error\":\"interrupted\"}";
+    } catch (RuntimeException e) {
+      return prefix + ",\"error\":" + GSON.toJson(e.toString()) + "}";
+    }
+  }
+
+  /**
+   * The requests of some sessions, run in order. The lane is on the
+   * executor from when a request is queued until its queue is empty.
+   */
+  private final class Lane implements Runnable {
+
+    private final BlockingQueue<Item> queue =
+        new ArrayBlockingQueue<>(laneCapacity);
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Output output;
+
+    Lane(Output output) {
+      this.output = output;
+    }
+
+    void put(Item item) throws InterruptedException {
+      queue.put(item);
+      schedule();
+    }
+
+    // Drops the requests not yet running, in case the lane never runs again.
+    void drop() {
+      while (queue.poll() != null) {
+        output.done();
+      }
+    }
+
+    private void schedule() {
+      if (scheduled.compareAndSet(false, true)) {
+        try {
+          executor.execute(this);
+        } catch (RuntimeException e) {
+          scheduled.set(false);
+          throw e;
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      for (Item item = queue.poll(); item != null; item = queue.poll()) {
+        try {
+          if (!output.isCancelled()) {
+            String response = handle(item);
+            // Flush when idle, so a slow stream still sees its responses.
+            output.write(response, queue.isEmpty());
+          }
+        } finally {
+          output.done();
+        }
+      }
+      scheduled.set(false);
+      // A request queued after the last poll, but before the flag was
+      // cleared, did not schedule the lane.
+      if (!queue.isEmpty()) {
+        schedule();
+      }
+    }
+  }
+
+  /**
+   * Serializes writes from all lanes, remembers the first failure, and
+   * counts the requests that are done.
+   */
+  private static final class Output {
+
+    private final Writer writer;
+    private volatile IOException error;
+    private volatile boolean cancelled;
+    private long done;
+
+    Output(Writer writer) {
+      this.writer = writer;
+    }
+
+    boolean isCancelled() {
+      return cancelled || error != null;
+    }
+
+    void cancel() {
+      cancelled = true;
+    }
+
+    synchronized void write(String line, boolean flush) {
+      if (error != null) {
+        return;
+      }
+      try {
+        writer.write(line);
+        writer.write('\n');
+        if (flush) {
+          writer.flush();
+        }
+      } catch (IOException e) {
+        error = e;
+      }
+    }
+
+    synchronized void flush() {
+      try {
+        writer.flush();
+      } catch (IOException e) {
+        if (error == null) {
+          error = e;
+        }
+      }
+    }
+
+    synchronized void done() {
+      done++;
+      notifyAll();
+    }
+
+    /**
+     * Waits until a number of requests are done. An interrupt cancels the
+     * requests not yet running, but the wait goes on until the running ones
+     * are done, and then the interrupt is thrown.
+     */
+    synchronized void awaitDone(long count) throws InterruptedException {
+      boolean interrupted = false;
+      while (done < count) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+          cancelled = true;
+        }
+      }
+      if (interrupted) {
+        throw new InterruptedException();
+      }
+    }
+  }
+
+  private static final class Item {
+
+    final long index;
+    final String session;
+    final String body;
+
+    Item(long index, String session, String body) {
+      this.index = index;
+      this.session = session;
+      this.body = body;
+    }
+  }
+}
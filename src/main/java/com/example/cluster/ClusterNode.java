@@ -0,0 +1,478 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.cluster;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.config.Config;
+import com.example.stats.GameStatistics;
+import com.example.stats.UserStatistics;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A node of a cluster of Number Genie instances that share per-user
+ * statistics, for instances behind a load balancer that sends a user's
+ * turns to any of them.
+ *
+ * <p>Every user ID is owned by one node of a {@link HashRing}, which holds
+ * the user's statistics. A node that handles a turn of a user it does not
+ * own forwards the win or loss to the owner, and fetches the statistics
+ * from the owner when it needs them. The owner replicates every change of a
+ * user to the user's backup node, the next one on the ring, which takes
+ * over as the owner with the user's statistics when the owner leaves the
+ * ring. When the members change, each node sends the users it is
+ * responsible for to their new owners and backups.
+ *
+ * <p>All of this is asynchronous: a turn never waits for another node,
+ * except to fetch a user's statistics. Messages go over one TCP connection
+ * per pair of nodes, batched by a {@link Peer}, and when a node falls
+ * behind or is unreachable they are dropped and counted rather than slowing
+ * down requests. The cluster is eventually consistent: changes in flight
+ * when a node fails are lost, and the members are set from outside, with
+ * {@link #setMembers}.
+ *
+ * <p>The global statistics, wins, losses, the histogram and the leaderboard,
+ * stay per node.
+ */
+public class ClusterNode {
+
+  private static final Logger LOGGER =
+      Logger.getLogger(ClusterNode.class.getName());
+
+  /** How long a request waits for another node's statistics of a user. */
+  public static final long FETCH_TIMEOUT_MILLIS = 200;
+
+  private static final long[] UNKNOWN_USER = new long[0];
+  private static final int BUFFER_BYTES = 64 * 1024;
+
+  private final ServerSocket serverSocket;
+  private final InetSocketAddress address;
+  private final int queueSize;
+  private final ClusteredStatistics statistics;
+  private final Map<InetSocketAddress, Peer> peers = new ConcurrentHashMap<>();
+  private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+  private final Map<Long, CompletableFuture<long[]>> fetches =
+      new ConcurrentHashMap<>();
+  private final AtomicLong nextRequestId = new AtomicLong();
+  private final Thread acceptor;
+  private final LongAdder forwarded = new LongAdder();
+  private final LongAdder replicated = new LongAdder();
+  private final LongAdder transferred = new LongAdder();
+  private final LongAdder received = new LongAdder();
+  private final LongAdder fetched = new LongAdder();
+  private final LongAdder fetchFailures = new LongAdder();
+  private volatile HashRing ring;
+  private volatile boolean running = true;
+
+  /**
+   * Creates a {@link ClusterNode} and starts listening for other nodes. The
+   * node is alone on its ring until {@link #setMembers}.
+   *
+   * @param address the address to listen on, which other nodes know this
+   * node by. Port 0 picks a free port. Cannot be {@code null}.
+   * @param leaderboardSize the number of users on this node's leaderboard.
+   * @param queueSize the number of messages that can wait to be sent to each
+   * other node. Must be positive.
+   */
+  public ClusterNode(InetSocketAddress address, int leaderboardSize,
+      int queueSize) throws IOException {
+    checkNotNull(address, "address cannot be null.");
+    checkArgument(queueSize > 0, "queueSize must be positive.");
+    this.serverSocket = new ServerSocket();
+    serverSocket.bind(address);
+    this.address = new InetSocketAddress(address.getAddress(),
+        serverSocket.getLocalPort());
+    this.queueSize = queueSize;
+    this.statistics = new ClusteredStatistics(this, leaderboardSize);
+    this.ring = new HashRing(ImmutableList.of(this.address));
+    this.acceptor = new Thread(this::acceptLoop,
+        "cluster-accept-" + HashRing.name(this.address));
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * Creates a {@link ClusterNode} from the {@code cluster_*} settings of the
+   * config bundle: {@code cluster_members} lists the {@code host:port} of
+   * every node, and {@code cluster_self} is the one of this node.
+   *
+   * @param config the config bundle. Cannot be {@code null}.
+   * @return a started node with its members set, or {@code null} if {@code
+   * cluster_members} is empty.
+   */
+  public static ClusterNode fromConfig(ResourceBundle config)
+      throws IOException {
+    checkNotNull(config, "config cannot be null.");
+    if (!config.containsKey("cluster_members")
+        || config.getString("cluster_members").trim().isEmpty()) {
+      return null;
+    }
+    List<InetSocketAddress> members = new ArrayList<>();
+    for (String member : Splitter.on(',').trimResults().omitEmptyStrings()
+        .split(config.getString("cluster_members"))) {
+      members.add(parseAddress(member));
+    }
+    ClusterNode node = new ClusterNode(
+        parseAddress(config.getString("cluster_self")),
+        Integer.parseInt(config.getString("leaderboard_size")),
+        Integer.parseInt(config.getString("cluster_queue_size")));
+    node.setMembers(members);
+    return node;
+  }
+
+  /**
+   * Gets the node of this process, started on first use from the config
+   * bundle, see {@link #fromConfig}.
+   *
+   * @return the process-wide node, or {@code null} if no cluster is
+   * configured.
+   */
+  public static ClusterNode getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Gets the statistics every handler in this process records games in:
+   * the cluster's, if one is configured.
+   *
+   * @return the process-wide statistics.
+   */
+  public static GameStatistics getProcessStatistics() {
+    ClusterNode node = getInstance();
+    return node != null ? node.getStatistics() : GameStatistics.getInstance();
+  }
+
+  public InetSocketAddress getAddress() {
+    return address;
+  }
+
+  /**
+   * Gets the statistics to record games in, which routes each user to the
+   * user's owner.
+   *
+   * @return this node's statistics.
+   */
+  public ClusteredStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Sets the nodes of the cluster, and sends the users this node is
+   * responsible for, as their owner before or after the change, to the
+   * nodes that become their owner or backup.
+   *
+   * @param members every node of the cluster, this one included. Cannot be
+   * {@code null}.
+   */
+  public void setMembers(Collection<InetSocketAddress> members) {
+    checkNotNull(members, "members cannot be null.");
+    checkArgument(members.contains(address),
+        "members must include this node.");
+    HashRing previous = ring;
+    HashRing next = new HashRing(members);
+    ring = next;
+    for (InetSocketAddress peer : new ArrayList<>(peers.keySet())) {
+      if (!members.contains(peer)) {
+        closePeer(peers.remove(peer));
+      }
+    }
+    for (UserStatistics user : statistics.getUsers()) {
+      List<InetSocketAddress> before = previous.getNodes(user.getUserId(), 2);
+      List<InetSocketAddress> after = next.getNodes(user.getUserId(), 2);
+      if (!before.get(0).equals(address) && !after.get(0).equals(address)) {
+        continue;
+      }
+      for (InetSocketAddress node : after) {
+        if (!node.equals(address) && !before.contains(node)
+            && peer(node).send(Message.state(user))) {
+          transferred.increment();
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops listening, sends the queued messages and closes all connections.
+   */
+  public void close() throws InterruptedException {
+    running = false;
+    try {
+      serverSocket.close();
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not close " + address, e);
+    }
+    for (Peer peer : peers.values()) {
+      peer.close();
+    }
+    peers.clear();
+    for (Socket connection : connections) {
+      closeQuietly(connection);
+    }
+    acceptor.join(TimeUnit.SECONDS.toMillis(5));
+  }
+
+  /**
+   * Builds a JSON-friendly summary of the messages this node sent and
+   * received.
+   *
+   * @return a map suitable for serialization with Gson.
+   */
+  public Map<String, Object> toSummary() {
+    long dropped = 0;
+    for (Peer peer : peers.values()) {
+      dropped += peer.getDropped();
+    }
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("node", HashRing.name(address));
+    summary.put("members", ring.getNodes().size());
+    summary.put("forwarded", forwarded.sum());
+    summary.put("replicated", replicated.sum());
+    summary.put("transferred", transferred.sum());
+    summary.put("received", received.sum());
+    summary.put("fetched", fetched.sum());
+    summary.put("fetchFailures", fetchFailures.sum());
+    summary.put("dropped", dropped);
+    return summary;
+  }
+
+  boolean owns(String userId) {
+    return ring.getOwner(userId).equals(address);
+  }
+
+  void forwardWin(String userId, long guesses) {
+    if (peer(ring.getOwner(userId)).send(Message.win(userId, guesses))) {
+      forwarded.increment();
+    }
+  }
+
+  void forwardLoss(String userId) {
+    if (peer(ring.getOwner(userId)).send(Message.loss(userId))) {
+      forwarded.increment();
+    }
+  }
+
+  /** Sends the latest statistics of a user this node owns to its backup. */
+  void replicate(UserStatistics user) {
+    List<InetSocketAddress> nodes = ring.getNodes(user.getUserId(), 2);
+    if (nodes.size() > 1 && peer(nodes.get(1)).send(Message.state(user))) {
+      replicated.increment();
+    }
+  }
+
+  /**
+   * Asks a user's owner for the user's statistics.
+   *
+   * @return the counters of {@link UserStatistics#toValues()}, an empty
+   * array if the owner knows nothing of the user, or {@code null} if the
+   * owner did not answer in time.
+   */
+  long[] fetch(String userId) {
+    long requestId = nextRequestId.incrementAndGet();
+    CompletableFuture<long[]> reply = new CompletableFuture<>();
+    fetches.put(requestId, reply);
+    try {
+      if (!peer(ring.getOwner(userId))
+          .send(Message.fetch(requestId, userId))) {
+        fetchFailures.increment();
+        return null;
+      }
+      long[] values = reply.get(FETCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+      fetched.increment();
+      return values;
+    } catch (TimeoutException | ExecutionException e) {
+      fetchFailures.increment();
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } finally {
+      fetches.remove(requestId);
+    }
+  }
+
+  /**
+   * Reads frames from a connection until it closes, and handles their
+   * messages.
+   *
+   * @param replies where to send replies to fetches, or {@code null} on a
+   * connection this node opened, which only brings replies.
+   */
+  void serve(Socket connection, DataInputStream in, DataOutputStream replies) {
+    connections.add(connection);
+    ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    DataOutputStream frameOut = new DataOutputStream(frame);
+    try {
+      ByteBuffer messages;
+      while ((messages = Message.readFrame(in)) != null) {
+        frame.reset();
+        while (messages.hasRemaining()) {
+          Message reply = handle(Message.readFrom(messages));
+          if (reply != null && replies != null) {
+            reply.writeTo(frameOut);
+          }
+        }
+        if (frame.size() > 0) {
+          replies.writeInt(frame.size());
+          frame.writeTo(replies);
+          replies.flush();
+        }
+      }
+    } catch (SocketException e) {
+      // Closed by either side.
+    } catch (IOException | RuntimeException e) {
+      if (running) {
+        LOGGER.log(Level.WARNING, "Dropping a connection to " + address, e);
+      }
+    } finally {
+      connections.remove(connection);
+      closeQuietly(connection);
+    }
+  }
+
+  private Message handle(Message message) {
+    received.increment();
+    switch (message.type) {
+      case Message.WIN:
+        statistics.recordUserWin(message.userId, message.number);
+        replicate(statistics.getLocalUser(message.userId));
+        return null;
+      case Message.LOSS:
+        statistics.recordUserLoss(message.userId);
+        replicate(statistics.getLocalUser(message.userId));
+        return null;
+      case Message.STATE:
+        statistics.restoreUser(message.userId, message.values);
+        return null;
+      case Message.FETCH: {
+        UserStatistics user = statistics.getLocalUser(message.userId);
+        return Message.fetchReply(message.number,
+            user == null ? null : user.toValues());
+      }
+      case Message.FETCH_REPLY: {
+        CompletableFuture<long[]> reply = fetches.get(message.number);
+        if (reply != null) {
+          reply.complete(
+              message.values == null ? UNKNOWN_USER : message.values);
+        }
+        return null;
+      }
+      default:
+        throw new IllegalStateException("Unknown message " + message.type);
+    }
+  }
+
+  private void acceptLoop() {
+    while (running) {
+      Socket connection;
+      try {
+        connection = serverSocket.accept();
+        connection.setTcpNoDelay(true);
+      } catch (IOException e) {
+        if (running) {
+          LOGGER.log(Level.WARNING, "Could not accept a node", e);
+        }
+        continue;
+      }
+      Thread handler = new Thread(() -> {
+        try {
+          serve(connection,
+              new DataInputStream(new BufferedInputStream(
+                  connection.getInputStream(), BUFFER_BYTES)),
+              new DataOutputStream(new BufferedOutputStream(
+                  connection.getOutputStream(), BUFFER_BYTES)));
+        } catch (IOException e) {
+          closeQuietly(connection);
+        }
+      }, "cluster-in-" + connection.getRemoteSocketAddress());
+      handler.setDaemon(true);
+      handler.start();
+    }
+  }
+
+  private Peer peer(InetSocketAddress node) {
+    return peers.computeIfAbsent(node,
+        key -> new Peer(key, this, queueSize));
+  }
+
+  private static void closePeer(Peer peer) {
+    try {
+      peer.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void closeQuietly(Socket connection) {
+    try {
+      connection.close();
+    } catch (IOException e) {
+      // Nothing left to do.
+    }
+  }
+
+  // Starts the process-wide node when it is first asked for.
+  private static final class Holder {
+
+    static final ClusterNode INSTANCE = create();
+
+    private static ClusterNode create() {
+      try {
+        return fromConfig(Config.get().getConfig());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private static InetSocketAddress parseAddress(String hostPort) {
+    int colon = hostPort.lastIndexOf(':');
+    checkArgument(colon > 0, "Expected host:port, got %s.", hostPort);
+    return new InetSocketAddress(hostPort.substring(0, colon).trim(),
+        Integer.parseInt(hostPort.substring(colon + 1).trim()));
+  }
+}
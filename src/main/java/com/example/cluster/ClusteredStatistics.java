@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.cluster;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.stats.GameStatistics;
+import com.example.stats.UserStatistics;
+
+/**
+ * The {@link GameStatistics} of a {@link ClusterNode}. Games of users this
+ * node owns are recorded here and replicated to the users' backups; games of
+ * other users count towards this node's global statistics and are forwarded
+ * to their owners. Reading a user this node does not own fetches the user
+ * from the owner, and falls back on the copy here, such as a replica, if
+ * the owner does not answer.
+ */
+public class ClusteredStatistics extends GameStatistics {
+
+  private final ClusterNode node;
+
+  ClusteredStatistics(ClusterNode node, int leaderboardSize) {
+    super(leaderboardSize);
+    this.node = node;
+  }
+
+  @Override
+  public void recordWin(String userId, long guesses) {
+    if (isLocal(userId)) {
+      super.recordWin(userId, guesses);
+      if (userId != null) {
+        node.replicate(getLocalUser(userId));
+      }
+      return;
+    }
+    super.recordWin(null, guesses);
+    node.forwardWin(userId, guesses);
+  }
+
+  @Override
+  public void recordLoss(String userId) {
+    if (isLocal(userId)) {
+      super.recordLoss(userId);
+      if (userId != null) {
+        node.replicate(getLocalUser(userId));
+      }
+      return;
+    }
+    super.recordLoss(null);
+    node.forwardLoss(userId);
+  }
+
+  @Override
+  public UserStatistics getUser(String userId) {
+    checkNotNull(userId, "userId cannot be null.");
+    if (isLocal(userId)) {
+      return super.getUser(userId);
+    }
+    long[] values = node.fetch(userId);
+    if (values == null) {
+      return super.getUser(userId);
+    }
+    if (values.length == 0) {
+      return null;
+    }
+    // Kept as a cached copy of the owner's statistics.
+    restoreUser(userId, values);
+    return super.getUser(userId);
+  }
+
+  /**
+   * Gets the statistics of a user as held by this node, without asking the
+   * owner.
+   *
+   * @param userId the ID of the user. Cannot be {@code null}.
+   * @return the user's statistics, or {@code null} if this node has none.
+   */
+  public UserStatistics getLocalUser(String userId) {
+    return super.getUser(userId);
+  }
+
+  // Anonymous games, and IDs too long to send, stay on this node.
+  private boolean isLocal(String userId) {
+    return userId == null || userId.length() > Message.MAX_USER_ID_CHARS
+        || node.owns(userId);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.cluster;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A consistent-hash ring of cluster nodes. Every node is placed on the ring
+ * at many points, and a key belongs to the first nodes found clockwise from
+ * its hash, so adding or removing a node only moves the keys next to its
+ * points. The first node is a key's owner and the next distinct one its
+ * backup, which becomes the owner when the owner leaves the ring.
+ */
+public final class HashRing {
+
+  /** The number of points per node, which evens out the share of keys. */
+  public static final int POINTS_PER_NODE = 128;
+
+  private static final HashFunction HASH = Hashing.murmur3_32();
+
+  private final ImmutableList<InetSocketAddress> nodes;
+  private final long[] points;
+  private final InetSocketAddress[] pointNodes;
+
+  /**
+   * Creates a {@link HashRing}.
+   *
+   * @param nodes the nodes of the cluster. Cannot be {@code null} or empty.
+   */
+  public HashRing(Collection<InetSocketAddress> nodes) {
+    checkNotNull(nodes, "nodes cannot be null.");
+    checkArgument(!nodes.isEmpty(), "nodes cannot be empty.");
+    this.nodes = ImmutableList.copyOf(nodes);
+    TreeMap<Long, InetSocketAddress> ring = new TreeMap<>();
+    for (InetSocketAddress node : this.nodes) {
+      for (int i = 0; i < POINTS_PER_NODE; i++) {
+        ring.put(hash(name(node) + "#" + i), node);
+      }
+    }
+    points = new long[ring.size()];
+    pointNodes = new InetSocketAddress[ring.size()];
+    int i = 0;
+    for (Map.Entry<Long, InetSocketAddress> point : ring.entrySet()) {
+      points[i] = point.getKey();
+      pointNodes[i++] = point.getValue();
+    }
+  }
+
+  public ImmutableList<InetSocketAddress> getNodes() {
+    return nodes;
+  }
+
+  /**
+   * Gets the nodes a key belongs to, owner first.
+   *
+   * @param key the key. Cannot be {@code null}.
+   * @param count the number of nodes wanted. Must be positive.
+   * @return up to {@code count} distinct nodes, fewer if the ring has fewer.
+   */
+  public List<InetSocketAddress> getNodes(String key, int count) {
+    checkNotNull(key, "key cannot be null.");
+    checkArgument(count > 0, "count must be positive.");
+    List<InetSocketAddress> found = new ArrayList<>(count);
+    int start = firstPointAtOrAfter(hash(key));
+    for (int i = 0; i < points.length && found.size() < count; i++) {
+      InetSocketAddress node = pointNodes[(start + i) % points.length];
+      if (!found.contains(node)) {
+        found.add(node);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Gets the node that owns a key.
+   *
+   * @param key the key. Cannot be {@code null}.
+   * @return the owner.
+   */
+  public InetSocketAddress getOwner(String key) {
+    checkNotNull(key, "key cannot be null.");
+    return pointNodes[firstPointAtOrAfter(hash(key)) % points.length];
+  }
+
+  private int firstPointAtOrAfter(long hash) {
+    int low = 0;
+    int high = points.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (points[middle] < hash) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Gets the name a node is hashed by, which is the same on every node.
+   *
+   * @param node the node. Cannot be {@code null}.
+   * @return {@code host:port}.
+   */
+  static String name(InetSocketAddress node) {
+    return node.getHostString() + ":" + node.getPort();
+  }
+
+  private static long hash(String value) {
+    return HASH.hashString(value, StandardCharsets.UTF_8).asInt()
+        & 0xffffffffL;
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.cluster;
+
+import com.example.stats.UserStatistics;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message between cluster nodes, and the binary protocol they are sent
+ * with. A connection carries frames of {@code <int length> <message>...},
+ * so a sender batches whatever messages are waiting into one write. Each
+ * message starts with its type byte, followed by:
+ *
+ * <ul>
+ * <li>{@link #WIN}: {@code <user ID> <long guesses>}, a win to record at
+ * the user's owner.
+ * <li>{@link #LOSS}: {@code <user ID>}, a loss to record at the owner.
+ * <li>{@link #STATE}: {@code <user ID> <long counter>...}, a user's
+ * statistics, with the counters of {@link UserStatistics#toValues()}.
+ * <li>{@link #FETCH}: {@code <long request ID> <user ID>}, asks the owner
+ * for a user's statistics.
+ * <li>{@link #FETCH_REPLY}: {@code <long request ID> <byte found> <long
+ * counter>...}, answers a {@link #FETCH}, with the counters if found.
+ * </ul>
+ *
+ * <p>User IDs are written as {@code <short length> <UTF-8 bytes>}, and all
+ * numbers are big-endian.
+ */
+final class Message {
+
+  static final byte WIN = 1;
+  static final byte LOSS = 2;
+  static final byte STATE = 3;
+  static final byte FETCH = 4;
+  static final byte FETCH_REPLY = 5;
+
+  /** The longest user ID that fits in a message in any encoding. */
+  static final int MAX_USER_ID_CHARS = 0xffff / 3;
+
+  // Guards against reading a huge frame from a confused peer.
+  private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+  final byte type;
+  final String userId;
+  final long number;
+  // A STATE message reads the latest counters when it is sent, so a
+  // replica always gets the newest state however late the message is.
+  final UserStatistics user;
+  final long[] values;
+
+  private Message(byte type, String userId, long number, UserStatistics user,
+      long[] values) {
+    this.type = type;
+    this.userId = userId;
+    this.number = number;
+    this.user = user;
+    this.values = values;
+  }
+
+  static Message win(String userId, long guesses) {
+    return new Message(WIN, userId, guesses, null, null);
+  }
+
+  static Message loss(String userId) {
+    return new Message(LOSS, userId, 0, null, null);
+  }
+
+  static Message state(UserStatistics user) {
+    return new Message(STATE, user.getUserId(), 0, user, null);
+  }
+
+  static Message fetch(long requestId, String userId) {
+    return new Message(FETCH, userId, requestId, null, null);
+  }
+
+  /**
+   * Creates the reply to a {@link #FETCH}.
+   *
+   * @param requestId the ID of the request.
+   * @param values the user's counters, or {@code null} if unknown.
+   */
+  static Message fetchReply(long requestId, long[] values) {
+    return new Message(FETCH_REPLY, null, requestId, null, values);
+  }
+
+  void writeTo(DataOutputStream out) throws IOException {
+    out.writeByte(type);
+    switch (type) {
+      case WIN:
+        writeUserId(out, userId);
+        out.writeLong(number);
+        break;
+      case LOSS:
+        writeUserId(out, userId);
+        break;
+      case STATE:
+        writeUserId(out, userId);
+        writeValues(out, user.toValues());
+        break;
+      case FETCH:
+        out.writeLong(number);
+        writeUserId(out, userId);
+        break;
+      case FETCH_REPLY:
+        out.writeLong(number);
+        out.writeBoolean(values != null);
+        if (values != null) {
+          writeValues(out, values);
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unknown message type " + type);
+    }
+  }
+
+  /**
+   * Reads the next message of a frame.
+   *
+   * @param frame the frame, positioned at a message.
+   * @return the message. A {@link #STATE} message carries its counters in
+   * {@link #values}.
+   */
+  static Message readFrom(ByteBuffer frame) throws IOException {
+    byte type = frame.get();
+    switch (type) {
+      case WIN:
+        return win(readUserId(frame), frame.getLong());
+      case LOSS:
+        return loss(readUserId(frame));
+      case STATE:
+        return new Message(STATE, readUserId(frame), 0, null,
+            readValues(frame));
+      case FETCH: {
+        long requestId = frame.getLong();
+        return fetch(requestId, readUserId(frame));
+      }
+      case FETCH_REPLY: {
+        long requestId = frame.getLong();
+        return fetchReply(requestId,
+            frame.get() != 0 ? readValues(frame) : null);
+      }
+      default:
+        throw new IOException("Unknown message type " + type);
+    }
+  }
+
+  /**
+   * Reads a frame.
+   *
+   * @param in the connection.
+   * @return the frame, or {@code null} if the connection was closed.
+   */
+  static ByteBuffer readFrame(DataInputStream in) throws IOException {
+    int length;
+    try {
+      length = in.readInt();
+    } catch (EOFException e) {
+      return null;
+    }
+    if (length < 0 || length > MAX_FRAME_BYTES) {
+      throw new IOException("Bad frame length " + length);
+    }
+    byte[] frame = new byte[length];
+    in.readFully(frame);
+    return ByteBuffer.wrap(frame);
+  }
+
+  private static void writeUserId(DataOutputStream out, String userId)
+      throws IOException {
+    byte[] bytes = userId.getBytes(StandardCharsets.UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readUserId(ByteBuffer frame) {
+    byte[] bytes = new byte[frame.getShort() & 0xffff];
+    frame.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeValues(DataOutputStream out, long[] values)
+      throws IOException {
+    for (long value : values) {
+      out.writeLong(value);
+    }
+  }
+
+  private static long[] readValues(ByteBuffer frame) {
+    long[] values = new long[UserStatistics.VALUE_COUNT];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = frame.getLong();
+    }
+    return values;
+  }
+}
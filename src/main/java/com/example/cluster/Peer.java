@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The connection from a node to another one. Messages are queued without
+ * blocking and sent by a thread of the peer's own, which batches all the
+ * waiting messages into one frame per write. When the queue is full or the
+ * other node cannot be reached, messages are dropped and counted, as
+ * requests must not wait for the cluster. Frames coming back on the
+ * connection, the replies to fetches, go to the node.
+ */
+final class Peer {
+
+  private static final Logger LOGGER = Logger.getLogger(Peer.class.getName());
+
+  private static final int MAX_BATCH = 512;
+  private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+  private static final long RETRY_MILLIS = 200;
+  private static final int BUFFER_BYTES = 64 * 1024;
+
+  private final InetSocketAddress address;
+  private final ClusterNode node;
+  private final BlockingQueue<Message> queue;
+  private final Thread sender;
+  private final LongAdder sent = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+  private final DataOutputStream frameOut = new DataOutputStream(frame);
+  private volatile boolean running = true;
+
+  private Socket socket;
+  private DataOutputStream out;
+
+  Peer(InetSocketAddress address, ClusterNode node, int queueSize) {
+    this.address = address;
+    this.node = node;
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.sender = new Thread(this::sendLoop,
+        "cluster-peer-" + HashRing.name(address));
+    sender.setDaemon(true);
+    sender.start();
+  }
+
+  /**
+   * Queues a message. Never blocks.
+   *
+   * @return {@code false} if the message was dropped.
+   */
+  boolean send(Message message) {
+    if (running && queue.offer(message)) {
+      return true;
+    }
+    dropped.increment();
+    return false;
+  }
+
+  /** Sends the queued messages, then closes the connection. */
+  void close() throws InterruptedException {
+    running = false;
+    sender.join(TimeUnit.SECONDS.toMillis(5));
+    disconnect();
+  }
+
+  long getSent() {
+    return sent.sum();
+  }
+
+  long getDropped() {
+    return dropped.sum();
+  }
+
+  private void sendLoop() {
+    List<Message> batch = new ArrayList<>(MAX_BATCH);
+    try {
+      while (running || !queue.isEmpty()) {
+        Message first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, MAX_BATCH - 1);
+        try {
+          write(batch);
+          sent.add(batch.size());
+        } catch (IOException e) {
+          dropped.add(batch.size());
+          LOGGER.log(Level.FINE, "Could not send to " + address, e);
+          disconnect();
+          Thread.sleep(RETRY_MILLIS);
+        }
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void write(List<Message> batch) throws IOException {
+    frame.reset();
+    for (Message message : batch) {
+      message.writeTo(frameOut);
+    }
+    frameOut.flush();
+    DataOutputStream connection = connect();
+    connection.writeInt(frame.size());
+    frame.writeTo(connection);
+    connection.flush();
+  }
+
+  private DataOutputStream connect() throws IOException {
+    if (out != null) {
+      return out;
+    }
+    Socket connection = new Socket();
+    connection.setTcpNoDelay(true);
+    connection.connect(address, CONNECT_TIMEOUT_MILLIS);
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(connection.getInputStream(), BUFFER_BYTES));
+    Thread reader = new Thread(() -> node.serve(connection, in, null),
+        "cluster-reply-" + HashRing.name(address));
+    reader.setDaemon(true);
+    reader.start();
+    socket = connection;
+    out = new DataOutputStream(new BufferedOutputStream(
+        connection.getOutputStream(), BUFFER_BYTES));
+    return out;
+  }
+
+  private void disconnect() {
+    if (socket == null) {
+      return;
+    }
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // Already broken.
+    }
+    socket = null;
+    out = null;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.config;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Holds the current {@link ConfigSnapshot}.
+ *
+ * <p>Readers never lock: the snapshot is a single volatile reference that a
+ * reload replaces in one write. A request should {@link #pin()} the snapshot
+ * when it starts and {@link #unpin()} it when done, so that every prompt of
+ * one response comes from the same snapshot even if a reload happens in
+ * between.
+ *
+ * <p>If the {@value #DIRECTORY_PROPERTY} system property names a directory,
+ * the config and prompts are loaded from it and reloaded whenever it
+ * changes, see {@link ConfigWatcher}. Otherwise the bundled files are used.
+ */
+public final class Config {
+
+  /** System property naming a directory to load and watch. */
+  public static final String DIRECTORY_PROPERTY = "numbergenie.config.dir";
+
+  private static final Logger LOGGER = Logger.getLogger(Config.class.getName());
+
+  private static final ThreadLocal<ConfigSnapshot> PINNED = new ThreadLocal<>();
+  private static final List<Consumer<ConfigSnapshot>> WARMERS =
+      new CopyOnWriteArrayList<>();
+
+  private static volatile ConfigSnapshot current = loadInitial();
+
+  private Config() {
+  }
+
+  /**
+   * Gets the snapshot pinned by the current thread, or else the current
+   * snapshot.
+   *
+   * @return the snapshot.
+   */
+  public static ConfigSnapshot get() {
+    ConfigSnapshot pinned = PINNED.get();
+    return pinned != null ? pinned : current;
+  }
+
+  /**
+   * Pins the current snapshot to this thread until {@link #unpin()}.
+   *
+   * @return the pinned snapshot.
+   */
+  public static ConfigSnapshot pin() {
+    ConfigSnapshot snapshot = current;
+    PINNED.set(snapshot);
+    return snapshot;
+  }
+
+  public static void unpin() {
+    PINNED.remove();
+  }
+
+  /**
+   * Makes a snapshot current. Every registered warmer runs on it first, so
+   * that the objects derived from it are ready before the first request sees
+   * it.
+   *
+   * @param snapshot the new snapshot. Cannot be {@code null}.
+   */
+  public static void swap(ConfigSnapshot snapshot) {
+    checkNotNull(snapshot, "snapshot cannot be null.");
+    for (Consumer<ConfigSnapshot> warmer : WARMERS) {
+      warmer.accept(snapshot);
+    }
+    current = snapshot;
+    LOGGER.info("Config loaded from " + snapshot.getSource());
+  }
+
+  /**
+   * Registers code that builds the objects derived from a snapshot, and runs
+   * it on the current snapshot.
+   *
+   * @param warmer builds derived objects, typically through {@link
+   * ConfigSnapshot#getDerived}. Cannot be {@code null}.
+   */
+  public static void addWarmer(Consumer<ConfigSnapshot> warmer) {
+    checkNotNull(warmer, "warmer cannot be null.");
+    WARMERS.add(warmer);
+    warmer.accept(current);
+  }
+
+  private static ConfigSnapshot loadInitial() {
+    String directory = System.getProperty(DIRECTORY_PROPERTY);
+    try {
+      if (directory == null || directory.isEmpty()) {
+        return ConfigSnapshot.fromClasspath();
+      }
+      Path path = Paths.get(directory);
+      ConfigSnapshot snapshot = ConfigSnapshot.load(path);
+      ConfigWatcher.start(path);
+      return snapshot;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
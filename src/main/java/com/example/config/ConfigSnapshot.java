@@ -0,0 +1,414 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.config;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable, validated view of {@code config.properties} and every {@code
+ * prompts_<locale>.properties}. Use {@link Config#get()} for the current
+ * snapshot.
+ *
+ * <p>Objects built from a snapshot, such as image cards, can be memoized on
+ * it with {@link #getDerived(Object, Function)}, so they are rebuilt exactly
+ * once per reload.
+ */
+public final class ConfigSnapshot {
+
+  static final String CONFIG_FILE = "config.properties";
+  static final String PROMPTS_PREFIX = "prompts_";
+  static final String PROPERTIES_SUFFIX = ".properties";
+
+  /** Locales whose prompts are bundled with the app. */
+  static final List<Locale> BUNDLED_LOCALES = ImmutableList.of(
+      Locale.US, Locale.CANADA_FRENCH, Locale.FRANCE);
+
+  /** Used for locales without prompts of their own or of their language. */
+  public static final Locale DEFAULT_LOCALE = Locale.US;
+
+  private static final Pattern FORMAT_SPECIFIER = Pattern.compile(
+      "%(\\d+\\$)?[-#+ 0,(<]*\\d*(\\.\\d+)?([a-zA-Z%])");
+
+  private final Map<String, String> config;
+  private final ResourceBundle configBundle;
+  private final Map<Locale, ResourceBundle> prompts;
+  private final LocaleResolver localeResolver;
+  private final String source;
+  private final ConcurrentMap<Object, Object> derived =
+      new ConcurrentHashMap<>();
+  private final double min;
+  private final double max;
+  private final int suggestions;
+
+  /**
+   * Creates and validates a {@link ConfigSnapshot}.
+   *
+   * @param config the config properties. Cannot be {@code null}.
+   * @param prompts the prompt properties of every locale. Cannot be {@code
+   * null}.
+   * @param requiredPromptKeys the keys every locale must have, those of the
+   * bundled prompts the code reads. Cannot be {@code null}.
+   * @param source where the snapshot was loaded from, for logging.
+   * @throws IllegalArgumentException listing every problem found, if the
+   * config or prompts are invalid.
+   */
+  ConfigSnapshot(Map<String, String> config,
+      Map<Locale, Map<String, String>> prompts, Set<String> requiredPromptKeys,
+      String source) {
+    checkNotNull(config, "config cannot be null.");
+    checkNotNull(prompts, "prompts cannot be null.");
+    checkNotNull(requiredPromptKeys, "requiredPromptKeys cannot be null.");
+    List<String> problems = new ArrayList<>();
+    this.config = ImmutableMap.copyOf(config);
+    String projectId = config.get("project_id");
+    if (projectId == null || projectId.trim().isEmpty()) {
+      problems.add("project_id is missing from " + CONFIG_FILE);
+    }
+    this.min = parseNumber(config, "min", problems);
+    this.max = parseNumber(config, "max", problems);
+    this.suggestions = (int) parseNumber(config, "suggestions", problems);
+    if (min >= max) {
+      problems.add("min must be smaller than max");
+    }
+    if (suggestions < 0) {
+      problems.add("suggestions cannot be negative");
+    }
+    if (!prompts.containsKey(DEFAULT_LOCALE)) {
+      problems.add("no prompts for the default locale " + DEFAULT_LOCALE);
+    }
+    validatePrompts(prompts, requiredPromptKeys, problems);
+    if (!problems.isEmpty()) {
+      throw new IllegalArgumentException("Invalid config from " + source
+          + ": " + String.join("; ", problems));
+    }
+    ImmutableMap.Builder<Locale, ResourceBundle> bundles =
+        ImmutableMap.builder();
+    for (Map.Entry<Locale, Map<String, String>> entry : prompts.entrySet()) {
+      bundles.put(entry.getKey(),
+          new PropertiesBundle(entry.getKey(), entry.getValue()));
+    }
+    this.prompts = bundles.build();
+    this.configBundle = new PropertiesBundle(Locale.ROOT, this.config);
+    this.localeResolver = new LocaleResolver(this.prompts, DEFAULT_LOCALE);
+    this.source = source;
+  }
+
+  /**
+   * Loads the config and prompts bundled on the classpath.
+   *
+   * @return the bundled snapshot.
+   */
+  public static ConfigSnapshot fromClasspath() throws IOException {
+    return load(null);
+  }
+
+  /**
+   * Loads the config and prompts from a directory. Files missing from the
+   * directory are taken from the classpath, and the directory may add
+   * prompts for new locales.
+   *
+   * @param directory the directory to load from, or {@code null} to only
+   * use the classpath.
+   * @return the loaded snapshot.
+   * @throws IllegalArgumentException if the result is invalid.
+   */
+  public static ConfigSnapshot load(Path directory) throws IOException {
+    Map<String, String> config = readClasspath(CONFIG_FILE);
+    Map<Locale, Map<String, String>> prompts = new LinkedHashMap<>();
+    for (Locale locale : BUNDLED_LOCALES) {
+      prompts.put(locale, readClasspath(promptsFile(locale)));
+    }
+    // What the code reads, even if a directory drops a key everywhere.
+    Set<String> requiredPromptKeys =
+        ImmutableSortedSet.copyOf(prompts.get(DEFAULT_LOCALE).keySet());
+    if (directory != null) {
+      Path configFile = directory.resolve(CONFIG_FILE);
+      if (Files.isRegularFile(configFile)) {
+        config = read(configFile);
+      }
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+          PROMPTS_PREFIX + "*" + PROPERTIES_SUFFIX)) {
+        for (Path file : files) {
+          String name = file.getFileName().toString();
+          String tag = name.substring(PROMPTS_PREFIX.length(),
+              name.length() - PROPERTIES_SUFFIX.length());
+          prompts.put(parseLocale(tag), read(file));
+        }
+      }
+    }
+    return new ConfigSnapshot(config, prompts, requiredPromptKeys,
+        directory == null ? "classpath" : directory.toString());
+  }
+
+  public double getMin() {
+    return min;
+  }
+
+  public double getMax() {
+    return max;
+  }
+
+  public int getSuggestions() {
+    return suggestions;
+  }
+
+  /**
+   * Gets a value from {@code config.properties}.
+   *
+   * @param key the key.
+   * @return the value, or {@code null} if there is none.
+   */
+  public String getString(String key) {
+    return config.get(key);
+  }
+
+  /**
+   * Gets {@code config.properties} as a bundle, for the settings read once
+   * at startup through the {@code fromConfig} factories.
+   *
+   * @return the config bundle.
+   */
+  public ResourceBundle getConfig() {
+    return configBundle;
+  }
+
+  /**
+   * Gets the prompts for a locale: those of the locale itself, else those of
+   * another country with the same language, else those of {@link
+   * #DEFAULT_LOCALE}. Never throws for an unsupported locale.
+   *
+   * @param locale the locale of the request. Cannot be {@code null}.
+   * @return the prompts.
+   */
+  public ResourceBundle getPrompts(Locale locale) {
+    return localeResolver.resolve(locale).getPrompts();
+  }
+
+  /**
+   * Resolves the locale of a request to a locale with prompts.
+   *
+   * @param locale the locale of the request. Cannot be {@code null}.
+   * @return the resolution.
+   */
+  public LocaleResolver.Resolution resolveLocale(Locale locale) {
+    return localeResolver.resolve(locale);
+  }
+
+  /**
+   * Gets the locales that have prompts.
+   *
+   * @return the locales.
+   */
+  public Set<Locale> getLocales() {
+    return prompts.keySet();
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * Gets an object built from this snapshot, building it the first time it
+   * is asked for.
+   *
+   * @param key identifies the object, usually the class that builds it.
+   * @param factory builds the object from this snapshot.
+   * @return the object.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T getDerived(Object key, Function<ConfigSnapshot, T> factory) {
+    // A plain get first: computeIfAbsent locks even when the key is present.
+    Object value = derived.get(key);
+    if (value == null) {
+      value = derived.computeIfAbsent(key, k -> factory.apply(this));
+    }
+    return (T) value;
+  }
+
+  private static void validatePrompts(Map<Locale, Map<String, String>> prompts,
+      Set<String> requiredPromptKeys, List<String> problems) {
+    Set<String> keys = new TreeSet<>(requiredPromptKeys);
+    for (Map<String, String> localePrompts : prompts.values()) {
+      keys.addAll(localePrompts.keySet());
+    }
+    for (String key : keys) {
+      Locale reference = null;
+      Set<String> referenceArguments = null;
+      for (Map.Entry<Locale, Map<String, String>> entry : prompts.entrySet()) {
+        String value = entry.getValue().get(key);
+        if (value == null) {
+          problems.add(key + " is missing for " + entry.getKey());
+          continue;
+        }
+        Set<String> arguments = formatArguments(value);
+        if (referenceArguments == null) {
+          reference = entry.getKey();
+          referenceArguments = arguments;
+        } else if (!arguments.equals(referenceArguments)) {
+          problems.add(String.format(
+              "%s has format arguments %s for %s but %s for %s", key,
+              arguments, entry.getKey(), referenceArguments, reference));
+        }
+      }
+    }
+  }
+
+  /**
+   * Lists the arguments a format string uses, as argument number and
+   * conversion, e.g. {@code [1$s]}.
+   */
+  static Set<String> formatArguments(String format) {
+    Set<String> arguments = new TreeSet<>();
+    Matcher matcher = FORMAT_SPECIFIER.matcher(format);
+    int ordinary = 0;
+    while (matcher.find()) {
+      String conversion = matcher.group(3);
+      if (conversion.equals("%") || conversion.equals("n")) {
+        continue;
+      }
+      String index = matcher.group(1);
+      arguments.add((index != null ? index : ++ordinary + "$")
+          + conversion.toLowerCase(Locale.ROOT));
+    }
+    return ImmutableSortedSet.copyOf(arguments);
+  }
+
+  private static double parseNumber(Map<String, String> config, String key,
+      List<String> problems) {
+    String value = config.get(key);
+    if (value == null) {
+      problems.add(key + " is missing from " + CONFIG_FILE);
+      return 0;
+    }
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      problems.add(key + " is not a number: " + value);
+      return 0;
+    }
+  }
+
+  static String promptsFile(Locale locale) {
+    return PROMPTS_PREFIX + locale + PROPERTIES_SUFFIX;
+  }
+
+  private static Locale parseLocale(String tag) {
+    String[] parts = tag.split("_", 2);
+    return parts.length == 1 ? new Locale(parts[0])
+        : new Locale(parts[0], parts[1]);
+  }
+
+  private static Map<String, String> readClasspath(String name)
+      throws IOException {
+    try (InputStream in =
+        ConfigSnapshot.class.getClassLoader().getResourceAsStream(name)) {
+      if (in == null) {
+        throw new IOException(name + " is not on the classpath");
+      }
+      return read(in);
+    }
+  }
+
+  private static Map<String, String> read(Path file) throws IOException {
+    try (InputStream in = Files.newInputStream(file)) {
+      return read(in);
+    }
+  }
+
+  // Reads UTF-8, falling back to ISO-8859-1 for a file that is not valid
+  // UTF-8, as PropertyResourceBundle does since Java 9.
+  private static Map<String, String> read(InputStream in) throws IOException {
+    byte[] bytes = ByteStreams.toByteArray(in);
+    String text;
+    try {
+      text = StandardCharsets.UTF_8.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPORT)
+          .onUnmappableCharacter(CodingErrorAction.REPORT)
+          .decode(ByteBuffer.wrap(bytes))
+          .toString();
+    } catch (CharacterCodingException e) {
+      text = new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+    Properties properties = new Properties();
+    properties.load(new StringReader(text));
+    return Maps.fromProperties(properties);
+  }
+
+  /**
+   * A {@link ResourceBundle} over one properties file, such as one locale's
+   * prompts, so the code reads it exactly as it reads bundles loaded by
+   * {@link ResourceBundle#getBundle}.
+   */
+  private static final class PropertiesBundle extends ResourceBundle {
+
+    private final Locale locale;
+    private final Map<String, String> values;
+
+    PropertiesBundle(Locale locale, Map<String, String> values) {
+      this.locale = locale;
+      this.values = ImmutableMap.copyOf(values);
+    }
+
+    @Override
+    public Locale getLocale() {
+      return locale;
+    }
+
+    @Override
+    protected Object handleGetObject(String key) {
+      return values.get(key);
+    }
+
+    @Override
+    public Enumeration<String> getKeys() {
+      return Collections.enumeration(values.keySet());
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.config;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reloads the config and prompts from a directory whenever a file in it
+ * changes. Loading, validation and warming up all happen on the watcher's
+ * own thread, and only a valid snapshot is swapped in, so requests never
+ * wait for a reload and never see a broken config. An invalid change is
+ * logged and the current snapshot stays in place.
+ */
+public final class ConfigWatcher implements Closeable {
+
+  private static final Logger LOGGER =
+      Logger.getLogger(ConfigWatcher.class.getName());
+
+  // Editors and deploy scripts change files in several steps, so a reload
+  // waits until the directory has been quiet for this long.
+  private static final long QUIET_MILLIS = 200;
+
+  private final Path directory;
+  private final WatchService watchService;
+  private final Thread thread;
+
+  private ConfigWatcher(Path directory) throws IOException {
+    this.directory = directory;
+    this.watchService = FileSystems.getDefault().newWatchService();
+    directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_MODIFY,
+        StandardWatchEventKinds.ENTRY_DELETE);
+    this.thread = new Thread(this::run, "config-watcher");
+    thread.setDaemon(true);
+  }
+
+  /**
+   * Starts watching a directory.
+   *
+   * @param directory the directory holding {@code config.properties} and the
+   * prompts. Cannot be {@code null}.
+   * @return the running watcher.
+   */
+  public static ConfigWatcher start(Path directory) throws IOException {
+    checkNotNull(directory, "directory cannot be null.");
+    ConfigWatcher watcher = new ConfigWatcher(directory);
+    watcher.thread.start();
+    LOGGER.info("Watching " + directory + " for config changes");
+    return watcher;
+  }
+
+  /**
+   * Loads the directory and, if the result is valid, makes it the current
+   * config.
+   *
+   * @return whether the config was replaced.
+   */
+  public boolean reload() {
+    try {
+      Config.swap(ConfigSnapshot.load(directory));
+      return true;
+    } catch (IOException | RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Keeping the current config", e);
+      return false;
+    }
+  }
+
+  private void run() {
+    try {
+      while (true) {
+        drain(watchService.take());
+        WatchKey more;
+        while ((more = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS))
+            != null) {
+          drain(more);
+        }
+        reload();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      // Closed.
+    }
+  }
+
+  private static void drain(WatchKey key) {
+    key.pollEvents();
+    key.reset();
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.config;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps the locale of a request to the prompts of a supported locale, without
+ * {@link ResourceBundle#getBundle}'s candidate search and without throwing.
+ *
+ * <p>The locales with prompts, and the bare language of each, are resolved
+ * up front into a table. Any other locale is resolved once, falling back to
+ * its language and then to the default locale, and the result is cached,
+ * so unsupported locales cost a single map lookup from then on. The cache is
+ * bounded so that arbitrary locales cannot grow it without limit.
+ */
+public final class LocaleResolver {
+
+  /** How a requested locale was matched. */
+  public enum Match {
+    /** The locale has prompts of its own. */
+    EXACT,
+    /** The prompts of another locale with the same language are used. */
+    LANGUAGE,
+    /** The prompts of the default locale are used. */
+    DEFAULT
+  }
+
+  // Locales beyond this many are resolved on every request, uncached.
+  static final int MAX_CACHED_LOCALES = 256;
+
+  private final Map<Locale, ResourceBundle> prompts;
+  private final Resolution defaultResolution;
+  private final Map<Locale, Resolution> table;
+  private final ConcurrentMap<Locale, Resolution> cache =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Creates a {@link LocaleResolver} and precomputes its table.
+   *
+   * @param prompts the prompts of every supported locale. Cannot be {@code
+   * null}.
+   * @param defaultLocale the locale to fall back to. Must have prompts.
+   */
+  LocaleResolver(Map<Locale, ResourceBundle> prompts, Locale defaultLocale) {
+    checkNotNull(prompts, "prompts cannot be null.");
+    checkArgument(prompts.containsKey(defaultLocale),
+        "defaultLocale must have prompts.");
+    this.prompts = prompts;
+    this.defaultResolution = new Resolution(defaultLocale,
+        prompts.get(defaultLocale), Match.DEFAULT);
+    Map<Locale, Resolution> table = new HashMap<>();
+    for (Locale locale : prompts.keySet()) {
+      table.put(locale,
+          new Resolution(locale, prompts.get(locale), Match.EXACT));
+    }
+    for (Locale locale : prompts.keySet()) {
+      Locale language = new Locale(locale.getLanguage());
+      if (!table.containsKey(language)) {
+        table.put(language, resolveUncached(language));
+      }
+    }
+    this.table = ImmutableMap.copyOf(table);
+  }
+
+  /**
+   * Resolves a locale.
+   *
+   * @param locale the requested locale. Cannot be {@code null}.
+   * @return the resolution, never {@code null}.
+   */
+  public Resolution resolve(Locale locale) {
+    checkNotNull(locale, "locale cannot be null.");
+    Resolution resolution = table.get(locale);
+    if (resolution != null) {
+      return resolution;
+    }
+    resolution = cache.get(locale);
+    if (resolution != null) {
+      return resolution;
+    }
+    resolution = resolveUncached(locale);
+    if (cache.size() < MAX_CACHED_LOCALES) {
+      cache.putIfAbsent(locale, resolution);
+    }
+    return resolution;
+  }
+
+  private Resolution resolveUncached(Locale locale) {
+    // Locales built from tags like "fr-ca" put the whole tag in the language.
+    String language = locale.getLanguage();
+    String country = locale.getCountry();
+    int separator = Math.max(language.indexOf('-'), language.indexOf('_'));
+    if (separator >= 0) {
+      country = language.substring(separator + 1);
+      language = language.substring(0, separator);
+    }
+    Locale normalized = new Locale(language, country);
+    ResourceBundle exact = prompts.get(normalized);
+    if (exact != null) {
+      return new Resolution(normalized, exact, Match.EXACT);
+    }
+    Locale best = null;
+    for (Locale candidate : prompts.keySet()) {
+      if (!candidate.getLanguage().equals(normalized.getLanguage())) {
+        continue;
+      }
+      // Prefer the language's home country, e.g. fr_FR for fr.
+      if (best == null || candidate.getCountry()
+          .equalsIgnoreCase(candidate.getLanguage())) {
+        best = candidate;
+      }
+    }
+    if (best != null) {
+      return new Resolution(best, prompts.get(best), Match.LANGUAGE);
+    }
+    return defaultResolution;
+  }
+
+  /**
+   * The prompts a requested locale resolved to.
+   */
+  public static final class Resolution {
+
+    private final Locale locale;
+    private final ResourceBundle prompts;
+    private final Match match;
+
+    Resolution(Locale locale, ResourceBundle prompts, Match match) {
+      this.locale = locale;
+      this.prompts = prompts;
+      this.match = match;
+    }
+
+    /**
+     * Gets the supported locale whose prompts are used.
+     *
+     * @return the supported locale.
+     */
+    public Locale getLocale() {
+      return locale;
+    }
+
+    public ResourceBundle getPrompts() {
+      return prompts;
+    }
+
+    public Match getMatch() {
+      return match;
+    }
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.jfr;
+
+import com.google.actions.api.ActionRequest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Emits the Number Genie Flight Recorder events when the runtime has Flight
+ * Recorder, and does nothing otherwise.
+ *
+ * <p>Only this class and its handle interfaces are used on the request path.
+ * The event classes extend {@code jdk.jfr.Event}, so they are only loaded,
+ * by name, once {@code jdk.jfr} is known to be present: a Java 8 runtime
+ * without Flight Recorder gets shared no-op handles instead of a {@link
+ * NoClassDefFoundError}.
+ */
+public final class Events {
+
+  private static final Logger LOGGER =
+      Logger.getLogger(Events.class.getName());
+
+  private static final Sink SINK = load();
+
+  private Events() {
+  }
+
+  /**
+   * Tells whether the runtime has Flight Recorder, so events are emitted and
+   * {@link FlightRecordings} can be used.
+   *
+   * @return {@code true} if Flight Recorder is available.
+   */
+  public static boolean isAvailable() {
+    return SINK != NoSink.INSTANCE;
+  }
+
+  /**
+   * Begins the event of the webhook request about to be handled on this
+   * thread.
+   *
+   * @return the event, to end once the request is handled.
+   */
+  public static Intent beginRequest() {
+    return SINK.beginRequest();
+  }
+
+  /**
+   * Records the branch {@code provide_guess} took for the request in
+   * progress on this thread, if its event is recorded.
+   *
+   * @param branch the name of the branch.
+   */
+  public static void setBranch(String branch) {
+    SINK.setBranch(branch);
+  }
+
+  /**
+   * Begins the event of a prompt about to be built.
+   *
+   * @return the event, to end once the prompt is built.
+   */
+  public static PromptBuild beginPrompt() {
+    return SINK.beginPrompt();
+  }
+
+  /**
+   * Begins the event of a webhook response about to be encoded and written.
+   *
+   * @return the event, to end once the response is written.
+   */
+  public static Response beginResponse() {
+    return SINK.beginResponse();
+  }
+
+  /** The event of a webhook request in progress. */
+  public interface Intent {
+
+    /**
+     * Ends the event, and commits it if it is recorded.
+     *
+     * @param request the parsed request, or {@code null} if it could not be
+     * parsed.
+     * @param failed whether the request failed.
+     */
+    void endRequest(ActionRequest request, boolean failed);
+  }
+
+  /** The event of a prompt being built. */
+  public interface PromptBuild {
+
+    /**
+     * Ends the event, and commits it if it is recorded.
+     *
+     * @param promptId the ID of the prompt.
+     */
+    void endPrompt(String promptId);
+  }
+
+  /** The event of a webhook response being encoded and written. */
+  public interface Response {
+
+    /**
+     * Records how the response was sent.
+     *
+     * @param encoding the content coding the response was sent with.
+     * @param sentBytes the number of bytes sent.
+     */
+    void setSent(String encoding, long sentBytes);
+
+    /**
+     * Ends the event, and commits it if it is recorded.
+     *
+     * @param requestBytes the size of the request.
+     * @param responseBytes the size of the response before compression.
+     */
+    void endResponse(long requestBytes, long responseBytes);
+  }
+
+  /** Creates the events. */
+  interface Sink {
+
+    Intent beginRequest();
+
+    void setBranch(String branch);
+
+    PromptBuild beginPrompt();
+
+    Response beginResponse();
+  }
+
+  private static Sink load() {
+    try {
+      Class.forName("jdk.jfr.Event", false, Events.class.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      LOGGER.info("Flight Recorder is not available, events are disabled.");
+      return NoSink.INSTANCE;
+    }
+    try {
+      return Class.forName(Events.class.getPackage().getName() + ".JfrSink")
+          .asSubclass(Sink.class).getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      LOGGER.log(Level.WARNING, "Flight Recorder events are disabled", e);
+      return NoSink.INSTANCE;
+    }
+  }
+
+  // Does nothing, without allocating.
+  private enum NoSink implements Sink, Intent, PromptBuild, Response {
+    INSTANCE;
+
+    @Override
+    public Intent beginRequest() {
+      return this;
+    }
+
+    @Override
+    public void setBranch(String branch) {
+    }
+
+    @Override
+    public PromptBuild beginPrompt() {
+      return this;
+    }
+
+    @Override
+    public Response beginResponse() {
+      return this;
+    }
+
+    @Override
+    public void endRequest(ActionRequest request, boolean failed) {
+    }
+
+    @Override
+    public void endPrompt(String promptId) {
+    }
+
+    @Override
+    public void setSent(String encoding, long sentBytes) {
+    }
+
+    @Override
+    public void endResponse(long requestBytes, long responseBytes) {
+    }
+  }
+}
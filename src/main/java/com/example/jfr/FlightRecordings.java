@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.jfr;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Starts, stops and dumps one Flight Recorder recording on demand, with the
+ * Number Genie events enabled alongside the JDK's GC, lock and thread
+ * events.
+ */
+public final class FlightRecordings {
+
+  /** The recording settings used unless others are given. */
+  public static final String DEFAULT_SETTINGS = "profile";
+
+  // How much recorded data is kept while recording, whichever limit is hit
+  // first, so a forgotten recording cannot fill the disk.
+  private static final Duration MAX_AGE = Duration.ofMinutes(30);
+  private static final long MAX_SIZE_BYTES = 256L * 1024 * 1024;
+
+  private static final FlightRecordings INSTANCE = new FlightRecordings();
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private Recording recording;
+
+  FlightRecordings() {
+  }
+
+  /**
+   * Gets the recordings controller shared by the whole process.
+   *
+   * @return the process-wide {@link FlightRecordings}.
+   */
+  public static FlightRecordings getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Starts a recording, unless one is already running.
+   *
+   * @param settings the name of a JDK recording configuration, such as
+   * {@code default} or {@code profile}. Cannot be {@code null}.
+   * @return whether a new recording was started.
+   * @throws IllegalArgumentException if there is no such configuration.
+   */
+  public boolean start(String settings) throws IOException {
+    checkNotNull(settings, "settings cannot be null.");
+    Configuration configuration;
+    try {
+      configuration = Configuration.getConfiguration(settings);
+    } catch (ParseException e) {
+      throw new IllegalArgumentException("Unknown settings: " + settings, e);
+    }
+    lock.lock();
+    try {
+      if (recording != null) {
+        return false;
+      }
+      Recording started = new Recording(configuration);
+      started.setName("numbergenie");
+      started.setMaxAge(MAX_AGE);
+      started.setMaxSize(MAX_SIZE_BYTES);
+      started.enable(IntentEvent.class);
+      started.enable(PromptEvent.class);
+      started.enable(WebhookResponseEvent.class);
+      started.start();
+      recording = started;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Writes what the running recording has captured so far to a new file,
+   * and keeps recording.
+   *
+   * @return the file, which the caller must delete, or {@code null} if no
+   * recording is running.
+   */
+  public Path dump() throws IOException {
+    lock.lock();
+    try {
+      return recording == null ? null : dumpTo(recording);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops the running recording and writes it to a new file.
+   *
+   * @return the file, which the caller must delete, or {@code null} if no
+   * recording is running.
+   */
+  public Path stop() throws IOException {
+    lock.lock();
+    try {
+      if (recording == null) {
+        return null;
+      }
+      try {
+        recording.stop();
+        return dumpTo(recording);
+      } finally {
+        recording.close();
+        recording = null;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Describes the running recording, for JSON serialization.
+   *
+   * @return the state of the recording, and its start time and size if one
+   * is running.
+   */
+  public Map<String, Object> toSummary() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    lock.lock();
+    try {
+      RecordingState state =
+          recording == null ? RecordingState.CLOSED : recording.getState();
+      summary.put("state", state.name().toLowerCase(Locale.ROOT));
+      if (recording != null) {
+        summary.put("startTime", String.valueOf(recording.getStartTime()));
+        summary.put("sizeBytes", recording.getSize());
+      }
+    } finally {
+      lock.unlock();
+    }
+    return summary;
+  }
+
+  private static Path dumpTo(Recording recording) throws IOException {
+    Path file = Files.createTempFile("numbergenie-", ".jfr");
+    try {
+      recording.dump(file);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+    return file;
+  }
+}
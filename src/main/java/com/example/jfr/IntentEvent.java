@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.jfr;
+
+import com.google.actions.api.ActionRequest;
+import com.google.common.annotations.VisibleForTesting;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A webhook request handled by {@link com.example.NumberGenieApp}, from
+ * routing to the serialized response.
+ *
+ * <p>Like every event here, it follows the usual Flight Recorder pattern:
+ * create, {@link #begin()}, and only fill in the fields once {@link
+ * #shouldCommit()} says the event will be recorded. While no recording
+ * enables it, the event costs next to nothing.
+ */
+@Name("com.example.numbergenie.Intent")
+@Label("Intent")
+@Category("Number Genie")
+@Description("A webhook request handled by an intent handler")
+@StackTrace(false)
+public final class IntentEvent extends jdk.jfr.Event
+    implements Events.Intent {
+
+  // The event of the request in progress on this thread, only while enabled.
+  private static final ThreadLocal<IntentEvent> CURRENT = new ThreadLocal<>();
+
+  @Label("Intent")
+  public String intent;
+
+  @Label("Branch")
+  @Description("The outcome of provide_guess, or null for other intents")
+  public String branch;
+
+  @Label("Locale")
+  public String locale;
+
+  @Label("Failed")
+  public boolean failed;
+
+  /**
+   * Begins an event for the request about to be handled on this thread.
+   *
+   * @return the event.
+   */
+  public static IntentEvent beginRequest() {
+    IntentEvent event = new IntentEvent();
+    if (event.isEnabled()) {
+      event.begin();
+      CURRENT.set(event);
+    }
+    return event;
+  }
+
+  /**
+   * Records the branch taken for the request in progress on this thread, if
+   * its event is enabled.
+   *
+   * @param branch the name of the branch.
+   */
+  public static void setBranch(String branch) {
+    IntentEvent event = CURRENT.get();
+    if (event != null) {
+      event.branch = branch;
+    }
+  }
+
+  @VisibleForTesting
+  static IntentEvent current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Ends the event begun by {@link #beginRequest()}, and commits it if it is
+   * recorded.
+   *
+   * @param request the parsed request, or {@code null} if it could not be
+   * parsed.
+   * @param failed whether the request failed.
+   */
+  @Override
+  public void endRequest(ActionRequest request, boolean failed) {
+    // Nothing was begun if the event was disabled at beginRequest().
+    if (CURRENT.get() != this) {
+      return;
+    }
+    // Cleared even if the recording stopped since, so that a later request on
+    // this thread cannot see this event.
+    CURRENT.remove();
+    if (!isEnabled()) {
+      return;
+    }
+    end();
+    if (shouldCommit()) {
+      if (request != null) {
+        this.intent = request.getIntent();
+        this.locale = request.getLocale().toLanguageTag();
+      }
+      this.failed = failed;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.jfr;
+
+/**
+ * Creates the Flight Recorder events. Loaded by {@link Events} only when the
+ * runtime has Flight Recorder.
+ */
+final class JfrSink implements Events.Sink {
+
+  @Override
+  public Events.Intent beginRequest() {
+    return IntentEvent.beginRequest();
+  }
+
+  @Override
+  public void setBranch(String branch) {
+    IntentEvent.setBranch(branch);
+  }
+
+  @Override
+  public Events.PromptBuild beginPrompt() {
+    PromptEvent event = new PromptEvent();
+    event.begin();
+    return event;
+  }
+
+  @Override
+  public Events.Response beginResponse() {
+    WebhookResponseEvent event = new WebhookResponseEvent();
+    event.begin();
+    return event;
+  }
+}
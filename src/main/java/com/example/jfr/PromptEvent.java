@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The building of one prompt by {@link com.example.prompts.Prompts}.
+ */
+@Name("com.example.numbergenie.Prompt")
+@Label("Prompt")
+@Category("Number Genie")
+@Description("A prompt built for a response")
+@StackTrace(false)
+public final class PromptEvent extends jdk.jfr.Event
+    implements Events.PromptBuild {
+
+  @Label("Prompt")
+  public String promptId;
+
+  @Override
+  public void endPrompt(String promptId) {
+    end();
+    if (shouldCommit()) {
+      this.promptId = promptId;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The encoding and writing of one webhook response by {@link
+ * com.example.ActionsServlet}.
+ */
+@Name("com.example.numbergenie.WebhookResponse")
+@Label("Webhook Response")
+@Category("Number Genie")
+@Description("A webhook response encoded and written to the client")
+@StackTrace(false)
+public final class WebhookResponseEvent extends jdk.jfr.Event
+    implements Events.Response {
+
+  @Label("Request Size")
+  @DataAmount
+  public long requestBytes;
+
+  @Label("Response Size")
+  @Description("The size of the JSON response before compression")
+  @DataAmount
+  public long responseBytes;
+
+  @Label("Sent Size")
+  @DataAmount
+  public long sentBytes;
+
+  @Label("Content Encoding")
+  public String encoding;
+
+  @Override
+  public void setSent(String encoding, long sentBytes) {
+    this.encoding = encoding;
+    this.sentBytes = sentBytes;
+  }
+
+  @Override
+  public void endResponse(long requestBytes, long responseBytes) {
+    end();
+    if (shouldCommit()) {
+      this.requestBytes = requestBytes;
+      this.responseBytes = responseBytes;
+      commit();
+    }
+  }
+}
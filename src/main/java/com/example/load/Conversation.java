@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.load;
+
+import com.example.simulation.Agent;
+import com.example.simulation.Agent.Hint;
+import com.example.simulation.Agents;
+import com.example.util.DialogflowRequestBuilder;
+import com.example.util.DialogflowResponses;
+import com.google.gson.JsonObject;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The client side of one simulated user talking to the webhook. It carries
+ * the output contexts of every response into the next request, so the
+ * server sees the same conversation state it would see from Dialogflow.
+ *
+ * <p>A {@link Conversation} has at most one request in flight, so turns of
+ * the same session are always sent in order.
+ */
+class Conversation {
+
+  private static final String YES_NO_CONTEXT = "yes_no";
+
+  private final String id;
+  private final Random random;
+  private final Agent agent;
+  private int session;
+  private String lastResponse;
+  private String lastIntent;
+  private int reprompts;
+  private Hint hint = Hint.NONE;
+  private boolean gameOver;
+
+  Conversation(String id, long seed) {
+    this.id = id;
+    this.random = new Random(seed);
+    this.agent = Agents.create("noisy", seed);
+  }
+
+  /**
+   * Builds the next request of this conversation.
+   *
+   * @param mix the intents to pick from in the middle of a game.
+   * @return the webhook request body.
+   */
+  String nextRequest(IntentMix mix) {
+    String sessionId = id + "-" + session;
+    if (lastResponse == null) {
+      lastIntent = "start_game";
+    } else if (gameOver) {
+      lastIntent = "play_again_yes";
+    } else {
+      lastIntent = mix.pick(random);
+    }
+    DialogflowRequestBuilder builder = new DialogflowRequestBuilder(lastIntent)
+        .setSessionId(sessionId)
+        .setUserId(id);
+    if (lastResponse != null) {
+      builder.setContextsFromResponse(lastResponse);
+    }
+    if (lastIntent.equals("provide_guess")) {
+      builder.setParameter("guess", (double) agent.nextGuess(hint));
+    }
+    // The Assistant counts consecutive no-input reprompts for the app.
+    if (lastIntent.equals("no_input")) {
+      builder.setRepromptCount(reprompts++);
+    } else {
+      reprompts = 0;
+    }
+    return builder.build();
+  }
+
+  /**
+   * Moves the conversation along after a response to {@link
+   * #nextRequest(IntentMix)}.
+   *
+   * @param responseJson the webhook response body, or {@code null} if the
+   * request failed, which starts over with a new session.
+   */
+  void onResponse(String responseJson) {
+    if (responseJson == null) {
+      endSession();
+      return;
+    }
+    JsonObject response = DialogflowResponses.parse(responseJson);
+    if (!DialogflowResponses.expectsUserResponse(response)) {
+      endSession();
+      return;
+    }
+    lastResponse = responseJson;
+    Map<String, Object> data =
+        DialogflowResponses.getConversationData(response);
+    if (lastIntent.equals("start_game")
+        || lastIntent.equals("play_again_yes")) {
+      gameOver = false;
+      hint = Hint.NONE;
+      agent.startGame(((Double) data.get("min")).intValue(),
+          ((Double) data.get("max")).intValue());
+    } else if (lastIntent.equals("provide_guess")) {
+      gameOver = DialogflowResponses.hasContext(response, YES_NO_CONTEXT);
+      hint = Hint.fromConversationData((String) data.get("hint"));
+    }
+  }
+
+  private void endSession() {
+    session++;
+    lastResponse = null;
+    reprompts = 0;
+    gameOver = false;
+  }
+}
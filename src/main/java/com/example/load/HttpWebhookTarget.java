@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.load;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Posts webhook requests to a server. Connections are kept alive and reused
+ * by {@link HttpURLConnection}.
+ */
+public class HttpWebhookTarget implements WebhookTarget {
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+  static final int READ_TIMEOUT_MILLIS = 30_000;
+
+  private final URL url;
+
+  /**
+   * Creates a {@link HttpWebhookTarget}.
+   *
+   * @param url the webhook URL. Cannot be {@code null}.
+   */
+  public HttpWebhookTarget(URL url) {
+    checkNotNull(url, "url cannot be null.");
+    this.url = url;
+  }
+
+  public URL getUrl() {
+    return url;
+  }
+
+  @Override
+  public String send(String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+    connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    connection.setRequestProperty("Content-Type",
+        "application/json; charset=utf-8");
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(bytes);
+    }
+    int status = connection.getResponseCode();
+    if (status != HttpURLConnection.HTTP_OK) {
+      // Drain the error body so the connection can be kept alive.
+      try (InputStream error = connection.getErrorStream()) {
+        if (error != null) {
+          ByteStreams.exhaust(error);
+        }
+      }
+      throw new IOException("HTTP " + status);
+    }
+    try (InputStream in = connection.getInputStream()) {
+      return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+    }
+  }
+}
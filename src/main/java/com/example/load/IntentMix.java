@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.load;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The relative frequency of the intents sent in the middle of a game. Games
+ * always begin with {@code start_game}, and continue with {@code
+ * play_again_yes} after a win, so neither needs to be part of the mix.
+ *
+ * <p>A mix is written as comma separated {@code intent=weight} pairs, for
+ * example {@code provide_guess=90,no_input=5,quit_game=5}.
+ */
+public class IntentMix {
+
+  /** A mix of mostly guesses with the occasional reprompt, miss and quit. */
+  public static final String DEFAULT =
+      "provide_guess=90,no_input=5,Default Fallback Intent=3,quit_game=2";
+
+  private final List<String> intents = new ArrayList<>();
+  private final List<Double> cumulativeWeights = new ArrayList<>();
+  private double totalWeight;
+
+  private IntentMix() {
+  }
+
+  /**
+   * Parses an intent mix such as {@code provide_guess=90,quit_game=10}.
+   *
+   * @param mix the mix. Cannot be {@code null}.
+   * @return the parsed mix.
+   */
+  public static IntentMix parse(String mix) {
+    checkNotNull(mix, "mix cannot be null.");
+    IntentMix intentMix = new IntentMix();
+    for (String entry : mix.split(",")) {
+      int equals = entry.lastIndexOf('=');
+      checkArgument(equals > 0, "Invalid intent weight: %s", entry);
+      double weight = Double.parseDouble(entry.substring(equals + 1));
+      checkArgument(weight > 0, "Intent weights must be positive.");
+      intentMix.totalWeight += weight;
+      intentMix.intents.add(entry.substring(0, equals).trim());
+      intentMix.cumulativeWeights.add(intentMix.totalWeight);
+    }
+    return intentMix;
+  }
+
+  /**
+   * Picks an intent at random according to the weights.
+   *
+   * @param random the source of randomness.
+   * @return the display name of the picked intent.
+   */
+  public String pick(Random random) {
+    double point = random.nextDouble() * totalWeight;
+    for (int i = 0; i < intents.size() - 1; i++) {
+      if (point < cumulativeWeights.get(i)) {
+        return intents.get(i);
+      }
+    }
+    return intents.get(intents.size() - 1);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    double previous = 0;
+    for (int i = 0; i < intents.size(); i++) {
+      if (builder.length() > 0) {
+        builder.append(", ");
+      }
+      double weight = cumulativeWeights.get(i) - previous;
+      previous = cumulativeWeights.get(i);
+      builder.append(String.format("%s %.0f%%", intents.get(i),
+          100 * weight / totalWeight));
+    }
+    return builder.toString();
+  }
+}
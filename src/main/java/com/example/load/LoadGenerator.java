@@ -0,0 +1,224 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.load;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.util.Flags;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * An open-loop load generator for a locally running webhook.
+ *
+ * <p>Requests are sent at the arrival rate given by a {@link RateSchedule},
+ * whether or not earlier requests have been answered, like Dialogflow
+ * sending the turns of many independent users. Each request is a turn of a
+ * {@link Conversation} that carries its conversation state between turns, so
+ * the server does the same work it does in production. Latencies are
+ * recorded from each request's scheduled send time, which corrects for
+ * coordinated omission: a stalled server cannot hide its stall by delaying
+ * the requests that would have measured it.
+ *
+ * <p>Run with {@code gradle loadtest -PloadArgs="--url=http://localhost:8080/
+ * --schedule=10-200:30,200:120"}. Flags: {@code --url}, {@code --rate} and
+ * {@code --duration} (seconds) for a constant rate or {@code --schedule},
+ * {@code --mix} (see {@link IntentMix}), {@code --connections} and {@code
+ * --seed}.
+ */
+public class LoadGenerator {
+
+  static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toNanos(5);
+
+  private final HttpWebhookTarget target;
+  private final RateSchedule schedule;
+  private final IntentMix mix;
+  private final int connections;
+  private final long seed;
+
+  private final Queue<Conversation> idleConversations =
+      new ConcurrentLinkedQueue<>();
+  private final AtomicInteger conversationCount = new AtomicInteger();
+  private final Recorder responseTime = new Recorder(HIGHEST_LATENCY, 3);
+  private final Recorder serviceTime = new Recorder(HIGHEST_LATENCY, 3);
+  private final AtomicLong sent = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+
+  /**
+   * Creates a {@link LoadGenerator}. The target must be on this machine; the
+   * generator is meant for local dev servers and the embedded server, not
+   * for deployed instances.
+   *
+   * @param url the webhook URL. Cannot be {@code null}.
+   * @param schedule the arrival rate over time. Cannot be {@code null}.
+   * @param mix the intents to send in the middle of games. Cannot be {@code
+   * null}.
+   * @param connections the number of requests that can be in flight at once.
+   * Requests beyond that queue up, and the wait counts as latency.
+   * @param seed the base seed for every conversation.
+   */
+  public LoadGenerator(URL url, RateSchedule schedule, IntentMix mix,
+      int connections, long seed) throws IOException {
+    checkNotNull(url, "url cannot be null.");
+    checkNotNull(schedule, "schedule cannot be null.");
+    checkNotNull(mix, "mix cannot be null.");
+    checkArgument(connections > 0, "connections must be positive.");
+    checkArgument(InetAddress.getByName(url.getHost()).isLoopbackAddress(),
+        "Only local targets can be load tested: %s", url);
+    this.target = new HttpWebhookTarget(url);
+    this.schedule = schedule;
+    this.mix = mix;
+    this.connections = connections;
+    this.seed = seed;
+  }
+
+  /**
+   * Sends requests for the length of the schedule, then waits for the
+   * outstanding ones to finish.
+   *
+   * @param progress called once a second with the latencies of the last
+   * second, or {@code null} for no progress reports.
+   * @return the results of the run.
+   */
+  public LoadReport run(ProgressListener progress) throws InterruptedException {
+    ExecutorService workers = Executors.newFixedThreadPool(connections);
+    ScheduledExecutorService reporter =
+        Executors.newSingleThreadScheduledExecutor();
+    Histogram totalResponseTime = new Histogram(HIGHEST_LATENCY, 3);
+    Histogram totalServiceTime = new Histogram(HIGHEST_LATENCY, 3);
+    long start = System.nanoTime();
+    reporter.scheduleAtFixedRate(() -> {
+      Histogram interval = collect(totalResponseTime, totalServiceTime);
+      if (progress != null) {
+        progress.onInterval(System.nanoTime() - start, interval, sent.get(),
+            errors.get());
+      }
+    }, 1, 1, TimeUnit.SECONDS);
+
+    long offset = 0;
+    while (offset < schedule.getDurationNanos()) {
+      long intendedStart = start + offset;
+      long wait = intendedStart - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      sent.incrementAndGet();
+      workers.execute(() -> send(intendedStart));
+      offset = schedule.nextSendTime(offset);
+    }
+    workers.shutdown();
+    workers.awaitTermination(HttpWebhookTarget.READ_TIMEOUT_MILLIS,
+        TimeUnit.MILLISECONDS);
+    long elapsed = System.nanoTime() - start;
+    reporter.shutdownNow();
+    reporter.awaitTermination(1, TimeUnit.SECONDS);
+    collect(totalResponseTime, totalServiceTime);
+    return new LoadReport(totalResponseTime, totalServiceTime, sent.get(),
+        errors.get(), elapsed);
+  }
+
+  private synchronized Histogram collect(Histogram totalResponseTime,
+      Histogram totalServiceTime) {
+    Histogram interval = responseTime.getIntervalHistogram();
+    totalResponseTime.add(interval);
+    totalServiceTime.add(serviceTime.getIntervalHistogram());
+    return interval;
+  }
+
+  private void send(long intendedStart) {
+    Conversation conversation = idleConversations.poll();
+    if (conversation == null) {
+      int id = conversationCount.getAndIncrement();
+      conversation = new Conversation("load-" + id, seed + id);
+    }
+    String responseJson = null;
+    long sendStart = System.nanoTime();
+    try {
+      responseJson = target.send(conversation.nextRequest(mix));
+    } catch (IOException | RuntimeException e) {
+      errors.incrementAndGet();
+    }
+    long end = System.nanoTime();
+    responseTime.recordValue(Math.min(end - intendedStart, HIGHEST_LATENCY));
+    serviceTime.recordValue(Math.min(end - sendStart, HIGHEST_LATENCY));
+    try {
+      conversation.onResponse(responseJson);
+    } catch (RuntimeException e) {
+      // Not a webhook response, e.g. the servlet's error text.
+      errors.incrementAndGet();
+      conversation.onResponse(null);
+    }
+    idleConversations.offer(conversation);
+  }
+
+  /**
+   * Receives a progress report once a second during a run.
+   */
+  public interface ProgressListener {
+
+    /**
+     * Called with the requests completed in the last interval.
+     *
+     * @param elapsedNanos the time since the start of the run.
+     * @param interval the response times of the last interval.
+     * @param sent the number of requests sent so far.
+     * @param errors the number of failed requests so far.
+     */
+    void onInterval(long elapsedNanos, Histogram interval, long sent,
+        long errors);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Flags flags = Flags.parse(args);
+    RateSchedule schedule = flags.has("schedule")
+        ? RateSchedule.parse(flags.getString("schedule", null))
+        : RateSchedule.constant(flags.getDouble("rate", 50),
+            flags.getLong("duration", 60));
+    IntentMix mix = IntentMix.parse(flags.getString("mix", IntentMix.DEFAULT));
+    LoadGenerator generator = new LoadGenerator(
+        new URL(flags.getString("url", "http://localhost:8080/")),
+        schedule, mix, flags.getInt("connections", 64),
+        flags.getLong("seed", 42));
+
+    System.out.printf("Schedule: %s%nIntent mix: %s%n%n", schedule, mix);
+    System.out.printf("%6s %8s %8s %10s %10s %10s %8s%n", "time", "sent",
+        "done/s", "p50(ms)", "p99(ms)", "max(ms)", "errors");
+    LoadReport report = generator.run(
+        (elapsedNanos, interval, sent, errors) -> System.out.printf(
+            "%5ds %8d %8d %10.2f %10.2f %10.2f %8d%n",
+            TimeUnit.NANOSECONDS.toSeconds(elapsedNanos), sent,
+            interval.getTotalCount(),
+            interval.getValueAtPercentile(50) / 1e6,
+            interval.getValueAtPercentile(99) / 1e6,
+            interval.getMaxValue() / 1e6, errors));
+    report.print(System.out);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.load;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+/**
+ * The results of a {@link LoadGenerator} run.
+ *
+ * <p>Two latencies are kept for every request. The response time is
+ * measured from when the request should have been sent according to the
+ * schedule, so time spent waiting behind a slow server counts against it;
+ * this is the latency users would see, corrected for coordinated omission.
+ * The service time is measured from when the request was actually sent.
+ */
+public class LoadReport {
+
+  private static final double[] PERCENTILES = {
+      50, 75, 90, 95, 99, 99.9, 99.99, 100
+  };
+
+  private final Histogram responseTime;
+  private final Histogram serviceTime;
+  private final long sent;
+  private final long errors;
+  private final long elapsedNanos;
+
+  LoadReport(Histogram responseTime, Histogram serviceTime, long sent,
+      long errors, long elapsedNanos) {
+    this.responseTime = responseTime;
+    this.serviceTime = serviceTime;
+    this.sent = sent;
+    this.errors = errors;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public Histogram getResponseTime() {
+    return responseTime;
+  }
+
+  public Histogram getServiceTime() {
+    return serviceTime;
+  }
+
+  public long getSent() {
+    return sent;
+  }
+
+  public long getCompleted() {
+    return responseTime.getTotalCount();
+  }
+
+  public long getErrors() {
+    return errors;
+  }
+
+  public double getThroughput() {
+    return getCompleted() * (double) TimeUnit.SECONDS.toNanos(1)
+        / elapsedNanos;
+  }
+
+  /**
+   * Prints the summary, a percentile table of both latencies and the full
+   * response time distribution in milliseconds.
+   *
+   * @param out where to print the report. Cannot be {@code null}.
+   */
+  public void print(PrintStream out) {
+    checkNotNull(out, "out cannot be null.");
+    out.printf("%nSent %d requests, completed %d, %d errors, %.1f req/s%n%n",
+        sent, getCompleted(), errors, getThroughput());
+    out.printf("%10s %18s %18s%n", "percentile", "response (ms)",
+        "service (ms)");
+    for (double percentile : PERCENTILES) {
+      out.printf("%10s %18.3f %18.3f%n", format(percentile),
+          millis(responseTime, percentile), millis(serviceTime, percentile));
+    }
+    out.printf("%nResponse time distribution (ms):%n");
+    responseTime.outputPercentileDistribution(out, 5,
+        (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  private static String format(double percentile) {
+    return percentile == 100 ? "max" : percentile + "%";
+  }
+
+  private static double millis(Histogram histogram, double percentile) {
+    long nanos = percentile == 100
+        ? histogram.getMaxValue()
+        : histogram.getValueAtPercentile(percentile);
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.load;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request arrival rate that changes over time, made of consecutive stages.
+ * Each stage either holds a constant rate or ramps linearly from one rate to
+ * another.
+ *
+ * <p>Schedules are written as comma separated stages of the form {@code
+ * RATE:SECONDS} or {@code FROM-TO:SECONDS}, with rates in requests per
+ * second. For example {@code 10-200:30,200:120} ramps up to 200 requests per
+ * second over 30 seconds and then holds that rate for two minutes.
+ */
+public class RateSchedule {
+
+  private final List<Stage> stages;
+  private final long durationNanos;
+
+  private RateSchedule(List<Stage> stages) {
+    this.stages = Collections.unmodifiableList(stages);
+    long total = 0;
+    for (Stage stage : stages) {
+      total += stage.durationNanos;
+    }
+    this.durationNanos = total;
+  }
+
+  /**
+   * Creates a schedule with a single constant rate.
+   *
+   * @param ratePerSecond the arrival rate. Must be positive.
+   * @param durationSeconds how long to hold the rate. Must be positive.
+   * @return the schedule.
+   */
+  public static RateSchedule constant(double ratePerSecond,
+      long durationSeconds) {
+    List<Stage> stages = new ArrayList<>();
+    stages.add(new Stage(ratePerSecond, ratePerSecond, durationSeconds));
+    return new RateSchedule(stages);
+  }
+
+  /**
+   * Parses a schedule such as {@code 10-200:30,200:120}.
+   *
+   * @param schedule the schedule. Cannot be {@code null}.
+   * @return the parsed schedule.
+   */
+  public static RateSchedule parse(String schedule) {
+    checkNotNull(schedule, "schedule cannot be null.");
+    List<Stage> stages = new ArrayList<>();
+    for (String stage : schedule.split(",")) {
+      String[] parts = stage.trim().split(":");
+      checkArgument(parts.length == 2, "Invalid stage: %s", stage);
+      String[] rates = parts[0].split("-");
+      checkArgument(rates.length <= 2, "Invalid stage: %s", stage);
+      double from = Double.parseDouble(rates[0]);
+      double to = rates.length == 2 ? Double.parseDouble(rates[1]) : from;
+      stages.add(new Stage(from, to, Long.parseLong(parts[1])));
+    }
+    return new RateSchedule(stages);
+  }
+
+  /**
+   * Gets the total length of the schedule.
+   *
+   * @return the duration in nanoseconds.
+   */
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /**
+   * Gets the arrival rate at a point of the schedule.
+   *
+   * @param elapsedNanos the time since the start of the schedule.
+   * @return the rate in requests per second, or 0 once the schedule is over.
+   */
+  public double getRate(long elapsedNanos) {
+    long stageStart = 0;
+    for (Stage stage : stages) {
+      if (elapsedNanos < stageStart + stage.durationNanos) {
+        double progress =
+            (double) (elapsedNanos - stageStart) / stage.durationNanos;
+        return stage.from + (stage.to - stage.from) * progress;
+      }
+      stageStart += stage.durationNanos;
+    }
+    return 0;
+  }
+
+  /**
+   * Gets the intended send time of the request that follows one sent at
+   * {@code elapsedNanos}. The times depend only on the schedule, never on how
+   * fast the server answers, which keeps the load open-loop.
+   *
+   * @param elapsedNanos the intended send time of the previous request.
+   * @return the intended send time of the next request, or a value of at
+   * least {@link #getDurationNanos()} once the schedule is over.
+   */
+  public long nextSendTime(long elapsedNanos) {
+    double rate = getRate(elapsedNanos);
+    while (rate <= 0 && elapsedNanos < durationNanos) {
+      // A stage at rate 0 is a pause: skip ahead to where traffic resumes.
+      elapsedNanos += TimeUnit.MILLISECONDS.toNanos(1);
+      rate = getRate(elapsedNanos);
+    }
+    if (rate <= 0) {
+      return durationNanos;
+    }
+    return elapsedNanos + (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    for (Stage stage : stages) {
+      if (builder.length() > 0) {
+        builder.append(", ");
+      }
+      builder.append(stage);
+    }
+    return builder.toString();
+  }
+
+  private static final class Stage {
+
+    private final double from;
+    private final double to;
+    private final long durationNanos;
+
+    Stage(double from, double to, long durationSeconds) {
+      checkArgument(from >= 0 && to >= 0, "Rates cannot be negative.");
+      checkArgument(durationSeconds > 0, "Stage duration must be positive.");
+      this.from = from;
+      this.to = to;
+      this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+    }
+
+    @Override
+    public String toString() {
+      long seconds = TimeUnit.NANOSECONDS.toSeconds(durationNanos);
+      return from == to
+          ? String.format("%.0f/s for %ds", from, seconds)
+          : String.format("%.0f-%.0f/s over %ds", from, to, seconds);
+    }
+  }
+}
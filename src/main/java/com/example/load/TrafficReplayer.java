@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.load;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.NumberGenieApp;
+import com.example.recording.RecordedRequest;
+import com.example.recording.TrafficReader;
+import com.example.stats.GameStatistics;
+import com.example.util.Flags;
+import java.net.URL;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Replays requests captured by {@link
+ * com.example.recording.TrafficRecorder} against a {@link WebhookTarget}.
+ *
+ * <p>Requests are sent at their recorded pace, scaled by a speed factor, or
+ * as fast as possible. Requests of the same session always go to the same
+ * lane, a single thread, so every conversation is replayed in its original
+ * order while different conversations run in parallel.
+ *
+ * <p>Run with {@code gradle replay -PreplayArgs="--dir=recordings
+ * --speed=10"}. Flags: {@code --dir} (a directory of segments or a single
+ * segment), {@code --speed} (a factor such as {@code 1} or {@code 10}, or
+ * {@code max}), {@code --lanes}, and {@code --url} to replay over HTTP
+ * instead of in process.
+ */
+public class TrafficReplayer {
+
+  private final WebhookTarget target;
+  private final double speed;
+  private final int lanes;
+
+  private final Recorder responseTime =
+      new Recorder(LoadGenerator.HIGHEST_LATENCY, 3);
+  private final Recorder serviceTime =
+      new Recorder(LoadGenerator.HIGHEST_LATENCY, 3);
+  private final AtomicLong errors = new AtomicLong();
+
+  /**
+   * Creates a {@link TrafficReplayer}.
+   *
+   * @param target where to send the requests. Cannot be {@code null}.
+   * @param speed how many times faster than recorded to replay, or {@code 0}
+   * to replay as fast as possible.
+   * @param lanes the number of sessions replayed in parallel. Must be
+   * positive.
+   */
+  public TrafficReplayer(WebhookTarget target, double speed, int lanes) {
+    checkNotNull(target, "target cannot be null.");
+    checkArgument(speed >= 0, "speed cannot be negative.");
+    checkArgument(lanes > 0, "lanes must be positive.");
+    this.target = target;
+    this.speed = speed;
+    this.lanes = lanes;
+  }
+
+  /**
+   * Replays requests and waits for all of them to finish.
+   *
+   * @param requests the requests in arrival order. Cannot be {@code null}.
+   * @return the results of the replay.
+   */
+  public LoadReport replay(List<RecordedRequest> requests)
+      throws InterruptedException {
+    checkNotNull(requests, "requests cannot be null.");
+    ExecutorService[] executors = new ExecutorService[lanes];
+    for (int i = 0; i < lanes; i++) {
+      executors[i] = Executors.newSingleThreadExecutor();
+    }
+    long start = System.nanoTime();
+    long firstMillis = requests.isEmpty() ? 0 : requests.get(0).getTimeMillis();
+    for (RecordedRequest request : requests) {
+      long intendedStart;
+      if (speed == 0) {
+        intendedStart = System.nanoTime();
+      } else {
+        intendedStart = start + (long) (TimeUnit.MILLISECONDS.toNanos(
+            request.getTimeMillis() - firstMillis) / speed);
+        long wait = intendedStart - System.nanoTime();
+        if (wait > 0) {
+          LockSupport.parkNanos(wait);
+        }
+      }
+      int lane = Math.floorMod(request.getSession().hashCode(), lanes);
+      executors[lane].execute(() -> send(request, intendedStart));
+    }
+    for (ExecutorService executor : executors) {
+      executor.shutdown();
+    }
+    for (ExecutorService executor : executors) {
+      executor.awaitTermination(1, TimeUnit.HOURS);
+    }
+    long elapsed = System.nanoTime() - start;
+    Histogram totalResponseTime = responseTime.getIntervalHistogram();
+    Histogram totalServiceTime = serviceTime.getIntervalHistogram();
+    return new LoadReport(totalResponseTime, totalServiceTime,
+        requests.size(), errors.get(), elapsed);
+  }
+
+  private void send(RecordedRequest request, long intendedStart) {
+    long sendStart = System.nanoTime();
+    try {
+      target.send(request.getBody());
+    } catch (Exception e) {
+      errors.incrementAndGet();
+    }
+    long end = System.nanoTime();
+    responseTime.recordValue(
+        Math.min(end - intendedStart, LoadGenerator.HIGHEST_LATENCY));
+    serviceTime.recordValue(
+        Math.min(end - sendStart, LoadGenerator.HIGHEST_LATENCY));
+  }
+
+  public static void main(String[] args) throws Exception {
+    Flags flags = Flags.parse(args);
+    String speed = flags.getString("speed", "1");
+    WebhookTarget target;
+    if (flags.has("url")) {
+      target = new HttpWebhookTarget(new URL(flags.getString("url", null)));
+    } else {
+      Logger.getLogger("com.example").setLevel(Level.WARNING);
+      target = WebhookTarget.of(new NumberGenieApp(new GameStatistics(10)));
+    }
+    List<RecordedRequest> requests =
+        TrafficReader.read(Paths.get(flags.getString("dir", "recordings")));
+    TrafficReplayer replayer = new TrafficReplayer(target,
+        speed.equals("max") ? 0 : Double.parseDouble(speed),
+        flags.getInt("lanes", Runtime.getRuntime().availableProcessors()));
+
+    System.out.printf("Replaying %d requests at %s speed%n", requests.size(),
+        speed.equals("max") ? "max" : speed + "x");
+    replayer.replay(requests).print(System.out);
+  }
+}
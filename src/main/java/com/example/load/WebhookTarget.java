@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.load;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.actions.api.App;
+
+/**
+ * Where the load and replay tools send webhook requests: a server over HTTP,
+ * or an {@link App} in the same process.
+ */
+public interface WebhookTarget {
+
+  /**
+   * Sends one webhook request and waits for the response.
+   *
+   * @param body the request body.
+   * @return the response body.
+   * @throws Exception if the request failed.
+   */
+  String send(String body) throws Exception;
+
+  /**
+   * Creates a target that calls {@link App#handleRequest} directly.
+   *
+   * @param app the app. Cannot be {@code null}.
+   * @return the target.
+   */
+  static WebhookTarget of(App app) {
+    checkNotNull(app, "app cannot be null.");
+    return body -> app.handleRequest(body, null).get();
+  }
+}
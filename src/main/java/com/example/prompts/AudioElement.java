@@ -18,9 +18,9 @@ package com.example.prompts;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-public class AudioElement implements Element {
+public final class AudioElement implements Element {
 
-  private String url;
+  private final String speechText;
 
   /**
    * Create an {@link AudioElement} for a {@link Prompt}, given a URL for the
@@ -29,12 +29,13 @@ public class AudioElement implements Element {
    */
   AudioElement(String url) {
     checkNotNull(url, "url cannot be null.");
-    this.url = url;
+    // Built once; the element is shared by every response that plays it.
+    this.speechText = "<audio src=\"" + url + "\"/>";
   }
 
   @Override
   public String getSpeechText() {
-    return "<audio src=\"" + url + "\"/>";
+    return speechText;
   }
 
   @Override
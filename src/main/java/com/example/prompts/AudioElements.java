@@ -16,31 +16,62 @@
 
 package com.example.prompts;
 
-import java.util.ResourceBundle;
+import com.example.assets.AssetManifest;
+import com.example.config.Config;
+import com.example.config.ConfigSnapshot;
 
+/**
+ * The earcons, built once per config snapshot. Every response that plays an
+ * earcon shares the same {@link AudioElement}.
+ */
 final class AudioElements {
 
-  private static final String URL_FORMAT_STRING = "https://%s.appspot.com/audio/%s";
+  private static final String URL_FORMAT_STRING = "https://%s.appspot.com/%s";
+
+  static {
+    Config.addWarmer(AudioElements::getEarcons);
+  }
 
   private AudioElements() {
   }
 
   static Element getSteamAudioElement() {
-    return getAudioElement("Earcon_Steam.wav");
+    return getEarcons(Config.get()).steam;
   }
 
   static Element getSteamOnlyAudioElement() {
-    return getAudioElement("Earcon_SteamOnly.wav");
+    return getEarcons(Config.get()).steamOnly;
   }
 
   static Element getWinAudioElement() {
-    return getAudioElement("Earcon_YouWin.wav");
+    return getEarcons(Config.get()).win;
+  }
+
+  private static Earcons getEarcons(ConfigSnapshot config) {
+    return config.getDerived(AudioElements.class, Earcons::new);
+  }
+
+  /**
+   * The earcons of one config snapshot.
+   */
+  private static final class Earcons {
+
+    final Element steam;
+    final Element steamOnly;
+    final Element win;
+
+    Earcons(ConfigSnapshot config) {
+      String projectId = config.getString("project_id");
+      steam = createAudioElement(projectId, "Earcon_Steam.wav");
+      steamOnly = createAudioElement(projectId, "Earcon_SteamOnly.wav");
+      win = createAudioElement(projectId, "Earcon_YouWin.wav");
+    }
   }
 
-  private static Element getAudioElement(String fileName) {
-    ResourceBundle config = ResourceBundle.getBundle("config");
-    String projectId = config.getString("project_id");
-    String url = String.format(URL_FORMAT_STRING, projectId, fileName);
+  private static Element createAudioElement(String projectId,
+      String fileName) {
+    String url = String.format(URL_FORMAT_STRING, projectId,
+        AssetManifest.resolve("audio/" + fileName));
     return new AudioElement(url);
   }
 }
@@ -20,13 +20,14 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.example.util.Utils;
+import com.google.common.collect.ImmutableList;
 import java.util.List;
 
-public class ImageCard {
+public final class ImageCard {
 
-  private String url;
-  private String altText;
-  private List<String> textVariants;
+  private final String url;
+  private final String altText;
+  private final List<String> textVariants;
 
   /**
    * Creates an {@link ImageCard} with the given URL, alternative text, and list
@@ -44,7 +45,7 @@ public class ImageCard {
     checkArgument(!textVariants.isEmpty(), "textVariants cannot be empty.");
     this.url = url;
     this.altText = altText;
-    this.textVariants = textVariants;
+    this.textVariants = ImmutableList.copyOf(textVariants);
   }
 
   /**
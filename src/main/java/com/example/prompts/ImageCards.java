@@ -18,60 +18,118 @@ package com.example.prompts;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.example.assets.AssetManifest;
+import com.example.config.Config;
+import com.example.config.ConfigSnapshot;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
 
+/**
+ * The genie image cards, built once per locale and config snapshot. The
+ * cards of every locale with prompts are built before a snapshot is put in
+ * use, so handling a turn never reads a prompt or formats a URL for a card.
+ */
 final class ImageCards {
 
-  private static final String URL_FORMAT_STRING = "https://%s.appspot.com/images/%s";
+  private static final String URL_FORMAT_STRING = "https://%s.appspot.com/%s";
+
+  static {
+    Config.addWarmer(ImageCards::getCards);
+  }
 
   private ImageCards() {
   }
 
   static ImageCard getColdImageCard(Locale locale) {
-    return getImageCard(locale, "COLD.gif", "cold_alt_text", "cold_text_1",
-        "cold_text_2", "cold_text_3");
+    return getCards(locale).cold;
   }
 
   static ImageCard getCoolImageCard(Locale locale) {
-    return getImageCard(locale, "COOL.gif", "cool_alt_text", "cool_text_1",
-        "cool_text_2", "cool_text_3");
+    return getCards(locale).cool;
   }
 
   static ImageCard getWarmImageCard(Locale locale) {
-    return getImageCard(locale, "WARM.gif", "warm_alt_text", "warm_text_1",
-        "warm_text_2", "warm_text_3");
+    return getCards(locale).warm;
   }
 
   static ImageCard getHotImageCard(Locale locale) {
-    return getImageCard(locale, "HOT.gif", "hot_alt_text", "hot_text_1",
-        "hot_text_2", "hot_text_3");
+    return getCards(locale).hot;
   }
 
   static ImageCard getIntroImageCard(Locale locale) {
-    return getImageCard(locale, "INTRO.gif", "intro_alt_text", "intro_text_1",
-        "intro_text_2", "intro_text_3");
+    return getCards(locale).intro;
   }
 
   static ImageCard getWinImageCard(Locale locale) {
-    return getImageCard(locale, "WIN.gif", "win_alt_text", "win_text_1",
-        "win_text_2", "win_text_3");
+    return getCards(locale).win;
   }
 
-  private static ImageCard getImageCard(Locale locale, String fileName,
-      String altText, String... textVariants) {
+  private static LocaleCards getCards(Locale locale) {
     checkNotNull(locale, "locale cannot be null.");
-    ResourceBundle config = ResourceBundle.getBundle("config", locale);
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ConfigSnapshot config = Config.get();
+    // Keyed by the prompts, so that all locales sharing them share cards.
+    return getCards(config).get(config.getPrompts(locale));
+  }
+
+  private static Map<ResourceBundle, LocaleCards> getCards(
+      ConfigSnapshot config) {
+    return config.getDerived(ImageCards.class, ImageCards::createCards);
+  }
+
+  private static Map<ResourceBundle, LocaleCards> createCards(
+      ConfigSnapshot config) {
+    String projectId = config.getString("project_id");
+    Map<ResourceBundle, LocaleCards> cards = new IdentityHashMap<>();
+    for (Locale locale : config.getLocales()) {
+      ResourceBundle prompts = config.getPrompts(locale);
+      cards.put(prompts, new LocaleCards(prompts, projectId));
+    }
+    return Collections.unmodifiableMap(cards);
+  }
+
+  private static ImageCard createImageCard(ResourceBundle rb,
+      String projectId, String fileName, String altText,
+      String... textVariants) {
     List<String> imageTextVariants = new ArrayList<>();
     for (String textVariant : textVariants) {
       imageTextVariants.add(rb.getString(textVariant));
     }
-    String projectId = config.getString("project_id");
-    String url = String.format(URL_FORMAT_STRING, projectId, fileName);
+    String url = String.format(URL_FORMAT_STRING, projectId,
+        AssetManifest.resolve("images/" + fileName));
     String imageAltText = rb.getString(altText);
     return new ImageCard(url, imageAltText, imageTextVariants);
   }
+
+  /**
+   * The image cards of one locale.
+   */
+  private static final class LocaleCards {
+
+    final ImageCard cold;
+    final ImageCard cool;
+    final ImageCard warm;
+    final ImageCard hot;
+    final ImageCard intro;
+    final ImageCard win;
+
+    LocaleCards(ResourceBundle rb, String projectId) {
+      cold = createImageCard(rb, projectId, "COLD.gif", "cold_alt_text",
+          "cold_text_1", "cold_text_2", "cold_text_3");
+      cool = createImageCard(rb, projectId, "COOL.gif", "cool_alt_text",
+          "cool_text_1", "cool_text_2", "cool_text_3");
+      warm = createImageCard(rb, projectId, "WARM.gif", "warm_alt_text",
+          "warm_text_1", "warm_text_2", "warm_text_3");
+      hot = createImageCard(rb, projectId, "HOT.gif", "hot_alt_text",
+          "hot_text_1", "hot_text_2", "hot_text_3");
+      intro = createImageCard(rb, projectId, "INTRO.gif", "intro_alt_text",
+          "intro_text_1", "intro_text_2", "intro_text_3");
+      win = createImageCard(rb, projectId, "WIN.gif", "win_alt_text",
+          "win_text_1", "win_text_2", "win_text_3");
+    }
+  }
 }
@@ -18,16 +18,23 @@ package com.example.prompts;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.example.config.Config;
+import com.example.stats.TrimmingStatistics;
+import com.example.stats.TrimmingStatistics.Part;
+import com.example.stats.UserStatistics;
+import com.example.util.Utils;
 import com.google.actions.api.ActionRequest;
 import com.google.api.services.actions_fulfillment.v2.model.Argument;
+import com.google.common.annotations.VisibleForTesting;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
 import java.util.ResourceBundle;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
 public final class Prompts {
@@ -35,10 +42,11 @@ public final class Prompts {
   private Prompts() {
   }
 
-  public static Prompt getStartGamePrompt(ActionRequest request) {
+  public static Prompt getStartGamePrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
     String[] greetingVariants = new String[]{
         rb.getString("greeting_1"),
         rb.getString("greeting_2"),
@@ -55,8 +63,9 @@ public final class Prompts {
     List<String> arguments =
         Arrays.asList(String.valueOf(min), String.valueOf(max));
 
-    List<String> suggestions = getNumberSuggestions(request);
-    ImageCard imageCard = ImageCards.getIntroImageCard(locale);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
+    ImageCard imageCard =
+        getImageCard(request, capabilities, ImageCards::getIntroImageCard);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(
@@ -66,10 +75,11 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions, imageCard);
   }
 
-  public static Prompt getSameGuessPrompt(ActionRequest request) {
+  public static Prompt getSameGuessPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     Double guess = (Double) request.getParameter("guess");
     List<String> arguments =
@@ -78,17 +88,18 @@ public final class Prompts {
     List<String> sameGuess =
         Collections.singletonList(rb.getString("same_guess_3"));
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
     List<PartialPrompt> partialPrompts = Collections.singletonList(
         new PartialPrompt(new TextElement(sameGuess, arguments)));
     return new Prompt(partialPrompts, suggestions);
   }
 
-  public static Prompt getSameGuessEndPrompt(ActionRequest request) {
+  public static Prompt getSameGuessEndPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     Double guess = (Double) request.getParameter("guess");
     List<String> arguments =
@@ -102,10 +113,11 @@ public final class Prompts {
     return new Prompt(partialPrompts);
   }
 
-  public static Prompt getSameGuessHintPrompt(ActionRequest request) {
+  public static Prompt getSameGuessHintPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     List<String> sameGuess =
         Collections.singletonList(rb.getString("same_guess_1"));
@@ -116,27 +128,32 @@ public final class Prompts {
     List<String> arguments =
         Arrays.asList(String.valueOf(guess.intValue()), hint);
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
     List<PartialPrompt> partialPrompts = Collections.singletonList(
         new PartialPrompt(new TextElement(sameGuess, arguments)));
     return new Prompt(partialPrompts, suggestions);
   }
 
-  public static Prompt getStillHigherPrompt(ActionRequest request) {
+  public static Prompt getStillHigherPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
-    return getStillWrongPrompt(request, "wrong_higher_1", "wrong_higher_2");
+    return getStillWrongPrompt(request, capabilities,
+        "wrong_higher_1", "wrong_higher_2");
   }
 
-  public static Prompt getStillLowerPrompt(ActionRequest request) {
+  public static Prompt getStillLowerPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
-    return getStillWrongPrompt(request, "wrong_lower_1", "wrong_lower_2");
+    return getStillWrongPrompt(request, capabilities,
+        "wrong_lower_1", "wrong_lower_2");
   }
 
   private static Prompt getStillWrongPrompt(ActionRequest request,
+      int capabilities,
       String... textVariants) {
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
     List<String> variantList = new ArrayList<>();
     for (String textVariant : textVariants) {
       variantList.add(rb.getString(textVariant));
@@ -147,18 +164,20 @@ public final class Prompts {
     List<String> arguments =
         Collections.singletonList(String.valueOf(previousGuess.intValue()));
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
-    ImageCard imageCard = ImageCards.getCoolImageCard(locale);
+    ImageCard imageCard =
+        getImageCard(request, capabilities, ImageCards::getCoolImageCard);
     List<PartialPrompt> partialPrompts = Collections.singletonList(
         new PartialPrompt(new TextElement(variantList, arguments)));
     return new Prompt(partialPrompts, suggestions, imageCard);
   }
 
-  public static Prompt getNoInputPrompt(ActionRequest request) {
+  public static Prompt getNoInputPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
     Argument argument = request.getArgument("REPROMPT_COUNT");
     int repromptCount = argument.getIntValue().intValue();
     String textVariant =
@@ -170,20 +189,21 @@ public final class Prompts {
     return new Prompt(partialPrompts);
   }
 
-  public static Prompt getMinPrompt(ActionRequest request) {
+  public static Prompt getMinPrompt(ActionRequest request, int capabilities) {
     checkNotNull(request, "request cannot be null.");
-    return getBoundaryPrompt(request, "min");
+    return getBoundaryPrompt(request, capabilities, "min");
   }
 
-  public static Prompt getMaxPrompt(ActionRequest request) {
+  public static Prompt getMaxPrompt(ActionRequest request, int capabilities) {
     checkNotNull(request, "request cannot be null.");
-    return getBoundaryPrompt(request, "max");
+    return getBoundaryPrompt(request, capabilities, "max");
   }
 
   private static Prompt getBoundaryPrompt(ActionRequest request,
+      int capabilities,
       String boundary) {
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     List<String> variantList = Collections.singletonList(
         rb.getString(String.format("%s_follow", boundary)));
@@ -193,7 +213,7 @@ public final class Prompts {
     List<String> arguments =
         Collections.singletonList(String.valueOf(bounds.intValue()));
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(new TextElement(rb.getString(boundary))),
@@ -201,10 +221,10 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions);
   }
 
-  private static Prompt getColdPrompt(ActionRequest request,
+  private static Prompt getColdPrompt(ActionRequest request, int capabilities,
       String... textVariants) {
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     List<String> variantList = new ArrayList<>();
     for (String textVariant : textVariants) {
@@ -215,33 +235,37 @@ public final class Prompts {
     List<String> arguments =
         Collections.singletonList(String.valueOf(guess.intValue()));
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
-    ImageCard imageCard = ImageCards.getColdImageCard(locale);
+    ImageCard imageCard =
+        getImageCard(request, capabilities, ImageCards::getColdImageCard);
 
     List<PartialPrompt> partialPrompts = Collections.singletonList(
         new PartialPrompt(new TextElement(variantList, arguments)));
     return new Prompt(partialPrompts, suggestions, imageCard);
   }
 
-  public static Prompt getColdLowerPrompt(ActionRequest request) {
+  public static Prompt getColdLowerPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
-    return getColdPrompt(request, "cold_low_1", "cold_low_2");
+    return getColdPrompt(request, capabilities, "cold_low_1", "cold_low_2");
   }
 
-  public static Prompt getColdHigherPrompt(ActionRequest request) {
+  public static Prompt getColdHigherPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
-    return getColdPrompt(request, "cold_high_1", "cold_high_2");
+    return getColdPrompt(request, capabilities, "cold_high_1", "cold_high_2");
   }
 
-  public static Prompt getHotPrompt(ActionRequest request) {
+  public static Prompt getHotPrompt(ActionRequest request, int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
-    ImageCard imageCard = ImageCards.getHotImageCard(locale);
+    ImageCard imageCard =
+        getImageCard(request, capabilities, ImageCards::getHotImageCard);
 
     List<PartialPrompt> partialPrompts = Collections.singletonList(
         new PartialPrompt(new TextElement(rb.getString("close"))));
@@ -249,22 +273,25 @@ public final class Prompts {
   }
 
   private static Prompt getVeryHotPrompt(ActionRequest request,
+      int capabilities,
       boolean playSound, String... textVariants) {
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     List<String> variantList = new ArrayList<>();
     for (String textVariant : textVariants) {
       variantList.add(rb.getString(textVariant));
     }
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
-    ImageCard imageCard = ImageCards.getHotImageCard(locale);
+    ImageCard imageCard =
+        getImageCard(request, capabilities, ImageCards::getHotImageCard);
 
     List<Element> elements = new ArrayList<>();
     if (playSound) {
-      elements.add(AudioElements.getSteamOnlyAudioElement());
+      addAudioElement(capabilities, elements,
+          AudioElements::getSteamOnlyAudioElement);
     }
     elements.add(new TextElement(variantList.toArray(new String[0])));
     List<PartialPrompt> partialPrompts = Collections.singletonList(
@@ -273,23 +300,27 @@ public final class Prompts {
   }
 
   public static Prompt getVeryHotHigherPrompt(ActionRequest request,
+      int capabilities,
       boolean playSound) {
     checkNotNull(request, "request cannot be null.");
-    return getVeryHotPrompt(request, playSound, "highest_1", "highest_2",
+    return getVeryHotPrompt(request, capabilities, playSound,
+        "highest_1", "highest_2",
         "highest_3");
   }
 
   public static Prompt getVeryHotLowerPrompt(ActionRequest request,
+      int capabilities,
       boolean playSound) {
     checkNotNull(request, "request cannot be null.");
-    return getVeryHotPrompt(request, playSound, "lowest_1", "lowest_2",
+    return getVeryHotPrompt(request, capabilities, playSound,
+        "lowest_1", "lowest_2",
         "lowest_3");
   }
 
-  private static Prompt getWarmPrompt(ActionRequest request,
+  private static Prompt getWarmPrompt(ActionRequest request, int capabilities,
       String... textVariants) {
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     List<String> variantList = new ArrayList<>();
     for (String textVariant : textVariants) {
@@ -306,9 +337,10 @@ public final class Prompts {
     List<String> arguments =
         Collections.singletonList(String.valueOf(guess.intValue()));
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
-    ImageCard imageCard = ImageCards.getWarmImageCard(locale);
+    ImageCard imageCard =
+        getImageCard(request, capabilities, ImageCards::getWarmImageCard);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(new TextElement(variantList, arguments)),
@@ -317,21 +349,26 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions, imageCard);
   }
 
-  public static Prompt getWarmHigherPrompt(ActionRequest request) {
+  public static Prompt getWarmHigherPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
-    return getWarmPrompt(request, "higher_1", "higher_2", "higher_3");
+    return getWarmPrompt(request, capabilities,
+        "higher_1", "higher_2", "higher_3");
   }
 
-  public static Prompt getWarmLowerPrompt(ActionRequest request) {
+  public static Prompt getWarmLowerPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
-    return getWarmPrompt(request, "lower_1", "lower_2", "lower_3");
+    return getWarmPrompt(request, capabilities,
+        "lower_1", "lower_2", "lower_3");
   }
 
   public static Prompt getHotHigherPrompt(ActionRequest request,
+      int capabilities,
       boolean playSound) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     String[] textVariants = new String[]{
         rb.getString("hot_high_1"),
@@ -340,15 +377,17 @@ public final class Prompts {
         rb.getString("hot_high_4")
     };
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
     List<Element> elements = new ArrayList<>();
     if (playSound) {
-      elements.add(AudioElements.getSteamAudioElement());
+      addAudioElement(capabilities, elements,
+          AudioElements::getSteamAudioElement);
     }
     elements.add(new TextElement(textVariants));
 
-    ImageCard imageCard = ImageCards.getHotImageCard(locale);
+    ImageCard imageCard =
+        getImageCard(request, capabilities, ImageCards::getHotImageCard);
 
     List<PartialPrompt> partialPrompts = Collections.singletonList(
         new PartialPrompt(elements));
@@ -357,10 +396,11 @@ public final class Prompts {
   }
 
   public static Prompt getHotLowerPrompt(ActionRequest request,
+      int capabilities,
       boolean playSound) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     String[] textVariants = new String[]{
         rb.getString("hot_low_1"),
@@ -369,15 +409,17 @@ public final class Prompts {
         rb.getString("hot_low_4")
     };
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
     List<Element> elements = new ArrayList<>();
     if (playSound) {
-      elements.add(AudioElements.getSteamAudioElement());
+      addAudioElement(capabilities, elements,
+          AudioElements::getSteamAudioElement);
     }
     elements.add(new TextElement(textVariants));
 
-    ImageCard imageCard = ImageCards.getHotImageCard(locale);
+    ImageCard imageCard =
+        getImageCard(request, capabilities, ImageCards::getHotImageCard);
 
     List<PartialPrompt> partialPrompts = Collections.singletonList(
         new PartialPrompt(elements));
@@ -385,10 +427,11 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions, imageCard);
   }
 
-  public static Prompt getHigherPrompt(ActionRequest request) {
+  public static Prompt getHigherPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     List<String> highVariants =
         Collections.singletonList(rb.getString("high"));
@@ -402,7 +445,7 @@ public final class Prompts {
     List<String> arguments =
         Collections.singletonList(String.valueOf(guess.intValue()));
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(new TextElement(highVariants, arguments)),
@@ -411,10 +454,10 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions);
   }
 
-  public static Prompt getLowerPrompt(ActionRequest request) {
+  public static Prompt getLowerPrompt(ActionRequest request, int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     List<String> lowVariants =
         Collections.singletonList(rb.getString("low"));
@@ -428,7 +471,7 @@ public final class Prompts {
     List<String> arguments =
         Collections.singletonList(String.valueOf(guess.intValue()));
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(new TextElement(lowVariants, arguments)),
@@ -437,10 +480,11 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions);
   }
 
-  public static Prompt getWinManyTriesPrompt(ActionRequest request) {
+  public static Prompt getWinManyTriesPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     List<String> manyTriesVariants = Arrays.asList(
         rb.getString("many_tries_1"),
@@ -452,13 +496,14 @@ public final class Prompts {
     List<String> arguments =
         Collections.singletonList(String.valueOf(answer.intValue()));
 
-    List<String> suggestions = getConfirmSuggestion(request);
+    List<String> suggestions = getConfirmSuggestion(request, capabilities);
 
     List<Element> elements = new ArrayList<>();
-    elements.add(AudioElements.getWinAudioElement());
+    addAudioElement(capabilities, elements, AudioElements::getWinAudioElement);
     elements.add(new TextElement(manyTriesVariants, arguments));
 
-    ImageCard imageCard = ImageCards.getWinImageCard(locale);
+    ImageCard imageCard =
+        getImageCard(request, capabilities, ImageCards::getWinImageCard);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(elements),
@@ -467,10 +512,10 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions, imageCard);
   }
 
-  public static Prompt getWinPrompt(ActionRequest request) {
+  public static Prompt getWinPrompt(ActionRequest request, int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     List<String> correctVariants = Arrays.asList(
         rb.getString("correct_1"),
@@ -489,13 +534,14 @@ public final class Prompts {
     List<String> arguments =
         Collections.singletonList(String.valueOf(answer.intValue()));
 
-    List<String> suggestions = getConfirmSuggestion(request);
+    List<String> suggestions = getConfirmSuggestion(request, capabilities);
 
     List<Element> elements = new ArrayList<>();
-    elements.add(AudioElements.getWinAudioElement());
+    addAudioElement(capabilities, elements, AudioElements::getWinAudioElement);
     elements.add(new TextElement(correctVariants, arguments));
 
-    ImageCard imageCard = ImageCards.getWinImageCard(locale);
+    ImageCard imageCard =
+        getImageCard(request, capabilities, ImageCards::getWinImageCard);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(elements),
@@ -504,10 +550,11 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions, imageCard);
   }
 
-  public static Prompt getQuitGamePrompt(ActionRequest request) {
+  public static Prompt getQuitGamePrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     List<String> revealVariants = Arrays.asList(
         rb.getString("reveal_1"),
@@ -521,6 +568,11 @@ public final class Prompts {
 
     Map<String, Object> conversationData = request.getConversationData();
     Double answer = (Double) conversationData.get("answer");
+    // Without a game in progress there is no number to reveal.
+    if (answer == null) {
+      return new Prompt(Collections.singletonList(
+          new PartialPrompt(new TextElement(byeVariants))));
+    }
     List<String> arguments =
         Collections.singletonList(String.valueOf(answer.intValue()));
 
@@ -531,10 +583,11 @@ public final class Prompts {
     return new Prompt(partialPrompts);
   }
 
-  public static Prompt getPlayAgainPrompt(ActionRequest request) {
+  public static Prompt getPlayAgainPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     String[] reVariants = new String[]{
         rb.getString("re_1"),
@@ -554,7 +607,8 @@ public final class Prompts {
     List<String> arguments = Arrays.asList(
         String.valueOf(min), String.valueOf(max));
 
-    List<String> suggestions = getNumberAndDoneSuggestions(request);
+    List<String> suggestions =
+        getNumberAndDoneSuggestions(request, capabilities);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(new TextElement(reVariants),
@@ -564,10 +618,10 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions);
   }
 
-  public static Prompt getExitPrompt(ActionRequest request) {
+  public static Prompt getExitPrompt(ActionRequest request, int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     String[] quitVariants = new String[]{
         rb.getString("quit_1"),
@@ -582,12 +636,13 @@ public final class Prompts {
     return new Prompt(partialPrompts);
   }
 
-  public static Prompt getConfirmationFallbackPrompt(ActionRequest request) {
+  public static Prompt getConfirmationFallbackPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
-    List<String> suggestions = getConfirmSuggestion(request);
+    List<String> suggestions = getConfirmSuggestion(request, capabilities);
 
     List<PartialPrompt> partialPrompts = Collections.singletonList(
         new PartialPrompt(new TextElement(rb.getString("fallback_1"))));
@@ -595,10 +650,11 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions);
   }
 
-  public static Prompt getFallbackPrompt(ActionRequest request) {
+  public static Prompt getFallbackPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(new TextElement(rb.getString("fallback_2"))));
@@ -606,10 +662,11 @@ public final class Prompts {
     return new Prompt(partialPrompts);
   }
 
-  public static Prompt getDeeplinkHigherPrompt(ActionRequest request) {
+  public static Prompt getDeeplinkHigherPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     String[] greetingVariants = new String[]{
         rb.getString("greeting_1"),
@@ -617,24 +674,29 @@ public final class Prompts {
         rb.getString("greeting_3")
     };
 
-    String[] deeplinkVariants = new String[]{
+    List<String> deeplinkVariants = Arrays.asList(
         rb.getString("deeplink_1"),
         rb.getString("deeplink_2")
-    };
+    );
 
-    List<String> suggestions = getNumberSuggestions(request);
+    String text = request.getRawText();
+    List<String> arguments =
+        Arrays.asList(text, String.valueOf(text.length()));
+
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(new TextElement(greetingVariants)),
-        new PartialPrompt(new TextElement(deeplinkVariants)));
+        new PartialPrompt(new TextElement(deeplinkVariants, arguments)));
 
     return new Prompt(partialPrompts, suggestions);
   }
 
-  public static Prompt getDeeplinkLowerPrompt(ActionRequest request) {
+  public static Prompt getDeeplinkLowerPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     String[] greetingVariants = new String[]{
         rb.getString("greeting_1"),
@@ -642,28 +704,39 @@ public final class Prompts {
         rb.getString("greeting_3")
     };
 
-    String[] deeplinkVariants = new String[]{
+    List<String> deeplinkVariants = Arrays.asList(
         rb.getString("deeplink_3"),
         rb.getString("deeplink_4")
-    };
+    );
+
+    String text = request.getRawText();
+    List<String> arguments =
+        Arrays.asList(text, String.valueOf(text.length()));
 
-    List<String> suggestions = getNumberSuggestions(request);
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(new TextElement(greetingVariants)),
-        new PartialPrompt(new TextElement(deeplinkVariants)));
+        new PartialPrompt(new TextElement(deeplinkVariants, arguments)));
 
     return new Prompt(partialPrompts, suggestions);
   }
 
-  public static Prompt getDeeplinkWinPrompt(ActionRequest request) {
+  public static Prompt getDeeplinkWinPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
-    String[] deeplinkVariants = new String[]{
+    List<String> deeplinkVariants = Arrays.asList(
         rb.getString("deeplink_5"),
         rb.getString("deeplink_6")
-    };
+    );
+
+    String text = request.getRawText();
+    Map<String, Object> conversationData = request.getConversationData();
+    Double answer = (Double) conversationData.get("answer");
+    List<String> arguments = Arrays.asList(text,
+        String.valueOf(text.length()), String.valueOf(answer.intValue()));
 
     String[] againVariants = new String[]{
         rb.getString("again_1"),
@@ -671,11 +744,11 @@ public final class Prompts {
         rb.getString("again_3")
     };
 
-    List<String> suggestions = getConfirmSuggestion(request);
+    List<String> suggestions = getConfirmSuggestion(request, capabilities);
 
     List<Element> elements = new ArrayList<>();
-    elements.add(AudioElements.getWinAudioElement());
-    elements.add(new TextElement(deeplinkVariants));
+    addAudioElement(capabilities, elements, AudioElements::getWinAudioElement);
+    elements.add(new TextElement(deeplinkVariants, arguments));
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(elements),
@@ -684,10 +757,11 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions);
   }
 
-  public static Prompt getDeeplinkOutOfBoundsPrompt(ActionRequest request) {
+  public static Prompt getDeeplinkOutOfBoundsPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     List<String> invocation =
         Collections.singletonList(rb.getString("invocation"));
@@ -700,9 +774,11 @@ public final class Prompts {
     List<String> arguments =
         Arrays.asList(String.valueOf(min), String.valueOf(max));
 
-    List<String> suggestions = getNumberAndDoneSuggestions(request);
+    List<String> suggestions =
+        getNumberAndDoneSuggestions(request, capabilities);
 
-    ImageCard imageCard = ImageCards.getIntroImageCard(locale);
+    ImageCard imageCard =
+        getImageCard(request, capabilities, ImageCards::getIntroImageCard);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(
@@ -713,10 +789,11 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions, imageCard);
   }
 
-  public static Prompt getPlayAnotherPrompt(ActionRequest request) {
+  public static Prompt getPlayAnotherPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     String[] reVariants = new String[]{
         rb.getString("re_1"),
@@ -733,7 +810,8 @@ public final class Prompts {
         rb.getString("another_3")
     };
 
-    List<String> suggestions = getNumberAndDoneSuggestions(request);
+    List<String> suggestions =
+        getNumberAndDoneSuggestions(request, capabilities);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(new TextElement(reVariants)),
@@ -742,10 +820,11 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions);
   }
 
-  public static Prompt getAnotherPrompt(ActionRequest request) {
+  public static Prompt getAnotherPrompt(ActionRequest request,
+      int capabilities) {
     checkNotNull(request, "request cannot be null.");
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
 
     String[] anotherVariants = new String[]{
         rb.getString("another_1"),
@@ -753,7 +832,8 @@ public final class Prompts {
         rb.getString("another_3")
     };
 
-    List<String> suggestions = getNumberAndDoneSuggestions(request);
+    List<String> suggestions =
+        getNumberAndDoneSuggestions(request, capabilities);
 
     List<PartialPrompt> partialPrompts = Arrays.asList(
         new PartialPrompt(new TextElement(anotherVariants)));
@@ -761,20 +841,56 @@ public final class Prompts {
     return new Prompt(partialPrompts, suggestions);
   }
 
-  public static Prompt getLastPrompt(ActionRequest request) {
+  public static Prompt getBestScorePrompt(ActionRequest request,
+      int capabilities,
+      UserStatistics statistics) {
     checkNotNull(request, "request cannot be null.");
-    Map<String, Object> conversationData = request.getConversationData();
-    return (Prompt) conversationData.get("lastResponse");
+    Locale locale = request.getLocale();
+    ResourceBundle rb = Config.get().getPrompts(locale);
+
+    TextElement element;
+    if (statistics == null
+        || statistics.getBestScore() == UserStatistics.NO_BEST_SCORE) {
+      element = new TextElement(rb.getString("best_score_none"));
+    } else {
+      List<String> bestScoreVariants = Arrays.asList(
+          rb.getString("best_score_1"),
+          rb.getString("best_score_2"));
+      List<String> arguments = Arrays.asList(
+          String.valueOf(statistics.getBestScore()),
+          String.valueOf(statistics.getWins()));
+      element = new TextElement(bestScoreVariants, arguments);
+    }
+
+    List<PartialPrompt> partialPrompts =
+        Collections.singletonList(new PartialPrompt(element));
+
+    return new Prompt(partialPrompts);
   }
 
   private static List<String> getNumberAndDoneSuggestions(
-      ActionRequest request) {
-    List<String> suggestions = getNumberSuggestions(request);
-    suggestions.add(getDoneSuggestion(request));
+      ActionRequest request, int capabilities) {
+    List<String> suggestions = getNumberSuggestions(request, capabilities);
+    if (SurfaceCapabilities.hasScreen(capabilities)) {
+      suggestions.add(getDoneSuggestion(request));
+    } else {
+      TrimmingStatistics.getInstance().recordSkipped(Part.SUGGESTION, 1);
+    }
     return suggestions;
   }
 
-  private static List<String> getNumberSuggestions(ActionRequest request) {
+  private static int getSuggestionCount() {
+    return Config.get().getSuggestions();
+  }
+
+  @VisibleForTesting
+  static List<String> getNumberSuggestions(ActionRequest request,
+      int capabilities) {
+    if (!SurfaceCapabilities.hasScreen(capabilities)) {
+      TrimmingStatistics.getInstance()
+          .recordSkipped(Part.SUGGESTION, getSuggestionCount());
+      return new ArrayList<>();
+    }
     Map<String, Object> conversationData = request.getConversationData();
 
     int min = ((Double) conversationData.get("min")).intValue();
@@ -796,31 +912,58 @@ public final class Prompts {
         .toArray(String[]::new);
 
     for (int i = all.length - 1; i > 0; i--) {
-      int j = new Random().nextInt(i + 1);
+      int j = Utils.getRandom().nextInt(i + 1);
       String temp = all[i];
       all[i] = all[j];
       all[j] = temp;
     }
-    Locale locale = request.getLocale();
-    ResourceBundle config =
-        ResourceBundle.getBundle("config", locale);
-    int numSuggestions =
-        Integer.parseInt((String) config.getObject("suggestions"));
+    // Near the answer fewer numbers may be left than suggestions.
+    int numSuggestions = Math.min(getSuggestionCount(), all.length);
     List<String> suggestions =
         Arrays.asList(Arrays.copyOfRange(all, 0, numSuggestions));
     return new ArrayList<>(suggestions);
   }
 
-  private static List<String> getConfirmSuggestion(ActionRequest request) {
+  private static List<String> getConfirmSuggestion(ActionRequest request,
+      int capabilities) {
+    if (!SurfaceCapabilities.hasScreen(capabilities)) {
+      TrimmingStatistics.getInstance().recordSkipped(Part.SUGGESTION, 2);
+      return Collections.emptyList();
+    }
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
     return Arrays
         .asList(rb.getString("confirm_yes"), rb.getString("confirm_no"));
   }
 
   private static String getDoneSuggestion(ActionRequest request) {
     Locale locale = request.getLocale();
-    ResourceBundle rb = ResourceBundle.getBundle("prompts", locale);
+    ResourceBundle rb = Config.get().getPrompts(locale);
     return rb.getString("done");
   }
+
+  /**
+   * Gets an image card, unless the surface of the request has no screen to
+   * show it on.
+   */
+  private static ImageCard getImageCard(ActionRequest request, int capabilities,
+      Function<Locale, ImageCard> imageCard) {
+    if (!SurfaceCapabilities.hasScreen(capabilities)) {
+      TrimmingStatistics.getInstance().recordSkipped(Part.CARD, 1);
+      return null;
+    }
+    return imageCard.apply(request.getLocale());
+  }
+
+  /**
+   * Adds an earcon, unless the surface of the request cannot play audio.
+   */
+  private static void addAudioElement(int capabilities,
+      List<Element> elements, Supplier<Element> audioElement) {
+    if (!SurfaceCapabilities.hasAudio(capabilities)) {
+      TrimmingStatistics.getInstance().recordSkipped(Part.AUDIO, 1);
+      return;
+    }
+    elements.add(audioElement.get());
+  }
 }
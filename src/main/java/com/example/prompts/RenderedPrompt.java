@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.prompts;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.actions.api.response.ResponseBuilder;
+import com.google.api.services.actions_fulfillment.v2.model.BasicCard;
+import com.google.api.services.actions_fulfillment.v2.model.Image;
+import com.google.api.services.actions_fulfillment.v2.model.SimpleResponse;
+import com.google.api.services.actions_fulfillment.v2.model.Suggestion;
+import com.google.common.collect.ImmutableList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The speech, display text, card and suggestions a {@link Prompt} was
+ * rendered into, kept in conversation data so the {@code repeat} intent can
+ * send exactly what the user heard without building or rendering a prompt
+ * again.
+ *
+ * <p>In conversation data, a {@link RenderedPrompt} is a map of strings and
+ * lists of strings, which reads back the same whether or not it has been
+ * through Dialogflow as JSON.
+ */
+public final class RenderedPrompt {
+
+  private static final String SPEECH = "speech";
+  private static final String DISPLAY_TEXT = "displayText";
+  private static final String CARD = "card";
+  private static final String SUGGESTIONS = "suggestions";
+
+  private final String speech;
+  private final String displayText;
+  private final List<String> card;
+  private final List<String> suggestions;
+
+  /**
+   * Creates a {@link RenderedPrompt}.
+   *
+   * @param speech the SSML to speak. Cannot be {@code null}.
+   * @param displayText the text to display, or {@code null} for surfaces
+   * without a screen.
+   * @param cardUrl the URL of the card image, or {@code null} for no card.
+   * @param cardAltText the alternative text of the card image. Cannot be
+   * {@code null} if there is a card.
+   * @param cardText the text of the card. Cannot be {@code null} if there is
+   * a card.
+   * @param suggestions the suggestion titles. Cannot be {@code null}.
+   */
+  public RenderedPrompt(String speech, String displayText, String cardUrl,
+      String cardAltText, String cardText, List<String> suggestions) {
+    checkNotNull(speech, "speech cannot be null.");
+    checkNotNull(suggestions, "suggestions cannot be null.");
+    this.speech = speech;
+    this.displayText = displayText;
+    if (cardUrl == null) {
+      this.card = null;
+    } else {
+      checkNotNull(cardAltText, "cardAltText cannot be null.");
+      checkNotNull(cardText, "cardText cannot be null.");
+      this.card = ImmutableList.of(cardUrl, cardAltText, cardText);
+    }
+    this.suggestions = ImmutableList.copyOf(suggestions);
+  }
+
+  private RenderedPrompt(String speech, String displayText, List<String> card,
+      List<String> suggestions) {
+    this.speech = speech;
+    this.displayText = displayText;
+    this.card = card;
+    this.suggestions = suggestions;
+  }
+
+  /**
+   * Reads a {@link RenderedPrompt} written by {@link #toData()}.
+   *
+   * @param data the value from conversation data, or {@code null}.
+   * @return the {@link RenderedPrompt}, or {@code null} if {@code data} is
+   * not one, such as the prompt graph older versions kept.
+   */
+  public static RenderedPrompt fromData(Object data) {
+    if (!(data instanceof Map)) {
+      return null;
+    }
+    Map<?, ?> map = (Map<?, ?>) data;
+    Object speech = map.get(SPEECH);
+    Object displayText = map.get(DISPLAY_TEXT);
+    Object card = map.get(CARD);
+    Object suggestions = map.get(SUGGESTIONS);
+    List<String> cardParts = strings(card);
+    List<String> suggestionTitles = strings(suggestions);
+    if (!(speech instanceof String)
+        || (displayText != null && !(displayText instanceof String))
+        || (card != null && (cardParts == null || cardParts.size() != 3))
+        || (suggestions != null && suggestionTitles == null)) {
+      return null;
+    }
+    return new RenderedPrompt((String) speech, (String) displayText,
+        cardParts,
+        suggestions == null ? ImmutableList.of() : suggestionTitles);
+  }
+
+  /**
+   * Gets this {@link RenderedPrompt} in the form kept in conversation data.
+   *
+   * @return a new map of strings and lists of strings.
+   */
+  public Map<String, Object> toData() {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put(SPEECH, speech);
+    if (displayText != null) {
+      data.put(DISPLAY_TEXT, displayText);
+    }
+    if (card != null) {
+      data.put(CARD, card);
+    }
+    if (!suggestions.isEmpty()) {
+      data.put(SUGGESTIONS, suggestions);
+    }
+    return data;
+  }
+
+  /**
+   * Adds the simple response, card and suggestions to a response.
+   *
+   * @param responseBuilder the response to add to. Cannot be {@code null}.
+   */
+  public void addTo(ResponseBuilder responseBuilder) {
+    checkNotNull(responseBuilder, "responseBuilder cannot be null.");
+    responseBuilder.add(new SimpleResponse()
+        .setTextToSpeech(speech)
+        .setDisplayText(displayText));
+    if (card != null) {
+      responseBuilder.add(new BasicCard()
+          .setImage(new Image()
+              .setUrl(card.get(0))
+              .setAccessibilityText(card.get(1)))
+          .setFormattedText(card.get(2)));
+    }
+    for (String suggestion : suggestions) {
+      responseBuilder.add(new Suggestion().setTitle(suggestion));
+    }
+  }
+
+  public String getSpeech() {
+    return speech;
+  }
+
+  public String getDisplayText() {
+    return displayText;
+  }
+
+  public List<String> getSuggestions() {
+    return suggestions;
+  }
+
+  private static List<String> strings(Object value) {
+    if (!(value instanceof List)) {
+      return null;
+    }
+    ImmutableList.Builder<String> strings = ImmutableList.builder();
+    for (Object element : (List<?>) value) {
+      if (!(element instanceof String)) {
+        return null;
+      }
+      strings.add((String) element);
+    }
+    return strings.build();
+  }
+}
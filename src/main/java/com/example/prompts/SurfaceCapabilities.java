@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.prompts;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.actions.api.ActionRequest;
+import com.google.api.services.actions_fulfillment.v2.model.Capability;
+import com.google.api.services.actions_fulfillment.v2.model.Surface;
+import java.util.List;
+
+/**
+ * The capabilities of the surface a request came from, as a bitmask, so the
+ * parts of a response the surface cannot use are neither built nor sent.
+ */
+public final class SurfaceCapabilities {
+
+  public static final int SCREEN_OUTPUT = 1;
+  public static final int AUDIO_OUTPUT = 1 << 1;
+  public static final int MEDIA_RESPONSE_AUDIO = 1 << 2;
+  public static final int WEB_BROWSER = 1 << 3;
+
+  /**
+   * Every capability, assumed when a request does not list any: a surface
+   * that says nothing about itself gets the full response rather than a bare
+   * one.
+   */
+  public static final int ALL =
+      SCREEN_OUTPUT | AUDIO_OUTPUT | MEDIA_RESPONSE_AUDIO | WEB_BROWSER;
+
+  private SurfaceCapabilities() {
+  }
+
+  /**
+   * Parses the capabilities of the surface of a request.
+   *
+   * @param request the request. Cannot be {@code null}.
+   * @return the capability bitmask, or {@link #ALL} if the request has no
+   * surface information or lists no capabilities.
+   */
+  public static int of(ActionRequest request) {
+    checkNotNull(request, "request cannot be null.");
+    Surface surface = request.getSurface();
+    List<Capability> capabilities =
+        surface == null ? null : surface.getCapabilities();
+    if (capabilities == null || capabilities.isEmpty()) {
+      return ALL;
+    }
+    int mask = 0;
+    for (Capability capability : capabilities) {
+      mask |= parse(capability.getName());
+    }
+    return mask;
+  }
+
+  public static boolean hasScreen(int capabilities) {
+    return (capabilities & SCREEN_OUTPUT) != 0;
+  }
+
+  public static boolean hasAudio(int capabilities) {
+    return (capabilities & AUDIO_OUTPUT) != 0;
+  }
+
+  private static int parse(String name) {
+    if (name == null) {
+      return 0;
+    }
+    switch (name) {
+      case "actions.capability.SCREEN_OUTPUT":
+        return SCREEN_OUTPUT;
+      case "actions.capability.AUDIO_OUTPUT":
+        return AUDIO_OUTPUT;
+      case "actions.capability.MEDIA_RESPONSE_AUDIO":
+        return MEDIA_RESPONSE_AUDIO;
+      case "actions.capability.WEB_BROWSER":
+        return WEB_BROWSER;
+      default:
+        return 0;
+    }
+  }
+}
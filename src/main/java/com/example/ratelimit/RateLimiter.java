@@ -0,0 +1,205 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.ratelimit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.config.Config;
+import com.example.config.ConfigSnapshot;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+/**
+ * Limits the webhook requests of each session and of each user with {@link
+ * TokenBuckets}, so that one misbehaving client cannot take the CPU time of
+ * everyone else.
+ *
+ * <p>A request over the limit gets a "slow down" reply, rendered once per
+ * locale and config snapshot, see {@link #getSlowDownResponse}. It has no
+ * output contexts, so the session keeps its contexts and conversation data
+ * and the next request carries on the game.
+ */
+public final class RateLimiter {
+
+  private final TokenBuckets sessions;
+  private final TokenBuckets users;
+
+  /**
+   * Creates a {@link RateLimiter}.
+   *
+   * @param sessions the buckets of sessions, or {@code null} not to limit
+   * sessions.
+   * @param users the buckets of users, or {@code null} not to limit users.
+   */
+  public RateLimiter(TokenBuckets sessions, TokenBuckets users) {
+    checkArgument(sessions != null || users != null,
+        "sessions and users cannot both be null.");
+    this.sessions = sessions;
+    this.users = users;
+  }
+
+  /**
+   * Creates a {@link RateLimiter} from the {@code rate_limit_*} settings of
+   * the config bundle: the requests per second and burst of each session and
+   * of each user, and the most sessions or users to keep a bucket for.
+   *
+   * @param config the config bundle. Cannot be {@code null}.
+   * @return the {@link RateLimiter}, or {@code null} if neither {@code
+   * rate_limit_session_per_second} nor {@code rate_limit_user_per_second} is
+   * positive.
+   */
+  public static RateLimiter fromConfig(ResourceBundle config) {
+    checkNotNull(config, "config cannot be null.");
+    int maxKeys = Integer.parseInt(config.getString("rate_limit_max_keys"));
+    TokenBuckets sessions = buckets(config, "session", maxKeys);
+    TokenBuckets users = buckets(config, "user", maxKeys);
+    if (sessions == null && users == null) {
+      return null;
+    }
+    return new RateLimiter(sessions, users);
+  }
+
+  /**
+   * Gets the limiter every handler in this process checks requests with,
+   * created from the config bundle the first time, so that a session or
+   * user has one bucket whether its requests come one by one or in batches.
+   *
+   * @return the process-wide {@link RateLimiter}, or {@code null} if no
+   * limit is configured, see {@link #fromConfig}.
+   */
+  public static RateLimiter getProcessLimiter() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Takes a token for a request from the bucket of its session, then from
+   * the bucket of its user.
+   *
+   * @param sessionId the session of the request, or {@code null}.
+   * @param userId the user of the request, or {@code null}.
+   * @return {@code true} if the request may be handled, {@code false} if it
+   * should get the {@link #getSlowDownResponse slow down} reply.
+   */
+  public boolean tryAcquire(String sessionId, String userId) {
+    return tryAcquireSession(sessionId) && tryAcquireUser(userId);
+  }
+
+  /**
+   * Takes a token for a request from the bucket of its session only, so
+   * that a raw request can be checked before it is parsed, see {@link
+   * com.example.util.DialogflowRequests#findSession}.
+   *
+   * @param sessionId the session of the request, or {@code null}.
+   * @return {@code true} if the session is under its limit or not limited.
+   */
+  public boolean tryAcquireSession(String sessionId) {
+    return sessions == null || sessionId == null
+        || sessions.tryAcquire(sessionId);
+  }
+
+  /**
+   * Takes a token for a request from the bucket of its user only.
+   *
+   * @param userId the user of the request, or {@code null}.
+   * @return {@code true} if the user is under its limit or not limited.
+   */
+  public boolean tryAcquireUser(String userId) {
+    return users == null || userId == null || users.tryAcquire(userId);
+  }
+
+  /**
+   * Gets the buckets of sessions.
+   *
+   * @return the buckets, or {@code null} if sessions are not limited.
+   */
+  public TokenBuckets getSessions() {
+    return sessions;
+  }
+
+  /**
+   * Gets the buckets of users.
+   *
+   * @return the buckets, or {@code null} if users are not limited.
+   */
+  public TokenBuckets getUsers() {
+    return users;
+  }
+
+  /**
+   * Gets the webhook response asking the user to slow down, in the prompts
+   * the locale resolves to.
+   *
+   * @param locale the locale of the request. Cannot be {@code null}.
+   * @return the JSON response.
+   */
+  public static String getSlowDownResponse(Locale locale) {
+    checkNotNull(locale, "locale cannot be null.");
+    ConfigSnapshot config = Config.get();
+    Map<Locale, String> responses =
+        config.getDerived(RateLimiter.class, RateLimiter::renderResponses);
+    return responses.get(config.resolveLocale(locale).getLocale());
+  }
+
+  private static TokenBuckets buckets(ResourceBundle config, String kind,
+      int maxKeys) {
+    double perSecond = Double.parseDouble(
+        config.getString("rate_limit_" + kind + "_per_second"));
+    if (perSecond <= 0) {
+      return null;
+    }
+    int burst = Integer.parseInt(
+        config.getString("rate_limit_" + kind + "_burst"));
+    return new TokenBuckets(perSecond, burst, maxKeys);
+  }
+
+  private static Map<Locale, String> renderResponses(ConfigSnapshot config) {
+    ImmutableMap.Builder<Locale, String> responses = ImmutableMap.builder();
+    for (Locale locale : config.getLocales()) {
+      String text = config.getPrompts(locale).getString("slow_down");
+      JsonObject simpleResponse = new JsonObject();
+      simpleResponse.addProperty("textToSpeech", text);
+      JsonObject item = new JsonObject();
+      item.add("simpleResponse", simpleResponse);
+      JsonArray items = new JsonArray();
+      items.add(item);
+      JsonObject richResponse = new JsonObject();
+      richResponse.add("items", items);
+      JsonObject google = new JsonObject();
+      google.addProperty("expectUserResponse", true);
+      google.add("richResponse", richResponse);
+      JsonObject payload = new JsonObject();
+      payload.add("google", google);
+      JsonObject response = new JsonObject();
+      response.addProperty("fulfillmentText", text);
+      response.add("payload", payload);
+      responses.put(locale, response.toString());
+    }
+    return responses.build();
+  }
+
+  private static final class Holder {
+
+    static final RateLimiter INSTANCE =
+        fromConfig(Config.get().getConfig());
+  }
+}
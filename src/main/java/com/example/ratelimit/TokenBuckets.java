@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.ratelimit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket per key, such as a session or a user, each refilled at the
+ * same rate up to the same burst.
+ *
+ * <p>A bucket is a single {@link AtomicLong}: the time at which it will be
+ * full again. Taking a token pushes that time forward by the time one token
+ * takes to refill, with a compare-and-set, unless it would end up more than
+ * a burst ahead of now. Refilling is thus lazy, and a check is a map lookup,
+ * a clock read and a compare-and-set on a counter only that key uses, so
+ * checks for different keys never wait for each other. This is the generic
+ * cell rate algorithm, which allows exactly what a token bucket allows.
+ *
+ * <p>The map holds at most {@code maxKeys} buckets. A bucket whose time has
+ * passed is full, the same as no bucket, so when the map is full, the key
+ * that finds it full evicts every idle bucket, at most once per second. Keys
+ * that still find no room are let through without a bucket, see {@link
+ * #getUntracked()}.
+ */
+public final class TokenBuckets {
+
+  private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final long intervalNanos;
+  private final long toleranceNanos;
+  private final int maxKeys;
+  private final LongSupplier nanoClock;
+  private final ConcurrentHashMap<String, AtomicLong> buckets;
+  private final AtomicLong nextSweepNanos;
+  private final LongAdder limited = new LongAdder();
+  private final LongAdder untracked = new LongAdder();
+  private final LongAdder evicted = new LongAdder();
+
+  /**
+   * Creates {@link TokenBuckets}.
+   *
+   * @param perSecond the tokens each bucket gains per second. Must be
+   * positive.
+   * @param burst the tokens a full bucket holds. Must be positive.
+   * @param maxKeys the most buckets to keep. Must be positive.
+   */
+  public TokenBuckets(double perSecond, int burst, int maxKeys) {
+    this(perSecond, burst, maxKeys, System::nanoTime);
+  }
+
+  @VisibleForTesting
+  TokenBuckets(double perSecond, int burst, int maxKeys,
+      LongSupplier nanoClock) {
+    checkArgument(perSecond > 0, "perSecond must be positive.");
+    checkArgument(burst > 0, "burst must be positive.");
+    checkArgument(maxKeys > 0, "maxKeys must be positive.");
+    checkNotNull(nanoClock, "nanoClock cannot be null.");
+    this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1)
+        / perSecond));
+    this.toleranceNanos = (burst - 1) * intervalNanos;
+    this.maxKeys = maxKeys;
+    this.nanoClock = nanoClock;
+    this.buckets = new ConcurrentHashMap<>();
+    this.nextSweepNanos = new AtomicLong(nanoClock.getAsLong());
+  }
+
+  /**
+   * Takes a token from the bucket of a key.
+   *
+   * @param key the key. Cannot be {@code null}.
+   * @return {@code true} if there was a token, or the key has no bucket for
+   * want of room, else {@code false}.
+   */
+  public boolean tryAcquire(String key) {
+    checkNotNull(key, "key cannot be null.");
+    long now = nanoClock.getAsLong();
+    AtomicLong bucket = buckets.get(key);
+    if (bucket == null) {
+      if (buckets.size() >= maxKeys && !evictIdle(now)) {
+        untracked.increment();
+        return true;
+      }
+      bucket = buckets.putIfAbsent(key, new AtomicLong(now + intervalNanos));
+      if (bucket == null) {
+        return true;
+      }
+    }
+    while (true) {
+      long full = bucket.get();
+      // Times are compared by difference, as System.nanoTime may wrap.
+      long start = full - now > 0 ? full : now;
+      if (start - now > toleranceNanos) {
+        limited.increment();
+        return false;
+      }
+      // A bucket evicted meanwhile loses this token, which errs towards
+      // letting a request through.
+      if (bucket.compareAndSet(full, start + intervalNanos)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Gets the number of keys with a bucket.
+   *
+   * @return the number of buckets.
+   */
+  public int size() {
+    return buckets.size();
+  }
+
+  /**
+   * Gets the number of times a key found its bucket empty.
+   *
+   * @return the number of refused tokens.
+   */
+  public long getLimited() {
+    return limited.sum();
+  }
+
+  /**
+   * Gets the number of times a key was let through without a bucket because
+   * the map was full of buckets that are not idle.
+   *
+   * @return the number of untracked tokens.
+   */
+  public long getUntracked() {
+    return untracked.sum();
+  }
+
+  /**
+   * Gets the number of idle buckets evicted to make room.
+   *
+   * @return the number of evicted buckets.
+   */
+  public long getEvicted() {
+    return evicted.sum();
+  }
+
+  // Evicts the full buckets if no other thread did in the last second, and
+  // tells whether there is room for another.
+  private boolean evictIdle(long now) {
+    long next = nextSweepNanos.get();
+    if (now - next >= 0
+        && nextSweepNanos.compareAndSet(next, now + SWEEP_INTERVAL_NANOS)) {
+      for (Iterator<AtomicLong> it = buckets.values().iterator();
+          it.hasNext(); ) {
+        if (it.next().get() - now <= 0) {
+          it.remove();
+          evicted.increment();
+        }
+      }
+    }
+    return buckets.size() < maxKeys;
+  }
+}
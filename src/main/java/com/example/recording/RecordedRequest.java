@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.recording;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A webhook request as captured by {@link TrafficRecorder}.
+ */
+public class RecordedRequest {
+
+  private final long timeMillis;
+  private final String session;
+  private final String body;
+
+  /**
+   * Creates a {@link RecordedRequest}.
+   *
+   * @param timeMillis when the request arrived, in milliseconds since the
+   * epoch.
+   * @param session the Dialogflow session of the request, or an empty string
+   * if it had none. Cannot be {@code null}.
+   * @param body the request body, already scrubbed. Cannot be {@code null}.
+   */
+  public RecordedRequest(long timeMillis, String session, String body) {
+    checkNotNull(session, "session cannot be null.");
+    checkNotNull(body, "body cannot be null.");
+    this.timeMillis = timeMillis;
+    this.session = session;
+    this.body = body;
+  }
+
+  public long getTimeMillis() {
+    return timeMillis;
+  }
+
+  public String getSession() {
+    return session;
+  }
+
+  public String getBody() {
+    return body;
+  }
+}
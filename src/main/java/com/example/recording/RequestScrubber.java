@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.recording;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes personal data from recorded webhook requests before they are
+ * written to disk.
+ *
+ * <p>Fields are matched by name anywhere in the request. Redacted fields keep
+ * their length but not their content, so prompts that depend on the length
+ * of what the user said still render the same on replay. Pseudonymized
+ * fields are replaced with a salted hash, so requests from the same user can
+ * still be told apart from requests of other users.
+ *
+ * <p>Pseudonymizing the {@code session} field replaces the session ID
+ * wherever it appears, see {@link #scrubSession}, as well as the Actions on
+ * Google {@code conversationId} that repeats it, so a recorded conversation
+ * still replays as one session.
+ */
+public class RequestScrubber {
+
+  private static final int PSEUDONYM_LENGTH = 16;
+  private static final String SESSION_FIELD = "session";
+  private static final String CONVERSATION_ID_FIELD = "conversationId";
+
+  private final Set<String> redactedFields;
+  private final Set<String> pseudonymizedFields;
+  private final boolean pseudonymizeSessions;
+  private final String salt;
+
+  /**
+   * Creates a {@link RequestScrubber}.
+   *
+   * @param redactedFields the names of the fields whose text is blanked out.
+   * Cannot be {@code null}.
+   * @param pseudonymizedFields the names of the fields replaced with a salted
+   * hash, which may include {@code session}. Cannot be {@code null}.
+   * @param salt the salt for the hashes. Cannot be {@code null}.
+   */
+  public RequestScrubber(Set<String> redactedFields,
+      Set<String> pseudonymizedFields, String salt) {
+    checkNotNull(redactedFields, "redactedFields cannot be null.");
+    checkNotNull(pseudonymizedFields, "pseudonymizedFields cannot be null.");
+    checkNotNull(salt, "salt cannot be null.");
+    this.redactedFields = ImmutableSet.copyOf(redactedFields);
+    this.pseudonymizeSessions = pseudonymizedFields.contains(SESSION_FIELD);
+    this.pseudonymizedFields = ImmutableSet.copyOf(
+        Sets.difference(pseudonymizedFields, ImmutableSet.of(SESSION_FIELD)));
+    this.salt = salt;
+  }
+
+  /**
+   * Pseudonymizes the ID at the end of a Dialogflow session path, if the
+   * {@code session} field is pseudonymized. The ID also names every context
+   * of the request, so the raw request body should have the session replaced
+   * with the result before it is {@link #scrub scrubbed}.
+   *
+   * @param session the session path, or an empty string if unknown. Cannot
+   * be {@code null}.
+   * @return the session path with a pseudonymous ID, or {@code session}
+   * itself if sessions are kept or it is empty.
+   */
+  public String scrubSession(String session) {
+    checkNotNull(session, "session cannot be null.");
+    if (!pseudonymizeSessions || session.isEmpty()) {
+      return session;
+    }
+    int id = session.lastIndexOf('/') + 1;
+    return session.substring(0, id) + pseudonym(session.substring(id));
+  }
+
+  /**
+   * Scrubs a request in place.
+   *
+   * @param request the parsed request body. Cannot be {@code null}.
+   */
+  public void scrub(JsonElement request) {
+    checkNotNull(request, "request cannot be null.");
+    if (request.isJsonArray()) {
+      for (JsonElement element : request.getAsJsonArray()) {
+        scrub(element);
+      }
+    } else if (request.isJsonObject()) {
+      JsonObject object = request.getAsJsonObject();
+      for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+        JsonElement value = entry.getValue();
+        if (isString(value) && redactedFields.contains(entry.getKey())) {
+          entry.setValue(new JsonPrimitive(
+              Strings.repeat("x", value.getAsString().length())));
+        } else if (isString(value)
+            && (pseudonymizedFields.contains(entry.getKey())
+                || (pseudonymizeSessions
+                    && entry.getKey().equals(CONVERSATION_ID_FIELD)))) {
+          entry.setValue(new JsonPrimitive(pseudonym(value.getAsString())));
+        } else if (value.isJsonObject() || value.isJsonArray()) {
+          scrub(value);
+        }
+      }
+    }
+  }
+
+  private String pseudonym(String value) {
+    return Hashing.sha256()
+        .hashString(salt + value, StandardCharsets.UTF_8)
+        .toString()
+        .substring(0, PSEUDONYM_LENGTH);
+  }
+
+  private static boolean isString(JsonElement element) {
+    return element.isJsonPrimitive() && element.getAsJsonPrimitive().isString();
+  }
+}
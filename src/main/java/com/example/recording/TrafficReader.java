@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.recording;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the segments written by {@link TrafficRecorder}.
+ */
+public final class TrafficReader {
+
+  private TrafficReader() {
+  }
+
+  /**
+   * Reads every recorded request of a segment file, or of all segments in a
+   * directory, in arrival order.
+   *
+   * <p>Segments that are still being written, or were cut off by a crash,
+   * are read up to their last complete request.
+   *
+   * @param path a segment file or a directory of segments. Cannot be {@code
+   * null}.
+   * @return the recorded requests, ordered by arrival time.
+   */
+  public static List<RecordedRequest> read(Path path) throws IOException {
+    checkNotNull(path, "path cannot be null.");
+    List<Path> segments = new ArrayList<>();
+    if (Files.isDirectory(path)) {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(path,
+          "*" + TrafficRecorder.SEGMENT_SUFFIX)) {
+        stream.forEach(segments::add);
+      }
+      Collections.sort(segments);
+    } else {
+      segments.add(path);
+    }
+    List<RecordedRequest> requests = new ArrayList<>();
+    for (Path segment : segments) {
+      readSegment(segment, requests);
+    }
+    // Stable, so requests with the same timestamp keep their recorded order.
+    requests.sort(Comparator.comparingLong(RecordedRequest::getTimeMillis));
+    return requests;
+  }
+
+  private static void readSegment(Path segment, List<RecordedRequest> requests)
+      throws IOException {
+    JsonParser parser = new JsonParser();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new GZIPInputStream(Files.newInputStream(segment)),
+        StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) {
+          continue;
+        }
+        JsonObject object;
+        try {
+          object = parser.parse(line).getAsJsonObject();
+        } catch (JsonParseException e) {
+          // The last line of a segment that was cut off mid-write.
+          break;
+        }
+        requests.add(new RecordedRequest(object.get("time").getAsLong(),
+            object.get("session").getAsString(),
+            object.get("request").toString()));
+      }
+    } catch (EOFException e) {
+      // A segment without its gzip trailer: keep what was read.
+    }
+  }
+}
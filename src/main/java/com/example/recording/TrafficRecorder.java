@@ -0,0 +1,300 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.recording;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.util.DialogflowRequests;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.ResourceBundle;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Captures incoming webhook requests to gzip compressed JSONL files for
+ * {@link TrafficReader} and the replay tools.
+ *
+ * <p>{@link #record(String)} runs on the request thread and only decides
+ * whether to sample the request and queues it. Parsing, scrubbing,
+ * compression and file I/O happen on a single background writer thread.
+ * When the writer falls behind and the queue is full, requests are dropped
+ * rather than slowing down the webhook.
+ *
+ * <p>Requests are sampled by Dialogflow session, so a sampled conversation is
+ * recorded in full. Each line of a segment holds one request as {@code
+ * {"time": <epoch millis>, "session": "...", "request": {...}}}, and a new
+ * segment is started once a segment holds {@code segmentBytes} of
+ * uncompressed JSON. The session is pseudonymized along with the request
+ * when the {@link RequestScrubber} pseudonymizes {@code session}, as the
+ * bundled config does.
+ */
+public class TrafficRecorder {
+
+  /** The suffix of the segment files. */
+  public static final String SEGMENT_SUFFIX = ".jsonl.gz";
+
+  private static final Logger LOGGER =
+      Logger.getLogger(TrafficRecorder.class.getName());
+
+  private static final long FLUSH_INTERVAL_MILLIS = 1000;
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+  private static final Gson GSON = new Gson();
+
+  private final Path directory;
+  private final long sampleThreshold;
+  private final long segmentBytes;
+  private final RequestScrubber scrubber;
+  private final BlockingQueue<RecordedRequest> queue;
+  private final Thread writer;
+  private final LongAdder recorded = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private volatile boolean running = true;
+
+  private OutputStream segment;
+  private long segmentWritten;
+  private int segmentCount;
+
+  /**
+   * Creates a {@link TrafficRecorder} and starts its writer thread.
+   *
+   * @param directory where to write segments. Created if missing. Cannot be
+   * {@code null}.
+   * @param sampleRate the fraction of sessions to record, from 0 to 1.
+   * @param segmentBytes the uncompressed size at which segments are rotated.
+   * Must be positive.
+   * @param queueSize the number of requests that can wait for the writer.
+   * Must be positive.
+   * @param scrubber removes personal data before requests are written. Cannot
+   * be {@code null}.
+   */
+  public TrafficRecorder(Path directory, double sampleRate, long segmentBytes,
+      int queueSize, RequestScrubber scrubber) throws IOException {
+    checkNotNull(directory, "directory cannot be null.");
+    checkArgument(sampleRate >= 0 && sampleRate <= 1,
+        "sampleRate must be in [0, 1].");
+    checkArgument(segmentBytes > 0, "segmentBytes must be positive.");
+    checkArgument(queueSize > 0, "queueSize must be positive.");
+    checkNotNull(scrubber, "scrubber cannot be null.");
+    this.directory = Files.createDirectories(directory);
+    this.sampleThreshold = (long) (sampleRate * (1L << 32));
+    this.segmentBytes = segmentBytes;
+    this.scrubber = scrubber;
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.writer = new Thread(this::writeLoop, "traffic-recorder");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Creates a {@link TrafficRecorder} from the {@code record_*} settings of
+   * the config bundle. An empty {@code record_salt} salts pseudonyms with a
+   * random value per process, so they cannot be linked across restarts.
+   *
+   * @param config the config bundle. Cannot be {@code null}.
+   * @return a started recorder, or {@code null} if {@code record_traffic} is
+   * not {@code true}.
+   */
+  public static TrafficRecorder fromConfig(ResourceBundle config)
+      throws IOException {
+    checkNotNull(config, "config cannot be null.");
+    if (!config.containsKey("record_traffic")
+        || !Boolean.parseBoolean(config.getString("record_traffic"))) {
+      return null;
+    }
+    String salt = config.getString("record_salt");
+    RequestScrubber scrubber = new RequestScrubber(
+        fieldSet(config.getString("record_redact_fields")),
+        fieldSet(config.getString("record_pseudonymize_fields")),
+        // Without a configured salt, pseudonyms are only stable per process.
+        salt.isEmpty() ? UUID.randomUUID().toString() : salt);
+    return new TrafficRecorder(
+        Paths.get(config.getString("record_directory")),
+        Double.parseDouble(config.getString("record_sample_rate")),
+        Long.parseLong(config.getString("record_segment_bytes")),
+        Integer.parseInt(config.getString("record_queue_size")),
+        scrubber);
+  }
+
+  /**
+   * Queues a request for recording if its session is sampled. Never blocks.
+   *
+   * @param body the raw request body. Cannot be {@code null}.
+   */
+  public void record(String body) {
+    checkNotNull(body, "body cannot be null.");
+    String session = DialogflowRequests.findSession(body);
+    if (!isSampled(session)) {
+      return;
+    }
+    if (!running
+        || !queue.offer(new RecordedRequest(
+            System.currentTimeMillis(), session, body))) {
+      dropped.increment();
+    }
+  }
+
+  /**
+   * Stops accepting requests, writes out the queued ones and closes the
+   * current segment.
+   */
+  public void close() throws InterruptedException {
+    running = false;
+    writer.join(TimeUnit.SECONDS.toMillis(30));
+  }
+
+  public long getRecorded() {
+    return recorded.sum();
+  }
+
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  private boolean isSampled(String session) {
+    if (session.isEmpty()) {
+      return ThreadLocalRandom.current().nextLong(1L << 32) < sampleThreshold;
+    }
+    long hash = Hashing.murmur3_32().hashUnencodedChars(session).asInt()
+        & 0xffffffffL;
+    return hash < sampleThreshold;
+  }
+
+  private void writeLoop() {
+    try {
+      while (running || !queue.isEmpty()) {
+        RecordedRequest request =
+            queue.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        if (request == null) {
+          // Idle: make what was written so far readable.
+          flush();
+        } else {
+          write(request);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      closeSegment();
+    }
+  }
+
+  private void write(RecordedRequest request) {
+    JsonObject line = new JsonObject();
+    String session = scrubber.scrubSession(request.getSession());
+    String text = request.getBody();
+    if (!session.equals(request.getSession())) {
+      // The session path also prefixes the name of every context.
+      text = text.replace(request.getSession(), session);
+    }
+    try {
+      JsonElement body = new JsonParser().parse(text);
+      scrubber.scrub(body);
+      line.addProperty("time", request.getTimeMillis());
+      line.addProperty("session", session);
+      line.add("request", body);
+    } catch (JsonParseException e) {
+      // Not a webhook request; nothing worth replaying.
+      errors.increment();
+      return;
+    }
+    byte[] bytes = (GSON.toJson(line) + "\n").getBytes(StandardCharsets.UTF_8);
+    try {
+      if (segment == null || segmentWritten >= segmentBytes) {
+        rotate();
+      }
+      segment.write(bytes);
+      segmentWritten += bytes.length;
+      recorded.increment();
+    } catch (IOException e) {
+      errors.increment();
+      LOGGER.log(Level.WARNING, "Could not record request", e);
+      closeSegment();
+    }
+  }
+
+  private void rotate() throws IOException {
+    closeSegment();
+    String name = String.format("traffic-%s-%04d%s",
+        new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()),
+        segmentCount++, SEGMENT_SUFFIX);
+    // Sync flushing lets readers decompress a segment that is still open.
+    segment = new GZIPOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(directory.resolve(name))),
+        GZIP_BUFFER_SIZE, true);
+    segmentWritten = 0;
+  }
+
+  private void flush() {
+    if (segment == null) {
+      return;
+    }
+    try {
+      segment.flush();
+    } catch (IOException e) {
+      errors.increment();
+      closeSegment();
+    }
+  }
+
+  private void closeSegment() {
+    if (segment == null) {
+      return;
+    }
+    try {
+      segment.close();
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not close traffic segment", e);
+    }
+    segment = null;
+  }
+
+  private static ImmutableSet<String> fieldSet(String fields) {
+    return ImmutableSet.copyOf(
+        Splitter.on(',').trimResults().omitEmptyStrings().split(fields));
+  }
+}
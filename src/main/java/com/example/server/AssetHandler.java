@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.server;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.assets.AssetResponse;
+import com.example.assets.AssetStore;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.Map;
+
+/**
+ * Serves the earcons and images from an {@link AssetStore}. Responses are
+ * written straight from the preloaded asset arrays.
+ */
+class AssetHandler implements HttpHandler {
+
+  private final AssetStore store;
+
+  AssetHandler(AssetStore store) {
+    checkNotNull(store, "store cannot be null.");
+    this.store = store;
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      String method = exchange.getRequestMethod();
+      if (!method.equals("GET") && !method.equals("HEAD")) {
+        exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+        return;
+      }
+      Headers requestHeaders = exchange.getRequestHeaders();
+      AssetResponse response = store.serve(
+          exchange.getRequestURI().getPath(),
+          requestHeaders.getFirst("If-None-Match"),
+          requestHeaders.getFirst("Range"),
+          requestHeaders.getFirst("Accept-Encoding"));
+      Headers responseHeaders = exchange.getResponseHeaders();
+      for (Map.Entry<String, String> header
+          : response.getHeaders().entrySet()) {
+        responseHeaders.set(header.getKey(), header.getValue());
+      }
+      if (response.getBody() == null) {
+        exchange.sendResponseHeaders(response.getStatus(), -1);
+        return;
+      }
+      if (method.equals("HEAD")) {
+        responseHeaders.set("Content-Length",
+            String.valueOf(response.getLength()));
+        exchange.sendResponseHeaders(response.getStatus(), -1);
+        return;
+      }
+      exchange.sendResponseHeaders(response.getStatus(),
+          response.getLength());
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(response.getBody(), response.getOffset(),
+            response.getLength());
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+}
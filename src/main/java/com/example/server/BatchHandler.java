@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.server;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.BatchServlet;
+import com.example.NumberGenieApp;
+import com.example.util.AccessTokens;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves JSON lines batches of webhook requests, like {@link BatchServlet}
+ * does in a servlet container, and like it only when the {@value
+ * BatchServlet#TOKEN_PROPERTY} system property is set and the request
+ * carries its value in an {@value BatchServlet#TOKEN_HEADER} header.
+ */
+class BatchHandler implements HttpHandler {
+
+  private final NumberGenieApp app;
+
+  /**
+   * Creates a {@link BatchHandler}.
+   *
+   * @param app the app handling batched requests, which should record games
+   * in statistics of its own. Cannot be {@code null}.
+   */
+  BatchHandler(NumberGenieApp app) {
+    checkNotNull(app, "app cannot be null.");
+    this.app = app;
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (!exchange.getRequestMethod().equals("POST")) {
+        exchange.getResponseHeaders().set("Allow", "POST");
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+        return;
+      }
+      switch (AccessTokens.check(BatchServlet.TOKEN_PROPERTY,
+          exchange.getRequestHeaders().getFirst(BatchServlet.TOKEN_HEADER))) {
+        case DISABLED:
+          exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+          return;
+        case DENIED:
+          exchange.sendResponseHeaders(HttpURLConnection.HTTP_FORBIDDEN, -1);
+          return;
+        default:
+          break;
+      }
+      exchange.getResponseHeaders().set("Content-Type",
+          "application/x-ndjson; charset=utf-8");
+      // A length of 0 streams the responses with chunked encoding.
+      exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+      try (Writer responses = new BufferedWriter(new OutputStreamWriter(
+          exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+        app.handleRequests(new BufferedReader(new InputStreamReader(
+            exchange.getRequestBody(), StandardCharsets.UTF_8)), responses);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+}
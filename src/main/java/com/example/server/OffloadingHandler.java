@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.server;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands an exchange over to another executor. The JDK server runs every
+ * context on one executor, so this is how webhook requests get a pool of
+ * their own while assets are served on the server's threads.
+ */
+class OffloadingHandler implements HttpHandler {
+
+  private static final Logger LOGGER =
+      Logger.getLogger(OffloadingHandler.class.getName());
+
+  private final HttpHandler delegate;
+  private final Executor executor;
+
+  OffloadingHandler(HttpHandler delegate, Executor executor) {
+    checkNotNull(delegate, "delegate cannot be null.");
+    checkNotNull(executor, "executor cannot be null.");
+    this.delegate = delegate;
+    this.executor = executor;
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) {
+    executor.execute(() -> {
+      try {
+        delegate.handle(exchange);
+      } catch (IOException | RuntimeException e) {
+        LOGGER.log(Level.WARNING, "Error handling "
+            + exchange.getRequestURI(), e);
+        exchange.close();
+      }
+    });
+  }
+}
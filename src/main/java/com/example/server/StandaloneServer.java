@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.NumberGenieApp;
+import com.example.assets.AssetStore;
+import com.example.cluster.ClusterNode;
+import com.example.config.Config;
+import com.example.ratelimit.RateLimiter;
+import com.example.stats.GameStatistics;
+import com.example.stats.StatisticsSnapshotter;
+import com.example.tracing.Tracer;
+import com.example.util.ExecutionMode;
+import com.example.util.Flags;
+import com.example.util.ResponseCompressor;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Serves Number Genie without a servlet container, for local performance
+ * testing and container deployments.
+ *
+ * <p>Besides the webhook at {@code /}, it serves JSON lines batches of
+ * webhook requests at {@code /batch}, and the earcons and images from an
+ * {@link AssetStore} loaded at startup.
+ *
+ * <p>Built on the JDK's HTTP server: a single dispatcher thread accepts
+ * connections and parses requests with non-blocking I/O, and hands each
+ * request to a small pool of I/O threads. Those serve assets themselves and
+ * pass webhook and batch requests on to a fixed pool of worker threads, so a
+ * burst of asset fetches never queues up behind the webhook or the other way
+ * around. HTTP/1.1 connections are kept alive between requests. With
+ * {@code --execution=virtual} the worker pool is replaced by a virtual thread
+ * per request, see {@link ExecutionMode}.
+ *
+ * <p>Run with {@code gradle serve}, or {@code java -jar
+ * number-genie-standalone.jar} after {@code gradle standaloneJar}. Flags:
+ * {@code --host}, {@code --port}, {@code --workers}, {@code --execution}
+ * ({@code platform} or {@code virtual}), {@code --io-threads},
+ * {@code --backlog},
+ * {@code --idle-timeout} (seconds a kept-alive connection may stay idle),
+ * {@code --max-idle-connections}, {@code --webapp} (the directory holding
+ * {@code audio} and {@code images}) and {@code --config-dir} (a directory of
+ * config and prompts to load and watch, see {@link Config}). Gameplay
+ * statistics survive restarts when {@code snapshot_file} is set, see {@link
+ * StatisticsSnapshotter}, and are shared with other instances when {@code
+ * cluster_members} is set, see {@link ClusterNode}.
+ */
+public class StandaloneServer {
+
+  private static final Logger LOGGER =
+      Logger.getLogger(StandaloneServer.class.getName());
+
+  private final HttpServer server;
+  private final ExecutorService workers;
+  private final ExecutorService ioThreads;
+  private final Tracer tracer;
+
+  /**
+   * Creates a {@link StandaloneServer}. Call {@link #start()} to start
+   * serving.
+   *
+   * @param app the webhook app. Cannot be {@code null}.
+   * @param address the address to listen on. Port 0 picks a free port.
+   * Cannot be {@code null}.
+   * @param workerThreads the number of threads running requests. Must be
+   * positive.
+   * @param executionMode the kind of threads running requests. With {@link
+   * ExecutionMode#VIRTUAL}, {@code workerThreads} only applies if the
+   * runtime has no virtual threads. Cannot be {@code null}.
+   * @param ioThreads the number of threads serving assets and handing
+   * requests to the workers. Must be positive.
+   * @param backlog the length of the queue of connections waiting to be
+   * accepted, or 0 for the system default.
+   * @param webapp the directory holding the {@code audio} and {@code images}
+   * directories. Cannot be {@code null}.
+   */
+  public StandaloneServer(NumberGenieApp app, InetSocketAddress address,
+      int workerThreads, ExecutionMode executionMode, int ioThreads,
+      int backlog, Path webapp) throws IOException {
+    checkNotNull(app, "app cannot be null.");
+    checkNotNull(address, "address cannot be null.");
+    checkArgument(workerThreads > 0, "workerThreads must be positive.");
+    checkNotNull(executionMode, "executionMode cannot be null.");
+    checkArgument(ioThreads > 0, "ioThreads must be positive.");
+    checkNotNull(webapp, "webapp cannot be null.");
+    // Responses are written in one piece, so Nagle's algorithm would only
+    // hold back the last segment of every response on a kept-alive socket.
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    AssetStore assets = AssetStore.load(webapp);
+    workers = executionMode.newExecutor(workerThreads, "webhook-worker-");
+    this.ioThreads = newPool(ioThreads, "http-io-");
+    tracer = Tracer.fromConfig(Config.get().getConfig());
+    server = HttpServer.create(address, backlog);
+    server.setExecutor(this.ioThreads);
+    server.createContext("/",
+        new OffloadingHandler(new WebhookHandler(app,
+            new ResponseCompressor(ResponseCompressor.DEFAULT_MIN_BYTES,
+                ResponseCompressor.DEFAULT_LEVEL, workerThreads), tracer),
+            workers));
+    server.createContext("/batch",
+        new OffloadingHandler(new BatchHandler(
+            new NumberGenieApp(new GameStatistics(10),
+                RateLimiter.getProcessLimiter())), workers));
+    AssetHandler assetHandler = new AssetHandler(assets);
+    for (String directory : AssetStore.DIRECTORIES) {
+      server.createContext("/" + directory + "/", assetHandler);
+    }
+    LOGGER.info(String.format("Loaded %d assets, %d bytes", assets.size(),
+        assets.getTotalBytes()));
+  }
+
+  private static ExecutorService newPool(int threads, String namePrefix) {
+    AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable,
+          namePrefix + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * Stops accepting connections and waits for requests in progress.
+   *
+   * @param delaySeconds the longest time to wait for requests in progress.
+   */
+  public void stop(int delaySeconds) {
+    server.stop(delaySeconds);
+    workers.shutdown();
+    ioThreads.shutdown();
+    try {
+      tracer.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public InetSocketAddress getAddress() {
+    return server.getAddress();
+  }
+
+  public static void main(String[] args) throws Exception {
+    long mainStart = System.nanoTime();
+    Flags flags = Flags.parse(args);
+    if (flags.has("idle-timeout")) {
+      System.setProperty("sun.net.httpserver.idleInterval",
+          flags.getString("idle-timeout", null));
+    }
+    if (flags.has("config-dir")) {
+      System.setProperty(Config.DIRECTORY_PROPERTY,
+          flags.getString("config-dir", null));
+    }
+    if (flags.has("max-idle-connections")) {
+      System.setProperty("sun.net.httpserver.maxIdleConnections",
+          flags.getString("max-idle-connections", null));
+    }
+    ResourceBundle config = Config.get().getConfig();
+    GameStatistics statistics = ClusterNode.getProcessStatistics();
+    StatisticsSnapshotter snapshotter =
+        StatisticsSnapshotter.fromConfig(config, statistics);
+    StandaloneServer server = new StandaloneServer(
+        new NumberGenieApp(statistics, RateLimiter.getProcessLimiter()),
+        new InetSocketAddress(flags.getString("host", "0.0.0.0"),
+            flags.getInt("port", 8080)),
+        flags.getInt("workers",
+            2 * Runtime.getRuntime().availableProcessors()),
+        ExecutionMode.parse(flags.getString("execution", "platform")),
+        flags.getInt("io-threads", 2),
+        flags.getInt("backlog", 0),
+        Paths.get(flags.getString("webapp", "src/main/webapp")));
+    server.start();
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      server.stop(1);
+      try {
+        if (snapshotter != null) {
+          snapshotter.close();
+        }
+        if (ClusterNode.getInstance() != null) {
+          ClusterNode.getInstance().close();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }));
+
+    long sinceMain = TimeUnit.NANOSECONDS.toMillis(
+        System.nanoTime() - mainStart);
+    long sinceJvmStart = System.currentTimeMillis()
+        - ManagementFactory.getRuntimeMXBean().getStartTime();
+    System.out.printf("Number Genie listening on %s, started in %d ms "
+        + "(%d ms since JVM start)%n", server.getAddress(), sinceMain,
+        sinceJvmStart);
+  }
+}
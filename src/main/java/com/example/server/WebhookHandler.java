@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.server;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.tracing.Phase;
+import com.example.tracing.PhaseTimer;
+import com.example.tracing.Tracer;
+import com.example.util.ContentEncoding;
+import com.example.util.ResponseCompressor;
+import com.google.actions.api.App;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves webhook requests from Dialogflow, like {@link
+ * com.example.ActionsServlet} does in a servlet container, compressing
+ * responses when the request accepts it and timing them with a {@link
+ * Tracer}.
+ */
+class WebhookHandler implements HttpHandler {
+
+  private static final Logger LOGGER =
+      Logger.getLogger(WebhookHandler.class.getName());
+
+  private final App app;
+  private final ResponseCompressor compressor;
+  private final Tracer tracer;
+
+  WebhookHandler(App app, ResponseCompressor compressor, Tracer tracer) {
+    checkNotNull(app, "app cannot be null.");
+    checkNotNull(compressor, "compressor cannot be null.");
+    checkNotNull(tracer, "tracer cannot be null.");
+    this.app = app;
+    this.compressor = compressor;
+    this.tracer = tracer;
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    PhaseTimer timer = tracer.begin();
+    try {
+      if (!exchange.getRequestMethod().equals("POST")) {
+        exchange.getResponseHeaders().set("Allow", "POST");
+        send(exchange, HttpURLConnection.HTTP_BAD_METHOD, "text/plain",
+            "Webhook requests must be POSTed");
+        return;
+      }
+      String body = new String(
+          ByteStreams.toByteArray(exchange.getRequestBody()),
+          StandardCharsets.UTF_8);
+      String response;
+      try {
+        response = app.handleRequest(body, null).get();
+      } catch (ExecutionException e) {
+        LOGGER.log(Level.WARNING, "Error handling the intent", e.getCause());
+        send(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR, "text/plain",
+            "Error handling the intent - " + e.getCause());
+        return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        send(exchange, HttpURLConnection.HTTP_UNAVAILABLE, "text/plain",
+            "Interrupted");
+        return;
+      }
+      sendJson(exchange, response, timer);
+    } finally {
+      exchange.close();
+      tracer.end(timer, exchange.getRequestHeaders().getFirst("traceparent"));
+    }
+  }
+
+  private void sendJson(HttpExchange exchange, String json, PhaseTimer timer)
+      throws IOException {
+    Headers headers = exchange.getResponseHeaders();
+    headers.set("Content-Type", "application/json; charset=utf-8");
+    headers.set("Vary", "Accept-Encoding");
+    ContentEncoding accepted = ContentEncoding.negotiate(
+        exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+    compressor.write(json.getBytes(StandardCharsets.UTF_8), accepted,
+        (encoding, bytes, length) -> {
+          headers.set("Server-Timing", timer.toServerTiming());
+          timer.enter(Phase.WRITE);
+          if (encoding != ContentEncoding.IDENTITY) {
+            headers.set("Content-Encoding", encoding.getToken());
+          }
+          exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes, 0, length);
+          }
+        });
+  }
+
+  private static void send(HttpExchange exchange, int status,
+      String contentType, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type",
+        contentType + "; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
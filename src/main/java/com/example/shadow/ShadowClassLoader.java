@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.shadow;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Loads a build of the app next to the one serving users. The app's own
+ * classes, under {@code com.example}, and its resources, such as
+ * config.properties and the prompts, come from the given build first, so the
+ * shadow build has its own copies of every class, static state and setting.
+ * Everything else, the Actions on Google library and its dependencies
+ * included, is shared with the parent, so the shadow app is an {@link
+ * com.google.actions.api.App} like the primary one.
+ */
+public class ShadowClassLoader extends URLClassLoader {
+
+  private static final String APP_PACKAGE = "com.example.";
+
+  static {
+    registerAsParallelCapable();
+  }
+
+  /**
+   * Creates a {@link ShadowClassLoader}.
+   *
+   * @param build the jars or class directories of the shadow build. Cannot
+   * be {@code null}.
+   * @param parent the class loader of the primary app. Cannot be {@code
+   * null}.
+   */
+  public ShadowClassLoader(URL[] build, ClassLoader parent) {
+    super(checkNotNull(build, "build cannot be null."),
+        checkNotNull(parent, "parent cannot be null."));
+  }
+
+  @Override
+  protected Class<?> loadClass(String name, boolean resolve)
+      throws ClassNotFoundException {
+    if (!name.startsWith(APP_PACKAGE)) {
+      return super.loadClass(name, resolve);
+    }
+    synchronized (getClassLoadingLock(name)) {
+      Class<?> loaded = findLoadedClass(name);
+      if (loaded == null) {
+        try {
+          loaded = findClass(name);
+        } catch (ClassNotFoundException e) {
+          loaded = super.loadClass(name, false);
+        }
+      }
+      if (resolve) {
+        resolveClass(loaded);
+      }
+      return loaded;
+    }
+  }
+
+  @Override
+  public URL getResource(String name) {
+    URL resource = findResource(name);
+    return resource != null ? resource : super.getResource(name);
+  }
+}
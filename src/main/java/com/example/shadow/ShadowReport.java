@@ -0,0 +1,267 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.shadow;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Compares the responses and latencies of the primary and the shadow app
+ * for the requests mirrored by {@link ShadowTraffic}: how many responses
+ * were identical, where the others first differed, and how long each app
+ * took. Filled by the single shadow thread, and not thread-safe.
+ */
+public class ShadowReport {
+
+  private static final double[] PERCENTILES = {50, 90, 99, 100};
+  private static final int MAX_VALUE_CHARS = 200;
+
+  private final int maxExamples;
+  private final Histogram primaryNanos =
+      new Histogram(TimeUnit.SECONDS.toNanos(10), 2);
+  private final Histogram shadowNanos =
+      new Histogram(TimeUnit.SECONDS.toNanos(10), 2);
+  private final List<String> examples = new ArrayList<>();
+  private long identical;
+  private long different;
+  private long failed;
+  private long shadowSlower;
+  private double deltaNanosSum;
+
+  /**
+   * Creates an empty {@link ShadowReport}.
+   *
+   * @param maxExamples how many differences to describe in full.
+   */
+  public ShadowReport(int maxExamples) {
+    this.maxExamples = maxExamples;
+  }
+
+  /**
+   * Records a request both apps answered.
+   *
+   * @param primaryResponse the response sent to the user. Cannot be {@code
+   * null}.
+   * @param primaryNanos how long the primary app took to produce it.
+   * @param shadowResponse the shadow app's response. Cannot be {@code null}.
+   * @param shadowNanos how long the shadow app took to produce it.
+   */
+  void recordComparison(String primaryResponse, long primaryNanos,
+      String shadowResponse, long shadowNanos) {
+    checkNotNull(primaryResponse, "primaryResponse cannot be null.");
+    checkNotNull(shadowResponse, "shadowResponse cannot be null.");
+    record(this.primaryNanos, primaryNanos);
+    record(this.shadowNanos, shadowNanos);
+    deltaNanosSum += shadowNanos - primaryNanos;
+    if (shadowNanos > primaryNanos) {
+      shadowSlower++;
+    }
+    String difference = findDifference(primaryResponse, shadowResponse);
+    if (difference == null) {
+      identical++;
+    } else {
+      different++;
+      addExample(difference);
+    }
+  }
+
+  /**
+   * Records a request the shadow app failed to answer.
+   *
+   * @param error what the shadow app threw. Cannot be {@code null}.
+   */
+  void recordFailure(Throwable error) {
+    checkNotNull(error, "error cannot be null.");
+    failed++;
+    addExample("shadow failed: " + error);
+  }
+
+  public long getCompared() {
+    return identical + different;
+  }
+
+  public long getIdentical() {
+    return identical;
+  }
+
+  public long getDifferent() {
+    return different;
+  }
+
+  public long getFailed() {
+    return failed;
+  }
+
+  public List<String> getExamples() {
+    return examples;
+  }
+
+  /**
+   * Gets the mean of the shadow app's time minus the primary app's time per
+   * compared request. Positive when the shadow build is slower.
+   *
+   * @return the mean difference in milliseconds.
+   */
+  public double getMeanDeltaMillis() {
+    long compared = getCompared();
+    return compared == 0 ? 0 : deltaNanosSum / compared / 1e6;
+  }
+
+  /**
+   * Creates a summary of the report.
+   *
+   * @return a map suitable for serialization with Gson.
+   */
+  public Map<String, Object> toSummary() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("compared", getCompared());
+    summary.put("identical", identical);
+    summary.put("different", different);
+    summary.put("failed", failed);
+    summary.put("primaryMillis", percentiles(primaryNanos));
+    summary.put("shadowMillis", percentiles(shadowNanos));
+    summary.put("meanDeltaMillis", getMeanDeltaMillis());
+    summary.put("shadowSlower", shadowSlower);
+    summary.put("examples", examples);
+    return summary;
+  }
+
+  private void addExample(String example) {
+    if (examples.size() < maxExamples) {
+      examples.add(example);
+    }
+  }
+
+  private static void record(Histogram histogram, long nanos) {
+    histogram.recordValue(
+        Math.max(0, Math.min(nanos, histogram.getHighestTrackableValue())));
+  }
+
+  private static Map<String, Double> percentiles(Histogram histogram) {
+    Map<String, Double> percentiles = new LinkedHashMap<>();
+    for (double percentile : PERCENTILES) {
+      long nanos = percentile == 100
+          ? histogram.getMaxValue()
+          : histogram.getValueAtPercentile(percentile);
+      percentiles.put(percentile == 100 ? "max" : "p" + (int) percentile,
+          nanos / 1e6);
+    }
+    return percentiles;
+  }
+
+  /**
+   * Compares two responses as JSON, ignoring the order of object members.
+   *
+   * @return {@code null} if they are the same, otherwise the path of the
+   * first difference with both values.
+   */
+  static String findDifference(String primary, String shadow) {
+    if (primary.equals(shadow)) {
+      return null;
+    }
+    try {
+      JsonParser parser = new JsonParser();
+      return findDifference("$", parser.parse(primary), parser.parse(shadow));
+    } catch (JsonParseException e) {
+      return describe("$", primary, shadow);
+    }
+  }
+
+  private static String findDifference(String path, JsonElement primary,
+      JsonElement shadow) {
+    if (primary.isJsonObject() && shadow.isJsonObject()) {
+      JsonObject primaryObject = primary.getAsJsonObject();
+      JsonObject shadowObject = shadow.getAsJsonObject();
+      Set<String> keys = new TreeSet<>(primaryObject.keySet());
+      keys.addAll(shadowObject.keySet());
+      for (String key : keys) {
+        String difference = findDifference(path + "." + key,
+            orNull(primaryObject.get(key)), orNull(shadowObject.get(key)));
+        if (difference != null) {
+          return difference;
+        }
+      }
+      return null;
+    }
+    if (primary.isJsonArray() && shadow.isJsonArray()) {
+      JsonArray primaryArray = primary.getAsJsonArray();
+      JsonArray shadowArray = shadow.getAsJsonArray();
+      for (int i = 0; i < Math.min(primaryArray.size(), shadowArray.size());
+          i++) {
+        String difference = findDifference(path + "[" + i + "]",
+            primaryArray.get(i), shadowArray.get(i));
+        if (difference != null) {
+          return difference;
+        }
+      }
+      return primaryArray.size() == shadowArray.size()
+          ? null
+          : describe(path + ".length", String.valueOf(primaryArray.size()),
+              String.valueOf(shadowArray.size()));
+    }
+    if (primary.equals(shadow)) {
+      return null;
+    }
+    if (isNestedJson(primary) && isNestedJson(shadow)) {
+      // Conversation data travels as JSON inside a string.
+      try {
+        JsonParser parser = new JsonParser();
+        return findDifference(path, parser.parse(primary.getAsString()),
+            parser.parse(shadow.getAsString()));
+      } catch (JsonParseException e) {
+        // Compared as strings below.
+      }
+    }
+    return describe(path, primary.toString(), shadow.toString());
+  }
+
+  private static boolean isNestedJson(JsonElement element) {
+    return element.isJsonPrimitive()
+        && element.getAsJsonPrimitive().isString()
+        && element.getAsString().startsWith("{");
+  }
+
+  private static JsonElement orNull(JsonElement element) {
+    return element != null ? element : JsonNull.INSTANCE;
+  }
+
+  private static String describe(String path, String primary, String shadow) {
+    return path + ": primary " + truncate(primary) + ", shadow "
+        + truncate(shadow);
+  }
+
+  private static String truncate(String value) {
+    return value.length() <= MAX_VALUE_CHARS
+        ? value
+        : value.substring(0, MAX_VALUE_CHARS) + "...";
+  }
+}
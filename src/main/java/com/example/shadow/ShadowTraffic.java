@@ -0,0 +1,344 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.shadow;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.util.Utils;
+import com.google.actions.api.App;
+import com.google.common.base.Splitter;
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mirrors a sample of webhook requests to a second {@link App}, typically
+ * another build of the Number Genie, and compares its responses and latency
+ * with those of the app serving users in a {@link ShadowReport}.
+ *
+ * <p>Only {@link #sample()} and {@link #mirror} run on the request thread:
+ * the first decides whether to mirror the request and seeds the thread's
+ * {@link Utils#getRandom() random choices}, the second queues the request
+ * with the response sent. A single background thread replays queued
+ * requests to the shadow app with the same seed, so both apps pick the same
+ * answers and prompt variants, and any difference between the responses
+ * comes from the code. When the shadow app falls behind and the queue is
+ * full, requests are dropped rather than slowing down the webhook.
+ *
+ * <p>Requests are sampled one by one, and the shadow app keeps its own
+ * statistics, so responses that show statistics, such as the best score,
+ * may differ for users the shadow app has only partly seen.
+ */
+public class ShadowTraffic {
+
+  private static final Logger LOGGER =
+      Logger.getLogger(ShadowTraffic.class.getName());
+
+  private static final long POLL_MILLIS = 1000;
+  private static final long REPORT_INTERVAL_MILLIS = 60_000;
+  private static final int MAX_EXAMPLES = 20;
+
+  private static final Gson GSON = new Gson();
+
+  private final App shadow;
+  private final double sampleRate;
+  private final Path reportFile;
+  private final BlockingQueue<MirroredRequest> queue;
+  private final ShadowReport report = new ShadowReport(MAX_EXAMPLES);
+  private final Thread worker;
+  // The shadow build's Utils.seedRandom and clearRandomSeed, if it has them.
+  private final Method seedRandom;
+  private final Method clearRandomSeed;
+  private final LongAdder mirrored = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private volatile boolean running = true;
+
+  /**
+   * Creates a {@link ShadowTraffic} and starts its shadow thread.
+   *
+   * @param shadow the app to mirror requests to. Cannot be {@code null}.
+   * @param sampleRate the fraction of requests to mirror, from 0 to 1.
+   * @param queueSize the number of requests that can wait for the shadow
+   * app. Must be positive.
+   * @param reportFile where to write the report as JSON, every minute and on
+   * {@link #close()}, or {@code null} to only log it on {@link #close()}.
+   */
+  public ShadowTraffic(App shadow, double sampleRate, int queueSize,
+      Path reportFile) {
+    checkNotNull(shadow, "shadow cannot be null.");
+    checkArgument(sampleRate >= 0 && sampleRate <= 1,
+        "sampleRate must be in [0, 1].");
+    checkArgument(queueSize > 0, "queueSize must be positive.");
+    this.shadow = shadow;
+    this.sampleRate = sampleRate;
+    this.reportFile = reportFile;
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    ClassLoader loader = shadow.getClass().getClassLoader();
+    this.seedRandom = findUtilsMethod(loader, "seedRandom", long.class);
+    this.clearRandomSeed = findUtilsMethod(loader, "clearRandomSeed");
+    if (seedRandom == null || clearRandomSeed == null) {
+      LOGGER.warning("The shadow build cannot seed its random choices, "
+          + "its responses will differ where the prompts vary.");
+    }
+    this.worker = new Thread(this::compareLoop, "shadow-traffic");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Creates a {@link ShadowTraffic} from the {@code shadow_*} settings of the
+   * config bundle. The shadow app, {@code shadow_app}, is loaded by a {@link
+   * ShadowClassLoader} from the jars and class directories in {@code
+   * shadow_build}, or from this build if that is empty, so it has its own
+   * statistics and settings either way.
+   *
+   * @param config the config bundle. Cannot be {@code null}.
+   * @return a started {@link ShadowTraffic}, or {@code null} if {@code
+   * shadow_sample_rate} is not positive.
+   */
+  public static ShadowTraffic fromConfig(ResourceBundle config)
+      throws IOException, ReflectiveOperationException {
+    checkNotNull(config, "config cannot be null.");
+    if (!config.containsKey("shadow_sample_rate")
+        || Double.parseDouble(config.getString("shadow_sample_rate")) <= 0) {
+      return null;
+    }
+    String reportFile = config.getString("shadow_report_file");
+    return new ShadowTraffic(
+        loadApp(config.getString("shadow_app"),
+            buildUrls(config.getString("shadow_build"))),
+        Double.parseDouble(config.getString("shadow_sample_rate")),
+        Integer.parseInt(config.getString("shadow_queue_size")),
+        reportFile.isEmpty() ? null : Paths.get(reportFile));
+  }
+
+  /**
+   * Creates an app in a {@link ShadowClassLoader} of its own.
+   *
+   * @param className the app class, with a public no-argument constructor.
+   * Cannot be {@code null}.
+   * @param build the jars and class directories of the shadow build. Cannot
+   * be {@code null}.
+   * @return the shadow app.
+   */
+  public static App loadApp(String className, URL[] build)
+      throws ReflectiveOperationException {
+    checkNotNull(className, "className cannot be null.");
+    ClassLoader loader =
+        new ShadowClassLoader(build, ShadowTraffic.class.getClassLoader());
+    return (App) Class.forName(className, true, loader)
+        .getDeclaredConstructor().newInstance();
+  }
+
+  /**
+   * Decides whether to mirror the request about to be handled on this
+   * thread. If so, seeds the thread's random choices, which the caller
+   * undoes with {@link Utils#clearRandomSeed()} once the request is handled.
+   *
+   * @return the seed to pass to {@link #mirror}, or {@code null} if the
+   * request is not mirrored.
+   */
+  public Long sample() {
+    if (!running || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      return null;
+    }
+    long seed = ThreadLocalRandom.current().nextLong();
+    Utils.seedRandom(seed);
+    return seed;
+  }
+
+  /**
+   * Queues a sampled request for the shadow app. Never blocks.
+   *
+   * @param body the raw request body. Cannot be {@code null}.
+   * @param seed the seed returned by {@link #sample()}.
+   * @param response the response sent to the user. Cannot be {@code null}.
+   * @param nanos how long the primary app took to produce the response.
+   */
+  public void mirror(String body, long seed, String response, long nanos) {
+    checkNotNull(body, "body cannot be null.");
+    checkNotNull(response, "response cannot be null.");
+    if (running
+        && queue.offer(new MirroredRequest(body, seed, response, nanos))) {
+      mirrored.increment();
+    } else {
+      dropped.increment();
+    }
+  }
+
+  /**
+   * Stops accepting requests, compares the queued ones and writes out the
+   * report.
+   */
+  public void close() throws InterruptedException {
+    running = false;
+    worker.join(TimeUnit.SECONDS.toMillis(30));
+    LOGGER.info("Shadow traffic: " + GSON.toJson(toSummary()));
+  }
+
+  /**
+   * Gets the report. Only complete once {@link #close()} returned, as the
+   * shadow thread fills it until then.
+   *
+   * @return the report.
+   */
+  public ShadowReport getReport() {
+    return report;
+  }
+
+  public long getMirrored() {
+    return mirrored.sum();
+  }
+
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  private Map<String, Object> toSummary() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("mirrored", getMirrored());
+    summary.put("dropped", getDropped());
+    summary.putAll(report.toSummary());
+    return summary;
+  }
+
+  private void compareLoop() {
+    long nextReport = System.currentTimeMillis() + REPORT_INTERVAL_MILLIS;
+    try {
+      while (running || !queue.isEmpty()) {
+        MirroredRequest request =
+            queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (request != null) {
+          compare(request);
+        }
+        if (System.currentTimeMillis() >= nextReport) {
+          writeReport();
+          nextReport = System.currentTimeMillis() + REPORT_INTERVAL_MILLIS;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      writeReport();
+    }
+  }
+
+  private void compare(MirroredRequest request) throws InterruptedException {
+    try {
+      invoke(seedRandom, request.seed);
+      long start = System.nanoTime();
+      String response = shadow.handleRequest(request.body, null).get();
+      report.recordComparison(request.response, request.nanos, response,
+          System.nanoTime() - start);
+    } catch (ExecutionException e) {
+      report.recordFailure(e.getCause());
+    } catch (RuntimeException | LinkageError e) {
+      report.recordFailure(e);
+    } finally {
+      invoke(clearRandomSeed);
+    }
+  }
+
+  private void writeReport() {
+    if (reportFile == null) {
+      return;
+    }
+    try {
+      // Written aside and moved, so readers never see half a report.
+      Path temporary = reportFile.resolveSibling(
+          reportFile.getFileName() + ".tmp");
+      Files.write(temporary,
+          GSON.toJson(toSummary()).getBytes(StandardCharsets.UTF_8));
+      Files.move(temporary, reportFile, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not write the shadow report", e);
+    }
+  }
+
+  private static void invoke(Method method, Object... args) {
+    if (method == null) {
+      return;
+    }
+    try {
+      method.invoke(null, args);
+    } catch (ReflectiveOperationException e) {
+      LOGGER.log(Level.WARNING, "Could not seed the shadow app", e);
+    }
+  }
+
+  private static Method findUtilsMethod(ClassLoader loader, String name,
+      Class<?>... parameterTypes) {
+    try {
+      return Class.forName(Utils.class.getName(), true, loader)
+          .getMethod(name, parameterTypes);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  private static URL[] buildUrls(String build) throws MalformedURLException {
+    List<URL> urls = new ArrayList<>();
+    for (String path : Splitter.on(File.pathSeparatorChar).trimResults()
+        .omitEmptyStrings().split(build)) {
+      urls.add(Paths.get(path).toUri().toURL());
+    }
+    if (urls.isEmpty()) {
+      urls.add(ShadowTraffic.class.getProtectionDomain().getCodeSource()
+          .getLocation());
+    }
+    return urls.toArray(new URL[0]);
+  }
+
+  /** A mirrored request with the primary app's response to it. */
+  private static final class MirroredRequest {
+
+    final String body;
+    final long seed;
+    final String response;
+    final long nanos;
+
+    MirroredRequest(String body, long seed, String response, long nanos) {
+      this.body = body;
+      this.seed = seed;
+      this.response = response;
+      this.nanos = nanos;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.simulation;
+
+/**
+ * A simulated player. An {@link Agent} is used by a single thread and plays
+ * one game at a time.
+ */
+public interface Agent {
+
+  /**
+   * The feedback a player got for their previous guess.
+   */
+  enum Hint {
+    /** No guess has been made in this game yet. */
+    NONE,
+    /** The number is higher than the previous guess. */
+    HIGHER,
+    /** The number is lower than the previous guess. */
+    LOWER,
+    /** The previous guess was close, but no direction was given. */
+    CLOSE;
+
+    /**
+     * Reads the hint the app stored in the conversation data after a wrong
+     * guess.
+     *
+     * @param hint the {@code hint} value of the conversation data, which is
+     * {@code null} when the guess was close enough to get no direction.
+     * @return the matching hint.
+     */
+    public static Hint fromConversationData(String hint) {
+      if (hint == null) {
+        return CLOSE;
+      }
+      return hint.equals("higher") ? HIGHER : LOWER;
+    }
+  }
+
+  /**
+   * Gets the name of this kind of agent, used in reports.
+   *
+   * @return the agent name.
+   */
+  String getName();
+
+  /**
+   * Starts a new game.
+   *
+   * @param min the smallest possible number.
+   * @param max the largest possible number.
+   */
+  void startGame(int min, int max);
+
+  /**
+   * Picks the next guess.
+   *
+   * @param hint the feedback for the previous guess, or {@link Hint#NONE} for
+   * the first guess of a game.
+   * @return the next guess.
+   */
+  int nextGuess(Hint hint);
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.simulation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.stats.GuessHistogram;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Results of simulating many games with one kind of {@link Agent}. Each
+ * simulation thread fills its own report, and the reports are merged once
+ * all threads are done.
+ */
+public class AgentReport {
+
+  private static final int MAX_HISTOGRAM_GUESSES = 30;
+  private static final String HEADER_FORMAT =
+      "%-14s %10s %10s %11s %6s %6s %6s %7s %8s %8s %8s %9s";
+  private static final String ROW_FORMAT =
+      "%-14s %10d %10.0f %11.0f %6.1f %6.1f %6.1f %7.2f %8.1f %8.1f %8.1f %9.1f";
+
+  private final String agentName;
+  private final Histogram turnLatencyNanos =
+      new Histogram(TimeUnit.MINUTES.toNanos(1), 3);
+  private final GuessHistogram guessesToWin =
+      new GuessHistogram(MAX_HISTOGRAM_GUESSES);
+  private long games;
+  private long wins;
+  private long losses;
+  private long abandoned;
+  private long turns;
+  private long winningGuesses;
+  private long elapsedNanos;
+
+  /**
+   * Creates an empty {@link AgentReport}.
+   *
+   * @param agentName the name of the simulated agent. Cannot be {@code null}.
+   */
+  public AgentReport(String agentName) {
+    checkNotNull(agentName, "agentName cannot be null.");
+    this.agentName = agentName;
+  }
+
+  void recordTurn(long latencyNanos) {
+    turns++;
+    turnLatencyNanos.recordValue(
+        Math.min(latencyNanos, turnLatencyNanos.getHighestTrackableValue()));
+  }
+
+  void recordWin(int guesses) {
+    games++;
+    wins++;
+    winningGuesses += guesses;
+    guessesToWin.record(guesses);
+  }
+
+  void recordLoss() {
+    games++;
+    losses++;
+  }
+
+  void recordAbandoned() {
+    games++;
+    abandoned++;
+  }
+
+  void setElapsedNanos(long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Adds the counts of another report for the same agent into this one.
+   *
+   * @param other the report to merge. Cannot be {@code null}.
+   */
+  void merge(AgentReport other) {
+    checkNotNull(other, "other cannot be null.");
+    games += other.games;
+    wins += other.wins;
+    losses += other.losses;
+    abandoned += other.abandoned;
+    turns += other.turns;
+    winningGuesses += other.winningGuesses;
+    turnLatencyNanos.add(other.turnLatencyNanos);
+    guessesToWin.add(other.guessesToWin);
+  }
+
+  public String getAgentName() {
+    return agentName;
+  }
+
+  public long getGames() {
+    return games;
+  }
+
+  public long getWins() {
+    return wins;
+  }
+
+  public long getLosses() {
+    return losses;
+  }
+
+  public long getAbandoned() {
+    return abandoned;
+  }
+
+  public long getTurns() {
+    return turns;
+  }
+
+  public Histogram getTurnLatencyNanos() {
+    return turnLatencyNanos;
+  }
+
+  public GuessHistogram getGuessesToWin() {
+    return guessesToWin;
+  }
+
+  public double getGamesPerSecond() {
+    return perSecond(games);
+  }
+
+  public double getTurnsPerSecond() {
+    return perSecond(turns);
+  }
+
+  public double getAverageGuessesToWin() {
+    return wins == 0 ? 0 : (double) winningGuesses / wins;
+  }
+
+  /**
+   * Formats the column headers matching {@link #formatRow()}.
+   *
+   * @return the header line.
+   */
+  public static String formatHeader() {
+    return String.format(HEADER_FORMAT, "agent", "games", "games/s",
+        "turns/s", "win%", "loss%", "aband%", "guesses", "p50(us)", "p90(us)",
+        "p99(us)", "p99.9(us)");
+  }
+
+  /**
+   * Formats this report as a single table row.
+   *
+   * @return the report row.
+   */
+  public String formatRow() {
+    return String.format(ROW_FORMAT, agentName, games, getGamesPerSecond(),
+        getTurnsPerSecond(), percent(wins), percent(losses),
+        percent(abandoned), getAverageGuessesToWin(), micros(50), micros(90),
+        micros(99), micros(99.9));
+  }
+
+  /**
+   * Formats the guesses-to-win distribution, one bucket per line, as a text
+   * bar chart.
+   *
+   * @return the distribution.
+   */
+  public String formatGuessDistribution() {
+    StringBuilder builder = new StringBuilder();
+    long[] counts = guessesToWin.snapshot();
+    long most = 1;
+    for (long count : counts) {
+      most = Math.max(most, count);
+    }
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] == 0) {
+        continue;
+      }
+      String label = i == counts.length - 1 ? (i + 1) + "+" : "" + (i + 1);
+      int width = (int) (50 * counts[i] / most);
+      builder.append(String.format("  %4s %10d %s%n", label, counts[i],
+          new String(new char[Math.max(width, 1)]).replace('\0', '#')));
+    }
+    return builder.toString();
+  }
+
+  private double perSecond(long count) {
+    return elapsedNanos == 0
+        ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+  }
+
+  private double percent(long count) {
+    return games == 0 ? 0 : 100.0 * count / games;
+  }
+
+  private double micros(double percentile) {
+    return turnLatencyNanos.getValueAtPercentile(percentile) / 1000.0;
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.simulation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Factory for the built-in {@link Agent}s.
+ */
+public final class Agents {
+
+  /** Agent names accepted by {@link #create(String, long)}. */
+  public static final String[] NAMES = {
+      "binary", "noisy", "ignores_hints", "repeats", "random"
+  };
+
+  // A "close" reply without a direction means the guess was this far off.
+  private static final int CLOSE_DISTANCE = 4;
+
+  private static final double NOISE = 0.2;
+  private static final double REPEAT_PROBABILITY = 0.3;
+
+  private Agents() {
+  }
+
+  /**
+   * Creates an agent by name.
+   *
+   * @param name one of {@link #NAMES}.
+   * @param seed the seed for the agent's random choices.
+   * @return a new agent.
+   */
+  public static Agent create(String name, long seed) {
+    Random random = new Random(seed);
+    switch (name) {
+      case "binary":
+        return new BinarySearchAgent(name, random, 0, 0);
+      case "noisy":
+        return new BinarySearchAgent(name, random, NOISE, 0);
+      case "repeats":
+        return new BinarySearchAgent(name, random, 0, REPEAT_PROBABILITY);
+      case "ignores_hints":
+        return new IgnoresHintsAgent(random);
+      case "random":
+        return new RandomAgent(random);
+      default:
+        throw new IllegalArgumentException("Unknown agent: " + name);
+    }
+  }
+
+  /**
+   * Narrows the candidate range from hints and guesses its midpoint. With
+   * some probability it instead makes a random guess, or repeats its last
+   * guess.
+   */
+  private static final class BinarySearchAgent implements Agent {
+
+    private final String name;
+    private final Random random;
+    private final double noise;
+    private final double repeatProbability;
+    private int min;
+    private int max;
+    private int low;
+    private int high;
+    private int last;
+
+    BinarySearchAgent(String name, Random random, double noise,
+        double repeatProbability) {
+      checkArgument(noise >= 0 && noise <= 1, "noise must be in [0, 1].");
+      this.name = name;
+      this.random = random;
+      this.noise = noise;
+      this.repeatProbability = repeatProbability;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public void startGame(int min, int max) {
+      this.min = min;
+      this.max = max;
+      this.low = min;
+      this.high = max;
+    }
+
+    @Override
+    public int nextGuess(Hint hint) {
+      switch (hint) {
+        case HIGHER:
+          low = Math.max(low, last + 1);
+          break;
+        case LOWER:
+          high = Math.min(high, last - 1);
+          break;
+        case CLOSE:
+          low = Math.max(low, last - CLOSE_DISTANCE);
+          high = Math.min(high, last + CLOSE_DISTANCE);
+          break;
+        default:
+          break;
+      }
+      if (low > high) {
+        // Only possible after a noisy guess muddled the hints.
+        low = min;
+        high = max;
+      }
+      if (hint != Hint.NONE && random.nextDouble() < repeatProbability) {
+        return last;
+      }
+      int guess;
+      if (random.nextDouble() < noise) {
+        guess = low + random.nextInt(high - low + 1);
+      } else {
+        guess = (low + high) >>> 1;
+        if (hint != Hint.NONE && guess == last) {
+          guess = guess < high ? guess + 1 : Math.max(low, guess - 1);
+        }
+      }
+      last = guess;
+      return guess;
+    }
+  }
+
+  /**
+   * Guesses numbers in random order, never the same one twice, ignoring every
+   * hint.
+   */
+  private static final class IgnoresHintsAgent implements Agent {
+
+    private final Random random;
+    private final BitSet guessed = new BitSet();
+    private int min;
+    private int max;
+
+    IgnoresHintsAgent(Random random) {
+      this.random = random;
+    }
+
+    @Override
+    public String getName() {
+      return "ignores_hints";
+    }
+
+    @Override
+    public void startGame(int min, int max) {
+      this.min = min;
+      this.max = max;
+      guessed.clear();
+    }
+
+    @Override
+    public int nextGuess(Hint hint) {
+      int size = max - min + 1;
+      int remaining = size - guessed.cardinality();
+      if (remaining <= 0) {
+        guessed.clear();
+        remaining = size;
+      }
+      // Pick the n-th number that has not been guessed yet.
+      int n = random.nextInt(remaining);
+      int index = guessed.nextClearBit(0);
+      for (int i = 0; i < n; i++) {
+        index = guessed.nextClearBit(index + 1);
+      }
+      guessed.set(index);
+      return min + index;
+    }
+  }
+
+  /**
+   * Guesses uniformly at random, possibly repeating itself.
+   */
+  private static final class RandomAgent implements Agent {
+
+    private final Random random;
+    private int min;
+    private int max;
+
+    RandomAgent(Random random) {
+      this.random = random;
+    }
+
+    @Override
+    public String getName() {
+      return "random";
+    }
+
+    @Override
+    public void startGame(int min, int max) {
+      this.min = min;
+      this.max = max;
+    }
+
+    @Override
+    public int nextGuess(Hint hint) {
+      return min + random.nextInt(max - min + 1);
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.simulation;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Results of exploring the states of a game with a {@link StateExplorer}:
+ * how many states and turns were explored, the time the handler took per
+ * {@code provide_guess} branch, and the turns that broke an {@link
+ * Invariant}. Each exploration task fills its own report, and the reports
+ * are merged once all tasks are done.
+ */
+public class ExplorationReport {
+
+  private static final String HEADER_FORMAT = "%-20s %10s %9s %9s %9s %9s";
+  private static final String ROW_FORMAT = "%-20s %10d %9.1f %9.1f %9.1f %9.1f";
+
+  /** What every explored turn must satisfy. */
+  public enum Invariant {
+    NO_EXCEPTION("the handler does not throw"),
+    PROMPT("the response has a prompt"),
+    CONVERSATION("only repeating a guess twice ends the conversation"),
+    HINT("hints point from the guess towards the answer"),
+    WIN("a guess wins if and only if it is the answer"),
+    DOUBLE_DATA("numbers in conversation data are doubles, as JSON reads them"),
+    STEAM_SOUND_COUNT("steamSoundCount stays within [0, 5]");
+
+    private final String description;
+
+    Invariant(String description) {
+      this.description = description;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+  }
+
+  private final int maxExamples;
+  private final Map<String, Histogram> branchNanos = new TreeMap<>();
+  private final Map<Invariant, Long> violations =
+      new EnumMap<>(Invariant.class);
+  private final List<String> examples = new ArrayList<>();
+  private long states;
+  private long turns;
+  private long elapsedNanos;
+
+  /**
+   * Creates an empty {@link ExplorationReport}.
+   *
+   * @param maxExamples how many violating turns to describe in full.
+   */
+  public ExplorationReport(int maxExamples) {
+    this.maxExamples = maxExamples;
+  }
+
+  void recordState() {
+    states++;
+  }
+
+  void recordTurn(String branch, long nanos) {
+    turns++;
+    Histogram histogram = branchNanos.computeIfAbsent(
+        branch == null ? "none" : branch,
+        name -> new Histogram(TimeUnit.SECONDS.toNanos(10), 2));
+    histogram.recordValue(
+        Math.min(nanos, histogram.getHighestTrackableValue()));
+  }
+
+  void recordViolation(Invariant invariant, String example) {
+    violations.merge(invariant, 1L, Long::sum);
+    if (examples.size() < maxExamples) {
+      examples.add(invariant + ": " + example);
+    }
+  }
+
+  void setElapsedNanos(long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Adds the counts of another report into this one.
+   *
+   * @param other the report to merge. Cannot be {@code null}.
+   */
+  void merge(ExplorationReport other) {
+    checkNotNull(other, "other cannot be null.");
+    states += other.states;
+    turns += other.turns;
+    for (Map.Entry<String, Histogram> entry : other.branchNanos.entrySet()) {
+      Histogram histogram = branchNanos.get(entry.getKey());
+      if (histogram == null) {
+        branchNanos.put(entry.getKey(), entry.getValue().copy());
+      } else {
+        histogram.add(entry.getValue());
+      }
+    }
+    other.violations.forEach(
+        (invariant, count) -> violations.merge(invariant, count, Long::sum));
+    for (String example : other.examples) {
+      if (examples.size() >= maxExamples) {
+        break;
+      }
+      examples.add(example);
+    }
+  }
+
+  /**
+   * Gets the number of distinct states explored, counting each answer
+   * separately.
+   *
+   * @return the number of states.
+   */
+  public long getStates() {
+    return states;
+  }
+
+  public long getTurns() {
+    return turns;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * Gets the number of explored turns that took a branch of {@code
+   * provide_guess}.
+   *
+   * @param branch the name of the branch, see {@link
+   * com.example.NumberGenieApp#guessBranched}.
+   * @return the number of turns.
+   */
+  public long getBranchTurns(String branch) {
+    Histogram histogram = branchNanos.get(branch);
+    return histogram == null ? 0 : histogram.getTotalCount();
+  }
+
+  /**
+   * Gets the number of turns that broke an invariant.
+   *
+   * @param invariant the invariant.
+   * @return the number of violating turns.
+   */
+  public long getViolations(Invariant invariant) {
+    return violations.getOrDefault(invariant, 0L);
+  }
+
+  public long getTotalViolations() {
+    return violations.values().stream().mapToLong(Long::longValue).sum();
+  }
+
+  /**
+   * Gets descriptions of the first violating turns, with the state and guess
+   * that broke the invariant.
+   *
+   * @return the examples, at most {@code maxExamples} of them.
+   */
+  public ImmutableList<String> getExamples() {
+    return ImmutableList.copyOf(examples);
+  }
+
+  /**
+   * Formats the handler time per branch as a table, in microseconds.
+   *
+   * @return the table, one line per branch.
+   */
+  public String formatBranches() {
+    StringBuilder table = new StringBuilder(String.format(HEADER_FORMAT,
+        "branch", "turns", "mean us", "p50 us", "p99 us", "max us"));
+    for (Map.Entry<String, Histogram> entry : branchNanos.entrySet()) {
+      Histogram histogram = entry.getValue();
+      table.append(System.lineSeparator()).append(String.format(ROW_FORMAT,
+          entry.getKey(), histogram.getTotalCount(),
+          histogram.getMean() / 1000,
+          histogram.getValueAtPercentile(50) / 1000.0,
+          histogram.getValueAtPercentile(99) / 1000.0,
+          histogram.getMaxValue() / 1000.0));
+    }
+    return table.toString();
+  }
+
+  /**
+   * Formats the violations per invariant, followed by the examples.
+   *
+   * @return the violations, one line each.
+   */
+  public String formatViolations() {
+    StringBuilder text = new StringBuilder();
+    for (Invariant invariant : Invariant.values()) {
+      text.append(String.format("%-18s %10d  %s%n", invariant,
+          getViolations(invariant), invariant.getDescription()));
+    }
+    for (String example : examples) {
+      text.append(String.format("  %s%n", example));
+    }
+    return text.toString();
+  }
+}
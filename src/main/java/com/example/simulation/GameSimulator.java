@@ -0,0 +1,221 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.simulation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.NumberGenieApp;
+import com.example.simulation.Agent.Hint;
+import com.example.stats.GameStatistics;
+import com.example.util.DialogflowRequestBuilder;
+import com.example.util.DialogflowResponses;
+import com.example.util.Flags;
+import com.google.actions.api.App;
+import com.google.gson.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Plays complete Number Genie games against an {@link App} in process.
+ *
+ * <p>Every turn is a real webhook request: the output contexts of each
+ * response, and with them the conversation data, are carried into the next
+ * request just like Dialogflow does. Games run on several threads in
+ * parallel, each with its own {@link Agent}.
+ *
+ * <p>Run with {@code gradle simulate -PsimArgs="--games=1000000"}. Flags:
+ * {@code --games}, {@code --threads}, {@code --agents} (comma separated, see
+ * {@link Agents#NAMES}), {@code --seed}, {@code --max-turns} and {@code
+ * --games-per-session}.
+ */
+public class GameSimulator {
+
+  private static final String YES_NO_CONTEXT = "yes_no";
+
+  // Keeps the per-turn handler logging from drowning out the report.
+  private static final Logger APP_LOGGER = Logger.getLogger("com.example");
+
+  private final App app;
+  private final int maxTurnsPerGame;
+  private final int gamesPerSession;
+
+  /**
+   * Creates a {@link GameSimulator}.
+   *
+   * @param app the app to play against. Cannot be {@code null}.
+   * @param maxTurnsPerGame guesses after which an agent gives up on a game.
+   * @param gamesPerSession games played in one conversation, through {@code
+   * play_again_yes}, before starting a new session.
+   */
+  public GameSimulator(App app, int maxTurnsPerGame, int gamesPerSession) {
+    checkNotNull(app, "app cannot be null.");
+    checkArgument(maxTurnsPerGame > 0, "maxTurnsPerGame must be positive.");
+    checkArgument(gamesPerSession > 0, "gamesPerSession must be positive.");
+    this.app = app;
+    this.maxTurnsPerGame = maxTurnsPerGame;
+    this.gamesPerSession = gamesPerSession;
+  }
+
+  /**
+   * Plays {@code games} games with one kind of agent, spread over {@code
+   * threads} threads.
+   *
+   * @param agentName one of {@link Agents#NAMES}.
+   * @param games the total number of games to play.
+   * @param threads the number of threads to play on.
+   * @param seed the base seed for the agents.
+   * @return the merged results.
+   */
+  public AgentReport run(String agentName, long games, int threads, long seed)
+      throws InterruptedException, ExecutionException {
+    checkArgument(threads > 0, "threads must be positive.");
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<AgentReport>> futures = new ArrayList<>();
+      long start = System.nanoTime();
+      for (int i = 0; i < threads; i++) {
+        long share = games / threads + (i < games % threads ? 1 : 0);
+        Agent agent = Agents.create(agentName, seed + i);
+        String sessionPrefix = agentName + "-" + i + "-";
+        futures.add(executor.submit(() -> play(agent, share, sessionPrefix)));
+      }
+      AgentReport report = new AgentReport(agentName);
+      for (Future<AgentReport> future : futures) {
+        report.merge(future.get());
+      }
+      report.setElapsedNanos(System.nanoTime() - start);
+      return report;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private AgentReport play(Agent agent, long games, String sessionPrefix)
+      throws Exception {
+    AgentReport report = new AgentReport(agent.getName());
+    long session = 0;
+    int gamesInSession = 0;
+    String responseJson = null;
+    for (long game = 0; game < games; game++) {
+      String sessionId = sessionPrefix + session;
+      if (responseJson == null || gamesInSession == gamesPerSession) {
+        session++;
+        sessionId = sessionPrefix + session;
+        gamesInSession = 0;
+        responseJson = turn(report,
+            new DialogflowRequestBuilder("start_game")
+                .setSessionId(sessionId)
+                .setUserId(sessionId));
+      } else {
+        responseJson = turn(report,
+            new DialogflowRequestBuilder("play_again_yes")
+                .setSessionId(sessionId)
+                .setUserId(sessionId)
+                .setContextsFromResponse(responseJson));
+      }
+      gamesInSession++;
+      JsonObject response = DialogflowResponses.parse(responseJson);
+      Map<String, Object> data =
+          DialogflowResponses.getConversationData(response);
+      agent.startGame(((Double) data.get("min")).intValue(),
+          ((Double) data.get("max")).intValue());
+
+      Hint hint = Hint.NONE;
+      for (int guesses = 1; ; guesses++) {
+        if (guesses > maxTurnsPerGame) {
+          turn(report, new DialogflowRequestBuilder("quit_game")
+              .setSessionId(sessionId)
+              .setUserId(sessionId)
+              .setContextsFromResponse(responseJson));
+          report.recordAbandoned();
+          responseJson = null;
+          break;
+        }
+        responseJson = turn(report,
+            new DialogflowRequestBuilder("provide_guess")
+                .setSessionId(sessionId)
+                .setUserId(sessionId)
+                .setParameter("guess", (double) agent.nextGuess(hint))
+                .setContextsFromResponse(responseJson));
+        response = DialogflowResponses.parse(responseJson);
+        if (DialogflowResponses.hasContext(response, YES_NO_CONTEXT)) {
+          report.recordWin(guesses);
+          break;
+        }
+        if (!DialogflowResponses.expectsUserResponse(response)) {
+          report.recordLoss();
+          responseJson = null;
+          break;
+        }
+        hint = Hint.fromConversationData((String) DialogflowResponses
+            .getConversationData(response).get("hint"));
+      }
+    }
+    return report;
+  }
+
+  private String turn(AgentReport report, DialogflowRequestBuilder request)
+      throws Exception {
+    String body = request.build();
+    long start = System.nanoTime();
+    String response = app.handleRequest(body, null).get();
+    report.recordTurn(System.nanoTime() - start);
+    return response;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Flags flags = Flags.parse(args);
+    long games = flags.getLong("games", 100_000);
+    int threads = flags.getInt("threads",
+        Runtime.getRuntime().availableProcessors());
+    long seed = flags.getLong("seed", 42);
+    String[] agents = flags.getString("agents", String.join(",", Agents.NAMES))
+        .split(",");
+    APP_LOGGER.setLevel(Level.WARNING);
+
+    GameSimulator simulator = new GameSimulator(
+        new NumberGenieApp(new GameStatistics(10)),
+        flags.getInt("max-turns", 200),
+        flags.getInt("games-per-session", 5));
+
+    System.out.printf("Simulating %d games per agent on %d threads%n%n",
+        games, threads);
+    // A short warm-up so the first agent is not measured on a cold JIT.
+    simulator.run("binary", Math.min(games, 10_000), threads, seed);
+
+    List<AgentReport> reports = new ArrayList<>();
+    for (String agent : agents) {
+      reports.add(simulator.run(agent.trim(), games, threads, seed));
+    }
+    System.out.println(AgentReport.formatHeader());
+    for (AgentReport report : reports) {
+      System.out.println(report.formatRow());
+    }
+    for (AgentReport report : reports) {
+      System.out.printf("%nGuesses to win, %s:%n%s", report.getAgentName(),
+          report.formatGuessDistribution());
+    }
+  }
+}
@@ -0,0 +1,555 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.simulation;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.NumberGenieApp;
+import com.example.config.Config;
+import com.example.config.ConfigSnapshot;
+import com.example.prompts.RenderedPrompt;
+import com.example.simulation.ExplorationReport.Invariant;
+import com.example.stats.GameStatistics;
+import com.example.util.DialogflowRequestBuilder;
+import com.example.util.Flags;
+import com.google.actions.api.ActionRequest;
+import com.google.actions.api.ActionResponse;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Makes every guess from every reachable state of a game through the real
+ * {@code provide_guess} handler, in process, checking each turn against the
+ * {@link Invariant}s and timing it per branch.
+ *
+ * <p>The state of a game is the conversation data {@code provide_guess}
+ * reads: the answer, the previous guess, the hint, {@code steamSoundCount}
+ * and {@code duplicateCount}. From the state {@code start_game} leaves, every
+ * guess in the range is made, and then every guess again from each new state
+ * that turns up, until there are no new states. A game can also start over:
+ * with {@code start_game} in the middle of a game, and with {@code
+ * play_again_yes} after a win. Whatever those leave of the previous game is
+ * explored as a start state too, with every answer. {@code guessCount} is
+ * not part of the state, since it only picks between the two win prompts:
+ * turns run after no guesses, and winning turns run again after nine.
+ *
+ * <p>Answers are explored in parallel on a {@link ForkJoinPool}. Handlers
+ * are called directly, with requests parsed once per thread and guess, and
+ * their conversation data replaced before each turn, so a turn costs about
+ * what the handler costs. The time reported per branch is the time of the
+ * handler call, including its prompt and response building.
+ *
+ * <p>Run with {@code gradle explore}. Flags: {@code --min} and {@code
+ * --max} (the answers and guesses to explore, by default those of the
+ * config), {@code --threads} and {@code --examples} (how many violating
+ * turns to print). Exits with status 1 if any turn breaks an invariant.
+ */
+public class StateExplorer {
+
+  private static final String START_GAME = "start_game";
+  private static final String PLAY_AGAIN_YES = "play_again_yes";
+  private static final String PROVIDE_GUESS = "provide_guess";
+  private static final String WIN = "win";
+  private static final String SAME_AS_PREVIOUS = "same_as_previous";
+  private static final String STILL_HIGHER = "still_higher";
+  private static final String STILL_LOWER = "still_lower";
+  private static final String HIGHER = "higher";
+  private static final String LOWER = "lower";
+  // The guessCount that makes a winning guess the tenth.
+  private static final double MANY_GUESSES = 9;
+  private static final int MAX_STEAM_SOUND_COUNT = 5;
+
+  // Keeps the per-turn handler logging from drowning out the report.
+  private static final Logger APP_LOGGER = Logger.getLogger("com.example");
+
+  private final NumberGenieApp app;
+  private final int min;
+  private final int max;
+  private final int maxExamples;
+  private final ThreadLocal<Probe> probes;
+
+  /**
+   * Creates a {@link StateExplorer}.
+   *
+   * @param statistics where the explored app records won and lost games.
+   * Cannot be {@code null}.
+   * @param min the smallest answer and guess to explore.
+   * @param max the largest answer and guess to explore. Cannot be smaller
+   * than {@code min}.
+   * @param maxExamples how many violating turns to describe in reports.
+   */
+  public StateExplorer(GameStatistics statistics, int min, int max,
+      int maxExamples) {
+    checkNotNull(statistics, "statistics cannot be null.");
+    checkArgument(min <= max, "min cannot be greater than max.");
+    checkArgument(maxExamples >= 0, "maxExamples cannot be negative.");
+    this.app = new ExploredApp(statistics);
+    this.min = min;
+    this.max = max;
+    this.maxExamples = maxExamples;
+    this.probes = ThreadLocal.withInitial(Probe::new);
+  }
+
+  /**
+   * Explores every reachable state, one task per answer.
+   *
+   * @param threads the parallelism of the fork-join pool. Must be positive.
+   * @return the merged results.
+   */
+  public ExplorationReport explore(int threads) {
+    checkArgument(threads > 0, "threads must be positive.");
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      long start = System.nanoTime();
+      ExplorationReport report = new ExplorationReport(maxExamples);
+      List<Set<State>> visited = new ArrayList<>();
+      for (int answer = min; answer <= max; answer++) {
+        visited.add(new HashSet<>());
+      }
+      Set<Restart> restarted = new HashSet<>();
+      Set<Restart> pending = Collections.singleton(
+          new Restart(START_GAME, State.EMPTY));
+      // Each round explores from the start states that the restarts seen in
+      // the previous round lead to, until no round finds new ones.
+      while (!pending.isEmpty()) {
+        restarted.addAll(pending);
+        Set<State> starts = new HashSet<>();
+        for (Restart restart : pending) {
+          State state = probes.get().restart(restart, report);
+          if (state != null) {
+            starts.add(state);
+          }
+        }
+        Round round = pool.invoke(new AnswerTask(min, max + 1, starts, visited));
+        report.merge(round.report);
+        pending = new HashSet<>(round.restarts);
+        pending.removeAll(restarted);
+      }
+      report.setElapsedNanos(System.nanoTime() - start);
+      return report;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private Round exploreAnswer(int answer, Set<State> starts,
+      Set<State> visited) {
+    Round round = new Round(maxExamples);
+    Probe probe = probes.get();
+    ArrayDeque<State> frontier = new ArrayDeque<>();
+    for (State start : starts) {
+      State state = start.withAnswer(answer);
+      if (visited.add(state)) {
+        frontier.add(state);
+      }
+    }
+    while (!frontier.isEmpty()) {
+      State state = frontier.poll();
+      round.report.recordState();
+      round.restarts.add(new Restart(START_GAME, state.withoutAnswer()));
+      for (int guess = min; guess <= max; guess++) {
+        Turn turn = probe.guess(state, guess, 0, round.report);
+        if (turn == null || turn.ended) {
+          continue;
+        }
+        if (turn.branch.equals(WIN)) {
+          probe.guess(state, guess, MANY_GUESSES, round.report);
+          round.restarts.add(
+              new Restart(PLAY_AGAIN_YES, turn.next.withoutAnswer()));
+        } else if (visited.add(turn.next)) {
+          frontier.add(turn.next);
+        }
+      }
+    }
+    return round;
+  }
+
+  public static void main(String[] args) {
+    Flags flags = Flags.parse(args);
+    ConfigSnapshot config = Config.get();
+    int min = flags.getInt("min", (int) config.getMin());
+    int max = flags.getInt("max", (int) config.getMax());
+    int threads = flags.getInt("threads",
+        Runtime.getRuntime().availableProcessors());
+    APP_LOGGER.setLevel(Level.WARNING);
+
+    StateExplorer explorer = new StateExplorer(new GameStatistics(10), min,
+        max, flags.getInt("examples", 20));
+    ExplorationReport report = explorer.explore(threads);
+    System.out.printf("Explored %d states and %d turns for answers and "
+            + "guesses in [%d, %d] in %.1f s on %d threads%n%n",
+        report.getStates(), report.getTurns(), min, max,
+        report.getElapsedNanos() / (double) TimeUnit.SECONDS.toNanos(1),
+        threads);
+    System.out.println(report.formatBranches());
+    System.out.printf("%nViolations:%n%s", report.formatViolations());
+    if (report.getTotalViolations() > 0) {
+      System.exit(1);
+    }
+  }
+
+  /** Explores a range of answers, split in halves down to single answers. */
+  private final class AnswerTask extends RecursiveTask<Round> {
+
+    private final int from;
+    private final int to;
+    private final Set<State> starts;
+    private final List<Set<State>> visited;
+
+    AnswerTask(int from, int to, Set<State> starts, List<Set<State>> visited) {
+      this.from = from;
+      this.to = to;
+      this.starts = starts;
+      this.visited = visited;
+    }
+
+    @Override
+    protected Round compute() {
+      if (to - from == 1) {
+        return exploreAnswer(from, starts, visited.get(from - min));
+      }
+      int middle = (from + to) >>> 1;
+      AnswerTask low = new AnswerTask(from, middle, starts, visited);
+      low.fork();
+      Round round = new AnswerTask(middle, to, starts, visited).compute();
+      round.merge(low.join());
+      return round;
+    }
+  }
+
+  /** The results of exploring some answers from a set of start states. */
+  private static final class Round {
+
+    final ExplorationReport report;
+    final Set<Restart> restarts = new HashSet<>();
+
+    Round(int maxExamples) {
+      report = new ExplorationReport(maxExamples);
+    }
+
+    void merge(Round other) {
+      report.merge(other.report);
+      restarts.addAll(other.restarts);
+    }
+  }
+
+  /** A new game started from what is left of a previous one. */
+  private static final class Restart {
+
+    final String intent;
+    final State leftover;
+
+    Restart(String intent, State leftover) {
+      this.intent = intent;
+      this.leftover = leftover;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Restart)) {
+        return false;
+      }
+      Restart other = (Restart) o;
+      return intent.equals(other.intent) && leftover.equals(other.leftover);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * intent.hashCode() + leftover.hashCode();
+    }
+  }
+
+  /** The outcome of one guess. */
+  private static final class Turn {
+
+    final String branch;
+    final boolean ended;
+    final State next;
+
+    Turn(String branch, boolean ended, State next) {
+      this.branch = branch;
+      this.ended = ended;
+      this.next = next;
+    }
+  }
+
+  /**
+   * The conversation data {@code provide_guess} reads. Absent numbers are
+   * {@code NaN}.
+   */
+  private static final class State {
+
+    static final State EMPTY =
+        new State(Double.NaN, Double.NaN, null, 0, Double.NaN);
+
+    final double answer;
+    final double previousGuess;
+    final String hint;
+    final double steamSoundCount;
+    final double duplicateCount;
+
+    State(double answer, double previousGuess, String hint,
+        double steamSoundCount, double duplicateCount) {
+      this.answer = answer;
+      this.previousGuess = previousGuess;
+      this.hint = hint;
+      this.steamSoundCount = steamSoundCount;
+      this.duplicateCount = duplicateCount;
+    }
+
+    static State read(Map<String, Object> data) {
+      Object hint = data.get("hint");
+      return new State(number(data, "answer"), number(data, "previousGuess"),
+          hint == null ? null : hint.toString(),
+          number(data, "steamSoundCount"), number(data, "duplicateCount"));
+    }
+
+    State withAnswer(double answer) {
+      return new State(answer, previousGuess, hint, steamSoundCount,
+          duplicateCount);
+    }
+
+    State withoutAnswer() {
+      return new State(Double.NaN, previousGuess, hint, steamSoundCount,
+          duplicateCount);
+    }
+
+    void write(Map<String, Object> data, double guessCount) {
+      ConfigSnapshot config = Config.get();
+      data.clear();
+      put(data, "answer", answer);
+      data.put("guessCount", guessCount);
+      data.put("fallbackCount", 0.0);
+      put(data, "steamSoundCount", steamSoundCount);
+      data.put("min", config.getMin());
+      data.put("max", config.getMax());
+      put(data, "previousGuess", previousGuess);
+      put(data, "duplicateCount", duplicateCount);
+      if (hint != null) {
+        data.put("hint", hint);
+      }
+    }
+
+    private static void put(Map<String, Object> data, String key,
+        double value) {
+      if (!Double.isNaN(value)) {
+        data.put(key, value);
+      }
+    }
+
+    private static double number(Map<String, Object> data, String key) {
+      Object value = data.get(key);
+      return value instanceof Number ? ((Number) value).doubleValue()
+          : Double.NaN;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof State)) {
+        return false;
+      }
+      State other = (State) o;
+      return Double.compare(answer, other.answer) == 0
+          && Double.compare(previousGuess, other.previousGuess) == 0
+          && Objects.equals(hint, other.hint)
+          && Double.compare(steamSoundCount, other.steamSoundCount) == 0
+          && Double.compare(duplicateCount, other.duplicateCount) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(answer, previousGuess, hint, steamSoundCount,
+          duplicateCount);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("answer=%s previousGuess=%s hint=%s "
+              + "steamSoundCount=%s duplicateCount=%s", format(answer),
+          format(previousGuess), hint, format(steamSoundCount),
+          format(duplicateCount));
+    }
+
+    private static String format(double value) {
+      return Double.isNaN(value) ? "none" : String.valueOf((long) value);
+    }
+  }
+
+  /**
+   * The app under exploration, which tells the {@link Probe} of the thread
+   * that handled a guess which branch it took.
+   */
+  private final class ExploredApp extends NumberGenieApp {
+
+    ExploredApp(GameStatistics statistics) {
+      super(statistics);
+    }
+
+    @Override
+    protected void guessBranched(String branch) {
+      probes.get().branch = branch;
+    }
+  }
+
+  /**
+   * The requests one thread makes its turns with: one parsed {@code
+   * provide_guess} request per guess, and one per restart intent.
+   */
+  private final class Probe {
+
+    private final ActionRequest[] guesses = new ActionRequest[max - min + 1];
+    private final Map<String, ActionRequest> restarts = new HashMap<>();
+    // The branch of the guess in progress, told by the ExploredApp.
+    private String branch;
+
+    Probe() {
+      for (int guess = min; guess <= max; guess++) {
+        guesses[guess - min] = request(new DialogflowRequestBuilder(
+            PROVIDE_GUESS).setParameter("guess", (double) guess));
+      }
+      restarts.put(START_GAME,
+          request(new DialogflowRequestBuilder(START_GAME)));
+      restarts.put(PLAY_AGAIN_YES,
+          request(new DialogflowRequestBuilder(PLAY_AGAIN_YES)));
+    }
+
+    private ActionRequest request(DialogflowRequestBuilder builder) {
+      // Some data, so that the request parses it into a map of its own.
+      Map<String, Object> data = new HashMap<>();
+      data.put("answer", 0.0);
+      return app.createRequest(
+          builder.setConversationData(data).build(), null);
+    }
+
+    State restart(Restart restart, ExplorationReport report) {
+      ActionRequest request = restarts.get(restart.intent);
+      Map<String, Object> data = request.getConversationData();
+      restart.leftover.write(data, 0);
+      try {
+        if (restart.intent.equals(START_GAME)) {
+          app.startGame(request);
+        } else {
+          app.playAgainYes(request);
+        }
+      } catch (RuntimeException e) {
+        report.recordViolation(Invariant.NO_EXCEPTION,
+            restart.intent + " from " + restart.leftover + ": " + e);
+        return null;
+      }
+      String wrongType = findNonDouble(data);
+      if (wrongType != null) {
+        report.recordViolation(Invariant.DOUBLE_DATA,
+            restart.intent + " from " + restart.leftover + ": " + wrongType);
+      }
+      return State.read(data).withoutAnswer();
+    }
+
+    Turn guess(State state, int guess, double guessCount,
+        ExplorationReport report) {
+      ActionRequest request = guesses[guess - min];
+      Map<String, Object> data = request.getConversationData();
+      state.write(data, guessCount);
+      ActionResponse response;
+      branch = null;
+      long start = System.nanoTime();
+      try {
+        response = app.provideGuess(request);
+      } catch (RuntimeException e) {
+        report.recordViolation(Invariant.NO_EXCEPTION,
+            describe(state, guess, null) + ": " + e);
+        return null;
+      }
+      long nanos = System.nanoTime() - start;
+      report.recordTurn(branch, nanos);
+      State next = State.read(data);
+
+      RenderedPrompt prompt = RenderedPrompt.fromData(
+          data.get(NumberGenieApp.LAST_RESPONSE));
+      if (prompt == null || prompt.getSpeech()
+          .replace("<speech>", "").replace("</speech>", "").trim().isEmpty()) {
+        report.recordViolation(Invariant.PROMPT,
+            describe(state, guess, branch));
+      }
+      boolean ended = Boolean.FALSE.equals(response.getExpectUserResponse());
+      if (ended != (branch.equals(SAME_AS_PREVIOUS)
+          && state.duplicateCount == 1)) {
+        report.recordViolation(Invariant.CONVERSATION,
+            describe(state, guess, branch));
+      }
+      if (branch.equals(WIN) != (guess == state.answer)) {
+        report.recordViolation(Invariant.WIN, describe(state, guess, branch));
+      }
+      if ((branch.equals(STILL_HIGHER) && state.answer <= guess)
+          || (branch.equals(STILL_LOWER) && state.answer >= guess)
+          || !pointsToAnswer(next)) {
+        report.recordViolation(Invariant.HINT,
+            describe(state, guess, branch) + " -> " + next);
+      }
+      if (!(next.steamSoundCount >= 0
+          && next.steamSoundCount <= MAX_STEAM_SOUND_COUNT)) {
+        report.recordViolation(Invariant.STEAM_SOUND_COUNT,
+            describe(state, guess, branch) + " -> " + next);
+      }
+      String wrongType = findNonDouble(data);
+      if (wrongType != null) {
+        report.recordViolation(Invariant.DOUBLE_DATA,
+            describe(state, guess, branch) + ": " + wrongType);
+      }
+      return new Turn(branch, ended, next);
+    }
+
+    private boolean pointsToAnswer(State state) {
+      if (state.hint == null) {
+        return true;
+      }
+      if (state.hint.equals(HIGHER)) {
+        return state.previousGuess < state.answer;
+      }
+      return state.hint.equals(LOWER) && state.previousGuess > state.answer;
+    }
+
+    // Describes the first number in the data that is not a double.
+    private String findNonDouble(Map<String, Object> data) {
+      for (Map.Entry<String, Object> entry : data.entrySet()) {
+        Object value = entry.getValue();
+        if (value instanceof Number && !(value instanceof Double)) {
+          return entry.getKey() + " is a " + value.getClass().getSimpleName();
+        }
+      }
+      return null;
+    }
+
+    private String describe(State state, int guess, String branch) {
+      return state + " guess=" + guess
+          + (branch == null ? "" : " branch=" + branch);
+    }
+  }
+}
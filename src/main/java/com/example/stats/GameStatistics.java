@@ -0,0 +1,279 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.stats;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.config.Config;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * In-process gameplay statistics, kept per user and globally.
+ *
+ * <p>All counters are {@link LongAdder}s or atomics, so recording a result
+ * never takes a lock shared by all users.
+ */
+public class GameStatistics {
+
+  private static final int MAX_HISTOGRAM_GUESSES = 20;
+  private static final int LEADERBOARD_STRIPES = 16;
+
+  private static final GameStatistics INSTANCE;
+
+  static {
+    ResourceBundle config = Config.get().getConfig();
+    INSTANCE = new GameStatistics(
+        Integer.parseInt(config.getString("leaderboard_size")));
+  }
+
+  private final LongAdder wins = new LongAdder();
+  private final LongAdder losses = new LongAdder();
+  private final LongAdder totalGuesses = new LongAdder();
+  private final GuessHistogram histogram =
+      new GuessHistogram(MAX_HISTOGRAM_GUESSES);
+  private final ConcurrentMap<String, UserStatistics> users =
+      new ConcurrentHashMap<>();
+  private final Leaderboard leaderboard;
+  // The users changed since the last drainChangedUsers, once trackChanges
+  // was called.
+  private volatile Set<String> changedUsers;
+
+  /**
+   * Creates an empty {@link GameStatistics}.
+   *
+   * @param leaderboardSize the number of users ranked on the leaderboard.
+   */
+  public GameStatistics(int leaderboardSize) {
+    this.leaderboard = new Leaderboard(leaderboardSize, LEADERBOARD_STRIPES);
+  }
+
+  /**
+   * Gets the statistics shared by every handler in this process.
+   *
+   * @return the process-wide {@link GameStatistics}.
+   */
+  public static GameStatistics getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Records a won game.
+   *
+   * @param userId the ID of the user, or {@code null} if unknown. Anonymous
+   * wins only count towards the global statistics.
+   * @param guesses the number of guesses it took to win.
+   */
+  public void recordWin(String userId, long guesses) {
+    wins.increment();
+    totalGuesses.add(guesses);
+    histogram.record((int) Math.min(guesses, Integer.MAX_VALUE));
+    if (userId != null) {
+      recordUserWin(userId, guesses);
+    }
+  }
+
+  /**
+   * Records a won game in a user's statistics only, for a game counted in
+   * the global statistics of another process.
+   *
+   * @param userId the ID of the user. Cannot be {@code null}.
+   * @param guesses the number of guesses it took to win.
+   */
+  public void recordUserWin(String userId, long guesses) {
+    checkNotNull(userId, "userId cannot be null.");
+    UserStatistics user = getOrCreate(userId);
+    user.recordWin(guesses);
+    // Offered on every win, not only a better score, so that the wins shown
+    // and ranked on the leaderboard stay current.
+    leaderboard.offer(userId, user.getBestScore(), user.getWins());
+    markChanged(userId);
+  }
+
+  /**
+   * Records a game that ended without the number being guessed.
+   *
+   * @param userId the ID of the user, or {@code null} if unknown.
+   */
+  public void recordLoss(String userId) {
+    losses.increment();
+    if (userId != null) {
+      recordUserLoss(userId);
+    }
+  }
+
+  /**
+   * Records a lost game in a user's statistics only, for a game counted in
+   * the global statistics of another process.
+   *
+   * @param userId the ID of the user. Cannot be {@code null}.
+   */
+  public void recordUserLoss(String userId) {
+    checkNotNull(userId, "userId cannot be null.");
+    getOrCreate(userId).recordLoss();
+    markChanged(userId);
+  }
+
+  /**
+   * Gets the statistics for a single user.
+   *
+   * @param userId the ID of the user. Cannot be {@code null}.
+   * @return the user's statistics, or {@code null} if none were recorded.
+   */
+  public UserStatistics getUser(String userId) {
+    checkNotNull(userId, "userId cannot be null.");
+    return users.get(userId);
+  }
+
+  public long getWins() {
+    return wins.sum();
+  }
+
+  public long getLosses() {
+    return losses.sum();
+  }
+
+  public long getTotalGuesses() {
+    return totalGuesses.sum();
+  }
+
+  public GuessHistogram getHistogram() {
+    return histogram;
+  }
+
+  public List<Leaderboard.Entry> getLeaderboard() {
+    return leaderboard.getTop();
+  }
+
+  /**
+   * Builds a JSON-friendly summary of the global statistics and leaderboard.
+   *
+   * @return a map suitable for serialization with Gson.
+   */
+  public Map<String, Object> toSummary() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    long won = wins.sum();
+    summary.put("wins", won);
+    summary.put("losses", losses.sum());
+    summary.put("averageGuesses",
+        won == 0 ? 0 : (double) totalGuesses.sum() / won);
+    summary.put("players", users.size());
+    summary.put("guessHistogram", histogram.snapshot());
+    summary.put("leaderboard", leaderboard.getTop());
+    return summary;
+  }
+
+  /**
+   * Starts keeping track of the users whose statistics change, for {@link
+   * #drainChangedUsers}.
+   */
+  void trackChanges() {
+    if (changedUsers == null) {
+      changedUsers = ConcurrentHashMap.newKeySet();
+    }
+  }
+
+  /**
+   * Passes every user changed since the previous call to {@code consumer}.
+   * A user is unmarked before being passed on, so an update racing with the
+   * consumer marks the user again for the next call.
+   *
+   * @param consumer receives the changed users. Cannot be {@code null}.
+   */
+  void drainChangedUsers(Consumer<UserStatistics> consumer) {
+    checkNotNull(consumer, "consumer cannot be null.");
+    Set<String> changed = changedUsers;
+    if (changed == null) {
+      return;
+    }
+    for (Iterator<String> i = changed.iterator(); i.hasNext(); ) {
+      String userId = i.next();
+      i.remove();
+      consumer.accept(users.get(userId));
+    }
+  }
+
+  /**
+   * Gets every user with recorded statistics.
+   *
+   * @return a live view of the users.
+   */
+  public Collection<UserStatistics> getUsers() {
+    return users.values();
+  }
+
+  /**
+   * Replaces the global counters, when restoring saved statistics.
+   *
+   * @param wins the number of won games.
+   * @param losses the number of lost games.
+   * @param totalGuesses the number of guesses in won games.
+   * @param histogram the guess histogram counts, as from {@link
+   * GuessHistogram#snapshot()}.
+   */
+  void restore(long wins, long losses, long totalGuesses, long[] histogram) {
+    this.wins.reset();
+    this.wins.add(wins);
+    this.losses.reset();
+    this.losses.add(losses);
+    this.totalGuesses.reset();
+    this.totalGuesses.add(totalGuesses);
+    this.histogram.restore(histogram);
+  }
+
+  /**
+   * Replaces a user's statistics with saved or replicated ones, and ranks
+   * the user on the leaderboard.
+   *
+   * @param userId the ID of the user. Cannot be {@code null}.
+   * @param values the user's counters, as from {@link
+   * UserStatistics#toValues()}.
+   */
+  public void restoreUser(String userId, long[] values) {
+    checkNotNull(userId, "userId cannot be null.");
+    UserStatistics user = getOrCreate(userId);
+    user.restore(values);
+    if (user.getBestScore() != UserStatistics.NO_BEST_SCORE) {
+      leaderboard.offer(userId, user.getBestScore(), user.getWins());
+    }
+    markChanged(userId);
+  }
+
+  private void markChanged(String userId) {
+    Set<String> changed = changedUsers;
+    if (changed != null) {
+      changed.add(userId);
+    }
+  }
+
+  private UserStatistics getOrCreate(String userId) {
+    UserStatistics user = users.get(userId);
+    if (user == null) {
+      user = users.computeIfAbsent(userId, UserStatistics::new);
+    }
+    return user;
+  }
+}
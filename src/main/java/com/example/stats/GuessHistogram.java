@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.stats;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class GuessHistogram {
+
+  private final AtomicLongArray buckets;
+
+  /**
+   * Creates a {@link GuessHistogram} with one bucket per guess count from 1 to
+   * {@code maxGuesses}. Larger values are counted in a final overflow bucket.
+   *
+   * @param maxGuesses the largest guess count with its own bucket. Must be
+   * positive.
+   */
+  public GuessHistogram(int maxGuesses) {
+    checkArgument(maxGuesses > 0, "maxGuesses must be positive.");
+    // Index 0 is unused so that a guess count maps directly to its bucket.
+    this.buckets = new AtomicLongArray(maxGuesses + 2);
+  }
+
+  /**
+   * Records a single game that took {@code guesses} guesses.
+   *
+   * @param guesses the number of guesses. Values below 1 are ignored.
+   */
+  public void record(int guesses) {
+    if (guesses < 1) {
+      return;
+    }
+    buckets.incrementAndGet(Math.min(guesses, buckets.length() - 1));
+  }
+
+  /**
+   * Adds every count of another histogram with the same buckets into this
+   * one.
+   *
+   * @param other the histogram to add. Must have the same number of buckets.
+   */
+  public void add(GuessHistogram other) {
+    checkArgument(other.buckets.length() == buckets.length(),
+        "other must have the same number of buckets.");
+    for (int i = 1; i < buckets.length(); i++) {
+      buckets.addAndGet(i, other.buckets.get(i));
+    }
+  }
+
+  /**
+   * Replaces every count with saved ones.
+   *
+   * @param counts the counts, as from {@link #snapshot()}. Must have the
+   * same number of buckets.
+   */
+  void restore(long[] counts) {
+    checkArgument(counts.length == buckets.length() - 1,
+        "counts must have the same number of buckets.");
+    for (int i = 0; i < counts.length; i++) {
+      buckets.set(i + 1, counts[i]);
+    }
+  }
+
+  /**
+   * Gets the number of games that took exactly {@code guesses} guesses, or
+   * for the last bucket, at least that many.
+   *
+   * @param guesses the guess count, from 1 to {@link #getMaxGuesses()} + 1.
+   * @return the number of recorded games in the bucket.
+   */
+  public long getCount(int guesses) {
+    checkArgument(guesses >= 1 && guesses < buckets.length(),
+        "guesses out of range.");
+    return buckets.get(guesses);
+  }
+
+  /**
+   * Gets the largest guess count with its own bucket.
+   *
+   * @return the largest guess count with its own bucket.
+   */
+  public int getMaxGuesses() {
+    return buckets.length() - 2;
+  }
+
+  /**
+   * Takes a point-in-time copy of the bucket counts. Index {@code i} holds the
+   * count for {@code i + 1} guesses, and the last element holds the overflow.
+   *
+   * @return a copy of the bucket counts.
+   */
+  public long[] snapshot() {
+    long[] counts = new long[buckets.length() - 1];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets.get(i + 1);
+    }
+    return counts;
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.stats;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A top-N leaderboard of best scores, where fewer guesses rank higher.
+ *
+ * <p>Users are partitioned into stripes by the hash of their ID, and each
+ * stripe keeps its own top-N. Writers only ever touch one stripe, and scores
+ * that cannot enter a full stripe are rejected by a volatile read without
+ * taking any lock. Readers merge the stripes on demand. Stripes are guarded
+ * by {@link ReentrantLock}s rather than monitors, so that a virtual thread
+ * offering a score is never pinned to its carrier.
+ */
+public class Leaderboard {
+
+  private static final Comparator<Entry> RANKING = Comparator
+      .comparingLong(Entry::getBestScore)
+      .thenComparing(Comparator.comparingLong(Entry::getWins).reversed())
+      .thenComparing(Entry::getUserId);
+
+  private final int size;
+  private final Stripe[] stripes;
+
+  /**
+   * Creates a {@link Leaderboard} holding the best {@code size} users.
+   *
+   * @param size the number of users to rank. Must be positive.
+   * @param stripeCount the number of independent stripes. Must be a positive
+   * power of two.
+   */
+  public Leaderboard(int size, int stripeCount) {
+    checkArgument(size > 0, "size must be positive.");
+    checkArgument(Integer.bitCount(stripeCount) == 1,
+        "stripeCount must be a power of two.");
+    this.size = size;
+    this.stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe(size);
+    }
+  }
+
+  /**
+   * Offers a user's current best score to the leaderboard.
+   *
+   * @param userId the ID of the user. Cannot be {@code null}.
+   * @param bestScore the fewest guesses the user needed to win.
+   * @param wins the total number of games the user has won.
+   */
+  public void offer(String userId, long bestScore, long wins) {
+    checkNotNull(userId, "userId cannot be null.");
+    Stripe stripe = stripes[spread(userId.hashCode()) & (stripes.length - 1)];
+    if (bestScore > stripe.threshold) {
+      return;
+    }
+    stripe.offer(new Entry(userId, bestScore, wins));
+  }
+
+  /**
+   * Gets the current top entries, best first.
+   *
+   * @return an immutable list of at most {@code size} entries.
+   */
+  public List<Entry> getTop() {
+    List<Entry> all = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      stripe.copyTo(all);
+    }
+    all.sort(RANKING);
+    return Collections.unmodifiableList(
+        new ArrayList<>(all.subList(0, Math.min(size, all.size()))));
+  }
+
+  private static int spread(int h) {
+    return h ^ (h >>> 16);
+  }
+
+  private static final class Stripe {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Entry[] entries;
+    private int count;
+    // Worst score that can still enter this stripe; only lowered once full.
+    private volatile long threshold = Long.MAX_VALUE;
+
+    Stripe(int size) {
+      this.entries = new Entry[size];
+    }
+
+    void offer(Entry entry) {
+      lock.lock();
+      try {
+        insert(entry);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void insert(Entry entry) {
+      int existing = -1;
+      for (int i = 0; i < count; i++) {
+        if (entries[i].getUserId().equals(entry.getUserId())) {
+          existing = i;
+          break;
+        }
+      }
+      if (existing >= 0) {
+        if (RANKING.compare(entry, entries[existing]) >= 0) {
+          return;
+        }
+        entries[existing] = entry;
+      } else if (count < entries.length) {
+        entries[count++] = entry;
+      } else if (RANKING.compare(entry, entries[count - 1]) < 0) {
+        entries[count - 1] = entry;
+      } else {
+        return;
+      }
+      // Entries are kept sorted, so one insertion pass restores the order.
+      for (int i = existing >= 0 ? existing : count - 1;
+          i > 0 && RANKING.compare(entries[i], entries[i - 1]) < 0; i--) {
+        Entry tmp = entries[i];
+        entries[i] = entries[i - 1];
+        entries[i - 1] = tmp;
+      }
+      if (count == entries.length) {
+        threshold = entries[count - 1].getBestScore();
+      }
+    }
+
+    void copyTo(List<Entry> target) {
+      lock.lock();
+      try {
+        for (int i = 0; i < count; i++) {
+          target.add(entries[i]);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  public static final class Entry {
+
+    private final String userId;
+    private final long bestScore;
+    private final long wins;
+
+    Entry(String userId, long bestScore, long wins) {
+      this.userId = userId;
+      this.bestScore = bestScore;
+      this.wins = wins;
+    }
+
+    public String getUserId() {
+      return userId;
+    }
+
+    public long getBestScore() {
+      return bestScore;
+    }
+
+    public long getWins() {
+      return wins;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.stats;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.example.config.LocaleResolver.Match;
+import com.example.config.LocaleResolver.Resolution;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how the locales of responses were resolved, and which requested
+ * locales fell back to the prompts of another locale.
+ */
+public class LocaleStatistics {
+
+  // Fallbacks of locales beyond this many are only counted under "other".
+  static final int MAX_TRACKED_LOCALES = 100;
+  private static final String OTHER = "other";
+
+  private static final LocaleStatistics INSTANCE = new LocaleStatistics();
+
+  private final LongAdder[] matches = new LongAdder[Match.values().length];
+  private final ConcurrentMap<Locale, LongAdder> fallbacks =
+      new ConcurrentHashMap<>();
+  private final LongAdder otherFallbacks = new LongAdder();
+
+  LocaleStatistics() {
+    for (int i = 0; i < matches.length; i++) {
+      matches[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Gets the statistics shared by every handler in this process.
+   *
+   * @return the process-wide {@link LocaleStatistics}.
+   */
+  public static LocaleStatistics getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Records how the locale of one response was resolved.
+   *
+   * @param requested the locale of the request. Cannot be {@code null}.
+   * @param resolution what it resolved to. Cannot be {@code null}.
+   */
+  public void record(Locale requested, Resolution resolution) {
+    checkNotNull(requested, "requested cannot be null.");
+    checkNotNull(resolution, "resolution cannot be null.");
+    matches[resolution.getMatch().ordinal()].increment();
+    if (resolution.getMatch() == Match.EXACT) {
+      return;
+    }
+    LongAdder count = fallbacks.get(requested);
+    if (count == null && fallbacks.size() < MAX_TRACKED_LOCALES) {
+      count = fallbacks.computeIfAbsent(requested, locale -> new LongAdder());
+    }
+    (count != null ? count : otherFallbacks).increment();
+  }
+
+  public long getCount(Match match) {
+    return matches[match.ordinal()].sum();
+  }
+
+  /**
+   * Gets the number of responses whose requested locale fell back.
+   *
+   * @param requested the requested locale.
+   * @return the number of fallbacks.
+   */
+  public long getFallbacks(Locale requested) {
+    LongAdder count = fallbacks.get(requested);
+    return count == null ? 0 : count.sum();
+  }
+
+  /**
+   * Summarizes the statistics for JSON serialization.
+   *
+   * @return the count of each kind of match, and the fallback count of every
+   * requested locale that fell back, by language tag.
+   */
+  public Map<String, Object> toSummary() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    for (Match match : Match.values()) {
+      summary.put(match.name().toLowerCase(Locale.ROOT), getCount(match));
+    }
+    Map<String, Long> byLocale = new TreeMap<>();
+    fallbacks.forEach((locale, count) ->
+        byLocale.put(locale.toLanguageTag(), count.sum()));
+    if (otherFallbacks.sum() > 0) {
+      byLocale.put(OTHER, otherFallbacks.sum());
+    }
+    summary.put("fallbacks", byLocale);
+    return summary;
+  }
+}
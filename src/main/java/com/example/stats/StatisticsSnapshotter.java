@@ -0,0 +1,337 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.stats;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps {@link GameStatistics} across restarts and redeploys in a local
+ * snapshot file.
+ *
+ * <p>The file is a log of frames. A background thread appends a frame every
+ * interval, with the global counters and only the users whose statistics
+ * changed since the previous frame, so the cost of a snapshot follows the
+ * traffic rather than the number of players. A user is unmarked before
+ * being read for a frame, so an update racing with the read is written
+ * again in the next frame. User records hold absolute values, so the last
+ * record of each user in the log is its latest state. Once the log holds
+ * more than twice as many user records as there are users, it is compacted:
+ * a single frame with every user is written aside and renamed over the log.
+ *
+ * <p>At startup, the file is memory-mapped and replayed before any request
+ * is handled. Every frame carries a CRC32, and a frame torn by a crash ends
+ * the replay, losing at most the last interval.
+ *
+ * <p>The file starts with {@link #MAGIC}, then holds frames of {@code
+ * <int payload length> <int CRC32 of the payload> <payload>}. A payload is
+ * {@code <long time millis> <long wins> <long losses> <long total guesses>
+ * <int bucket count> <long count>... <int user count>} followed by each
+ * user as {@code <int ID length> <UTF-8 ID> <long counter>...}, with the
+ * counters of {@link UserStatistics#toValues()}. All numbers are big-endian.
+ */
+public class StatisticsSnapshotter {
+
+  /** The first bytes of a snapshot file, "NGS" and a format version. */
+  public static final int MAGIC = 0x4e475301;
+
+  private static final Logger LOGGER =
+      Logger.getLogger(StatisticsSnapshotter.class.getName());
+
+  private static final int FRAME_HEADER_BYTES = 8;
+  // Compaction only pays off once the log is of some size.
+  private static final long MIN_COMPACTION_RECORDS = 10_000;
+
+  private final Path file;
+  private final long intervalMillis;
+  private final GameStatistics statistics;
+  private final CountDownLatch stopped = new CountDownLatch(1);
+  private final Thread writer;
+  private final CRC32 crc = new CRC32();
+  private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+
+  private FileChannel log;
+  private long recordsInLog;
+
+  /**
+   * Restores {@code statistics} from {@code file}, if it exists, compacts
+   * the file and starts the snapshot thread. Call before {@code statistics}
+   * records any game.
+   *
+   * @param file the snapshot file. Cannot be {@code null}.
+   * @param intervalMillis the time between snapshots. Must be positive.
+   * @param statistics the statistics to restore and snapshot. Cannot be
+   * {@code null}.
+   */
+  public StatisticsSnapshotter(Path file, long intervalMillis,
+      GameStatistics statistics) throws IOException {
+    checkNotNull(file, "file cannot be null.");
+    checkArgument(intervalMillis > 0, "intervalMillis must be positive.");
+    checkNotNull(statistics, "statistics cannot be null.");
+    this.file = file.toAbsolutePath();
+    this.intervalMillis = intervalMillis;
+    this.statistics = statistics;
+    if (Files.exists(this.file)) {
+      long start = System.nanoTime();
+      int users = restore(this.file, statistics);
+      LOGGER.info(String.format("Restored %d users from %s in %.1f ms",
+          users, this.file, (System.nanoTime() - start) / 1e6));
+    }
+    statistics.trackChanges();
+    compact();
+    this.writer = new Thread(this::snapshotLoop, "statistics-snapshotter");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Creates a {@link StatisticsSnapshotter} from the {@code snapshot_*}
+   * settings of the config bundle.
+   *
+   * @param config the config bundle. Cannot be {@code null}.
+   * @param statistics the statistics to restore and snapshot. Cannot be
+   * {@code null}.
+   * @return a started snapshotter, or {@code null} if {@code snapshot_file}
+   * is empty.
+   */
+  public static StatisticsSnapshotter fromConfig(ResourceBundle config,
+      GameStatistics statistics) throws IOException {
+    checkNotNull(config, "config cannot be null.");
+    if (!config.containsKey("snapshot_file")
+        || config.getString("snapshot_file").isEmpty()) {
+      return null;
+    }
+    return new StatisticsSnapshotter(
+        Paths.get(config.getString("snapshot_file")),
+        Long.parseLong(config.getString("snapshot_interval_millis")),
+        statistics);
+  }
+
+  /**
+   * Replays a snapshot file into {@code statistics}, up to the first torn
+   * or corrupt frame.
+   *
+   * @param file the snapshot file. Cannot be {@code null}.
+   * @param statistics the statistics to restore. Cannot be {@code null}.
+   * @return the number of users in {@code statistics} afterwards.
+   */
+  public static int restore(Path file, GameStatistics statistics)
+      throws IOException {
+    checkNotNull(file, "file cannot be null.");
+    checkNotNull(statistics, "statistics cannot be null.");
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) {
+      throw new IOException(file + " is not a statistics snapshot.");
+    }
+    CRC32 crc = new CRC32();
+    while (buffer.remaining() >= FRAME_HEADER_BYTES) {
+      int length = buffer.getInt();
+      int checksum = buffer.getInt();
+      if (length < 0 || length > buffer.remaining()) {
+        break;
+      }
+      ByteBuffer frame = buffer.slice();
+      frame.limit(length);
+      crc.reset();
+      crc.update(frame.duplicate());
+      if ((int) crc.getValue() != checksum) {
+        break;
+      }
+      buffer.position(buffer.position() + length);
+      try {
+        frame.getLong();
+        long wins = frame.getLong();
+        long losses = frame.getLong();
+        long totalGuesses = frame.getLong();
+        long[] histogram = new long[frame.getInt()];
+        for (int i = 0; i < histogram.length; i++) {
+          histogram[i] = frame.getLong();
+        }
+        statistics.restore(wins, losses, totalGuesses, histogram);
+        int userCount = frame.getInt();
+        for (int i = 0; i < userCount; i++) {
+          byte[] userId = new byte[frame.getInt()];
+          frame.get(userId);
+          long[] values = new long[UserStatistics.VALUE_COUNT];
+          for (int j = 0; j < values.length; j++) {
+            values[j] = frame.getLong();
+          }
+          // Later records of a user replace earlier ones.
+          statistics.restoreUser(new String(userId, StandardCharsets.UTF_8),
+              values);
+        }
+      } catch (BufferUnderflowException | NegativeArraySizeException e) {
+        throw new IOException(file + " holds a malformed frame.", e);
+      }
+    }
+    return statistics.getUsers().size();
+  }
+
+  /**
+   * Stops the snapshot thread, writes a last frame and closes the file.
+   */
+  public void close() throws InterruptedException {
+    stopped.countDown();
+    writer.join(TimeUnit.SECONDS.toMillis(30));
+  }
+
+  /** Appends a frame of the users changed since the previous one. */
+  void snapshot() throws IOException {
+    if (log == null) {
+      // The log was lost to an earlier error: start over.
+      compact();
+      return;
+    }
+    List<UserStatistics> changed = new ArrayList<>();
+    statistics.drainChangedUsers(changed::add);
+    append(log, encodeFrame(changed));
+    recordsInLog += changed.size();
+    if (recordsInLog > Math.max(MIN_COMPACTION_RECORDS,
+        2L * statistics.getUsers().size())) {
+      compact();
+    }
+  }
+
+  /** Replaces the log with a single frame holding every user. */
+  void compact() throws IOException {
+    // Every user goes into the new log, the changed ones included.
+    statistics.drainChangedUsers(user -> { });
+    List<UserStatistics> users = new ArrayList<>(statistics.getUsers());
+    byte[] frame = encodeFrame(users);
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary,
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer magic = ByteBuffer.allocate(4).putInt(0, MAGIC);
+      while (magic.hasRemaining()) {
+        channel.write(magic);
+      }
+      append(channel, frame);
+      channel.force(false);
+    }
+    closeLog();
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    log = FileChannel.open(file, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND);
+    recordsInLog = users.size();
+  }
+
+  private byte[] encodeFrame(Collection<UserStatistics> users)
+      throws IOException {
+    payload.reset();
+    DataOutputStream out = new DataOutputStream(payload);
+    out.writeLong(System.currentTimeMillis());
+    out.writeLong(statistics.getWins());
+    out.writeLong(statistics.getLosses());
+    out.writeLong(statistics.getTotalGuesses());
+    long[] histogram = statistics.getHistogram().snapshot();
+    out.writeInt(histogram.length);
+    for (long count : histogram) {
+      out.writeLong(count);
+    }
+    out.writeInt(users.size());
+    for (UserStatistics user : users) {
+      byte[] userId = user.getUserId().getBytes(StandardCharsets.UTF_8);
+      out.writeInt(userId.length);
+      out.write(userId);
+      for (long value : user.toValues()) {
+        out.writeLong(value);
+      }
+    }
+    out.flush();
+    return payload.toByteArray();
+  }
+
+  private void append(FileChannel channel, byte[] payload)
+      throws IOException {
+    crc.reset();
+    crc.update(payload, 0, payload.length);
+    ByteBuffer frame =
+        ByteBuffer.allocate(FRAME_HEADER_BYTES + payload.length);
+    frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+    frame.flip();
+    while (frame.hasRemaining()) {
+      channel.write(frame);
+    }
+  }
+
+  private void snapshotLoop() {
+    try {
+      while (!stopped.await(intervalMillis, TimeUnit.MILLISECONDS)) {
+        trySnapshot();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      trySnapshot();
+      closeLog();
+    }
+  }
+
+  private void trySnapshot() {
+    try {
+      snapshot();
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not snapshot statistics to " + file,
+          e);
+      // The users of the lost frame are no longer marked as changed, so the
+      // next snapshot starts a new log with every user.
+      closeLog();
+    }
+  }
+
+  private void closeLog() {
+    if (log == null) {
+      return;
+    }
+    try {
+      log.force(false);
+      log.close();
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not close " + file, e);
+    }
+    log = null;
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.stats;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the response parts left out because the user's surface could not
+ * use them, and estimates the bytes that saved.
+ *
+ * <p>Skipped parts are never built, so their size is unknown. Instead, the
+ * size of every part that is rendered is recorded too, and the bytes saved
+ * are estimated from the average rendered size of each kind of part.
+ */
+public class TrimmingStatistics {
+
+  /** The kinds of response parts that can be trimmed. */
+  public enum Part {
+    /** A basic card with an image, shown on screens only. */
+    CARD,
+    /** A suggestion chip, shown on screens only. */
+    SUGGESTION,
+    /** An SSML audio element, played on surfaces with audio output only. */
+    AUDIO,
+    /** The display text of a simple response, shown on screens only. */
+    DISPLAY_TEXT
+  }
+
+  private static final TrimmingStatistics INSTANCE = new TrimmingStatistics();
+
+  private final LongAdder[] skipped = newAdders();
+  private final LongAdder[] rendered = newAdders();
+  private final LongAdder[] renderedBytes = newAdders();
+
+  /**
+   * Gets the statistics shared by every handler in this process.
+   *
+   * @return the process-wide {@link TrimmingStatistics}.
+   */
+  public static TrimmingStatistics getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Records parts that were left out of a response.
+   *
+   * @param part the kind of part. Cannot be {@code null}.
+   * @param count how many were left out.
+   */
+  public void recordSkipped(Part part, int count) {
+    checkNotNull(part, "part cannot be null.");
+    skipped[part.ordinal()].add(count);
+  }
+
+  /**
+   * Records a part that was added to a response.
+   *
+   * @param part the kind of part. Cannot be {@code null}.
+   * @param bytes the approximate size of the part in the response JSON.
+   */
+  public void recordRendered(Part part, int bytes) {
+    checkNotNull(part, "part cannot be null.");
+    rendered[part.ordinal()].increment();
+    renderedBytes[part.ordinal()].add(bytes);
+  }
+
+  public long getSkipped(Part part) {
+    return skipped[part.ordinal()].sum();
+  }
+
+  /**
+   * Estimates the response bytes saved by trimming so far.
+   *
+   * @return the estimated bytes saved.
+   */
+  public long getEstimatedBytesSaved() {
+    long saved = 0;
+    for (Part part : Part.values()) {
+      saved += estimateBytesSaved(part);
+    }
+    return saved;
+  }
+
+  /**
+   * Summarizes the statistics for JSON serialization.
+   *
+   * @return the skipped count and estimated bytes saved for each kind of
+   * part, and the estimated total bytes saved.
+   */
+  public Map<String, Object> toSummary() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    for (Part part : Part.values()) {
+      String name = part.name().toLowerCase(Locale.ROOT);
+      summary.put(name + "Skipped", getSkipped(part));
+      summary.put(name + "BytesSaved", estimateBytesSaved(part));
+    }
+    summary.put("estimatedBytesSaved", getEstimatedBytesSaved());
+    return summary;
+  }
+
+  private long estimateBytesSaved(Part part) {
+    long count = rendered[part.ordinal()].sum();
+    if (count == 0) {
+      return 0;
+    }
+    return getSkipped(part) * renderedBytes[part.ordinal()].sum() / count;
+  }
+
+  private static LongAdder[] newAdders() {
+    LongAdder[] adders = new LongAdder[Part.values().length];
+    for (int i = 0; i < adders.length; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.stats;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The gameplay statistics of one user: wins, losses, guesses, best score and
+ * streaks, kept by {@link GameStatistics}.
+ *
+ * <p>Like those of {@link GameStatistics}, the counters are {@link
+ * LongAdder}s or atomics, so the games of one user can be recorded from
+ * several threads without a lock.
+ */
+public class UserStatistics {
+
+  /** Marker for a user who has not won a game yet. */
+  public static final long NO_BEST_SCORE = Long.MAX_VALUE;
+
+  /** The number of counters in {@link #toValues()}. */
+  public static final int VALUE_COUNT = 6;
+
+  private final String userId;
+  private final LongAdder wins = new LongAdder();
+  private final LongAdder losses = new LongAdder();
+  private final LongAdder totalGuesses = new LongAdder();
+  private final AtomicLong bestScore = new AtomicLong(NO_BEST_SCORE);
+  private final AtomicLong currentStreak = new AtomicLong();
+  private final AtomicLong bestStreak = new AtomicLong();
+
+  /**
+   * Creates an empty {@link UserStatistics} for the given user.
+   *
+   * @param userId the ID of the user. Cannot be {@code null}.
+   */
+  UserStatistics(String userId) {
+    checkNotNull(userId, "userId cannot be null.");
+    this.userId = userId;
+  }
+
+  /**
+   * Records a won game.
+   *
+   * @param guesses the number of guesses it took to win.
+   */
+  void recordWin(long guesses) {
+    wins.increment();
+    totalGuesses.add(guesses);
+    long streak = currentStreak.incrementAndGet();
+    bestStreak.accumulateAndGet(streak, Math::max);
+    bestScore.accumulateAndGet(guesses, Math::min);
+  }
+
+  /**
+   * Records a game that ended without the user guessing the number.
+   */
+  void recordLoss() {
+    losses.increment();
+    currentStreak.set(0);
+  }
+
+  /**
+   * Copies the counters, for saving or replicating them.
+   *
+   * @return the wins, losses, total guesses, best score, current streak and
+   * best streak, in that order.
+   */
+  public long[] toValues() {
+    return new long[]{wins.sum(), losses.sum(), totalGuesses.sum(),
+        bestScore.get(), currentStreak.get(), bestStreak.get()};
+  }
+
+  /**
+   * Replaces the counters with saved ones.
+   *
+   * @param values the counters, as from {@link #toValues()}. Cannot be
+   * {@code null}.
+   */
+  void restore(long[] values) {
+    checkArgument(values.length == VALUE_COUNT,
+        "values must hold " + VALUE_COUNT + " counters.");
+    wins.reset();
+    wins.add(values[0]);
+    losses.reset();
+    losses.add(values[1]);
+    totalGuesses.reset();
+    totalGuesses.add(values[2]);
+    bestScore.set(values[3]);
+    currentStreak.set(values[4]);
+    bestStreak.set(values[5]);
+  }
+
+  public String getUserId() {
+    return userId;
+  }
+
+  public long getWins() {
+    return wins.sum();
+  }
+
+  public long getLosses() {
+    return losses.sum();
+  }
+
+  public long getTotalGuesses() {
+    return totalGuesses.sum();
+  }
+
+  /**
+   * Gets the fewest guesses this user needed to win a game.
+   *
+   * @return the best score, or {@link #NO_BEST_SCORE} if the user has not won.
+   */
+  public long getBestScore() {
+    return bestScore.get();
+  }
+
+  public long getCurrentStreak() {
+    return currentStreak.get();
+  }
+
+  public long getBestStreak() {
+    return bestStreak.get();
+  }
+
+  /**
+   * Gets the average number of guesses per won game.
+   *
+   * @return the average guesses per win, or {@code 0} if the user has not won.
+   */
+  public double getAverageGuesses() {
+    long won = wins.sum();
+    return won == 0 ? 0 : (double) totalGuesses.sum() / won;
+  }
+
+  /**
+   * Builds a JSON-friendly summary of this user's statistics.
+   *
+   * @return a map suitable for serialization with Gson.
+   */
+  public Map<String, Object> toSummary() {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    long best = bestScore.get();
+    summary.put("userId", userId);
+    summary.put("wins", wins.sum());
+    summary.put("losses", losses.sum());
+    summary.put("averageGuesses", getAverageGuesses());
+    summary.put("bestScore", best == NO_BEST_SCORE ? null : best);
+    summary.put("currentStreak", currentStreak.get());
+    summary.put("bestStreak", bestStreak.get());
+    return summary;
+  }
+}
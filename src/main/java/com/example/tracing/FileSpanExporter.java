@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.tracing;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.gson.Gson;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ResourceBundle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Appends spans to a local JSONL file, one {@link Span#toJson()} object per
+ * line.
+ *
+ * <p>Like {@link com.example.recording.TrafficRecorder}, it only queues spans
+ * on the request thread, and a single background thread writes them. When
+ * the writer falls behind and the queue is full, spans are dropped.
+ */
+public final class FileSpanExporter implements SpanExporter {
+
+  private static final Logger LOGGER =
+      Logger.getLogger(FileSpanExporter.class.getName());
+
+  private static final long FLUSH_INTERVAL_MILLIS = 1000;
+  private static final int QUEUE_SIZE = 10_000;
+
+  private static final Gson GSON = new Gson();
+
+  private final Writer out;
+  private final BlockingQueue<Span> queue;
+  private final Thread writer;
+  private final LongAdder exported = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private volatile boolean running = true;
+
+  /**
+   * Creates a {@link FileSpanExporter} and starts its writer thread.
+   *
+   * @param file the file to append spans to. Created if missing, along with
+   * its directory. Cannot be {@code null}.
+   * @param queueSize the number of spans that can wait for the writer. Must
+   * be positive.
+   */
+  public FileSpanExporter(Path file, int queueSize) throws IOException {
+    checkNotNull(file, "file cannot be null.");
+    checkArgument(queueSize > 0, "queueSize must be positive.");
+    Path directory = file.toAbsolutePath().getParent();
+    if (directory != null) {
+      Files.createDirectories(directory);
+    }
+    this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.writer = new Thread(this::writeLoop, "span-exporter");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Creates a {@link FileSpanExporter} from the {@code trace_file} setting of
+   * the config bundle.
+   *
+   * @param config the config bundle. Cannot be {@code null}.
+   * @return a started exporter, or {@code null} if {@code trace_file} is
+   * missing or empty.
+   */
+  public static FileSpanExporter fromConfig(ResourceBundle config)
+      throws IOException {
+    checkNotNull(config, "config cannot be null.");
+    if (!config.containsKey("trace_file")
+        || config.getString("trace_file").trim().isEmpty()) {
+      return null;
+    }
+    return new FileSpanExporter(
+        Paths.get(config.getString("trace_file").trim()), QUEUE_SIZE);
+  }
+
+  @Override
+  public void export(Span span) {
+    checkNotNull(span, "span cannot be null.");
+    if (!running || !queue.offer(span)) {
+      dropped.increment();
+    }
+  }
+
+  /**
+   * Stops accepting spans, writes out the queued ones and closes the file.
+   */
+  @Override
+  public void close() throws InterruptedException {
+    running = false;
+    writer.join(TimeUnit.SECONDS.toMillis(30));
+  }
+
+  public long getExported() {
+    return exported.sum();
+  }
+
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  private void writeLoop() {
+    try {
+      while (running || !queue.isEmpty()) {
+        Span span = queue.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        if (span == null) {
+          out.flush();
+        } else {
+          out.write(GSON.toJson(span.toJson()));
+          out.write('\n');
+          exported.increment();
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not export spans", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      try {
+        out.close();
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Could not close the span file", e);
+      }
+    }
+  }
+}
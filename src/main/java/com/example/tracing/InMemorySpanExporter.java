@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.tracing;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps exported spans in memory, for tests.
+ */
+public final class InMemorySpanExporter implements SpanExporter {
+
+  private final Queue<Span> spans = new ConcurrentLinkedQueue<>();
+
+  @Override
+  public void export(Span span) {
+    checkNotNull(span, "span cannot be null.");
+    spans.add(span);
+  }
+
+  /**
+   * Gets the spans exported so far.
+   *
+   * @return the spans, oldest first.
+   */
+  public ImmutableList<Span> getSpans() {
+    return ImmutableList.copyOf(spans);
+  }
+
+  public void clear() {
+    spans.clear();
+  }
+}
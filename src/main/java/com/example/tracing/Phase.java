@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.tracing;
+
+/**
+ * The phases of a webhook request, in the order they normally run. {@link
+ * #PROMPT} and {@link #RENDER} run within {@link #LOGIC}, and their time is
+ * not counted as part of it.
+ */
+public enum Phase {
+
+  /** Reading the request body. */
+  READ("read"),
+  /** Parsing the JSON request. */
+  PARSE("parse"),
+  /** Finding the handler of the intent. */
+  DISPATCH("dispatch"),
+  /** The intent handler, apart from its prompts and response building. */
+  LOGIC("logic"),
+  /** Building prompts from the localized prompt resources. */
+  PROMPT("prompt"),
+  /** Building the response from a prompt. */
+  RENDER("render"),
+  /** Turning the response into JSON bytes, and compressing them. */
+  SERIALIZE("serialize"),
+  /** Writing the response to the client. */
+  WRITE("write");
+
+  private final String metricName;
+
+  Phase(String metricName) {
+    this.metricName = metricName;
+  }
+
+  /**
+   * Gets the name of the phase in {@code Server-Timing} headers and spans.
+   *
+   * @return the metric name.
+   */
+  public String getMetricName() {
+    return metricName;
+  }
+}
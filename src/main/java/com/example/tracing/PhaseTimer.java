@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.tracing;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Arrays;
+
+/**
+ * Splits the time of a webhook request between its {@link Phase}s.
+ *
+ * <p>The timer is in one phase at a time: {@link #enter} charges the time
+ * since the last switch to the phase being left, so nested phases are not
+ * counted twice and the phases add up to the whole request. Times come from
+ * {@link System#nanoTime()}, and each thread reuses one timer, see {@link
+ * #current()}, so timing a request on a pooled platform thread allocates
+ * nothing. Only {@link #toServerTiming()} creates a string.
+ *
+ * <p>A virtual thread, which handles one request and ends, creates a timer
+ * of its own on first use: a few hundred bytes per request, against the
+ * hundreds of kilobytes a turn allocates. Pooling timers would put a shared
+ * queue on every request and still leave the thread-local entry.
+ *
+ * <p>A timer that has not been {@link #start started} ignores {@link
+ * #enter} and {@link #exit}, so the app can be timed the same way when it is
+ * called outside of a web server.
+ */
+public final class PhaseTimer {
+
+  private static final Phase[] PHASES = Phase.values();
+
+  private static final ThreadLocal<PhaseTimer> CURRENT =
+      ThreadLocal.withInitial(PhaseTimer::new);
+
+  private final long[] nanos = new long[PHASES.length];
+  private final StringBuilder serverTiming = new StringBuilder(128);
+  // Null while the timer is stopped.
+  private Phase phase;
+  private long phaseStartNanos;
+  private long startNanos;
+  private long stopNanos;
+  private long startEpochMillis;
+
+  @VisibleForTesting
+  PhaseTimer() {
+  }
+
+  /**
+   * Gets the timer of the request in progress on this thread.
+   *
+   * @return the timer of this thread.
+   */
+  public static PhaseTimer current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Clears the timer and starts timing a new request.
+   *
+   * @param first the first phase of the request. Cannot be {@code null}.
+   */
+  public void start(Phase first) {
+    checkNotNull(first, "first cannot be null.");
+    Arrays.fill(nanos, 0);
+    startEpochMillis = System.currentTimeMillis();
+    startNanos = System.nanoTime();
+    phaseStartNanos = startNanos;
+    phase = first;
+  }
+
+  /**
+   * Switches to a phase.
+   *
+   * @param next the phase the request enters. Cannot be {@code null}.
+   * @return the phase the request left, to pass to {@link #exit} when
+   * {@code next} is nested in it, or {@code null} if the timer is stopped.
+   */
+  public Phase enter(Phase next) {
+    checkNotNull(next, "next cannot be null.");
+    Phase previous = phase;
+    if (previous != null && previous != next) {
+      long now = System.nanoTime();
+      nanos[previous.ordinal()] += now - phaseStartNanos;
+      phaseStartNanos = now;
+      phase = next;
+    }
+    return previous;
+  }
+
+  /**
+   * Returns to the phase {@link #enter} left.
+   *
+   * @param previous what {@link #enter} returned.
+   */
+  public void exit(Phase previous) {
+    if (previous != null) {
+      enter(previous);
+    }
+  }
+
+  /** Stops timing the request. */
+  public void stop() {
+    if (phase == null) {
+      return;
+    }
+    stopNanos = System.nanoTime();
+    nanos[phase.ordinal()] += stopNanos - phaseStartNanos;
+    phase = null;
+  }
+
+  public boolean isRunning() {
+    return phase != null;
+  }
+
+  /**
+   * Gets the time spent in a phase so far.
+   *
+   * @param phase the phase. Cannot be {@code null}.
+   * @return the time in nanoseconds.
+   */
+  public long getNanos(Phase phase) {
+    checkNotNull(phase, "phase cannot be null.");
+    long time = nanos[phase.ordinal()];
+    return phase == this.phase
+        ? time + System.nanoTime() - phaseStartNanos
+        : time;
+  }
+
+  /**
+   * Gets the time since the request started, or its whole time once
+   * stopped.
+   *
+   * @return the time in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return (phase == null ? stopNanos : System.nanoTime()) - startNanos;
+  }
+
+  public long getStartEpochMillis() {
+    return startEpochMillis;
+  }
+
+  /**
+   * Formats the phases so far as a {@code Server-Timing} header value, such
+   * as {@code parse;dur=0.412, logic;dur=0.051, total;dur=1.204}, with
+   * durations in milliseconds. Phases the request has not been in are left
+   * out.
+   *
+   * @return the header value.
+   */
+  public String toServerTiming() {
+    serverTiming.setLength(0);
+    for (Phase each : PHASES) {
+      long time = getNanos(each);
+      if (time > 0) {
+        appendMetric(each.getMetricName(), time);
+      }
+    }
+    appendMetric("total", getElapsedNanos());
+    return serverTiming.toString();
+  }
+
+  private void appendMetric(String name, long time) {
+    if (serverTiming.length() > 0) {
+      serverTiming.append(", ");
+    }
+    long micros = time / 1000;
+    long fraction = micros % 1000;
+    serverTiming.append(name).append(";dur=").append(micros / 1000)
+        .append('.');
+    if (fraction < 100) {
+      serverTiming.append(fraction < 10 ? "00" : "0");
+    }
+    serverTiming.append(fraction);
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.tracing;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.gson.JsonObject;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A finished webhook request, with the time of each {@link Phase}, as
+ * exported to a {@link SpanExporter}.
+ */
+public final class Span {
+
+  private static final Phase[] PHASES = Phase.values();
+
+  private final TraceContext context;
+  private final String spanId;
+  private final String name;
+  private final long startEpochMillis;
+  private final long durationNanos;
+  private final long[] phaseNanos;
+
+  /**
+   * Creates a {@link Span} from a stopped timer.
+   *
+   * @param context the context the request was sent with, or a new one.
+   * Cannot be {@code null}.
+   * @param spanId the ID of this span. Cannot be {@code null}.
+   * @param name what the request was, such as {@code webhook}. Cannot be
+   * {@code null}.
+   * @param timer the timer of the request. Cannot be {@code null}.
+   */
+  public Span(TraceContext context, String spanId, String name,
+      PhaseTimer timer) {
+    checkNotNull(context, "context cannot be null.");
+    checkNotNull(spanId, "spanId cannot be null.");
+    checkNotNull(name, "name cannot be null.");
+    checkNotNull(timer, "timer cannot be null.");
+    this.context = context;
+    this.spanId = spanId;
+    this.name = name;
+    this.startEpochMillis = timer.getStartEpochMillis();
+    this.durationNanos = timer.getElapsedNanos();
+    this.phaseNanos = new long[PHASES.length];
+    for (Phase phase : PHASES) {
+      phaseNanos[phase.ordinal()] = timer.getNanos(phase);
+    }
+  }
+
+  public String getTraceId() {
+    return context.getTraceId();
+  }
+
+  public String getSpanId() {
+    return spanId;
+  }
+
+  /**
+   * Gets the span of the caller.
+   *
+   * @return its span ID, or {@code null} if the request started the trace.
+   */
+  public String getParentSpanId() {
+    return context.getParentId();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getStartEpochMillis() {
+    return startEpochMillis;
+  }
+
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /**
+   * Gets the time the request spent in a phase.
+   *
+   * @param phase the phase. Cannot be {@code null}.
+   * @return the time in nanoseconds.
+   */
+  public long getPhaseNanos(Phase phase) {
+    checkNotNull(phase, "phase cannot be null.");
+    return phaseNanos[phase.ordinal()];
+  }
+
+  /**
+   * Formats the span as one JSON object, with times in microseconds.
+   *
+   * @return the JSON object.
+   */
+  public JsonObject toJson() {
+    JsonObject json = new JsonObject();
+    json.addProperty("traceId", getTraceId());
+    json.addProperty("spanId", spanId);
+    if (getParentSpanId() != null) {
+      json.addProperty("parentSpanId", getParentSpanId());
+    }
+    json.addProperty("name", name);
+    json.addProperty("startTimeMicros",
+        TimeUnit.MILLISECONDS.toMicros(startEpochMillis));
+    json.addProperty("durationMicros",
+        TimeUnit.NANOSECONDS.toMicros(durationNanos));
+    JsonObject phases = new JsonObject();
+    for (Phase phase : PHASES) {
+      phases.addProperty(phase.getMetricName(),
+          TimeUnit.NANOSECONDS.toMicros(phaseNanos[phase.ordinal()]));
+    }
+    json.add("phases", phases);
+    return json;
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.tracing;
+
+/**
+ * Receives the spans of finished webhook requests.
+ *
+ * <p>{@link #export} runs on the request thread after the response is
+ * written, so implementations should hand spans off rather than do I/O.
+ */
+public interface SpanExporter {
+
+  /**
+   * Exports a span.
+   *
+   * @param span the span of a finished request.
+   */
+  void export(Span span);
+
+  /** Exports what is still pending and releases the exporter's resources. */
+  default void close() throws InterruptedException {
+  }
+}
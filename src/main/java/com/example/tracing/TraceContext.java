@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.tracing;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The W3C Trace Context a request was sent with, from its {@code
+ * traceparent} header: {@code version-traceid-parentid-flags}, such as
+ * {@code 00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01}.
+ */
+public final class TraceContext {
+
+  private static final int SAMPLED_FLAG = 0x01;
+  // version, trace ID and parent ID, flags, and the dashes between them.
+  private static final int LENGTH = 2 + 1 + 32 + 1 + 16 + 1 + 2;
+
+  private final String traceId;
+  private final String parentId;
+  private final boolean sampled;
+
+  private TraceContext(String traceId, String parentId, boolean sampled) {
+    this.traceId = traceId;
+    this.parentId = parentId;
+    this.sampled = sampled;
+  }
+
+  /**
+   * Parses a {@code traceparent} header. Versions after {@code 00} are read
+   * as far as {@code 00} goes, as the specification asks.
+   *
+   * @param traceparent the header value, or {@code null}.
+   * @return the context, or {@code null} if the header is missing or
+   * invalid.
+   */
+  public static TraceContext parse(String traceparent) {
+    if (traceparent == null) {
+      return null;
+    }
+    String value = traceparent.trim();
+    if (value.length() < LENGTH
+        || value.charAt(2) != '-' || value.charAt(35) != '-'
+        || value.charAt(52) != '-') {
+      return null;
+    }
+    String version = value.substring(0, 2);
+    if (!isHex(version) || version.equals("ff")
+        || (version.equals("00") && value.length() != LENGTH)
+        || (value.length() > LENGTH && value.charAt(LENGTH) != '-')) {
+      return null;
+    }
+    String traceId = value.substring(3, 35);
+    String parentId = value.substring(36, 52);
+    String flags = value.substring(53, 55);
+    if (!isHex(traceId) || isZero(traceId) || !isHex(parentId)
+        || isZero(parentId) || !isHex(flags)) {
+      return null;
+    }
+    return new TraceContext(traceId, parentId,
+        (Integer.parseInt(flags, 16) & SAMPLED_FLAG) != 0);
+  }
+
+  /**
+   * Starts a new trace, for requests sent without a context.
+   *
+   * @return a sampled context with a random trace ID and no parent.
+   */
+  public static TraceContext newRoot() {
+    return new TraceContext(newId() + newId(), null, true);
+  }
+
+  /**
+   * Creates a random span ID.
+   *
+   * @return 16 lowercase hex digits, not all zero.
+   */
+  public static String newId() {
+    long id;
+    do {
+      id = ThreadLocalRandom.current().nextLong();
+    } while (id == 0);
+    return String.format("%016x", id);
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  /**
+   * Gets the span of the caller.
+   *
+   * @return its span ID, or {@code null} for a {@link #newRoot() new trace}.
+   */
+  public String getParentId() {
+    return parentId;
+  }
+
+  /**
+   * Checks whether the caller asked for this trace to be recorded.
+   *
+   * @return the sampled flag of the context.
+   */
+  public boolean isSampled() {
+    return sampled;
+  }
+
+  /**
+   * Formats the {@code traceparent} header for a child of this context.
+   *
+   * @param spanId the ID of the child span. Cannot be {@code null}.
+   * @return the header value.
+   */
+  public String toTraceparent(String spanId) {
+    checkNotNull(spanId, "spanId cannot be null.");
+    return "00-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+  }
+
+  private static boolean isHex(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isZero(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) != '0') {
+        return false;
+      }
+    }
+    return true;
+  }
+}
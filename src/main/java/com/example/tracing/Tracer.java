@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.tracing;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.ResourceBundle;
+
+/**
+ * Times webhook requests by {@link Phase} and, when an exporter is set,
+ * exports a {@link Span} for each of them, in the trace of the {@code
+ * traceparent} header the request was sent with.
+ *
+ * <p>A request calls {@link #begin()} as it starts reading its body, and
+ * {@link #end} once its response is written. In between, the app moves the
+ * {@link PhaseTimer} of the thread from phase to phase.
+ */
+public final class Tracer {
+
+  /** The name of the spans of webhook requests. */
+  public static final String WEBHOOK_SPAN = "webhook";
+
+  // Null when spans are not exported.
+  private final SpanExporter exporter;
+
+  /**
+   * Creates a {@link Tracer}.
+   *
+   * @param exporter receives the spans, or {@code null} to only time
+   * requests.
+   */
+  public Tracer(SpanExporter exporter) {
+    this.exporter = exporter;
+  }
+
+  /**
+   * Creates a {@link Tracer} that exports spans to the {@code trace_file} of
+   * the config bundle, if it sets one.
+   *
+   * @param config the config bundle. Cannot be {@code null}.
+   * @return the tracer.
+   */
+  public static Tracer fromConfig(ResourceBundle config) throws IOException {
+    checkNotNull(config, "config cannot be null.");
+    return new Tracer(FileSpanExporter.fromConfig(config));
+  }
+
+  /**
+   * Starts timing a request on this thread, in {@link Phase#READ}.
+   *
+   * @return the timer of the request.
+   */
+  public PhaseTimer begin() {
+    PhaseTimer timer = PhaseTimer.current();
+    timer.start(Phase.READ);
+    return timer;
+  }
+
+  /**
+   * Stops timing a request, and exports its span unless the caller asked for
+   * its trace not to be sampled.
+   *
+   * @param timer what {@link #begin()} returned. Cannot be {@code null}.
+   * @param traceparent the {@code traceparent} header of the request, or
+   * {@code null}.
+   * @return the exported span, or {@code null} if none was exported.
+   */
+  public Span end(PhaseTimer timer, String traceparent) {
+    checkNotNull(timer, "timer cannot be null.");
+    timer.stop();
+    if (exporter == null) {
+      return null;
+    }
+    TraceContext context = TraceContext.parse(traceparent);
+    if (context == null) {
+      context = TraceContext.newRoot();
+    } else if (!context.isSampled()) {
+      return null;
+    }
+    Span span = new Span(context, TraceContext.newId(), WEBHOOK_SPAN, timer);
+    exporter.export(span);
+    return span;
+  }
+
+  /** Closes the exporter, if any. */
+  public void close() throws InterruptedException {
+    if (exporter != null) {
+      exporter.close();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Checks the tokens of endpoints that are only enabled when a system
+ * property holds a token, and then only answer requests carrying it in a
+ * header, such as {@code /batch}.
+ */
+public final class AccessTokens {
+
+  /** The result of checking a request. */
+  public enum Access {
+    /** No token is configured: the endpoint does not exist. */
+    DISABLED,
+    /** The request did not carry the token. */
+    DENIED,
+    /** The request carried the token. */
+    GRANTED
+  }
+
+  private AccessTokens() {
+  }
+
+  /**
+   * Checks the token a request carried against the one configured.
+   *
+   * @param property the system property holding the token. Cannot be {@code
+   * null}.
+   * @param given the value of the token header of the request, or {@code
+   * null} if it had none.
+   * @return whether the request may use the endpoint.
+   */
+  public static Access check(String property, String given) {
+    checkNotNull(property, "property cannot be null.");
+    String token = System.getProperty(property);
+    if (token == null || token.isEmpty()) {
+      return Access.DISABLED;
+    }
+    // Compared in constant time, so the token cannot be guessed byte by
+    // byte from response times.
+    if (given == null || !MessageDigest.isEqual(
+        token.getBytes(StandardCharsets.UTF_8),
+        given.getBytes(StandardCharsets.UTF_8))) {
+      return Access.DENIED;
+    }
+    return Access.GRANTED;
+  }
+}
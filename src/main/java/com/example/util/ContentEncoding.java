@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.util;
+
+/**
+ * The content codings a response can be sent with.
+ */
+public enum ContentEncoding {
+
+  IDENTITY("identity"),
+  GZIP("gzip"),
+  /** The zlib format, which is what HTTP calls {@code deflate}. */
+  DEFLATE("deflate");
+
+  private final String token;
+
+  ContentEncoding(String token) {
+    this.token = token;
+  }
+
+  /**
+   * Gets the name of the coding in {@code Content-Encoding} headers.
+   *
+   * @return the coding name.
+   */
+  public String getToken() {
+    return token;
+  }
+
+  /**
+   * Picks the coding to send for an {@code Accept-Encoding} header: the
+   * compressed coding with the highest quality, gzip on a tie, and {@link
+   * #IDENTITY} if neither is acceptable. A {@code *} covers the codings that
+   * are not listed.
+   *
+   * @param acceptEncoding the header value, or {@code null}.
+   * @return the coding to use.
+   */
+  public static ContentEncoding negotiate(String acceptEncoding) {
+    if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+      return IDENTITY;
+    }
+    double gzip = -1;
+    double deflate = -1;
+    double wildcard = -1;
+    for (String part : acceptEncoding.split(",")) {
+      String[] coding = part.trim().split(";");
+      String name = coding[0].trim();
+      double quality = quality(coding);
+      if (name.equalsIgnoreCase(GZIP.token)
+          || name.equalsIgnoreCase("x-gzip")) {
+        gzip = Math.max(gzip, quality);
+      } else if (name.equalsIgnoreCase(DEFLATE.token)) {
+        deflate = quality;
+      } else if (name.equals("*")) {
+        wildcard = quality;
+      }
+    }
+    gzip = gzip < 0 ? wildcard : gzip;
+    deflate = deflate < 0 ? wildcard : deflate;
+    if (gzip <= 0 && deflate <= 0) {
+      return IDENTITY;
+    }
+    return gzip >= deflate ? GZIP : DEFLATE;
+  }
+
+  private static double quality(String[] coding) {
+    for (int i = 1; i < coding.length; i++) {
+      String parameter = coding[i].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2));
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds Dialogflow v2 webhook request bodies shaped like the ones the
+ * Assistant sends, for benchmarks, simulations and load tests.
+ *
+ * <p>Conversation state is carried the same way Dialogflow carries it: either
+ * by setting the conversation data explicitly, or by copying the output
+ * contexts of a previous webhook response with {@link
+ * #setContextsFromResponse(String)}.
+ */
+public class DialogflowRequestBuilder {
+
+  private static final String APP_DATA_CONTEXT = "_actions_on_google";
+  private static final String SCREEN_OUTPUT =
+      "actions.capability.SCREEN_OUTPUT";
+  private static final String AUDIO_OUTPUT = "actions.capability.AUDIO_OUTPUT";
+
+  private static final Gson GSON = new Gson();
+
+  private String intent;
+  private String sessionId = "session-id";
+  private String userId = "userid";
+  private String locale = "en-US";
+  private String rawText;
+  private Integer repromptCount;
+  private boolean screenOutput = true;
+  private boolean audioOutput = true;
+  private final Map<String, Object> parameters = new LinkedHashMap<>();
+  private Map<String, Object> conversationData;
+  private JsonArray outputContexts = new JsonArray();
+
+  /**
+   * Creates a {@link DialogflowRequestBuilder} for the given intent.
+   *
+   * @param intent the display name of the matched intent. Cannot be {@code
+   * null}.
+   */
+  public DialogflowRequestBuilder(String intent) {
+    setIntent(intent);
+  }
+
+  public DialogflowRequestBuilder setIntent(String intent) {
+    checkNotNull(intent, "intent cannot be null.");
+    this.intent = intent;
+    return this;
+  }
+
+  public DialogflowRequestBuilder setSessionId(String sessionId) {
+    checkNotNull(sessionId, "sessionId cannot be null.");
+    this.sessionId = sessionId;
+    return this;
+  }
+
+  public DialogflowRequestBuilder setUserId(String userId) {
+    this.userId = userId;
+    return this;
+  }
+
+  /**
+   * Sets the user locale, for example {@code en-US} or {@code fr-CA}.
+   *
+   * @param locale the BCP-47 locale of the user. Cannot be {@code null}.
+   * @return this builder.
+   */
+  public DialogflowRequestBuilder setLocale(String locale) {
+    checkNotNull(locale, "locale cannot be null.");
+    this.locale = locale;
+    return this;
+  }
+
+  public DialogflowRequestBuilder setRawText(String rawText) {
+    this.rawText = rawText;
+    return this;
+  }
+
+  public DialogflowRequestBuilder setRepromptCount(Integer repromptCount) {
+    this.repromptCount = repromptCount;
+    return this;
+  }
+
+  public DialogflowRequestBuilder setScreenOutput(boolean screenOutput) {
+    this.screenOutput = screenOutput;
+    return this;
+  }
+
+  public DialogflowRequestBuilder setAudioOutput(boolean audioOutput) {
+    this.audioOutput = audioOutput;
+    return this;
+  }
+
+  public DialogflowRequestBuilder setParameter(String name, Object value) {
+    checkNotNull(name, "name cannot be null.");
+    parameters.put(name, value);
+    return this;
+  }
+
+  /**
+   * Sets the conversation data the app will see, replacing any data carried
+   * over from a previous response.
+   *
+   * @param conversationData the conversation data, or {@code null} for none.
+   * @return this builder.
+   */
+  public DialogflowRequestBuilder setConversationData(
+      Map<String, Object> conversationData) {
+    this.conversationData = conversationData;
+    return this;
+  }
+
+  /**
+   * Carries the output contexts, and with them the conversation data, of a
+   * previous webhook response into this request.
+   *
+   * @param responseJson the JSON body of the previous webhook response. Cannot
+   * be {@code null}.
+   * @return this builder.
+   */
+  public DialogflowRequestBuilder setContextsFromResponse(
+      String responseJson) {
+    checkNotNull(responseJson, "responseJson cannot be null.");
+    JsonObject response = new JsonParser().parse(responseJson)
+        .getAsJsonObject();
+    JsonElement contexts = response.get("outputContexts");
+    outputContexts = contexts == null || !contexts.isJsonArray()
+        ? new JsonArray() : contexts.getAsJsonArray();
+    return this;
+  }
+
+  /**
+   * Builds the webhook request body.
+   *
+   * @return the request as a JSON string.
+   */
+  public String build() {
+    return GSON.toJson(buildJson());
+  }
+
+  /**
+   * Builds the webhook request body as a JSON tree.
+   *
+   * @return the request as a {@link JsonObject}.
+   */
+  public JsonObject buildJson() {
+    String session = "projects/number-genie/agent/sessions/" + sessionId;
+
+    JsonObject queryResult = new JsonObject();
+    queryResult.addProperty("queryText", rawText == null ? "" : rawText);
+    queryResult.add("parameters", GSON.toJsonTree(parameters));
+    queryResult.addProperty("allRequiredParamsPresent", true);
+    queryResult.add("outputContexts", buildContexts(session));
+    JsonObject intentObject = new JsonObject();
+    intentObject.addProperty("name",
+        "projects/number-genie/agent/intents/" + intent);
+    intentObject.addProperty("displayName", intent);
+    queryResult.add("intent", intentObject);
+    queryResult.addProperty("intentDetectionConfidence", 1.0);
+    queryResult.addProperty("languageCode", locale.toLowerCase());
+
+    JsonObject request = new JsonObject();
+    request.addProperty("responseId", sessionId + "-" + intent);
+    request.add("queryResult", queryResult);
+    JsonObject original = new JsonObject();
+    original.addProperty("source", "google");
+    original.addProperty("version", "2");
+    original.add("payload", buildPayload());
+    request.add("originalDetectIntentRequest", original);
+    request.addProperty("session", session);
+    return request;
+  }
+
+  private JsonArray buildContexts(String session) {
+    JsonArray contexts = new JsonArray();
+    String prefix = session + "/contexts/";
+    for (JsonElement element : outputContexts) {
+      JsonObject context = element.getAsJsonObject();
+      String name = context.get("name").getAsString();
+      if (conversationData != null && name.endsWith("/" + APP_DATA_CONTEXT)) {
+        continue;
+      }
+      // Rewrite the session part so carried contexts follow this session.
+      JsonObject copy = context.deepCopy();
+      copy.addProperty("name",
+          prefix + name.substring(name.lastIndexOf('/') + 1));
+      contexts.add(copy);
+    }
+    if (conversationData != null) {
+      JsonObject data = new JsonObject();
+      data.addProperty("data", GSON.toJson(conversationData));
+      JsonObject context = new JsonObject();
+      context.addProperty("name", prefix + APP_DATA_CONTEXT);
+      context.addProperty("lifespanCount", 99);
+      context.add("parameters", data);
+      contexts.add(context);
+    }
+    return contexts;
+  }
+
+  private JsonObject buildPayload() {
+    JsonArray capabilities = new JsonArray();
+    if (screenOutput) {
+      capabilities.add(capability(SCREEN_OUTPUT));
+    }
+    if (audioOutput) {
+      capabilities.add(capability(AUDIO_OUTPUT));
+    }
+    JsonObject surface = new JsonObject();
+    surface.add("capabilities", capabilities);
+
+    JsonObject input = new JsonObject();
+    input.addProperty("intent", "actions.intent.TEXT");
+    if (rawText != null) {
+      JsonObject rawInput = new JsonObject();
+      rawInput.addProperty("query", rawText);
+      rawInput.addProperty("inputType", "VOICE");
+      JsonArray rawInputs = new JsonArray();
+      rawInputs.add(rawInput);
+      input.add("rawInputs", rawInputs);
+    }
+    if (repromptCount != null) {
+      JsonObject argument = new JsonObject();
+      argument.addProperty("name", "REPROMPT_COUNT");
+      argument.addProperty("intValue", String.valueOf(repromptCount));
+      JsonArray arguments = new JsonArray();
+      arguments.add(argument);
+      input.add("arguments", arguments);
+    }
+    JsonArray inputs = new JsonArray();
+    inputs.add(input);
+
+    JsonObject user = new JsonObject();
+    user.addProperty("locale", locale);
+    user.addProperty("userStorage", "{\"data\":{}}");
+    if (userId != null) {
+      user.addProperty("userId", userId);
+    }
+
+    JsonObject conversation = new JsonObject();
+    conversation.addProperty("conversationId", sessionId);
+    conversation.addProperty("type", "ACTIVE");
+
+    JsonObject payload = new JsonObject();
+    payload.addProperty("isInSandbox", true);
+    payload.add("surface", surface);
+    payload.addProperty("requestType", "SIMULATOR");
+    payload.add("inputs", inputs);
+    payload.add("user", user);
+    payload.add("conversation", conversation);
+    return payload;
+  }
+
+  private static JsonObject capability(String name) {
+    JsonObject capability = new JsonObject();
+    capability.addProperty("name", name);
+    return capability;
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Reads parts of raw Dialogflow v2 webhook request bodies without parsing
+ * them, for code that routes requests before the app sees them.
+ */
+public final class DialogflowRequests {
+
+  private static final String SESSION_KEY = "\"session\"";
+  private static final String LOCALE_KEY = "\"locale\"";
+
+  private DialogflowRequests() {
+  }
+
+  /**
+   * Finds the top level {@code session} of a request body. Dialogflow puts it
+   * after the {@code queryResult} and {@code originalDetectIntentRequest}
+   * objects, which never contain a {@code session} key themselves.
+   *
+   * @param body the raw request body. Cannot be {@code null}.
+   * @return the session, or an empty string if there is none.
+   */
+  public static String findSession(String body) {
+    checkNotNull(body, "body cannot be null.");
+    return findLastString(body, SESSION_KEY);
+  }
+
+  /**
+   * Finds the locale of the user of a request body, the one {@link
+   * com.google.actions.api.ActionRequest#getLocale()} reads. Only the Actions
+   * on Google payload in {@code originalDetectIntentRequest} has a {@code
+   * locale} key, and it comes after the {@code queryResult}.
+   *
+   * @param body the raw request body. Cannot be {@code null}.
+   * @return the language tag of the locale, or an empty string if there is
+   * none.
+   */
+  public static String findLocale(String body) {
+    checkNotNull(body, "body cannot be null.");
+    return findLastString(body, LOCALE_KEY);
+  }
+
+  // Reads the string value of the last occurrence of a quoted key.
+  private static String findLastString(String body, String quotedKey) {
+    int key = body.lastIndexOf(quotedKey);
+    if (key < 0) {
+      return "";
+    }
+    int colon = body.indexOf(':', key + quotedKey.length());
+    int open = colon < 0 ? -1 : body.indexOf('"', colon + 1);
+    int close = open < 0 ? -1 : body.indexOf('"', open + 1);
+    return close < 0 ? "" : body.substring(open + 1, close);
+  }
+}
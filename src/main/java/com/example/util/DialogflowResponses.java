@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Reads the parts of a Dialogflow v2 webhook response that a client needs to
+ * continue the conversation: the conversation data, the active contexts and
+ * whether a reply is expected.
+ */
+public final class DialogflowResponses {
+
+  private static final String APP_DATA_CONTEXT = "_actions_on_google";
+  private static final Type MAP_TYPE =
+      new TypeToken<Map<String, Object>>() {
+      }.getType();
+  private static final Gson GSON = new Gson();
+
+  private DialogflowResponses() {
+  }
+
+  /**
+   * Parses a webhook response body.
+   *
+   * @param responseJson the JSON body of the response. Cannot be {@code null}.
+   * @return the parsed response.
+   */
+  public static JsonObject parse(String responseJson) {
+    checkNotNull(responseJson, "responseJson cannot be null.");
+    return new JsonParser().parse(responseJson).getAsJsonObject();
+  }
+
+  /**
+   * Gets the conversation data the app stored in the response.
+   *
+   * @param response a parsed webhook response. Cannot be {@code null}.
+   * @return the conversation data, or an empty map if there is none.
+   */
+  public static Map<String, Object> getConversationData(JsonObject response) {
+    checkNotNull(response, "response cannot be null.");
+    JsonObject context = getContext(response, APP_DATA_CONTEXT);
+    if (context == null || !context.has("parameters")) {
+      return Collections.emptyMap();
+    }
+    JsonElement data = context.getAsJsonObject("parameters").get("data");
+    if (data == null || data.isJsonNull()) {
+      return Collections.emptyMap();
+    }
+    return GSON.fromJson(data.getAsString(), MAP_TYPE);
+  }
+
+  /**
+   * Checks whether the response sets a context with a positive lifespan.
+   *
+   * @param response a parsed webhook response. Cannot be {@code null}.
+   * @param name the short name of the context, e.g. {@code yes_no}.
+   * @return {@code true} if the context is active after this response.
+   */
+  public static boolean hasContext(JsonObject response, String name) {
+    JsonObject context = getContext(response, name);
+    if (context == null) {
+      return false;
+    }
+    JsonElement lifespan = context.get("lifespanCount");
+    return lifespan == null || lifespan.getAsInt() > 0;
+  }
+
+  /**
+   * Checks whether the app expects the user to reply, i.e. whether the
+   * conversation continues.
+   *
+   * @param response a parsed webhook response. Cannot be {@code null}.
+   * @return {@code true} unless the response ends the conversation.
+   */
+  public static boolean expectsUserResponse(JsonObject response) {
+    checkNotNull(response, "response cannot be null.");
+    JsonObject payload = response.getAsJsonObject("payload");
+    if (payload == null || !payload.has("google")) {
+      return true;
+    }
+    JsonElement expect =
+        payload.getAsJsonObject("google").get("expectUserResponse");
+    return expect == null || expect.getAsBoolean();
+  }
+
+  private static JsonObject getContext(JsonObject response, String name) {
+    checkNotNull(response, "response cannot be null.");
+    checkNotNull(name, "name cannot be null.");
+    if (!response.has("outputContexts")) {
+      return null;
+    }
+    String suffix = "/" + name;
+    for (JsonElement element : response.getAsJsonArray("outputContexts")) {
+      JsonObject context = element.getAsJsonObject();
+      if (context.get("name").getAsString().endsWith(suffix)) {
+        return context;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * The kind of threads webhook requests are handled on, chosen at startup.
+ *
+ * <p>With {@link #VIRTUAL}, every request runs on a virtual thread of its
+ * own, so a request blocked on I/O holds no platform thread and the number of
+ * requests in flight is not limited by a pool size. Virtual threads need Java
+ * 21; the app is built for Java 8, so they are created through reflection,
+ * and on an older runtime {@link #VIRTUAL} falls back to {@link #PLATFORM}
+ * with a warning.
+ */
+public enum ExecutionMode {
+
+  /** A fixed pool of platform threads. */
+  PLATFORM,
+  /** A new virtual thread per request. */
+  VIRTUAL;
+
+  /** System property selecting the mode of the servlet deployment. */
+  public static final String PROPERTY = "numbergenie.execution";
+
+  private static final Logger LOGGER =
+      Logger.getLogger(ExecutionMode.class.getName());
+
+  /**
+   * Parses a mode name, ignoring case.
+   *
+   * @param name {@code platform} or {@code virtual}. Cannot be {@code null}.
+   * @return the mode.
+   */
+  public static ExecutionMode parse(String name) {
+    checkNotNull(name, "name cannot be null.");
+    for (ExecutionMode mode : values()) {
+      if (mode.name().equalsIgnoreCase(name.trim())) {
+        return mode;
+      }
+    }
+    throw new IllegalArgumentException("Unknown execution mode: " + name);
+  }
+
+  /**
+   * Gets the mode selected by the {@value #PROPERTY} system property.
+   *
+   * @return the selected mode, or {@link #PLATFORM} if none is.
+   */
+  public static ExecutionMode fromSystemProperty() {
+    String name = System.getProperty(PROPERTY);
+    return name == null || name.isEmpty() ? PLATFORM : parse(name);
+  }
+
+  /**
+   * Checks whether this runtime can create virtual threads.
+   *
+   * @return whether {@link #VIRTUAL} is honored.
+   */
+  public static boolean isVirtualSupported() {
+    return VirtualThreads.FACTORY != null;
+  }
+
+  /**
+   * Creates the executor requests are handled on in this mode.
+   *
+   * @param platformThreads the size of the pool in {@link #PLATFORM} mode.
+   * Must be positive.
+   * @param namePrefix the prefix of the thread names. Cannot be {@code
+   * null}.
+   * @return the executor.
+   */
+  public ExecutorService newExecutor(int platformThreads, String namePrefix) {
+    checkArgument(platformThreads > 0, "platformThreads must be positive.");
+    checkNotNull(namePrefix, "namePrefix cannot be null.");
+    if (this == VIRTUAL) {
+      if (isVirtualSupported()) {
+        PinningDetector.enableTracing();
+        return VirtualThreads.newExecutor(namePrefix);
+      }
+      LOGGER.warning(String.format(
+          "Virtual threads need Java 21, running on %s. Using %d platform "
+              + "threads.", System.getProperty("java.version"),
+          platformThreads));
+    }
+    AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newFixedThreadPool(platformThreads, runnable -> {
+      Thread thread = new Thread(runnable,
+          namePrefix + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Override
+  public String toString() {
+    return name().toLowerCase(Locale.ROOT);
+  }
+
+  /** The virtual thread API, looked up once through reflection. */
+  private static final class VirtualThreads {
+
+    // Null if the runtime has no virtual threads.
+    static final Method FACTORY = lookUp();
+
+    private static Method lookUp() {
+      try {
+        Method factory = Executors.class.getMethod(
+            "newThreadPerTaskExecutor", ThreadFactory.class);
+        // Fails on Java 19 and 20 unless preview features are enabled.
+        newThreadFactory("probe-");
+        return factory;
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        return null;
+      }
+    }
+
+    static ExecutorService newExecutor(String namePrefix) {
+      try {
+        return (ExecutorService) FACTORY.invoke(null,
+            newThreadFactory(namePrefix));
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Cannot create virtual threads", e);
+      }
+    }
+
+    // Thread.ofVirtual().name(namePrefix, 1).factory()
+    private static ThreadFactory newThreadFactory(String namePrefix)
+        throws ReflectiveOperationException {
+      try {
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+        builder = builderType.getMethod("name", String.class, long.class)
+            .invoke(builder, namePrefix, 1L);
+        return (ThreadFactory) builderType.getMethod("factory")
+            .invoke(builder);
+      } catch (InvocationTargetException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+}
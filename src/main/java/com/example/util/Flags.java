@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal {@code --name=value} command line parsing for the command line
+ * tools.
+ */
+public final class Flags {
+
+  private final Map<String, String> values = new HashMap<>();
+
+  private Flags() {
+  }
+
+  /**
+   * Parses command line arguments of the form {@code --name=value}. A bare
+   * {@code --name} is read as {@code --name=true}.
+   *
+   * @param args the command line arguments. Cannot be {@code null}.
+   * @return the parsed flags.
+   */
+  public static Flags parse(String[] args) {
+    checkNotNull(args, "args cannot be null.");
+    Flags flags = new Flags();
+    for (String arg : args) {
+      checkArgument(arg.startsWith("--"), "Unexpected argument: %s", arg);
+      int equals = arg.indexOf('=');
+      if (equals < 0) {
+        flags.values.put(arg.substring(2), "true");
+      } else {
+        flags.values.put(arg.substring(2, equals), arg.substring(equals + 1));
+      }
+    }
+    return flags;
+  }
+
+  public boolean has(String name) {
+    return values.containsKey(name);
+  }
+
+  public String getString(String name, String defaultValue) {
+    return values.getOrDefault(name, defaultValue);
+  }
+
+  public int getInt(String name, int defaultValue) {
+    String value = values.get(name);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+
+  public long getLong(String name, long defaultValue) {
+    String value = values.get(name);
+    return value == null ? defaultValue : Long.parseLong(value);
+  }
+
+  public double getDouble(String name, double defaultValue) {
+    String value = values.get(name);
+    return value == null ? defaultValue : Double.parseDouble(value);
+  }
+
+  public boolean getBoolean(String name, boolean defaultValue) {
+    String value = values.get(name);
+    return value == null ? defaultValue : Boolean.parseBoolean(value);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.util;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Detects {@code synchronized} sections, which pin a virtual thread to its
+ * carrier thread while they run. A virtual thread that blocks while pinned
+ * blocks a platform thread with it, which undoes the point of {@link
+ * ExecutionMode#VIRTUAL}.
+ *
+ * <p>At run time, {@link #enableTracing()} turns on the JDK's own detector,
+ * which prints the stack of every virtual thread that blocks while pinned.
+ * Ahead of time, {@link #findSynchronizedMethods} lists the synchronized
+ * methods of the classes on the request path, so that new ones are caught in
+ * tests; use a {@link java.util.concurrent.locks.ReentrantLock} on the
+ * request path instead.
+ *
+ * <p>That check does not see {@code synchronized} blocks, nor the locks
+ * taken inside the JDK and libraries, such as those of {@code System.out}
+ * and of {@code java.util.logging} handlers, which do I/O while pinned.
+ * The request path therefore does not print, and only logs per turn at
+ * {@code FINE}, which is off by default. Run with {@link #enableTracing()}
+ * to catch the rest.
+ */
+public final class PinningDetector {
+
+  /** The JDK system property that traces pinned virtual threads. */
+  public static final String TRACE_PROPERTY = "jdk.tracePinnedThreads";
+
+  private PinningDetector() {
+  }
+
+  /**
+   * Makes the JDK print a short stack trace whenever a virtual thread blocks
+   * while pinned, unless {@value #TRACE_PROPERTY} is already set. Takes
+   * effect only before the first virtual thread is created.
+   */
+  public static void enableTracing() {
+    if (System.getProperty(TRACE_PROPERTY) == null) {
+      System.setProperty(TRACE_PROPERTY, "short");
+    }
+  }
+
+  /**
+   * Finds the synchronized methods of some classes and of the classes nested
+   * in them.
+   *
+   * @param classes the classes to inspect. Cannot be {@code null}.
+   * @return the synchronized methods, as {@code Class#method}.
+   */
+  public static List<String> findSynchronizedMethods(
+      Iterable<Class<?>> classes) {
+    checkNotNull(classes, "classes cannot be null.");
+    List<String> found = new ArrayList<>();
+    for (Class<?> type : classes) {
+      addSynchronizedMethods(type, found);
+    }
+    return found;
+  }
+
+  private static void addSynchronizedMethods(Class<?> type,
+      List<String> found) {
+    for (Method method : type.getDeclaredMethods()) {
+      if (Modifier.isSynchronized(method.getModifiers())) {
+        found.add(type.getName() + "#" + method.getName());
+      }
+    }
+    for (Class<?> nested : type.getDeclaredClasses()) {
+      addSynchronizedMethods(nested, found);
+    }
+  }
+}
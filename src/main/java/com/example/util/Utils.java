@@ -16,8 +16,41 @@
 
 package com.example.util;
 
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
 public final class Utils {
 
+  // Set while a request whose output must be reproducible is handled.
+  private static final ThreadLocal<Random> SEEDED_RANDOM = new ThreadLocal<>();
+
+  /**
+   * Gets the source of randomness for prompts and answers on this thread:
+   * the one seeded with {@link #seedRandom(long)}, if any.
+   *
+   * @return the {@link Random} to use on this thread.
+   */
+  public static Random getRandom() {
+    Random seeded = SEEDED_RANDOM.get();
+    return seeded != null ? seeded : ThreadLocalRandom.current();
+  }
+
+  /**
+   * Makes the random choices on this thread repeatable, until {@link
+   * #clearRandomSeed()}: two threads seeded alike make the same choices for
+   * the same requests.
+   *
+   * @param seed the seed.
+   */
+  public static void seedRandom(long seed) {
+    SEEDED_RANDOM.set(new Random(seed));
+  }
+
+  /** Undoes {@link #seedRandom(long)} on this thread. */
+  public static void clearRandomSeed() {
+    SEEDED_RANDOM.remove();
+  }
+
   /**
    * Gets a random number between {@code min} and {@code max}.
    * @param min the minimum possible number.
@@ -25,7 +58,7 @@ public final class Utils {
    * @return a random number between {@code min} and {@code max}.
    */
   public static int getRandomNumber(int min, int max) {
-    return (int) Math.floor(Math.random() * (max - min + 1)) + min;
+    return getRandom().nextInt(max - min + 1) + min;
   }
 
   /**
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.prompts.RenderedPrompt;
+import com.example.stats.GameStatistics;
+import com.example.util.DialogflowRequestBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Fails when handling a single turn allocates more bytes than the budget
+ * checked in to {@code allocation_budgets.properties} for that scenario.
+ *
+ * <p>Budgets include request parsing and response serialization. When a
+ * change legitimately needs more memory, raise the budget in the same change.
+ */
+@RunWith(Parameterized.class)
+public class AllocationBudgetTest {
+
+  private static final int WARMUP_ITERATIONS = 300;
+  private static final int MEASURED_ITERATIONS = 50;
+
+  private static Properties budgets;
+  private static com.sun.management.ThreadMXBean threadBean;
+
+  private final String scenario;
+  private final DialogflowRequestBuilder requestBuilder;
+
+  public AllocationBudgetTest(String scenario,
+      DialogflowRequestBuilder requestBuilder) {
+    this.scenario = scenario;
+    this.requestBuilder = requestBuilder;
+  }
+
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> scenarios() {
+    return Arrays.asList(new Object[][]{
+        {"start_game", new DialogflowRequestBuilder("start_game")},
+        {"provide_guess_cold", guess(10, inGame(95))},
+        {"provide_guess_warm", guess(44, inGame(50))},
+        {"provide_guess_hot", guess(46, inGame(50))},
+        {"provide_guess_very_hot", guess(47, inGame(50))},
+        {"provide_guess_hot_higher",
+            guess(48, withHint(inGame(50), "higher", 40))},
+        {"provide_guess_hot_lower",
+            guess(52, withHint(inGame(50), "lower", 60))},
+        {"provide_guess_higher", guess(30, inGame(50))},
+        {"provide_guess_lower", guess(70, inGame(50))},
+        {"provide_guess_still_higher",
+            guess(35, withHint(inGame(50), "higher", 40))},
+        {"provide_guess_same", guess(30, withHint(inGame(50), "higher", 30))},
+        {"provide_guess_min", guess(0, inGame(50))},
+        {"provide_guess_max", guess(100, inGame(50))},
+        {"provide_guess_win", guess(50, inGame(50))},
+        {"repeat", new DialogflowRequestBuilder("repeat")
+            .setConversationData(withLastResponse(inGame(50)))},
+        {"fallback", new DialogflowRequestBuilder("Default Fallback Intent")
+            .setConversationData(inGame(50))},
+        {"deeplink_number", new DialogflowRequestBuilder("deeplink_number")
+            .setParameter("number", 42.0)},
+        {"unknown_deeplink", new DialogflowRequestBuilder("unknown_deeplink")
+            .setRawText("talk to number genie about bananas")},
+        {"no_input", new DialogflowRequestBuilder("no_input")
+            .setRepromptCount(1)
+            .setConversationData(inGame(50))},
+    });
+  }
+
+  @BeforeClass
+  public static void loadBudgets() throws IOException {
+    budgets = new Properties();
+    try (InputStream in = AllocationBudgetTest.class
+        .getResourceAsStream("/allocation_budgets.properties")) {
+      budgets.load(in);
+    }
+    threadBean = (com.sun.management.ThreadMXBean)
+        ManagementFactory.getThreadMXBean();
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+  }
+
+  @Test
+  public void testAllocationWithinBudget() throws Exception {
+    String budget = budgets.getProperty(scenario);
+    assertNotNull("No allocation budget for " + scenario, budget);
+
+    NumberGenieApp app = new NumberGenieApp(new GameStatistics(10));
+    String body = requestBuilder.build();
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      app.handleRequest(body, null).get();
+    }
+    // Prompt variants are picked at random, so use the median turn.
+    long[] allocated = new long[MEASURED_ITERATIONS];
+    long threadId = Thread.currentThread().getId();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      long before = threadBean.getThreadAllocatedBytes(threadId);
+      app.handleRequest(body, null).get();
+      allocated[i] = threadBean.getThreadAllocatedBytes(threadId) - before;
+    }
+    Arrays.sort(allocated);
+    long median = allocated[MEASURED_ITERATIONS / 2];
+
+    assertTrue(String.format("%s allocated %d bytes per turn, budget is %s",
+        scenario, median, budget), median <= Long.parseLong(budget));
+  }
+
+  private static DialogflowRequestBuilder guess(double guess,
+      Map<String, Object> conversationData) {
+    return new DialogflowRequestBuilder("provide_guess")
+        .setParameter("guess", guess)
+        .setConversationData(conversationData);
+  }
+
+  private static Map<String, Object> inGame(double answer) {
+    Map<String, Object> conversationData = new HashMap<>();
+    conversationData.put("answer", answer);
+    conversationData.put("guessCount", 3.0);
+    conversationData.put("fallbackCount", 0.0);
+    conversationData.put("steamSoundCount", 0.0);
+    conversationData.put("duplicateCount", 0.0);
+    conversationData.put("min", 0.0);
+    conversationData.put("max", 100.0);
+    return conversationData;
+  }
+
+  private static Map<String, Object> withHint(
+      Map<String, Object> conversationData, String hint,
+      double previousGuess) {
+    conversationData.put("hint", hint);
+    conversationData.put("previousGuess", previousGuess);
+    return conversationData;
+  }
+
+  // A turn that said "higher" with a card, for repeat to replay.
+  private static Map<String, Object> withLastResponse(
+      Map<String, Object> conversationData) {
+    conversationData.put(NumberGenieApp.LAST_RESPONSE, new RenderedPrompt(
+        "<speech>It's higher than 30. What's your next guess? </speech>",
+        "It's higher than 30. What's your next guess? ",
+        "https://number-genie.appspot.com/COLD.gif", "Cold genie",
+        "It's higher than 30.", Collections.singletonList("Quit"))
+        .toData());
+    return conversationData;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.example.util.DialogflowRequestBuilder;
+import com.google.actions.api.ForIntent;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.Test;
+
+public class IntentDispatcherTest {
+
+  private static final String INTENTS_DIRECTORY = "intents/";
+
+  private final NumberGenieApp app = new NumberGenieApp();
+
+  @Test
+  public void testEveryAgentIntentHasHandler() throws IOException {
+    List<String> intents = readAgentIntents();
+    assertFalse(intents.isEmpty());
+    List<String> missing = new ArrayList<>();
+    for (String intent : intents) {
+      if (!app.getDispatcher().hasHandler(intent)) {
+        missing.add(intent);
+      }
+    }
+    assertEquals("Intents without a handler", new ArrayList<String>(),
+        missing);
+  }
+
+  @Test
+  public void testEveryHandlerIsDispatched() {
+    for (Method method : NumberGenieApp.class.getDeclaredMethods()) {
+      ForIntent forIntent = method.getAnnotation(ForIntent.class);
+      if (forIntent != null) {
+        assertTrue(forIntent.value(),
+            app.getDispatcher().hasHandler(forIntent.value()));
+      }
+    }
+  }
+
+  @Test
+  public void testAliasIsHandledLikeItsIntent() throws Exception {
+    String response = app.handleRequest(
+        new DialogflowRequestBuilder("Unknown-deeplink").setRawText("hi")
+            .build(), null).get();
+    assertTrue(response, response.contains("answer"));
+  }
+
+  @Test
+  public void testUnknownIntentFails() throws Exception {
+    try {
+      app.handleRequest(
+          new DialogflowRequestBuilder("no_such_intent").build(), null).get();
+      fail();
+    } catch (ExecutionException e) {
+      assertEquals("Intent handler not found - no_such_intent",
+          e.getCause().getMessage());
+    }
+  }
+
+  private static List<String> readAgentIntents() throws IOException {
+    List<String> intents = new ArrayList<>();
+    try (ZipFile zip = new ZipFile("agent.zip")) {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        String name = entry.getName();
+        if (!name.startsWith(INTENTS_DIRECTORY) || !name.endsWith(".json")
+            || name.contains("_usersays_")) {
+          continue;
+        }
+        try (Reader reader = new InputStreamReader(zip.getInputStream(entry),
+            StandardCharsets.UTF_8)) {
+          JsonObject intent = new JsonParser().parse(reader).getAsJsonObject();
+          intents.add(intent.get("name").getAsString());
+        }
+      }
+    }
+    return intents;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.stats.GameStatistics;
+import com.example.util.DialogflowRequestBuilder;
+import com.example.util.DialogflowResponses;
+import com.google.gson.JsonObject;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class RepeatTest {
+
+  private final NumberGenieApp app =
+      new NumberGenieApp(new GameStatistics(10));
+
+  @Test
+  public void testRepeatSendsWhatWasRendered() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      Map<String, Object> data = inGame();
+      String won = app.handleRequest(
+          new DialogflowRequestBuilder("provide_guess")
+              .setParameter("guess", 42.0)
+              .setConversationData(data)
+              .build(), null).get();
+      String repeated = app.handleRequest(
+          new DialogflowRequestBuilder("repeat")
+              .setContextsFromResponse(won)
+              .build(), null).get();
+
+      JsonObject richResponse = richResponse(won);
+      assertTrue(richResponse.toString().contains("basicCard"));
+      assertEquals(richResponse, richResponse(repeated));
+    }
+  }
+
+  @Test
+  public void testRepeatWithoutLastResponse() throws Exception {
+    Map<String, Object> data = inGame();
+    data.put(NumberGenieApp.LAST_RESPONSE, "not a rendered prompt");
+    String response = app.handleRequest(
+        new DialogflowRequestBuilder("repeat")
+            .setConversationData(data)
+            .build(), null).get();
+
+    assertTrue(richResponse(response).toString().contains("<speech>"));
+  }
+
+  private static Map<String, Object> inGame() {
+    Map<String, Object> data = new HashMap<>();
+    data.put("answer", 42.0);
+    data.put("min", 0.0);
+    data.put("max", 100.0);
+    data.put("guessCount", 3.0);
+    data.put("fallbackCount", 0.0);
+    data.put("steamSoundCount", 0.0);
+    data.put("duplicateCount", 0.0);
+    return data;
+  }
+
+  private static JsonObject richResponse(String response) {
+    return DialogflowResponses.parse(response).getAsJsonObject("payload")
+        .getAsJsonObject("google").getAsJsonObject("richResponse");
+  }
+}
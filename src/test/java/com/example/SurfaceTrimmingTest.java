@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.stats.GameStatistics;
+import com.example.stats.TrimmingStatistics;
+import com.example.util.DialogflowRequestBuilder;
+import com.example.util.DialogflowResponses;
+import com.google.gson.JsonObject;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class SurfaceTrimmingTest {
+
+  private final NumberGenieApp app =
+      new NumberGenieApp(new GameStatistics(10));
+
+  @Test
+  public void testAudioOnlySurfaceGetsNoScreenParts() throws Exception {
+    long savedBefore =
+        TrimmingStatistics.getInstance().getEstimatedBytesSaved();
+    // Render once with a screen so there are sizes to estimate from.
+    winningTurn(true, true);
+    String response = winningTurn(false, true);
+
+    assertFalse(response.contains("basicCard"));
+    assertFalse(response.contains("suggestions"));
+    assertFalse(response.contains("displayText"));
+    assertTrue(response.contains("<audio"));
+    assertTrue(TrimmingStatistics.getInstance().getEstimatedBytesSaved()
+        > savedBefore);
+  }
+
+  @Test
+  public void testScreenOnlySurfaceGetsNoAudio() throws Exception {
+    String response = winningTurn(true, false);
+
+    assertFalse(response.contains("<audio"));
+    assertTrue(response.contains("basicCard"));
+    assertTrue(response.contains("suggestions"));
+    assertTrue(response.contains("displayText"));
+  }
+
+  @Test
+  public void testFullSurfaceGetsEverything() throws Exception {
+    String response = winningTurn(true, true);
+
+    assertTrue(response.contains("<audio"));
+    assertTrue(response.contains("basicCard"));
+    assertTrue(response.contains("suggestions"));
+  }
+
+  @Test
+  public void testSurfaceWithoutCapabilitiesGetsEverything() throws Exception {
+    String response = winningTurn(false, false);
+
+    assertTrue(response.contains("<audio"));
+    assertTrue(response.contains("basicCard"));
+    assertTrue(response.contains("suggestions"));
+    assertTrue(response.contains("displayText"));
+  }
+
+  /** Plays a winning guess and returns the rich response as JSON. */
+  private String winningTurn(boolean screen, boolean audio) throws Exception {
+    Map<String, Object> data = new HashMap<>();
+    data.put("answer", 42.0);
+    data.put("min", 0.0);
+    data.put("max", 100.0);
+    data.put("guessCount", 3.0);
+    data.put("fallbackCount", 0.0);
+    data.put("steamSoundCount", 0.0);
+    data.put("duplicateCount", 0.0);
+    data.put("previousGuess", 40.0);
+    data.put("hint", "higher");
+    String request = new DialogflowRequestBuilder("provide_guess")
+        .setParameter("guess", 42.0)
+        .setConversationData(data)
+        .setScreenOutput(screen)
+        .setAudioOutput(audio)
+        .build();
+    JsonObject response =
+        DialogflowResponses.parse(app.handleRequest(request, null).get());
+    return response.getAsJsonObject("payload").getAsJsonObject("google")
+        .getAsJsonObject("richResponse").toString();
+  }
+}
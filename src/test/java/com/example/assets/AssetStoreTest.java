@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.assets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class AssetStoreTest {
+
+  private static final String WAV = "/audio/test.wav";
+  private static final String GIF = "/images/test.gif";
+
+  private final byte[] noise = randomBytes(1000);
+  private final AssetStore store = new AssetStore.Builder()
+      .add(GIF, noise)
+      .add(WAV, new String(new char[1000]).replace('\0', 'a')
+          .getBytes(StandardCharsets.US_ASCII))
+      .build();
+
+  @Test
+  public void testIfNoneMatchReturnsNotModified() {
+    AssetResponse full = store.serve(GIF, null, null, null);
+    assertEquals(HttpURLConnection.HTTP_OK, full.getStatus());
+    assertEquals("image/gif", full.getHeaders().get("Content-Type"));
+    String etag = full.getHeaders().get("ETag");
+
+    AssetResponse cached = store.serve(GIF, "\"other\", " + etag, null, null);
+    assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, cached.getStatus());
+    assertNull(cached.getBody());
+    assertEquals(HttpURLConnection.HTTP_NOT_FOUND,
+        store.serve("/images/missing.gif", null, null, null).getStatus());
+  }
+
+  @Test
+  public void testRanges() {
+    AssetResponse middle = store.serve(GIF, null, "bytes=10-19", null);
+    assertEquals(HttpURLConnection.HTTP_PARTIAL, middle.getStatus());
+    assertEquals("bytes 10-19/1000",
+        middle.getHeaders().get("Content-Range"));
+    assertEquals(Arrays.toString(Arrays.copyOfRange(noise, 10, 20)),
+        Arrays.toString(Arrays.copyOfRange(middle.getBody(),
+            middle.getOffset(), middle.getOffset() + middle.getLength())));
+
+    AssetResponse suffix = store.serve(GIF, null, "bytes=-100", null);
+    assertEquals("bytes 900-999/1000",
+        suffix.getHeaders().get("Content-Range"));
+    assertEquals(416,
+        store.serve(GIF, null, "bytes=1000-", null).getStatus());
+    assertEquals(HttpURLConnection.HTTP_OK,
+        store.serve(GIF, null, "bytes=0-1,5-6", null).getStatus());
+  }
+
+  @Test
+  public void testGzipOnlyWhenItPaysOff() {
+    AssetResponse wav = store.serve(WAV, null, null, "deflate, gzip");
+    assertEquals("gzip", wav.getHeaders().get("Content-Encoding"));
+    assertEquals(HttpURLConnection.HTTP_OK, store.serve(WAV,
+        wav.getHeaders().get("ETag"), null, null).getStatus());
+
+    AssetResponse gif = store.serve(GIF, null, null, "gzip");
+    assertNull(gif.getHeaders().get("Content-Encoding"));
+    assertEquals(1000, gif.getLength());
+  }
+
+  @Test
+  public void testHashedNamesAreCachedForGood() {
+    AssetStore hashed = new AssetStore.Builder()
+        .add("/images/test.0123456789.gif", noise)
+        .build();
+    assertEquals(AssetStore.IMMUTABLE_CACHE_CONTROL, hashed.serve(
+        "/images/test.0123456789.gif", null, null, null)
+        .getHeaders().get("Cache-Control"));
+    assertEquals(AssetStore.CACHE_CONTROL, store.serve(GIF, null, null, null)
+        .getHeaders().get("Cache-Control"));
+  }
+
+  private static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(7).nextBytes(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.util.DialogflowRequestBuilder;
+import com.example.util.DialogflowRequests;
+import com.google.actions.api.App;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+public class BatchProcessorTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testTurnsOfASessionRunInOrder() throws Exception {
+    int sessions = 20;
+    int turns = 30;
+    StringBuilder requests = new StringBuilder();
+    for (int turn = 0; turn < turns; turn++) {
+      for (int session = 0; session < sessions; session++) {
+        requests.append(new DialogflowRequestBuilder("provide_guess")
+            .setSessionId("session-" + session)
+            .setParameter("guess", (double) turn)
+            .build()).append('\n');
+      }
+      requests.append('\n');
+    }
+    Map<String, List<Integer>> handled = new ConcurrentHashMap<>();
+    App app = (body, headers) -> {
+      JsonObject request = new JsonParser().parse(body).getAsJsonObject();
+      int turn = request.getAsJsonObject("queryResult")
+          .getAsJsonObject("parameters").get("guess").getAsInt();
+      handled.computeIfAbsent(DialogflowRequests.findSession(body),
+          session -> new ArrayList<>()).add(turn);
+      try {
+        Thread.sleep(ThreadLocalRandom.current().nextInt(2));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return CompletableFuture.completedFuture("{\"turn\":" + turn + "}");
+    };
+
+    StringWriter responses = new StringWriter();
+    long count = new BatchProcessor(app, executor, 4, 2).process(
+        new StringReader(requests.toString()), responses);
+
+    assertEquals(sessions * turns, count);
+    for (List<Integer> order : handled.values()) {
+      for (int turn = 0; turn < turns; turn++) {
+        assertEquals(turn, (int) order.get(turn));
+      }
+    }
+    BitSet indexes = new BitSet();
+    for (String line : responses.toString().split("\n")) {
+      JsonObject response = new JsonParser().parse(line).getAsJsonObject();
+      int index = response.get("index").getAsInt();
+      indexes.set(index);
+      assertEquals(index / sessions,
+          response.getAsJsonObject("response").get("turn").getAsInt());
+      assertTrue(response.get("session").getAsString()
+          .endsWith("/session-" + index % sessions));
+    }
+    assertEquals(sessions * turns, indexes.cardinality());
+  }
+
+  @Test
+  public void testFailedRequestsAreReported() throws Exception {
+    App app = (body, headers) -> {
+      CompletableFuture<String> future = new CompletableFuture<>();
+      future.completeExceptionally(new IllegalStateException("broken"));
+      return future;
+    };
+    StringWriter responses = new StringWriter();
+    new BatchProcessor(app, executor, 1, 1).process(
+        new StringReader("{\"session\":\"s\"}\n"), responses);
+
+    JsonObject response = new JsonParser().parse(responses.toString())
+        .getAsJsonObject();
+    assertEquals(0, response.get("index").getAsInt());
+    assertEquals("s", response.get("session").getAsString());
+    assertTrue(response.get("error").getAsString().contains("broken"));
+  }
+
+  @Test
+  public void testInterruptDropsQueuedRequestsAndWaitsForRunningOnes()
+      throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger handled = new AtomicInteger();
+    App app = (body, headers) -> {
+      handled.incrementAndGet();
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return CompletableFuture.completedFuture("{}");
+    };
+    StringBuilder requests = new StringBuilder();
+    for (int i = 0; i < 10; i++) {
+      requests.append("{\"session\":\"s\"}\n");
+    }
+    AtomicReference<Throwable> thrown = new AtomicReference<>();
+    Thread processing = new Thread(() -> {
+      try {
+        new BatchProcessor(app, executor, 1, 2).process(
+            new StringReader(requests.toString()), new StringWriter());
+      } catch (Throwable e) {
+        thrown.set(e);
+      }
+    });
+    processing.start();
+    started.await();
+    processing.interrupt();
+    // Still waiting for the running request.
+    processing.join(100);
+    assertTrue(processing.isAlive());
+
+    release.countDown();
+    processing.join();
+    assertTrue(String.valueOf(thrown.get()),
+        thrown.get() instanceof InterruptedException);
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    assertEquals(1, handled.get());
+  }
+}
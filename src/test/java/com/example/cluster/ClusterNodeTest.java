@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.stats.UserStatistics;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import org.junit.After;
+import org.junit.Test;
+
+public class ClusterNodeTest {
+
+  private static final int USERS = 300;
+
+  private final List<ClusterNode> nodes = new ArrayList<>();
+
+  @After
+  public void tearDown() throws Exception {
+    for (ClusterNode node : nodes) {
+      node.close();
+    }
+  }
+
+  @Test
+  public void testRingMovesFewKeysWhenANodeJoins() throws Exception {
+    List<InetSocketAddress> three = new ArrayList<>();
+    for (int port = 7001; port <= 7003; port++) {
+      three.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+    HashRing before = new HashRing(three);
+    three.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), 7004));
+    HashRing after = new HashRing(three);
+    int moved = 0;
+    int[] owned = new int[4];
+    for (int i = 0; i < 10_000; i++) {
+      String key = "user-" + i;
+      InetSocketAddress owner = after.getOwner(key);
+      owned[three.indexOf(owner)]++;
+      if (!owner.equals(before.getOwner(key))) {
+        moved++;
+        assertEquals(7004, owner.getPort());
+      }
+      List<InetSocketAddress> owners = after.getNodes(key, 2);
+      assertEquals(owner, owners.get(0));
+      assertTrue(!owners.get(0).equals(owners.get(1)));
+    }
+    assertTrue("moved " + moved, moved > 1500 && moved < 3500);
+    for (int count : owned) {
+      assertTrue("owned " + count, count > 1500 && count < 3500);
+    }
+  }
+
+  @Test
+  public void testGamesAreForwardedToOwnersAndReplicated() throws Exception {
+    startNodes(3);
+    ClusterNode entry = nodes.get(0);
+    for (int i = 0; i < USERS; i++) {
+      entry.getStatistics().recordWin(user(i), 1 + i % 10);
+      entry.getStatistics().recordLoss(user(i));
+    }
+
+    awaitTrue(() -> allCopiesMatch(nodes, 2));
+    assertEquals(USERS, entry.getStatistics().getWins());
+    for (int i = 0; i < USERS; i += 37) {
+      // Any node can read any user, from the owner.
+      UserStatistics user = nodes.get(i % 3).getStatistics().getUser(user(i));
+      assertEquals(1, user.getWins());
+      assertEquals(1, user.getLosses());
+      assertEquals(1 + i % 10, user.getBestScore());
+    }
+    assertNull(nodes.get(1).getStatistics().getUser("nobody"));
+  }
+
+  @Test
+  public void testBackupTakesOverWhenTheOwnerFails() throws Exception {
+    startNodes(3);
+    for (int i = 0; i < USERS; i++) {
+      nodes.get(i % 3).getStatistics().recordWin(user(i), 1 + i % 10);
+    }
+    awaitTrue(() -> allCopiesMatch(nodes, 2));
+
+    ClusterNode failed = nodes.remove(2);
+    failed.close();
+    setMembers(nodes);
+
+    for (int i = 0; i < USERS; i++) {
+      UserStatistics user = nodes.get(i % 2).getStatistics().getUser(user(i));
+      assertNotNull(user(i), user);
+      assertEquals(1 + i % 10, user.getBestScore());
+    }
+    // The new owners restore two copies of every user.
+    awaitTrue(() -> allCopiesMatch(nodes, 2));
+  }
+
+  @Test
+  public void testUsersMoveToAJoiningNode() throws Exception {
+    startNodes(2);
+    for (int i = 0; i < USERS; i++) {
+      nodes.get(0).getStatistics().recordWin(user(i), 1 + i % 10);
+    }
+    awaitTrue(() -> allCopiesMatch(nodes, 2));
+
+    ClusterNode joined = new ClusterNode(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 10, 1000);
+    nodes.add(joined);
+    setMembers(nodes);
+
+    awaitTrue(() -> allCopiesMatch(nodes, 2));
+    long owned = 0;
+    for (int i = 0; i < USERS; i++) {
+      if (joined.owns(user(i))) {
+        owned++;
+        assertEquals(1 + i % 10,
+            joined.getStatistics().getLocalUser(user(i)).getBestScore());
+      }
+    }
+    assertTrue("owned " + owned, owned > USERS / 6);
+  }
+
+  private void startNodes(int count) throws Exception {
+    for (int i = 0; i < count; i++) {
+      nodes.add(new ClusterNode(
+          new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 10,
+          1000));
+    }
+    setMembers(nodes);
+  }
+
+  private static void setMembers(List<ClusterNode> nodes) {
+    List<InetSocketAddress> members = nodes.stream()
+        .map(ClusterNode::getAddress).collect(Collectors.toList());
+    for (ClusterNode node : nodes) {
+      node.setMembers(members);
+    }
+  }
+
+  // Whether the owner and backup of every user hold the same statistics.
+  private static boolean allCopiesMatch(List<ClusterNode> nodes, int copies) {
+    HashRing ring = new HashRing(nodes.stream()
+        .map(ClusterNode::getAddress).collect(Collectors.toList()));
+    for (int i = 0; i < USERS; i++) {
+      String expected = null;
+      for (InetSocketAddress address : ring.getNodes(user(i), copies)) {
+        ClusterNode node = nodes.stream()
+            .filter(candidate -> candidate.getAddress().equals(address))
+            .findFirst().get();
+        UserStatistics user = node.getStatistics().getLocalUser(user(i));
+        if (user == null) {
+          return false;
+        }
+        String actual = user.toSummary().toString();
+        if (expected != null && !expected.equals(actual)) {
+          return false;
+        }
+        expected = actual;
+      }
+    }
+    return true;
+  }
+
+  private static void awaitTrue(BooleanSupplier condition) throws Exception {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      assertTrue("timed out", System.nanoTime() < deadline);
+      Thread.sleep(20);
+    }
+  }
+
+  private static String user(int i) {
+    return "user-" + i;
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ConfigSnapshotTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = folder.getRoot().toPath();
+    Files.write(directory.resolve("config.properties"), Arrays.asList(
+        "project_id=test", "min=1", "max=10", "suggestions=2"),
+        StandardCharsets.ISO_8859_1);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    Config.swap(ConfigSnapshot.fromClasspath());
+  }
+
+  @Test
+  public void testDirectoryOverridesClasspath() throws IOException {
+    writePrompts(Locale.CANADA_FRENCH, "high", "Plus haut que %1$s, eh.");
+
+    ConfigSnapshot snapshot = ConfigSnapshot.load(directory);
+
+    assertEquals(10, snapshot.getMax(), 0);
+    assertEquals(2, snapshot.getSuggestions());
+    assertEquals("Plus haut que %1$s, eh.",
+        snapshot.getPrompts(Locale.CANADA_FRENCH).getString("high"));
+    assertEquals(ConfigSnapshot.fromClasspath().getPrompts(Locale.FRANCE)
+        .getString("high"), snapshot.getPrompts(Locale.FRANCE)
+        .getString("high"));
+    // Unknown countries fall back to the language, unknown languages to the
+    // default locale.
+    assertEquals(Locale.US, snapshot.getPrompts(Locale.UK).getLocale());
+    assertEquals(Locale.US,
+        snapshot.getPrompts(Locale.JAPANESE).getLocale());
+  }
+
+  @Test
+  public void testStartupSettingsComeFromTheDirectory() throws IOException {
+    Files.write(directory.resolve("config.properties"), Arrays.asList(
+        "project_id=test", "min=1", "max=10", "suggestions=2",
+        "rate_limit_session_per_second=5"), StandardCharsets.ISO_8859_1);
+
+    ResourceBundle config = ConfigSnapshot.load(directory).getConfig();
+
+    assertEquals("5", config.getString("rate_limit_session_per_second"));
+    assertFalse(config.containsKey("rate_limit_user_per_second"));
+  }
+
+  @Test
+  public void testAccentedPromptsAreReadAsUtf8() throws IOException {
+    String bundled = ResourceBundle.getBundle("prompts", Locale.FRANCE)
+        .getString("cold_text_1");
+    assertTrue(bundled.contains("\u00e7"));
+    assertEquals(bundled, ConfigSnapshot.fromClasspath()
+        .getPrompts(Locale.FRANCE).getString("cold_text_1"));
+
+    // A file that is not valid UTF-8 is read as ISO-8859-1.
+    writePrompts(Locale.FRANCE, "high", "Plus \u00e9lev\u00e9 que %1$s.");
+    assertEquals(bundled, ConfigSnapshot.load(directory)
+        .getPrompts(Locale.FRANCE).getString("cold_text_1"));
+    assertEquals("Plus \u00e9lev\u00e9 que %1$s.", ConfigSnapshot
+        .load(directory).getPrompts(Locale.FRANCE).getString("high"));
+  }
+
+  @Test
+  public void testInconsistentPromptsAreRejected() throws IOException {
+    writePrompts(Locale.CANADA_FRENCH, "high", "Plus haut que %2$d.");
+    Files.write(directory.resolve("prompts_de_DE.properties"),
+        Arrays.asList("high=Hoeher als %1$s."), StandardCharsets.ISO_8859_1);
+
+    try {
+      ConfigSnapshot.load(directory);
+      fail("Expected the prompts to be rejected.");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(
+          "high has format arguments [2$d] for fr_CA"));
+      assertTrue(e.getMessage(),
+          e.getMessage().contains("reveal_1 is missing for de_DE"));
+    }
+  }
+
+  @Test
+  public void testKeyDroppedFromEveryLocaleIsRejected() throws IOException {
+    for (Locale locale : ConfigSnapshot.BUNDLED_LOCALES) {
+      writePrompts(locale, "slow_down", null);
+    }
+    Files.write(directory.resolve("config.properties"), Arrays.asList(
+        "project_id= ", "min=1", "max=10", "suggestions=2"),
+        StandardCharsets.ISO_8859_1);
+
+    try {
+      ConfigSnapshot.load(directory);
+      fail("Expected the prompts to be rejected.");
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage(),
+          e.getMessage().contains("slow_down is missing for en_US"));
+      assertTrue(e.getMessage(),
+          e.getMessage().contains("slow_down is missing for fr_FR"));
+      assertTrue(e.getMessage(),
+          e.getMessage().contains("project_id is missing"));
+    }
+  }
+
+  @Test
+  public void testInvalidReloadKeepsCurrentConfig() throws IOException {
+    ConfigWatcher watcher = ConfigWatcher.start(directory);
+    try {
+      assertTrue(watcher.reload());
+      ConfigSnapshot loaded = Config.get();
+      assertEquals(10, loaded.getMax(), 0);
+
+      Files.write(directory.resolve("config.properties"),
+          Arrays.asList("min=10", "max=1"), StandardCharsets.ISO_8859_1);
+      assertFalse(watcher.reload());
+      assertSame(loaded, Config.get());
+    } finally {
+      watcher.close();
+    }
+  }
+
+  @Test
+  public void testPinnedSnapshotSurvivesSwap() throws IOException {
+    ConfigSnapshot pinned = Config.pin();
+    try {
+      Config.swap(ConfigSnapshot.load(directory));
+      assertSame(pinned, Config.get());
+    } finally {
+      Config.unpin();
+    }
+    assertEquals(10, Config.get().getMax(), 0);
+  }
+
+  // Writes the bundled prompts of a locale, with key set to value, or left
+  // out if value is null.
+  private void writePrompts(Locale locale, String key, String value)
+      throws IOException {
+    ConfigSnapshot bundled = ConfigSnapshot.fromClasspath();
+    List<String> lines = new ArrayList<>();
+    for (String bundledKey : bundled.getPrompts(locale).keySet()) {
+      if (bundledKey.equals(key) && value == null) {
+        continue;
+      }
+      lines.add(bundledKey + "=" + (bundledKey.equals(key) ? value
+          : bundled.getPrompts(locale).getString(bundledKey)));
+    }
+    Files.write(directory.resolve(ConfigSnapshot.promptsFile(locale)), lines,
+        StandardCharsets.ISO_8859_1);
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.example.config.LocaleResolver.Match;
+import com.example.config.LocaleResolver.Resolution;
+import java.io.IOException;
+import java.util.Locale;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LocaleResolverTest {
+
+  private ConfigSnapshot snapshot;
+
+  @Before
+  public void setUp() throws IOException {
+    snapshot = ConfigSnapshot.fromClasspath();
+  }
+
+  @Test
+  public void testSupportedLocaleMatchesExactly() {
+    assertResolution(Locale.CANADA_FRENCH, Locale.CANADA_FRENCH, Match.EXACT);
+    assertResolution(Locale.US, Locale.US, Match.EXACT);
+  }
+
+  @Test
+  public void testLanguageTagIsNormalized() {
+    assertResolution(new Locale("fr-ca"), Locale.CANADA_FRENCH, Match.EXACT);
+  }
+
+  @Test
+  public void testLanguageFallsBackToHomeCountry() {
+    assertResolution(Locale.FRENCH, Locale.FRANCE, Match.LANGUAGE);
+    assertResolution(new Locale("fr", "CH"), Locale.FRANCE, Match.LANGUAGE);
+    assertResolution(Locale.UK, Locale.US, Match.LANGUAGE);
+  }
+
+  @Test
+  public void testUnknownLanguageFallsBackToDefault() {
+    assertResolution(Locale.JAPAN, Locale.US, Match.DEFAULT);
+    assertResolution(Locale.ROOT, Locale.US, Match.DEFAULT);
+  }
+
+  @Test
+  public void testFallbackIsCached() {
+    Locale locale = new Locale("de", "AT");
+    assertSame(snapshot.resolveLocale(locale), snapshot.resolveLocale(locale));
+  }
+
+  private void assertResolution(Locale requested, Locale expected,
+      Match match) {
+    Resolution resolution = snapshot.resolveLocale(requested);
+    assertEquals(expected, resolution.getLocale());
+    assertEquals(match, resolution.getMatch());
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.example.NumberGenieApp;
+import com.example.util.DialogflowRequestBuilder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Test;
+
+public class FlightRecordingsTest {
+
+  private final FlightRecordings recordings = new FlightRecordings();
+
+  @After
+  public void tearDown() throws Exception {
+    Path file = recordings.stop();
+    if (file != null) {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testRecordsTurns() throws Exception {
+    assertTrue(recordings.start("default"));
+    assertFalse(recordings.start("default"));
+
+    NumberGenieApp app = new NumberGenieApp();
+    String started = app.handleRequest(
+        new DialogflowRequestBuilder("start_game").setLocale("fr-FR").build(),
+        null).get();
+    app.handleRequest(new DialogflowRequestBuilder("provide_guess")
+        .setContextsFromResponse(started)
+        .setParameter("guess", 1000.0)
+        .build(), null).get();
+
+    Path file = recordings.stop();
+    assertNotNull(file);
+    List<RecordedEvent> events;
+    try {
+      events = RecordingFile.readAllEvents(file);
+    } finally {
+      Files.delete(file);
+    }
+    List<String> intents = new ArrayList<>();
+    List<String> prompts = new ArrayList<>();
+    for (RecordedEvent event : events) {
+      String type = event.getEventType().getName();
+      if (type.equals("com.example.numbergenie.Intent")) {
+        intents.add(event.getString("intent") + "/" + event.getString("branch")
+            + "/" + event.getString("locale"));
+      } else if (type.equals("com.example.numbergenie.Prompt")) {
+        prompts.add(event.getString("promptId"));
+      }
+    }
+    assertEquals(2, intents.size());
+    assertTrue(intents.toString(),
+        intents.contains("start_game/null/fr-FR"));
+    assertTrue(intents.toString(),
+        intents.contains("provide_guess/cold/en-US"));
+    assertTrue(prompts.toString(), prompts.contains("start_game"));
+  }
+
+  @Test
+  public void testRequestOutlivingItsRecordingLeavesNoEventBehind()
+      throws Exception {
+    assertTrue(recordings.start("default"));
+    IntentEvent event = IntentEvent.beginRequest();
+    assertSame(event, IntentEvent.current());
+
+    Files.delete(recordings.stop());
+    event.endRequest(null, false);
+
+    assertNull(IntentEvent.current());
+  }
+
+  @Test
+  public void testNothingToStopOrDump() throws Exception {
+    assertNull(recordings.dump());
+    assertNull(recordings.stop());
+    assertEquals("closed", recordings.toSummary().get("state"));
+  }
+}
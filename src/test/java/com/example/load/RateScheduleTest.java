@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.load;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class RateScheduleTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void testRampInterpolatesRate() {
+    RateSchedule schedule = RateSchedule.parse("0-100:10,100:5");
+    assertEquals(15 * SECOND, schedule.getDurationNanos());
+    assertEquals(0, schedule.getRate(0), 0.001);
+    assertEquals(50, schedule.getRate(5 * SECOND), 0.001);
+    assertEquals(100, schedule.getRate(12 * SECOND), 0.001);
+    assertEquals(0, schedule.getRate(15 * SECOND), 0.001);
+  }
+
+  @Test
+  public void testSendTimesFollowTheRate() {
+    RateSchedule schedule = RateSchedule.constant(200, 3);
+    long time = 0;
+    int requests = 0;
+    while (time < schedule.getDurationNanos()) {
+      time = schedule.nextSendTime(time);
+      requests++;
+    }
+    assertEquals(600, requests);
+  }
+
+  @Test
+  public void testPauseIsSkipped() {
+    RateSchedule schedule = RateSchedule.parse("0:2,10:1");
+    long first = schedule.nextSendTime(0);
+    assertEquals(2 * SECOND + SECOND / 10, first,
+        TimeUnit.MILLISECONDS.toNanos(1));
+  }
+}
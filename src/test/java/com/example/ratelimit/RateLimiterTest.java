@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.NumberGenieApp;
+import com.example.stats.GameStatistics;
+import com.example.util.DialogflowRequestBuilder;
+import com.example.util.DialogflowResponses;
+import com.google.gson.JsonObject;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+  private final AtomicLong now = new AtomicLong(Long.MAX_VALUE - 1_000);
+
+  @Test
+  public void testBurstThenRefill() {
+    TokenBuckets buckets = new TokenBuckets(10, 3, 100, now::get);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(buckets.tryAcquire("session"));
+    }
+    assertFalse(buckets.tryAcquire("session"));
+    assertTrue(buckets.tryAcquire("other session"));
+
+    // Across the wrap of System.nanoTime, one token takes 100 ms to refill.
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(99));
+    assertFalse(buckets.tryAcquire("session"));
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    assertTrue(buckets.tryAcquire("session"));
+    assertFalse(buckets.tryAcquire("session"));
+    assertEquals(3, buckets.getLimited());
+  }
+
+  @Test
+  public void testIdleBucketsAreEvicted() {
+    TokenBuckets buckets = new TokenBuckets(1, 1, 2, now::get);
+    assertTrue(buckets.tryAcquire("a"));
+    assertTrue(buckets.tryAcquire("b"));
+    // No room, and a and b are not idle: c goes through untracked.
+    assertTrue(buckets.tryAcquire("c"));
+    assertTrue(buckets.tryAcquire("c"));
+    assertEquals(2, buckets.getUntracked());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    assertTrue(buckets.tryAcquire("c"));
+    assertFalse(buckets.tryAcquire("c"));
+    assertEquals(2, buckets.getEvicted());
+    assertEquals(1, buckets.size());
+  }
+
+  @Test
+  public void testConcurrentAcquiresTakeEachTokenOnce() throws Exception {
+    TokenBuckets buckets = new TokenBuckets(1, 1000, 100, now::get);
+    AtomicInteger acquired = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      threads.add(new Thread(() -> {
+        for (int j = 0; j < 500; j++) {
+          if (buckets.tryAcquire("session")) {
+            acquired.incrementAndGet();
+          }
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(1000, acquired.get());
+    assertEquals(1000, buckets.getLimited());
+  }
+
+  @Test
+  public void testAppRepliesSlowDownOverTheLimit() throws Exception {
+    RateLimiter limiter =
+        new RateLimiter(new TokenBuckets(0.001, 2, 100), null);
+    NumberGenieApp app = new NumberGenieApp(new GameStatistics(10), limiter);
+    String request = new DialogflowRequestBuilder("start_game")
+        .setSessionId("hammering")
+        .build();
+    for (int i = 0; i < 2; i++) {
+      assertTrue(DialogflowResponses.parse(app.handleRequest(request, null)
+          .get()).has("outputContexts"));
+    }
+
+    String response = app.handleRequest(request, null).get();
+    assertEquals(RateLimiter.getSlowDownResponse(Locale.US), response);
+    JsonObject json = DialogflowResponses.parse(response);
+    assertFalse(json.has("outputContexts"));
+    assertTrue(DialogflowResponses.expectsUserResponse(json));
+    assertTrue(DialogflowResponses.parse(app.handleRequest(
+        new DialogflowRequestBuilder("start_game")
+            .setSessionId("polite")
+            .build(), null).get()).has("outputContexts"));
+  }
+
+  @Test
+  public void testSessionOverTheLimitIsNotParsed() throws Exception {
+    RateLimiter limiter =
+        new RateLimiter(new TokenBuckets(0.001, 1, 100), null);
+    NumberGenieApp app = new NumberGenieApp(new GameStatistics(10), limiter);
+    app.handleRequest(new DialogflowRequestBuilder("start_game")
+        .setSessionId("hammering")
+        .build(), null).get();
+
+    // Truncated, so it would fail if it were parsed.
+    String request = "{\"originalDetectIntentRequest\":{\"payload\":{"
+        + "\"user\":{\"locale\":\"fr-FR\"}}},\"session\":"
+        + "\"projects/number-genie/agent/sessions/hammering\"";
+    assertEquals(RateLimiter.getSlowDownResponse(Locale.FRANCE),
+        app.handleRequest(request, null).get());
+  }
+
+  @Test
+  public void testBatchLinesAreLimited() throws Exception {
+    RateLimiter limiter =
+        new RateLimiter(new TokenBuckets(0.001, 2, 100), null);
+    NumberGenieApp app = new NumberGenieApp(new GameStatistics(10), limiter);
+    String request = new DialogflowRequestBuilder("start_game")
+        .setSessionId("batched")
+        .build();
+    StringWriter responses = new StringWriter();
+    app.handleRequests(
+        new StringReader(request + "\n" + request + "\n" + request + "\n"),
+        responses);
+
+    String slowDownResponse = RateLimiter.getSlowDownResponse(Locale.US);
+    Matcher slowDown = Pattern.compile(Pattern.quote(slowDownResponse))
+        .matcher(responses.toString());
+    int limited = 0;
+    while (slowDown.find()) {
+      limited++;
+    }
+    assertEquals(1, limited);
+    assertEquals(1, limiter.getSessions().getLimited());
+  }
+}
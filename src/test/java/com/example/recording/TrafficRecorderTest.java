@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.recording;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.util.DialogflowRequestBuilder;
+import com.google.common.collect.ImmutableSet;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TrafficRecorderTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRecordedRequestsAreScrubbedAndReadBackInOrder()
+      throws Exception {
+    File directory = folder.newFolder("recordings");
+    TrafficRecorder recorder = new TrafficRecorder(directory.toPath(), 1,
+        1024, 100, new RequestScrubber(ImmutableSet.of("queryText", "query"),
+            ImmutableSet.of("userId"), "salt"));
+    for (int i = 0; i < 20; i++) {
+      recorder.record(new DialogflowRequestBuilder("provide_guess")
+          .setSessionId("session-" + (i % 3))
+          .setUserId("alice@example.com")
+          .setRawText("my guess is " + i)
+          .setParameter("guess", (double) i)
+          .build());
+    }
+    recorder.close();
+
+    assertEquals(20, recorder.getRecorded());
+    assertTrue("segments should rotate", directory.list().length > 1);
+    List<RecordedRequest> requests = TrafficReader.read(directory.toPath());
+    assertEquals(20, requests.size());
+    for (int i = 0; i < requests.size(); i++) {
+      RecordedRequest request = requests.get(i);
+      assertEquals("projects/number-genie/agent/sessions/session-" + (i % 3),
+          request.getSession());
+      assertTrue(request.getBody().contains("\"guess\":" + i + ".0"));
+      assertFalse(request.getBody().contains("alice"));
+      assertFalse(request.getBody().contains("my guess"));
+    }
+  }
+
+  @Test
+  public void testPseudonymizedSessionsStayApart() throws Exception {
+    File directory = folder.newFolder("pseudonymized");
+    TrafficRecorder recorder = new TrafficRecorder(directory.toPath(), 1,
+        1 << 20, 100, new RequestScrubber(ImmutableSet.of(),
+            ImmutableSet.of("session"), "salt"));
+    for (int i = 0; i < 6; i++) {
+      recorder.record(new DialogflowRequestBuilder("provide_guess")
+          .setSessionId("session-" + (i % 3))
+          .setConversationData(Collections.singletonMap("answer", 42.0))
+          .build());
+    }
+    recorder.close();
+
+    List<RecordedRequest> requests = TrafficReader.read(directory.toPath());
+    assertEquals(6, requests.size());
+    Set<String> sessions = new HashSet<>();
+    for (RecordedRequest request : requests) {
+      assertTrue(request.getSession()
+          .startsWith("projects/number-genie/agent/sessions/"));
+      assertFalse(request.getSession().contains("session-"));
+      assertFalse(request.getBody().contains("sessions/session-"));
+      assertFalse(request.getBody().contains("\"conversationId\":\"session-"));
+      String id = request.getSession()
+          .substring(request.getSession().lastIndexOf('/') + 1);
+      assertTrue(request.getBody().contains("\"conversationId\":\"" + id));
+      assertTrue(
+          request.getBody().contains(request.getSession() + "/contexts/"));
+      sessions.add(request.getSession());
+    }
+    assertEquals(3, sessions.size());
+  }
+
+  @Test
+  public void testSamplingKeepsWholeSessions() throws Exception {
+    File directory = folder.newFolder("sampled");
+    TrafficRecorder recorder = new TrafficRecorder(directory.toPath(), 0.5,
+        1 << 20, 1000, new RequestScrubber(ImmutableSet.of(),
+            ImmutableSet.of(), ""));
+    for (int turn = 0; turn < 5; turn++) {
+      for (int session = 0; session < 100; session++) {
+        recorder.record(new DialogflowRequestBuilder("provide_guess")
+            .setSessionId("session-" + session)
+            .build());
+      }
+    }
+    recorder.close();
+
+    long recorded = recorder.getRecorded();
+    assertEquals(0, recorded % 5);
+    assertTrue(recorded > 0 && recorded < 500);
+  }
+}
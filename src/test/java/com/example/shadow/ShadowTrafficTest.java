@@ -0,0 +1,125 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.shadow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import com.example.NumberGenieApp;
+import com.example.stats.GameStatistics;
+import com.example.util.DialogflowRequestBuilder;
+import com.example.util.Utils;
+import com.google.actions.api.App;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+public class ShadowTrafficTest {
+
+  @Test
+  public void testSameBuildGivesIdenticalResponses() throws Exception {
+    URL build = NumberGenieApp.class.getProtectionDomain().getCodeSource()
+        .getLocation();
+    App shadowApp = ShadowTraffic.loadApp(NumberGenieApp.class.getName(),
+        new URL[]{build});
+    assertNotSame(NumberGenieApp.class, shadowApp.getClass());
+    ShadowTraffic shadow = new ShadowTraffic(shadowApp, 1, 100, null);
+    NumberGenieApp app = new NumberGenieApp(new GameStatistics(10));
+
+    String response = handle(shadow, app,
+        new DialogflowRequestBuilder("start_game").build());
+    for (int guess = 0; guess <= 100; guess += 7) {
+      response = handle(shadow, app,
+          new DialogflowRequestBuilder("provide_guess")
+              .setContextsFromResponse(response)
+              .setParameter("guess", (double) guess)
+              .build());
+    }
+    shadow.close();
+
+    ShadowReport report = shadow.getReport();
+    assertEquals(report.getExamples().toString(), 16, report.getIdentical());
+    assertEquals(0, report.getDifferent());
+    assertEquals(0, shadow.getDropped());
+  }
+
+  @Test
+  public void testDifferencesAndFailuresAreReported() throws Exception {
+    ShadowTraffic shadow = new ShadowTraffic((body, headers) -> {
+      if (body.equals("fail")) {
+        throw new IllegalStateException("broken build");
+      }
+      return CompletableFuture.completedFuture(
+          "{\"speech\":\"shadow\",\"expectUserResponse\":true}");
+    }, 1, 100, null);
+
+    shadow.mirror("same", 1,
+        "{\"expectUserResponse\":true,\"speech\":\"shadow\"}", 1000);
+    shadow.mirror("different", 2,
+        "{\"speech\":\"primary\",\"expectUserResponse\":true}", 1000);
+    shadow.mirror("fail", 3, "{}", 1000);
+    shadow.close();
+
+    ShadowReport report = shadow.getReport();
+    assertEquals(1, report.getIdentical());
+    assertEquals(1, report.getDifferent());
+    assertEquals(1, report.getFailed());
+    assertEquals("$.speech: primary \"primary\", shadow \"shadow\"",
+        report.getExamples().get(0));
+  }
+
+  @Test
+  public void testRequestsAreDroppedWhenTheShadowFallsBehind()
+      throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    ShadowTraffic shadow = new ShadowTraffic((body, headers) -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return CompletableFuture.completedFuture(body);
+    }, 1, 1, null);
+
+    for (int i = 0; i < 10; i++) {
+      shadow.mirror("request", i, "request", 1000);
+    }
+    release.countDown();
+    shadow.close();
+
+    assertTrue(shadow.getDropped() >= 8);
+    assertEquals(10, shadow.getMirrored() + shadow.getDropped());
+    assertEquals(shadow.getMirrored(), shadow.getReport().getIdentical());
+  }
+
+  // Handles a request as ActionsServlet does with shadow traffic on.
+  private static String handle(ShadowTraffic shadow, App app, String body)
+      throws Exception {
+    Long seed = shadow.sample();
+    try {
+      long start = System.nanoTime();
+      String response = app.handleRequest(body, null).get();
+      shadow.mirror(body, seed, response, System.nanoTime() - start);
+      return response;
+    } finally {
+      Utils.clearRandomSeed();
+    }
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.stats.GameStatistics;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.Test;
+
+public class StateExplorerTest {
+
+  @Test
+  public void testSmallRangeBreaksNoInvariant() {
+    Logger logger = Logger.getLogger("com.example");
+    Level level = logger.getLevel();
+    logger.setLevel(Level.WARNING);
+    try {
+      ExplorationReport report =
+          new StateExplorer(new GameStatistics(10), 0, 6, 10).explore(2);
+
+      assertEquals(report.formatViolations(), 0,
+          report.getTotalViolations());
+      assertTrue(report.getStates() > 9);
+      for (String branch : new String[]{"same_as_previous", "still_higher",
+          "still_lower", "min", "hot", "very_hot", "warm", "lower_than_answer",
+          "higher_than_answer", "win"}) {
+        assertTrue(branch, report.getBranchTurns(branch) > 0);
+      }
+    } finally {
+      logger.setLevel(level);
+    }
+  }
+}
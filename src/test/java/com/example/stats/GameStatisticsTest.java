@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import com.example.NumberGenieApp;
+import com.example.util.DialogflowRequestBuilder;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class GameStatisticsTest {
+
+  @Test
+  public void testUserBestScoreAndStreak() {
+    GameStatistics statistics = new GameStatistics(3);
+    statistics.recordWin("alice", 7);
+    statistics.recordWin("alice", 4);
+    statistics.recordLoss("alice");
+    statistics.recordWin("alice", 9);
+
+    UserStatistics alice = statistics.getUser("alice");
+    assertEquals(3, alice.getWins());
+    assertEquals(1, alice.getLosses());
+    assertEquals(4, alice.getBestScore());
+    assertEquals(1, alice.getCurrentStreak());
+    assertEquals(2, alice.getBestStreak());
+    assertEquals(1, statistics.getHistogram().getCount(4));
+  }
+
+  @Test
+  public void testQuittingCountsAsALossOnlyDuringAGame() throws Exception {
+    GameStatistics statistics = new GameStatistics(3);
+    NumberGenieApp app = new NumberGenieApp(statistics);
+    app.handleRequest(new DialogflowRequestBuilder("quit_game")
+        .setUserId("alice")
+        .build(), null).get();
+    assertEquals(0, statistics.getLosses());
+
+    app.handleRequest(new DialogflowRequestBuilder("quit_game")
+        .setUserId("alice")
+        .setConversationData(Collections.singletonMap("answer", 42.0))
+        .build(), null).get();
+    assertEquals(1, statistics.getLosses());
+  }
+
+  @Test
+  public void testLeaderboardKeepsBestScoresInOrder() {
+    GameStatistics statistics = new GameStatistics(3);
+    statistics.recordWin("a", 8);
+    statistics.recordWin("b", 3);
+    statistics.recordWin("c", 5);
+    statistics.recordWin("d", 2);
+    statistics.recordWin("a", 1);
+    statistics.recordWin(null, 1);
+
+    List<Leaderboard.Entry> top = statistics.getLeaderboard();
+    assertEquals(3, top.size());
+    assertEquals("a", top.get(0).getUserId());
+    assertEquals("d", top.get(1).getUserId());
+    assertEquals("b", top.get(2).getUserId());
+  }
+
+  @Test
+  public void testLeaderboardCountsWinsWithoutABetterScore() {
+    GameStatistics statistics = new GameStatistics(3);
+    statistics.recordWin("a", 3);
+    statistics.recordWin("b", 3);
+    statistics.recordWin("b", 3);
+
+    List<Leaderboard.Entry> top = statistics.getLeaderboard();
+    assertEquals("b", top.get(0).getUserId());
+    assertEquals(2, top.get(0).getWins());
+    assertEquals("a", top.get(1).getUserId());
+    assertEquals(1, top.get(1).getWins());
+  }
+
+  @Test
+  public void testConcurrentWinsAreAllCounted() throws Exception {
+    GameStatistics statistics = new GameStatistics(10);
+    int threads = 8;
+    int winsPerThread = 20_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    for (int t = 0; t < threads; t++) {
+      executor.execute(() -> {
+        for (int i = 0; i < winsPerThread; i++) {
+          statistics.recordWin("user-" + (i % 500), 1 + i % 15);
+        }
+      });
+    }
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+
+    assertEquals(threads * winsPerThread, statistics.getWins());
+    assertEquals(10, statistics.getLeaderboard().size());
+    assertEquals(1, statistics.getLeaderboard().get(0).getBestScore());
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.Gson;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StatisticsSnapshotterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRestoresFromIncrementalFrames() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("statistics.snapshot");
+    GameStatistics statistics = new GameStatistics(3);
+    StatisticsSnapshotter snapshotter =
+        new StatisticsSnapshotter(file, Long.MAX_VALUE, statistics);
+    statistics.recordWin("alice", 7);
+    statistics.recordWin("bob", 3);
+    snapshotter.snapshot();
+    long size = Files.size(file);
+    snapshotter.snapshot();
+    long emptyFrame = Files.size(file) - size;
+    size = Files.size(file);
+    statistics.recordWin("alice", 4);
+    snapshotter.snapshot();
+    assertEquals("only changed users are written",
+        4 + "alice".length() + 6 * 8, Files.size(file) - size - emptyFrame);
+    statistics.recordLoss("carol");
+    statistics.recordWin(null, 12);
+    snapshotter.snapshot();
+    statistics.recordLoss("alice");
+    snapshotter.close();
+
+    GameStatistics restored = new GameStatistics(3);
+    assertEquals(3, StatisticsSnapshotter.restore(file, restored));
+    Gson gson = new Gson();
+    assertEquals(gson.toJson(statistics.toSummary()),
+        gson.toJson(restored.toSummary()));
+    for (String user : new String[]{"alice", "bob", "carol"}) {
+      assertEquals(statistics.getUser(user).toSummary(),
+          restored.getUser(user).toSummary());
+    }
+  }
+
+  @Test
+  public void testTornFrameIsIgnoredAndCompactedAway() throws Exception {
+    Path file = folder.getRoot().toPath().resolve("statistics.snapshot");
+    GameStatistics statistics = new GameStatistics(3);
+    StatisticsSnapshotter snapshotter =
+        new StatisticsSnapshotter(file, Long.MAX_VALUE, statistics);
+    statistics.recordWin("alice", 5);
+    snapshotter.close();
+    long size = Files.size(file);
+    // A frame header promising more bytes than a crash left behind.
+    Files.write(file, new byte[]{0, 0, 1, 0, 1, 2, 3, 4, 5},
+        StandardOpenOption.APPEND);
+
+    GameStatistics restored = new GameStatistics(3);
+    snapshotter = new StatisticsSnapshotter(file, Long.MAX_VALUE, restored);
+    assertEquals(5, restored.getUser("alice").getBestScore());
+    assertEquals("alice", restored.getLeaderboard().get(0).getUserId());
+    assertNull(restored.getUser("bob"));
+    snapshotter.close();
+    assertEquals(size, Files.size(file));
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.example.tracing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.example.NumberGenieApp;
+import com.example.util.DialogflowRequestBuilder;
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+
+public class TracerTest {
+
+  private static final String TRACEPARENT =
+      "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+
+  @Test
+  public void testNestedPhasesAreNotCountedTwice() throws Exception {
+    PhaseTimer timer = new PhaseTimer();
+    assertNull(timer.enter(Phase.PARSE));
+
+    timer.start(Phase.READ);
+    Thread.sleep(2);
+    assertEquals(Phase.READ, timer.enter(Phase.LOGIC));
+    Phase previous = timer.enter(Phase.PROMPT);
+    Thread.sleep(2);
+    timer.exit(previous);
+    timer.stop();
+
+    long sum = 0;
+    for (Phase phase : Phase.values()) {
+      sum += timer.getNanos(phase);
+    }
+    assertEquals(timer.getElapsedNanos(), sum);
+    assertTrue(timer.getNanos(Phase.PROMPT) >= 2_000_000);
+    assertTrue(timer.getNanos(Phase.LOGIC) < timer.getNanos(Phase.PROMPT));
+    assertTrue(timer.toServerTiming(), timer.toServerTiming().matches(
+        "read;dur=\\d+\\.\\d{3}, logic;dur=\\d+\\.\\d{3}, "
+            + "prompt;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}"));
+  }
+
+  @Test
+  public void testTimingAllocatesNothing() {
+    com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    int iterations = 100_000;
+    for (int i = 0; i < 2; i++) {
+      long before = threadBean.getThreadAllocatedBytes(threadId);
+      for (int j = 0; j < iterations; j++) {
+        PhaseTimer timer = PhaseTimer.current();
+        timer.start(Phase.READ);
+        timer.enter(Phase.LOGIC);
+        timer.exit(timer.enter(Phase.PROMPT));
+        timer.enter(Phase.SERIALIZE);
+        timer.stop();
+      }
+      long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+      // The first round may load classes; the second must not allocate.
+      if (i == 1) {
+        assertTrue(allocated + " bytes", allocated < iterations);
+      }
+    }
+  }
+
+  @Test
+  public void testParseTraceparent() {
+    TraceContext context = TraceContext.parse(TRACEPARENT);
+    assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", context.getTraceId());
+    assertEquals("00f067aa0ba902b7", context.getParentId());
+    assertTrue(context.isSampled());
+    assertEquals("00-4bf92f3577b34da6a3ce929d0e0e4736-0123456789abcdef-01",
+        context.toTraceparent("0123456789abcdef"));
+
+    assertFalse(TraceContext.parse(TRACEPARENT.replace("-01", "-00"))
+        .isSampled());
+    assertTrue(TraceContext.parse(TRACEPARENT.replace("00-", "cc-") + "-x")
+        .isSampled());
+    assertNull(TraceContext.parse(null));
+    assertNull(TraceContext.parse(TRACEPARENT + "-x"));
+    assertNull(TraceContext.parse(TRACEPARENT.toUpperCase()));
+    assertNull(TraceContext.parse(TRACEPARENT.replace("00f067aa0ba902b7",
+        "0000000000000000")));
+    assertNull(TraceContext.parse(TRACEPARENT.replace("00-", "ff-")));
+  }
+
+  @Test
+  public void testExportsSpanOfTurn() throws Exception {
+    InMemorySpanExporter exporter = new InMemorySpanExporter();
+    Tracer tracer = new Tracer(exporter);
+    NumberGenieApp app = new NumberGenieApp();
+    String body = new DialogflowRequestBuilder("start_game").build();
+
+    PhaseTimer timer = tracer.begin();
+    app.handleRequest(body, null).get();
+    Span span = tracer.end(timer, TRACEPARENT);
+
+    assertEquals(1, exporter.getSpans().size());
+    assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", span.getTraceId());
+    assertEquals("00f067aa0ba902b7", span.getParentSpanId());
+    assertEquals(16, span.getSpanId().length());
+    for (Phase phase : new Phase[]{Phase.PARSE, Phase.DISPATCH, Phase.LOGIC,
+        Phase.PROMPT, Phase.RENDER, Phase.SERIALIZE}) {
+      assertTrue(phase.toString(), span.getPhaseNanos(phase) > 0);
+    }
+
+    tracer.end(tracer.begin(), TRACEPARENT.replace("-01", "-00"));
+    assertEquals(1, exporter.getSpans().size());
+    assertNull(tracer.end(tracer.begin(), null).getParentSpanId());
+    assertEquals(2, exporter.getSpans().size());
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package com.example.util;
+
+import static org.junit.Assert.assertEquals;
+
+import com.example.util.AccessTokens.Access;
+import org.junit.After;
+import org.junit.Test;
+
+public class AccessTokensTest {
+
+  private static final String PROPERTY = "numbergenie.test.token";
+
+  @After
+  public void clearToken() {
+    System.clearProperty(PROPERTY);
+  }
+
+  @Test
+  public void testEndpointIsDisabledWithoutAToken() {
+    assertEquals(Access.DISABLED, AccessTokens.check(PROPERTY, "secret"));
+    System.setProperty(PROPERTY, "");
+    assertEquals(Access.DISABLED, AccessTokens.check(PROPERTY, ""));
+  }
+
+  @Test
+  public void testOnlyTheTokenIsGranted() {
+    System.setProperty(PROPERTY, "secret");
+    assertEquals(Access.GRANTED, AccessTokens.check(PROPERTY, "secret"));
+    assertEquals(Access.DENIED, AccessTokens.check(PROPERTY, "secret2"));
+    assertEquals(Access.DENIED, AccessTokens.check(PROPERTY, null));
+  }
+}
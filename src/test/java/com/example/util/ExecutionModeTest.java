@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.example.NumberGenieApp;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+
+public class ExecutionModeTest {
+
+  // Command line tools, and batch lanes, which are platform threads of their
+  // own, are not on the request path of a virtual thread.
+  private static final List<String> OFF_REQUEST_PATH = ImmutableList.of(
+      "com.example.batch.", "com.example.load.", "com.example.simulation.");
+
+  @Test
+  public void testParse() {
+    assertEquals(ExecutionMode.VIRTUAL, ExecutionMode.parse("Virtual"));
+    assertEquals(ExecutionMode.PLATFORM, ExecutionMode.parse(" platform "));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseUnknown() {
+    ExecutionMode.parse("green");
+  }
+
+  @Test
+  public void testVirtualRunsTasks() throws Exception {
+    ExecutorService executor =
+        ExecutionMode.VIRTUAL.newExecutor(1, "test-worker-");
+    try {
+      String name = executor.submit(() -> Thread.currentThread().getName())
+          .get();
+      assertTrue(name, name.startsWith("test-worker-"));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testVirtualHandlesRequestsOnVirtualThreads() throws Exception {
+    assumeTrue("Virtual threads need Java 21.",
+        ExecutionMode.isVirtualSupported());
+    NumberGenieApp app = new NumberGenieApp();
+    String request = new DialogflowRequestBuilder("start_game").build();
+    ExecutorService executor =
+        ExecutionMode.VIRTUAL.newExecutor(1, "test-webhook-");
+    try {
+      List<Future<Boolean>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        futures.add(executor.submit(() -> {
+          assertTrue(app.handleRequest(request, null).get()
+              .contains("outputContexts"));
+          return (Boolean) Thread.class.getMethod("isVirtual")
+              .invoke(Thread.currentThread());
+        }));
+      }
+      for (Future<Boolean> future : futures) {
+        assertTrue(future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testDetectsSynchronizedMethods() {
+    assertEquals(ImmutableList.of(Counter.class.getName() + "#increment"),
+        PinningDetector.findSynchronizedMethods(
+            ImmutableList.of(ExecutionModeTest.class)));
+  }
+
+  @Test
+  public void testRequestPathHasNoSynchronizedMethods() throws Exception {
+    assertEquals(new ArrayList<String>(),
+        PinningDetector.findSynchronizedMethods(requestPathClasses()));
+  }
+
+  private static List<Class<?>> requestPathClasses() throws Exception {
+    Path root = Paths.get(NumberGenieApp.class.getProtectionDomain()
+        .getCodeSource().getLocation().toURI());
+    List<String> names;
+    try (Stream<Path> files = Files.walk(root)) {
+      names = files
+          .map(file -> root.relativize(file).toString())
+          .filter(file -> file.endsWith(".class") && !file.contains("$"))
+          .map(file -> file.substring(0, file.length() - ".class".length())
+              .replace(File.separatorChar, '.'))
+          .filter(name -> OFF_REQUEST_PATH.stream().noneMatch(name::startsWith))
+          .collect(Collectors.toList());
+    }
+    List<Class<?>> classes = new ArrayList<>();
+    for (String name : names) {
+      classes.add(Class.forName(name, false,
+          ExecutionModeTest.class.getClassLoader()));
+    }
+    return classes;
+  }
+
+  private static final class Counter {
+
+    private int count;
+
+    synchronized void increment() {
+      count++;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.Test;
+
+public class ResponseCompressorTest {
+
+  private final ResponseCompressor compressor =
+      new ResponseCompressor(100, ResponseCompressor.DEFAULT_LEVEL, 1);
+
+  @Test
+  public void testNegotiate() {
+    assertEquals(ContentEncoding.IDENTITY, ContentEncoding.negotiate(null));
+    assertEquals(ContentEncoding.GZIP,
+        ContentEncoding.negotiate("gzip, deflate, br"));
+    assertEquals(ContentEncoding.DEFLATE,
+        ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+    assertEquals(ContentEncoding.IDENTITY,
+        ContentEncoding.negotiate("gzip;q=0, br"));
+    assertEquals(ContentEncoding.GZIP, ContentEncoding.negotiate("*"));
+    assertEquals(ContentEncoding.DEFLATE,
+        ContentEncoding.negotiate("gzip;q=0, *"));
+  }
+
+  @Test
+  public void testGzipRoundTrip() throws IOException {
+    byte[] body = json(50);
+    for (int i = 0; i < 3; i++) {
+      byte[] compressed = compressor.compress(body, ContentEncoding.GZIP);
+      assertTrue(compressed.length < body.length / 4);
+      assertArrayEquals(body,
+          read(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+  }
+
+  @Test
+  public void testDeflateRoundTrip() throws IOException {
+    byte[] body = json(50);
+    for (int i = 0; i < 3; i++) {
+      byte[] compressed = compressor.compress(body, ContentEncoding.DEFLATE);
+      assertArrayEquals(body,
+          read(new InflaterInputStream(new ByteArrayInputStream(compressed))));
+    }
+  }
+
+  @Test
+  public void testLargeResponse() throws IOException {
+    byte[] body = json(20_000);
+    byte[] compressed = compressor.compress(body, ContentEncoding.GZIP);
+    assertArrayEquals(body,
+        read(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+  }
+
+  @Test
+  public void testSmallResponseIsNotCompressed() throws IOException {
+    byte[] body = json(1);
+    assertTrue(body.length < 100);
+    assertEquals(ContentEncoding.IDENTITY,
+        compressor.write(body, ContentEncoding.GZIP, (encoding, bytes,
+            length) -> assertSame(body, bytes)));
+  }
+
+  @Test
+  public void testIncompressibleResponseIsNotCompressed() throws IOException {
+    byte[] body = new byte[4096];
+    new Random(42).nextBytes(body);
+    assertEquals(ContentEncoding.IDENTITY,
+        compressor.write(body, ContentEncoding.GZIP, (encoding, bytes,
+            length) -> assertEquals(body.length, length)));
+  }
+
+  private static byte[] json(int suggestions) {
+    StringBuilder json = new StringBuilder("{\"suggestions\":[");
+    for (int i = 0; i < suggestions; i++) {
+      json.append(i == 0 ? "" : ",").append("{\"title\":\"").append(i)
+          .append("\"}");
+    }
+    return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] read(InputStream in) throws IOException {
+    try (InputStream stream = in) {
+      return ByteStreams.toByteArray(stream);
+    }
+  }
+}